@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark;
+
+import com.google.common.collect.Sets;
+import com.weibo.rill.flow.benchmark.support.BenchmarkFixtures;
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
+import com.weibo.rill.flow.olympicene.storage.save.impl.DAGLocalStorage;
+import com.weibo.rill.flow.olympicene.traversal.helper.ContextHelper;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * context存储使用DAGLocalStorage, 只衡量ContextHelper本身的分组与拷贝开销
+ * <p>
+ * readyTasks包含若干根任务及foreach的{@code groupCount}个分组子任务, 与foreach展开后首批下发的场景一致
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContextHelperBenchmark {
+    private static final String FOREACH_TASK_NAME = "foreach";
+    private static final int ANCESTOR_TASK_COUNT = 4;
+
+    @Param({"10", "100"})
+    private int groupCount;
+
+    @Param({"true", "false"})
+    private boolean independentContext;
+
+    private final DAGLocalStorage storage = new DAGLocalStorage();
+    private TaskInfo ancestorTask;
+    private TaskInfo subTask;
+    private Set<TaskInfo> readyTasks;
+
+    @Setup
+    public void setup() {
+        ContextHelper.getInstance().setIndependentContext(independentContext);
+
+        Map<String, Object> context = new HashMap<>(BenchmarkFixtures.context(64));
+        readyTasks = Sets.newHashSet();
+        for (int i = 0; i < ANCESTOR_TASK_COUNT; i++) {
+            readyTasks.add(BenchmarkFixtures.ancestorTaskInfo(BenchmarkFixtures.taskName(i)));
+        }
+        for (int i = 0; i < groupCount; i++) {
+            TaskInfo taskInfo = BenchmarkFixtures.subTaskInfo(FOREACH_TASK_NAME, i, "transcode");
+            readyTasks.add(taskInfo);
+            context.put(DAGWalkHelper.getInstance().buildSubTaskContextFieldName(taskInfo.getRouteName()),
+                    BenchmarkFixtures.context(4));
+        }
+        storage.updateContext(BenchmarkFixtures.EXECUTION_ID, context);
+
+        ancestorTask = BenchmarkFixtures.ancestorTaskInfo(BenchmarkFixtures.taskName(0));
+        subTask = BenchmarkFixtures.subTaskInfo(FOREACH_TASK_NAME, 0, "transcode");
+    }
+
+    @TearDown
+    public void tearDown() {
+        ContextHelper.getInstance().setIndependentContext(true);
+    }
+
+    @Benchmark
+    public Map<String, Object> getAncestorTaskContext() {
+        return ContextHelper.getInstance().getContext(storage, BenchmarkFixtures.EXECUTION_ID, ancestorTask);
+    }
+
+    @Benchmark
+    public Map<String, Object> getSubTaskContext() {
+        return ContextHelper.getInstance().getContext(storage, BenchmarkFixtures.EXECUTION_ID, subTask);
+    }
+
+    @Benchmark
+    public List<Pair<TaskInfo, Map<String, Object>>> getReadyTasksContext() {
+        return ContextHelper.getInstance().getContext(storage, BenchmarkFixtures.EXECUTION_ID, readyTasks);
+    }
+}
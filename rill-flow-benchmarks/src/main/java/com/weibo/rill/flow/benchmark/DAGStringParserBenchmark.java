@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark;
+
+import com.weibo.rill.flow.benchmark.support.BenchmarkFixtures;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.ddl.parser.DAGStringParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 描述符解析包含yaml反序列化及FlowDAGValidator校验
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DAGStringParserBenchmark {
+    @Param({"10", "100", "1000"})
+    private int nodeCount;
+
+    private DAGStringParser parser;
+    private String descriptor;
+
+    @Setup
+    public void setup() {
+        parser = BenchmarkFixtures.dagParser();
+        descriptor = BenchmarkFixtures.layeredDagYaml(nodeCount);
+    }
+
+    @Benchmark
+    public DAG parse() {
+        return parser.parse(descriptor);
+    }
+}
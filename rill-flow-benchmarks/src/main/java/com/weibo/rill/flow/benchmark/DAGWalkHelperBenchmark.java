@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark;
+
+import com.weibo.rill.flow.benchmark.support.BenchmarkFixtures;
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次任务状态变化后traversal都会对当前层级的全部TaskInfo计算可执行任务
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DAGWalkHelperBenchmark {
+    @Param({"10", "100", "1000"})
+    private int nodeCount;
+
+    private Collection<TaskInfo> taskInfos;
+
+    @Setup
+    public void setup() {
+        DAGInfo dagInfo = BenchmarkFixtures.runningDagInfo(nodeCount);
+        taskInfos = dagInfo.getTasks().values();
+    }
+
+    @Benchmark
+    public Set<TaskInfo> getReadyToRunTasks() {
+        return DAGWalkHelper.getInstance().getReadyToRunTasks(taskInfos);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark;
+
+import com.google.common.collect.Maps;
+import com.weibo.rill.flow.benchmark.support.BenchmarkFixtures;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.storage.save.impl.DagStorageSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与DAGInfoDAO的存储格式一致: 描述符单独序列化, TaskInfo按hash field逐个序列化并附带类型字段
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DagStorageSerializerBenchmark {
+    @Param({"100", "1000"})
+    private int nodeCount;
+
+    private DAGInfo dagInfo;
+    private Map<String, Object> dagInfoHash;
+    private byte[] descriptorBytes;
+    private byte[] dagInfoBytes;
+    private List<byte[]> dagInfoHashBytes;
+
+    @Setup
+    public void setup() {
+        dagInfo = DAGInfo.cloneToSave(BenchmarkFixtures.runningDagInfo(nodeCount));
+        dagInfoHash = Maps.newHashMap();
+        dagInfo.getTasks().forEach(dagInfoHash::put);
+        descriptorBytes = DagStorageSerializer.serialize(dagInfo.getDag());
+        dagInfoBytes = DagStorageSerializer.serialize(dagInfo);
+        dagInfoHashBytes = DagStorageSerializer.serializeHashToList(dagInfoHash).stream()
+                .map(DagStorageSerializer::getBytes)
+                .toList();
+    }
+
+    @Benchmark
+    public String serializeDescriptor() {
+        return DagStorageSerializer.serializeToString(dagInfo.getDag());
+    }
+
+    @Benchmark
+    public DAG deserializeDescriptor() {
+        return DagStorageSerializer.deserialize(descriptorBytes, DAG.class);
+    }
+
+    @Benchmark
+    public List<String> serializeTaskHash() {
+        return DagStorageSerializer.serializeHashToList(dagInfoHash);
+    }
+
+    @Benchmark
+    public Map<String, Object> deserializeTaskHash() {
+        return DagStorageSerializer.deserializeHash(dagInfoHashBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeDAGInfo() {
+        return DagStorageSerializer.serialize(dagInfo);
+    }
+
+    @Benchmark
+    public DAGInfo deserializeDAGInfo() {
+        return DagStorageSerializer.deserialize(dagInfoBytes, DAGInfo.class);
+    }
+}
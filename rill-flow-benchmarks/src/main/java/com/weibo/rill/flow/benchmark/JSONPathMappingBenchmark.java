@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark;
+
+import com.weibo.rill.flow.benchmark.support.BenchmarkFixtures;
+import com.weibo.rill.flow.interfaces.model.mapping.Mapping;
+import com.weibo.rill.flow.olympicene.traversal.mappings.JSONPathInputOutputMapping;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务下发前的inputMappings及任务完成后的outputMappings均经过该方法
+ * <p>
+ * 规则中不包含transform: aviator未缓存的表达式每次执行都会加载新类, 长时间压测会耗尽Metaspace, 结果也无法反映jsonpath本身的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JSONPathMappingBenchmark {
+    @Param({"16", "256"})
+    private int collectionSize;
+
+    private final JSONPathInputOutputMapping mapping = new JSONPathInputOutputMapping();
+    private Map<String, Object> context;
+    private Map<String, Object> output;
+    private List<Mapping> rules;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkFixtures.context(collectionSize);
+        output = BenchmarkFixtures.output(collectionSize);
+        rules = BenchmarkFixtures.mappingRules();
+    }
+
+    @Benchmark
+    public Map<String, Object> mapping() {
+        // mapping会写入context与input, 每次使用副本避免结果逐次累积
+        Map<String, Object> currentContext = new HashMap<>(context);
+        Map<String, Object> input = new HashMap<>();
+        mapping.mapping(currentContext, input, output, rules);
+        return input;
+    }
+}
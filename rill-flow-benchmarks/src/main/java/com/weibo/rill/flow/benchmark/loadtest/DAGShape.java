@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark.loadtest;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测使用的DAG形态, size的含义随形态不同:
+ * <ul>
+ *     <li>CHAIN: size个function任务串行</li>
+ *     <li>FANOUT: 1个入口任务扇出size个并行任务, 再汇聚到1个出口任务</li>
+ *     <li>NESTED_FOREACH: 外层foreach遍历size个分组, 每组内层foreach遍历size个元素, 每个元素执行1个function任务</li>
+ * </ul>
+ */
+public enum DAGShape {
+    CHAIN {
+        @Override
+        public String descriptor(int size) {
+            StringBuilder text = header("chain" + size);
+            for (int i = 0; i < size; i++) {
+                appendFunction(text, "  ", "step" + i, i + 1 < size ? "step" + (i + 1) : null);
+            }
+            return text.toString();
+        }
+
+        @Override
+        public int functionTaskCount(int size) {
+            return size;
+        }
+    },
+    FANOUT {
+        @Override
+        public String descriptor(int size) {
+            StringBuilder text = header("fanout" + size);
+            List<String> branches = Lists.newArrayList();
+            for (int i = 0; i < size; i++) {
+                branches.add("branch" + i);
+            }
+            appendFunction(text, "  ", "start", String.join(",", branches));
+            branches.forEach(branch -> appendFunction(text, "  ", branch, "join"));
+            appendFunction(text, "  ", "join", null);
+            return text.toString();
+        }
+
+        @Override
+        public int functionTaskCount(int size) {
+            return size + 2;
+        }
+    },
+    NESTED_FOREACH {
+        @Override
+        public String descriptor(int size) {
+            StringBuilder text = header("foreach" + size);
+            text.append("- category: foreach\n")
+                    .append("  name: groups\n")
+                    .append("  inputMappings:\n")
+                    .append("    - target: $.input.groups\n")
+                    .append("      source: $.context.groups\n")
+                    .append("  iterationMapping:\n")
+                    .append("    collection: $.input.groups\n")
+                    .append("    item: group\n")
+                    .append("  tasks:\n")
+                    .append("    - category: foreach\n")
+                    .append("      name: items\n")
+                    .append("      inputMappings:\n")
+                    .append("        - target: $.input.items\n")
+                    .append("          source: $.context.group\n")
+                    .append("      iterationMapping:\n")
+                    .append("        collection: $.input.items\n")
+                    .append("        item: item\n")
+                    .append("      tasks:\n");
+            appendFunction(text, "        ", "process", null);
+            return text.toString();
+        }
+
+        @Override
+        public int functionTaskCount(int size) {
+            return size * size;
+        }
+
+        @Override
+        public Map<String, Object> context(int size) {
+            Map<String, Object> context = super.context(size);
+            List<List<String>> groups = Lists.newArrayList();
+            for (int i = 0; i < size; i++) {
+                List<String> items = Lists.newArrayList();
+                for (int j = 0; j < size; j++) {
+                    items.add("item_" + i + "_" + j);
+                }
+                groups.add(items);
+            }
+            context.put("groups", groups);
+            return context;
+        }
+    };
+
+    public abstract String descriptor(int size);
+
+    public abstract int functionTaskCount(int size);
+
+    public Map<String, Object> context(int size) {
+        Map<String, Object> context = Maps.newHashMap();
+        context.put("url", "http://127.0.0.1/video/8921a32f.mp4");
+        context.put("item", "item");
+        return context;
+    }
+
+    private static StringBuilder header(String dagName) {
+        return new StringBuilder()
+                .append("version: 0.0.1\n")
+                .append("workspace: loadtest\n")
+                .append("dagName: ").append(dagName).append('\n')
+                .append("type: flow\n")
+                .append("tasks:\n");
+    }
+
+    private static void appendFunction(StringBuilder text, String indent, String name, String next) {
+        text.append(indent, 0, indent.length() - 2).append("- category: function\n")
+                .append(indent).append("name: ").append(name).append('\n')
+                .append(indent).append("resourceName: \"http://127.0.0.1/loadtest/").append(name).append("\"\n")
+                .append(indent).append("pattern: task_scheduler\n")
+                .append(indent).append("inputMappings:\n")
+                .append(indent).append("  - target: $.input.url\n")
+                .append(indent).append("    source: $.context.url\n")
+                .append(indent).append("  - target: $.input.item\n")
+                .append(indent).append("    source: $.context.item\n")
+                .append(indent).append("outputMappings:\n")
+                .append(indent).append("  - target: $.context.").append(name).append("_result\n")
+                .append(indent).append("    source: $.output.result\n");
+        if (next != null) {
+            text.append(indent).append("next: ").append(next).append('\n');
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark.loadtest;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计任务在线程池中的排队耗时, 与线上InstrumentedExecutorServiceDecorator的口径一致: 从提交开始到开始执行
+ */
+public class InstrumentedExecutorService extends AbstractExecutorService {
+    private final ThreadPoolExecutor executor;
+    private final LatencyRecorder queueWait;
+
+    public InstrumentedExecutorService(int threads, LatencyRecorder queueWait) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("loadtest-runner-%d").setDaemon(true).build());
+        this.queueWait = queueWait;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitTime = System.nanoTime();
+        Runnable instrumentedCommand = () -> {
+            queueWait.record(System.nanoTime() - submitTime);
+            task.run();
+        };
+        if (task instanceof ExecutionRunnable executionRunnable) {
+            instrumentedCommand = new ExecutionRunnable(executionRunnable.getExecutionId(), instrumentedCommand);
+        }
+        executor.execute(instrumentedCommand);
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark.loadtest;
+
+import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure;
+import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode;
+import com.weibo.rill.flow.olympicene.storage.exception.StorageException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内锁实现, 统计获取锁的等待耗时
+ * <p>
+ * 锁对象在一轮压测结束前不会移除, 保证同一lockName始终互斥; 每轮结束后调用{@link #clear()}释放
+ */
+public class InstrumentedStorageProcedure implements DAGStorageProcedure {
+    private static final long LOCK_TIMEOUT_SECONDS = 30;
+
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final LatencyRecorder lockWait;
+
+    public InstrumentedStorageProcedure(LatencyRecorder lockWait) {
+        this.lockWait = lockWait;
+    }
+
+    @Override
+    public void lockAndRun(String lockName, Runnable runnable) {
+        ReentrantLock lock = locks.computeIfAbsent(lockName, it -> new ReentrantLock());
+        long startTime = System.nanoTime();
+        boolean locked;
+        try {
+            locked = lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            locked = false;
+        }
+        if (!locked) {
+            throw new StorageException(StorageErrorCode.LOCK_TIMEOUT.getCode(), "lock fails");
+        }
+        lockWait.record(System.nanoTime() - startTime);
+        try {
+            runnable.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        locks.clear();
+    }
+}
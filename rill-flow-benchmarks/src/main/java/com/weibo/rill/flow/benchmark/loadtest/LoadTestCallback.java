@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark.loadtest;
+
+import com.weibo.rill.flow.olympicene.core.event.Callback;
+import com.weibo.rill.flow.olympicene.core.event.Event;
+import com.weibo.rill.flow.olympicene.traversal.callback.DAGCallbackInfo;
+import com.weibo.rill.flow.olympicene.traversal.callback.DAGEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 根据引擎回调统计任务及执行耗时:
+ * <ul>
+ *     <li>任务耗时: 从下发到引擎处理完成并回调TASK_FINISH, 包含模拟执行耗时</li>
+ *     <li>执行耗时: 从submit到DAG_SUCCEED/DAG_FAILED</li>
+ * </ul>
+ */
+public class LoadTestCallback implements Callback<DAGCallbackInfo> {
+    private final MockDAGDispatcher dispatcher;
+    private final LatencyRecorder taskLatency;
+    private final LatencyRecorder executionLatency;
+    private final Semaphore inFlight;
+    private final Consumer<String> onExecutionCompleted;
+    private final Map<String, Long> submitTimes = new ConcurrentHashMap<>();
+    private final AtomicLong failedExecutions = new AtomicLong();
+    private volatile CountDownLatch completedLatch;
+
+    public LoadTestCallback(MockDAGDispatcher dispatcher, LatencyRecorder taskLatency, LatencyRecorder executionLatency,
+                            Semaphore inFlight, Consumer<String> onExecutionCompleted) {
+        this.dispatcher = dispatcher;
+        this.taskLatency = taskLatency;
+        this.executionLatency = executionLatency;
+        this.inFlight = inFlight;
+        this.onExecutionCompleted = onExecutionCompleted;
+    }
+
+    public void startRound(int executions) {
+        completedLatch = new CountDownLatch(executions);
+        failedExecutions.set(0);
+    }
+
+    public CountDownLatch getCompletedLatch() {
+        return completedLatch;
+    }
+
+    public long getFailedExecutions() {
+        return failedExecutions.get();
+    }
+
+    public void onSubmit(String executionId) {
+        submitTimes.put(executionId, System.nanoTime());
+    }
+
+    @Override
+    public void onEvent(Event<DAGCallbackInfo> event) {
+        DAGCallbackInfo info = event.getData();
+        if (info == null) {
+            return;
+        }
+        String executionId = info.getExecutionId();
+        int eventCode = event.getEventCode();
+        if (eventCode == DAGEvent.TASK_FINISH.getCode() || eventCode == DAGEvent.TASK_FAILED.getCode()) {
+            Long dispatchTime = info.getTaskInfo() == null ? null
+                    : dispatcher.removeDispatchTime(executionId, info.getTaskInfo().getName());
+            if (dispatchTime != null) {
+                taskLatency.record(System.nanoTime() - dispatchTime);
+            }
+        } else if (eventCode == DAGEvent.DAG_SUCCEED.getCode() || eventCode == DAGEvent.DAG_FAILED.getCode()) {
+            Long submitTime = submitTimes.remove(executionId);
+            if (submitTime == null) {
+                return;
+            }
+            executionLatency.record(System.nanoTime() - submitTime);
+            if (eventCode == DAGEvent.DAG_FAILED.getCode()) {
+                failedExecutions.incrementAndGet();
+            }
+            onExecutionCompleted.accept(executionId);
+            inFlight.release();
+            completedLatch.countDown();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark.loadtest;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.weibo.rill.flow.interfaces.model.strategy.DispatchInfo;
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
+import com.weibo.rill.flow.olympicene.core.model.DAGSettings;
+import com.weibo.rill.flow.olympicene.core.model.NotifyInfo;
+import com.weibo.rill.flow.olympicene.traversal.Olympicene;
+import com.weibo.rill.flow.olympicene.traversal.dispatcher.DAGDispatcher;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟task_scheduler模式的执行器: 下发后立即返回, 经过{@code latencyMillis}(加上随机抖动)后回调finish
+ */
+@Slf4j
+public class MockDAGDispatcher implements DAGDispatcher {
+    private static final Map<String, Object> OUTPUT = ImmutableMap.of("result", "ok");
+
+    private final ScheduledExecutorService scheduler;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final Map<String, Long> dispatchTimes = new ConcurrentHashMap<>();
+    @Setter
+    private Olympicene olympicene;
+
+    public MockDAGDispatcher(int threads, long latencyMillis, long jitterMillis) {
+        this.scheduler = Executors.newScheduledThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("loadtest-executor-%d").setDaemon(true).build());
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    @Override
+    public String dispatch(DispatchInfo dispatchInfo) {
+        String executionId = dispatchInfo.getExecutionId();
+        String taskName = dispatchInfo.getTaskInfo().getName();
+        dispatchTimes.put(buildKey(executionId, taskName), System.nanoTime());
+
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        scheduler.schedule(() -> {
+            try {
+                olympicene.finish(executionId, DAGSettings.DEFAULT, OUTPUT,
+                        NotifyInfo.builder().taskInfoName(taskName).taskStatus(TaskStatus.SUCCEED).build());
+            } catch (Exception e) {
+                log.warn("mock finish fails, executionId:{}, taskName:{}", executionId, taskName, e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return "{}";
+    }
+
+    /**
+     * @return 任务下发时间(nanoTime), 非function任务返回null
+     */
+    public Long removeDispatchTime(String executionId, String taskName) {
+        return dispatchTimes.remove(buildKey(executionId, taskName));
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private String buildKey(String executionId, String taskName) {
+        return executionId + "#" + taskName;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark.loadtest;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.weibo.rill.flow.benchmark.support.BenchmarkFixtures;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.storage.save.impl.DAGLocalStorage;
+import com.weibo.rill.flow.olympicene.storage.save.impl.DAGWALStorage;
+import com.weibo.rill.flow.olympicene.traversal.Olympicene;
+import com.weibo.rill.flow.olympicene.traversal.checker.TimeChecker;
+import com.weibo.rill.flow.olympicene.traversal.config.OlympiceneFacade;
+import com.weibo.rill.flow.olympicene.traversal.helper.TracerHelper;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 引擎端到端吞吐压测, 不依赖任何外部服务:
+ * <ul>
+ *     <li>存储使用DAGLocalStorage, 指定--wal-dir时使用DAGWALStorage; 锁使用进程内锁并统计等待耗时</li>
+ *     <li>任务下发到{@link MockDAGDispatcher}, 按配置的耗时回调finish</li>
+ *     <li>runner/traversal/notify共用一个线程池, 统计排队耗时</li>
+ *     <li>trace信息不落存储, 只保留OpenTelemetry noop tracer</li>
+ * </ul>
+ * 参数均为--key=value形式, 例如:
+ * <pre>
+ * java -cp rill-flow-benchmarks/target/benchmarks.jar com.weibo.rill.flow.benchmark.loadtest.ThroughputHarness \
+ *     --shape=fanout --size=50 --executions=2000 --concurrency=200 --latency-ms=5
+ * </pre>
+ */
+public class ThroughputHarness {
+    private static final long ROUND_TIMEOUT_MINUTES = 10;
+    private static final long STORAGE_CLEAR_DELAY_MILLIS = 1000;
+
+    private final DAGShape shape;
+    private final int size;
+    private final int executions;
+    private final int warmupExecutions;
+    private final int concurrency;
+
+    private final LatencyRecorder taskLatency = new LatencyRecorder();
+    private final LatencyRecorder executionLatency = new LatencyRecorder();
+    private final LatencyRecorder lockWait = new LatencyRecorder();
+    private final LatencyRecorder queueWait = new LatencyRecorder();
+
+    private final DAGLocalStorage storage;
+    private final InstrumentedStorageProcedure storageProcedure = new InstrumentedStorageProcedure(lockWait);
+    private final InstrumentedExecutorService executor;
+    private final MockDAGDispatcher dispatcher;
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("loadtest-cleaner-%d").setDaemon(true).build());
+    private final LoadTestCallback callback;
+    private final Semaphore inFlight;
+    private final Olympicene olympicene;
+    private final DAG dag;
+
+    public ThroughputHarness(Map<String, String> options) {
+        this.shape = DAGShape.valueOf(options.getOrDefault("shape", "chain").toUpperCase(Locale.ROOT));
+        this.size = Integer.parseInt(options.getOrDefault("size", "10"));
+        this.executions = Integer.parseInt(options.getOrDefault("executions", "2000"));
+        this.warmupExecutions = Integer.parseInt(options.getOrDefault("warmup", String.valueOf(executions / 5)));
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+        int executorThreads = Integer.parseInt(options.getOrDefault("executor-threads", "4"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "5"));
+        long jitterMillis = Long.parseLong(options.getOrDefault("jitter-ms", "0"));
+        String walDirectory = options.get("wal-dir");
+
+        if (walDirectory == null) {
+            this.storage = new DAGLocalStorage();
+        } else {
+            DAGWALStorage walStorage = new DAGWALStorage(walDirectory);
+            walStorage.init();
+            this.storage = walStorage;
+        }
+
+        this.executor = new InstrumentedExecutorService(threads, queueWait);
+        this.dispatcher = new MockDAGDispatcher(executorThreads, latencyMillis, jitterMillis);
+        this.inFlight = new Semaphore(concurrency);
+        this.callback = new LoadTestCallback(dispatcher, taskLatency, executionLatency, inFlight, this::clearLater);
+        this.olympicene = OlympiceneFacade.build(storage, storage, storageProcedure, callback, null, dispatcher,
+                new NoopTimeChecker(), executor, switcher -> false, new NoopTracerHelper());
+        this.dispatcher.setOlympicene(olympicene);
+        this.dag = BenchmarkFixtures.dagParser().parse(shape.descriptor(size));
+
+        System.out.printf("shape=%s, size=%d, functionTasksPerExecution=%d, executions=%d, warmup=%d, concurrency=%d, "
+                        + "threads=%d, executorThreads=%d, latency=%dms, jitter=%dms, walDir=%s%n",
+                shape, size, shape.functionTaskCount(size), executions, warmupExecutions, concurrency,
+                threads, executorThreads, latencyMillis, jitterMillis, walDirectory);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int index = option.indexOf('=');
+            if (index > 0) {
+                options.put(option.substring(0, index), option.substring(index + 1));
+            }
+        }
+
+        ThroughputHarness harness = new ThroughputHarness(options);
+        try {
+            if (harness.warmupExecutions > 0) {
+                harness.runRound("warmup", harness.warmupExecutions);
+            }
+            harness.runRound("measure", harness.executions);
+        } finally {
+            harness.shutdown();
+        }
+    }
+
+    private void runRound(String roundName, int roundExecutions) throws InterruptedException {
+        taskLatency.reset();
+        executionLatency.reset();
+        lockWait.reset();
+        queueWait.reset();
+        storageProcedure.clear();
+        callback.startRound(roundExecutions);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < roundExecutions; i++) {
+            inFlight.acquire();
+            String executionId = "loadtest:" + shape.name().toLowerCase(Locale.ROOT) + "_c_" + UUID.randomUUID();
+            callback.onSubmit(executionId);
+            olympicene.submit(executionId, dag, shape.context(size));
+        }
+        boolean finished = callback.getCompletedLatch().await(ROUND_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        double elapsedSeconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+
+        long completed = roundExecutions - callback.getCompletedLatch().getCount();
+        System.out.printf("[%s] completed=%d/%d, failed=%d, elapsed=%.3fs%s%n", roundName, completed, roundExecutions,
+                callback.getFailedExecutions(), elapsedSeconds, finished ? "" : " (timeout)");
+        System.out.printf("[%s] throughput: %.1f executions/s, %.1f tasks/s%n", roundName,
+                completed / elapsedSeconds, taskLatency.getCount() / elapsedSeconds);
+        System.out.printf("[%s] execution latency: %s%n", roundName, executionLatency.summary());
+        System.out.printf("[%s] task latency: %s%n", roundName, taskLatency.summary());
+        System.out.printf("[%s] lock wait: %s%n", roundName, lockWait.summary());
+        System.out.printf("[%s] queue wait: %s, queued at end=%d%n", roundName, queueWait.summary(), executor.getQueueSize());
+    }
+
+    /**
+     * DAG_SUCCEED回调时引擎仍在当前调用栈内, 延迟清理存储避免影响后续收尾逻辑
+     */
+    private void clearLater(String executionId) {
+        cleaner.schedule(() -> {
+            storage.clearDAGInfo(executionId);
+            storage.clearContext(executionId);
+        }, STORAGE_CLEAR_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void shutdown() {
+        dispatcher.shutdown();
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+        if (storage instanceof DAGWALStorage walStorage) {
+            walStorage.shutdown();
+        }
+    }
+
+    private static class NoopTimeChecker implements TimeChecker {
+        @Override
+        public boolean addMemberToCheckPool(String executionId, String member, long time) {
+            return true;
+        }
+
+        @Override
+        public boolean remMemberFromCheckPool(String executionId, String member) {
+            return true;
+        }
+
+        @Override
+        public void initCheckThread(int memberCheckPeriodInSeconds) {
+            // 压测任务不会超时
+        }
+    }
+
+    private static class NoopTracerHelper extends TracerHelper {
+        private NoopTracerHelper() {
+            super(null, OpenTelemetry.noop().getTracer("rill-flow-loadtest"));
+        }
+
+        @Override
+        public void removeSpanContext(String executionId, String taskId) {
+            // trace信息不落存储
+        }
+
+        @Override
+        public void saveSpan(String executionId, String taskId, Context parentContext, Span currentSpan) {
+            // trace信息不落存储
+        }
+
+        @Override
+        public Span loadSpan(String executionId, String taskId) {
+            return null;
+        }
+
+        @Override
+        public void saveExecutionContext(String executionId, Context context) {
+            // trace信息不落存储
+        }
+
+        @Override
+        public Context loadExecutionContext(String executionId) {
+            return null;
+        }
+    }
+}
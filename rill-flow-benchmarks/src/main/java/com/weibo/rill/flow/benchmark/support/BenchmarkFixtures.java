@@ -0,0 +1,192 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.benchmark.support;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.weibo.rill.flow.interfaces.model.mapping.Mapping;
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.interfaces.model.task.TaskInvokeMsg;
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
+import com.weibo.rill.flow.olympicene.core.helper.DAGInfoMaker;
+import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus;
+import com.weibo.rill.flow.olympicene.ddl.parser.DAGStringParser;
+import com.weibo.rill.flow.olympicene.ddl.serialize.YAMLSerializer;
+import com.weibo.rill.flow.olympicene.ddl.validation.dag.impl.FlowDAGValidator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * benchmark使用的数据构造工具, 所有数据均在内存中生成, 不依赖redis等外部服务
+ * <p>
+ * 分层DAG: 每层宽度为ceil(sqrt(n)), 第i层的任务j依赖第i-1层的任务j及j-1, 与实际编排中扇入扇出的形态接近
+ */
+public class BenchmarkFixtures {
+    public static final String EXECUTION_ID = "benchmark:benchmark_c_8921a32f-3c9d-4b36-9f0f-b8c1d6a1e5f3";
+
+    private BenchmarkFixtures() {
+    }
+
+    public static DAGStringParser dagParser() {
+        return new DAGStringParser(new YAMLSerializer(), Lists.newArrayList(new FlowDAGValidator()));
+    }
+
+    public static int layerWidth(int nodeCount) {
+        return Math.max(1, (int) Math.ceil(Math.sqrt(nodeCount)));
+    }
+
+    public static String taskName(int index) {
+        return "task" + index;
+    }
+
+    public static String layeredDagYaml(int nodeCount) {
+        int width = layerWidth(nodeCount);
+        StringBuilder text = new StringBuilder()
+                .append("version: 0.0.1\n")
+                .append("workspace: benchmark\n")
+                .append("dagName: layered").append(nodeCount).append('\n')
+                .append("type: flow\n")
+                .append("tasks:\n");
+        for (int i = 0; i < nodeCount; i++) {
+            text.append("- category: function\n")
+                    .append("  name: ").append(taskName(i)).append('\n')
+                    .append("  resourceName: \"http://127.0.0.1/benchmark/").append(i % 8).append("\"\n")
+                    .append("  pattern: task_sync\n")
+                    .append("  inputMappings:\n")
+                    .append("    - target: $.input.url\n")
+                    .append("      source: $.context.url\n")
+                    .append("    - target: $.input.segment\n")
+                    .append("      source: $.context.segments[").append(i % 16).append("]\n")
+                    .append("  outputMappings:\n")
+                    .append("    - target: $.context.").append(taskName(i)).append("_result\n")
+                    .append("      source: $.output.result\n");
+            List<String> next = Lists.newArrayList();
+            int nextLayerStart = (i / width + 1) * width;
+            int column = i % width;
+            for (int nextColumn : new int[]{column, column + 1}) {
+                int nextIndex = nextLayerStart + nextColumn;
+                if (nextColumn < width && nextIndex < nodeCount) {
+                    next.add(taskName(nextIndex));
+                }
+            }
+            if (!next.isEmpty()) {
+                text.append("  next: ").append(String.join(",", next)).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    public static DAG layeredDag(int nodeCount) {
+        return dagParser().parse(layeredDagYaml(nodeCount));
+    }
+
+    /**
+     * 构造运行中的DAGInfo: 前一半的层已成功, 其余未开始
+     */
+    public static DAGInfo runningDagInfo(int nodeCount) {
+        DAGInfo dagInfo = new DAGInfoMaker()
+                .executionId(EXECUTION_ID)
+                .dag(layeredDag(nodeCount))
+                .dagStatus(DAGStatus.RUNNING)
+                .make();
+        int width = layerWidth(nodeCount);
+        int finishedLayers = (nodeCount / width + 1) / 2;
+        for (int i = 0; i < nodeCount && i / width < finishedLayers; i++) {
+            TaskInfo taskInfo = dagInfo.getTask(taskName(i));
+            taskInfo.setTaskStatus(TaskStatus.SUCCEED);
+            taskInfo.setTaskInvokeMsg(TaskInvokeMsg.builder().invokeId("invoke_" + i).msg("succeed").build());
+        }
+        return dagInfo;
+    }
+
+    public static Map<String, Object> context(int segmentCount) {
+        Map<String, Object> context = Maps.newHashMap();
+        context.put("flow_execution_id", EXECUTION_ID);
+        context.put("url", "http://127.0.0.1/video/8921a32f.mp4");
+        context.put("duration", 3600);
+        List<String> segments = Lists.newArrayList();
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add("http://127.0.0.1/video/8921a32f/segment_" + i + ".ts");
+        }
+        context.put("segments", segments);
+        Map<String, Object> meta = Maps.newHashMap();
+        meta.put("width", 1920);
+        meta.put("height", 1080);
+        meta.put("codec", "h264");
+        meta.put("tags", Lists.newArrayList("benchmark", "video", "transcode"));
+        context.put("meta", meta);
+        return context;
+    }
+
+    /**
+     * 与function任务常见的inputMappings/outputMappings形态一致: 直接取值、数组下标、通配、常量及多级target
+     */
+    public static List<Mapping> mappingRules() {
+        List<Mapping> rules = Lists.newArrayList();
+        rules.add(new Mapping("$.context.url", "$.input.url"));
+        rules.add(new Mapping("$.context.segments[0]", "$.input.first_segment"));
+        rules.add(new Mapping("$.context.segments", "$.input.segments"));
+        rules.add(new Mapping("$.context.meta.width", "$.input.resolution.width"));
+        rules.add(new Mapping("$.context.meta.height", "$.input.resolution.height"));
+        rules.add(new Mapping("$.context.meta.tags[*]", "$.input.tags"));
+        rules.add(new Mapping("{\"preset\":\"fast\",\"crf\":23}", "$.input.options"));
+        rules.add(new Mapping("$.output.result.url", "$.context.transcode_url"));
+        rules.add(new Mapping("$.output.result.size", "$.context.transcode_size"));
+        rules.add(new Mapping("$.output.gops[*].url", "$.context.gop_urls"));
+        return rules;
+    }
+
+    public static Map<String, Object> output(int gopCount) {
+        Map<String, Object> result = Maps.newHashMap();
+        result.put("url", "http://127.0.0.1/video/8921a32f_720p.mp4");
+        result.put("size", 1024L * 1024L * 64L);
+        List<Map<String, Object>> gops = Lists.newArrayList();
+        for (int i = 0; i < gopCount; i++) {
+            Map<String, Object> gop = Maps.newHashMap();
+            gop.put("index", i);
+            gop.put("url", "http://127.0.0.1/video/8921a32f/gop_" + i + ".ts");
+            gops.add(gop);
+        }
+        Map<String, Object> output = Maps.newHashMap();
+        output.put("result", result);
+        output.put("gops", gops);
+        return output;
+    }
+
+    /**
+     * 构造foreach子任务: routeName为parent_groupIndex, 与运行时TaskInfo命名一致
+     */
+    public static TaskInfo subTaskInfo(String parentName, int groupIndex, String baseTaskName) {
+        String routeName = DAGWalkHelper.getInstance().buildTaskInfoRouteName(parentName, String.valueOf(groupIndex));
+        TaskInfo taskInfo = new TaskInfo();
+        taskInfo.setRouteName(routeName);
+        taskInfo.setName(DAGWalkHelper.getInstance().buildTaskInfoName(routeName, baseTaskName));
+        taskInfo.setTaskStatus(TaskStatus.NOT_STARTED);
+        return taskInfo;
+    }
+
+    public static TaskInfo ancestorTaskInfo(String name) {
+        TaskInfo taskInfo = new TaskInfo();
+        taskInfo.setName(name);
+        taskInfo.setTaskStatus(TaskStatus.NOT_STARTED);
+        return taskInfo;
+    }
+}
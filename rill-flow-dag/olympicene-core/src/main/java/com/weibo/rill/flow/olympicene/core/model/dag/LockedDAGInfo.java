@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.core.model.dag;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+
+/**
+ * 加锁同时读取的遍历数据, 持有锁直至保存任务状态或显式释放
+ */
+@Getter
+@ToString(exclude = "context")
+@AllArgsConstructor
+public class LockedDAGInfo {
+    private final String lockName;
+    private final String lockAcquirerId;
+    private final String executionId;
+    private final DAGInfo dagInfo;
+    private final Map<String, Object> context;
+}
@@ -42,4 +42,6 @@ public class ExecutionResult {
     private DAGInfo dagInfo;
     private List<Pair<Set<TaskInfo>, Map<String, Object>>> subTaskInfosAndContext;
     private String taskNameNeedToTraversal;
+    // 执行者已在任务置为RUNNING之前注册超时检查
+    private boolean timeoutCheckRegistered;
 }
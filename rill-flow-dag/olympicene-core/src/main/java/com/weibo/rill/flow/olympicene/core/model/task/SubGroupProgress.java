@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.core.model.task;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Builder
+@Getter
+@ToString
+public class SubGroupProgress {
+    /**
+     * 分组已完成过, 本次完成通知重复
+     */
+    private boolean duplicated;
+    private int completedCount;
+    private int failedCount;
+    private int runningCount;
+    private int readyCount;
+    /**
+     * 本次调度运行的分组, 无待运行分组时为null
+     */
+    private String nextGroupIndex;
+
+    /**
+     * 无运行中及待运行的分组, 父任务状态需根据全部分组状态计算
+     */
+    public boolean isSettled() {
+        return runningCount <= 0 && readyCount <= 0;
+    }
+}
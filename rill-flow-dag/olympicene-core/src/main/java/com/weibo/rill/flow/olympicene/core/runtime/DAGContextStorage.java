@@ -24,6 +24,13 @@ public interface DAGContextStorage {
 
     void updateContext(String executionId, Map<String, Object> context);
 
+    /**
+     * 批量更新context, 同一批次的executionId需属于同一serviceId
+     */
+    default void updateContexts(Map<String, Map<String, Object>> executionIdToContext) {
+        executionIdToContext.forEach(this::updateContext);
+    }
+
     Map<String, Object> getContext(String executionId);
 
     Map<String, Object> getContext(String executionId, Collection<String> fields);
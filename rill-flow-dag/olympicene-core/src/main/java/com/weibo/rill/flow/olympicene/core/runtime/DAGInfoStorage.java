@@ -21,12 +21,20 @@ import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
 
+import java.util.Map;
 import java.util.Set;
 
 public interface DAGInfoStorage {
 
     void saveDAGInfo(String executionId, DAGInfo dagInfo);
 
+    /**
+     * 批量保存dag信息, 同一批次的executionId需属于同一serviceId
+     */
+    default void saveDAGInfos(Map<String, DAGInfo> executionIdToDAGInfo) {
+        executionIdToDAGInfo.forEach(this::saveDAGInfo);
+    }
+
     void saveTaskInfos(String executionId, Set<TaskInfo> taskInfos);
 
     DAGInfo getDAGInfo(String executionId);
@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.core.runtime;
+
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.LockedDAGInfo;
+
+import java.util.Collection;
+import java.util.Set;
+
+
+/**
+ * 将遍历时的加锁、读取及保存合并为更少存储交互的存储
+ */
+public interface DAGTraversalStorage {
+
+    /**
+     * 当前execution是否可在一次交互中完成加锁与读取, 如锁与数据位于不同存储时不支持
+     */
+    boolean lockedTraversalSupported(String lockName, String executionId);
+
+    /**
+     * 尝试加锁并读取basic DAGInfo及context
+     *
+     * @param contextFields 需读取的context字段, 为null时读取全部context
+     * @return 锁被其他持有者占用时返回null
+     */
+    LockedDAGInfo tryLockAndLoad(String lockName, String lockAcquirerId, int lockExpireTimeInSecond,
+                                 String executionId, Collection<String> contextFields);
+
+    void saveTaskInfosAndUnlock(LockedDAGInfo lockedDAGInfo, Set<TaskInfo> taskInfos);
+}
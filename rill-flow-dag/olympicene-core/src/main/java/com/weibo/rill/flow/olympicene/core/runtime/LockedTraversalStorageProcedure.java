@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.core.runtime;
+
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.LockedDAGInfo;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * 支持将加锁与读取、保存与释放锁分别合并为一次存储交互的DAGStorageProcedure
+ * <p>
+ * lockAndLoad返回非null时调用方持有锁, 之后必须且只能调用saveTaskInfosAndUnlock或unlock其中之一释放锁
+ */
+public interface LockedTraversalStorageProcedure extends DAGStorageProcedure {
+    /**
+     * 加锁并同时读取遍历所需的DAGInfo及context, 返回null时未加锁, 调用方应使用lockAndRun
+     */
+    LockedDAGInfo lockAndLoad(String lockName, String executionId, Collection<String> contextFields);
+
+    /**
+     * 保存任务状态同时释放lockAndLoad获取的锁, 保存失败时同样需释放锁
+     */
+    void saveTaskInfosAndUnlock(LockedDAGInfo lockedDAGInfo, Set<TaskInfo> taskInfos);
+
+    void unlock(LockedDAGInfo lockedDAGInfo);
+}
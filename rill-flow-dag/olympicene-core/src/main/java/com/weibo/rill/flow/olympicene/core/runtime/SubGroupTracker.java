@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.core.runtime;
+
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
+import com.weibo.rill.flow.olympicene.core.model.task.SubGroupProgress;
+
+import java.util.Map;
+
+/**
+ * foreach任务的分组计数器, 分组完成、父任务完成判断及下一分组调度均为原子计数操作, 无需加父任务锁
+ */
+public interface SubGroupTracker {
+
+    /**
+     * 父任务开始运行时初始化计数, RUNNING的分组计入运行中, READY的分组按下标顺序进入待运行队列
+     */
+    void init(String executionId, String taskInfoName, Map<String, TaskStatus> subGroupIndexToStatus);
+
+    /**
+     * 记录分组完成并从待运行队列中取出下一个分组
+     *
+     * @return 未初始化计数时返回null
+     */
+    SubGroupProgress completeGroup(String executionId, String taskInfoName, String groupIndex, TaskStatus groupStatus);
+
+    void clear(String executionId, String taskInfoName);
+}
@@ -16,6 +16,7 @@
 
 package com.weibo.rill.flow.olympicene.ddl.parser;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.Lists;
 import com.weibo.rill.flow.olympicene.core.exception.SerializationException;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
@@ -23,10 +24,12 @@ import com.weibo.rill.flow.olympicene.core.runtime.DAGParser;
 import com.weibo.rill.flow.olympicene.ddl.constant.DDLErrorCode;
 import com.weibo.rill.flow.olympicene.ddl.exception.DDLException;
 import com.weibo.rill.flow.olympicene.ddl.serialize.Serializer;
+import com.weibo.rill.flow.olympicene.ddl.serialize.YAMLMapper;
 import com.weibo.rill.flow.olympicene.ddl.validation.DAGValidator;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
@@ -61,6 +64,29 @@ public class DAGStringParser implements DAGParser<String> {
         return dag;
     }
 
+    /**
+     * 将已校验DAG的语法树绑定为bean 不再执行校验
+     * 校验过程会补全部分字段(如function任务的resourceName) 语法树需由{@link #serializeToTree(DAG)}从校验后的DAG生成
+     *
+     * @param validatedTree {@link #serializeToTree(DAG)}的结果
+     * @return DAG bean
+     */
+    public DAG bindValidated(JsonNode validatedTree) {
+        try {
+            return YAMLMapper.treeToObject(validatedTree, DAG.class);
+        } catch (IOException e) {
+            throw new DDLException(DDLErrorCode.DAG_DESCRIPTOR_INVALID.getCode(), e.getMessage());
+        }
+    }
+
+    public JsonNode serializeToTree(DAG dag) {
+        try {
+            return YAMLMapper.valueToTree(dag);
+        } catch (IllegalArgumentException e) {
+            throw new DDLException(DDLErrorCode.SERIALIZATION_FAIL);
+        }
+    }
+
     private void dagValidate(DAG dag) {
         List<DAGValidator> matchedValidators = dagValidators.stream()
                 .filter(validator -> validator.match(dag))
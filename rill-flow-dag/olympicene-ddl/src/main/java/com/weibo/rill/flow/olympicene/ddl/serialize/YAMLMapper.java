@@ -16,6 +16,7 @@
 
 package com.weibo.rill.flow.olympicene.ddl.serialize;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
@@ -34,6 +35,20 @@ public class YAMLMapper {
         return MAPPER.readValue(bytes, type);
     }
 
+    /**
+     * 按与{@link #parseObject(String, Class)}相同的规则将已解析的树绑定为对象, 省去yaml文本的词法解析
+     */
+    public static <T> T treeToObject(final JsonNode tree, final Class<T> type) throws IOException {
+        return MAPPER.treeToValue(tree, type);
+    }
+
+    /**
+     * 将对象转换为语法树, 可由{@link #treeToObject(JsonNode, Class)}还原
+     */
+    public static JsonNode valueToTree(final Object value) {
+        return MAPPER.valueToTree(value);
+    }
+
     public static <T> byte[] toBytes(final T t) throws IOException {
         return MAPPER.writeValueAsBytes(t);
     }
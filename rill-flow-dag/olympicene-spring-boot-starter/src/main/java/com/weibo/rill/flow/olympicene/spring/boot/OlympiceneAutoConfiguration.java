@@ -24,6 +24,7 @@ import com.weibo.rill.flow.olympicene.core.result.DAGResultHandler;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGContextStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure;
+import com.weibo.rill.flow.olympicene.core.runtime.SubGroupTracker;
 import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import com.weibo.rill.flow.olympicene.ddl.parser.DAGStringParser;
 import com.weibo.rill.flow.olympicene.ddl.serialize.YAMLSerializer;
@@ -41,6 +42,7 @@ import com.weibo.rill.flow.olympicene.traversal.helper.*;
 import com.weibo.rill.flow.olympicene.traversal.mappings.JSONPathInputOutputMapping;
 import com.weibo.rill.flow.olympicene.traversal.runners.*;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
@@ -225,11 +227,13 @@ public class OlympiceneAutoConfiguration {
             @Autowired @Qualifier("dagStorageProcedure") DAGStorageProcedure dagStorageProcedure,
             @Autowired @Qualifier("inputOutputMapping") JSONPathInputOutputMapping inputOutputMapping,
             @Autowired @Qualifier("stasher") Stasher stasher,
-            @Autowired SwitcherManager switcherManager) {
+            @Autowired SwitcherManager switcherManager,
+            ObjectProvider<SubGroupTracker> subGroupTracker) {
         log.info("begin to init default ForeachTaskRunner bean");
         ForeachTaskRunner foreachTaskRunner = new ForeachTaskRunner(inputOutputMapping, inputOutputMapping,
                 dagContextStorage, dagInfoStorage, dagStorageProcedure, switcherManager);
         foreachTaskRunner.setStasher(stasher);
+        foreachTaskRunner.setSubGroupTracker(subGroupTracker.getIfAvailable());
         return foreachTaskRunner;
     }
 
@@ -307,6 +311,9 @@ public class OlympiceneAutoConfiguration {
                 timeCheckRunner, dagTraversal, dagCallback, dagResultHandler, tracerHelper);
         dagTraversal.setDagOperations(dagOperations);
         timeCheckRunner.setDagOperations(dagOperations);
+        if (taskRunners.get(TaskCategory.FUNCTION.getValue()) instanceof FunctionTaskRunner functionTaskRunner) {
+            functionTaskRunner.setDagOperations(dagOperations);
+        }
         return dagOperations;
     }
 
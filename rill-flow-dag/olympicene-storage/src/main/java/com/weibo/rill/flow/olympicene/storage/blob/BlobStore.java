@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.blob;
+
+/**
+ * context大字段的内容寻址存储, key为内容的sha256摘要
+ * <p>
+ * 相同内容只存一份, 是否可删除由调用方的引用计数决定
+ */
+public interface BlobStore {
+    void put(String digest, byte[] content);
+
+    /**
+     * @return 不存在时返回null
+     */
+    byte[] get(String digest);
+
+    void delete(String digest);
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.blob;
+
+import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode;
+import com.weibo.rill.flow.olympicene.storage.exception.StorageException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * 基于本地/共享文件系统的BlobStore
+ * <p>
+ * 文件路径为 root/摘要前两位/摘要, 先写临时文件再原子rename, 读到的内容总是完整的
+ */
+@Slf4j
+public class LocalFileBlobStore implements BlobStore {
+    private final Path root;
+
+    public LocalFileBlobStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public void put(String digest, byte[] content) {
+        Path path = resolve(digest);
+        if (Files.exists(path)) {
+            return;
+        }
+
+        Path tmp = path.resolveSibling(digest + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(tmp, content);
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("put blob fails, digest:{}", digest, e);
+            throw new StorageException(StorageErrorCode.BLOB_FAIL.getCode(), e.getMessage(), e);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    @Override
+    public byte[] get(String digest) {
+        try {
+            return Files.readAllBytes(resolve(digest));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("get blob fails, digest:{}", digest, e);
+            throw new StorageException(StorageErrorCode.BLOB_FAIL.getCode(), e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(String digest) {
+        try {
+            Files.deleteIfExists(resolve(digest));
+        } catch (IOException e) {
+            log.warn("delete blob fails, digest:{}", digest, e);
+            throw new StorageException(StorageErrorCode.BLOB_FAIL.getCode(), e.getMessage(), e);
+        }
+    }
+
+    private Path resolve(String digest) {
+        if (digest == null || digest.length() < 3 || !digest.chars().allMatch(Character::isLetterOrDigit)) {
+            throw new StorageException(StorageErrorCode.BLOB_FAIL.getCode(), "illegal blob digest:" + digest);
+        }
+        return root.resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("delete tmp blob fails, path:{}", path, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.luben.zstd.Zstd;
+import com.weibo.rill.flow.olympicene.ddl.serialize.ObjectMapperFactory;
+import lombok.Getter;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 默认存储编解码: 序列化后的json长度不小于阈值时, 按配置的格式(json/smile/cbor)序列化并压缩
+ * <p>
+ * 压缩后的值格式为: '~' + base64([byte 格式][byte 压缩算法][int 原始长度][数据]), json不会以'~'开头,
+ * 解码时据此区分新旧数据, 因此修改或回退配置后已写入的数据仍可读取。
+ * 由于eval参数为字符串, 二进制数据需base64编码, 小于阈值或压缩后变大的值仍保持json
+ * <p>
+ * 格式为json且不压缩时与原有存储格式完全一致
+ */
+@Getter
+public class DefaultStorageCodec implements StorageCodec {
+    public static final char MARKER = '~';
+    /**
+     * dag字段存储的是描述符的key, lua脚本按json字符串解析该值, 阈值不能小于key的长度
+     */
+    private static final int MIN_THRESHOLD_BYTES = 128;
+    private static final int ZSTD_LEVEL = 3;
+    private static final ObjectMapper JSON_MAPPER = ObjectMapperFactory.getJSONMapper();
+    private static final Map<StorageFormat, ObjectMapper> MAPPERS = new ConcurrentHashMap<>();
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final StorageFormat format;
+    private final StorageCompression compression;
+    private final int thresholdBytes;
+
+    public DefaultStorageCodec() {
+        this(StorageFormat.JSON, StorageCompression.NONE, Integer.MAX_VALUE);
+    }
+
+    public DefaultStorageCodec(StorageFormat format, StorageCompression compression, int thresholdBytes) {
+        this.format = format;
+        this.compression = compression;
+        this.thresholdBytes = Math.max(MIN_THRESHOLD_BYTES, thresholdBytes);
+    }
+
+    @Override
+    public String encode(Object value) throws IOException {
+        String json = JSON_MAPPER.writeValueAsString(value);
+        if (format == StorageFormat.JSON && compression == StorageCompression.NONE || json.length() < thresholdBytes) {
+            return json;
+        }
+
+        byte[] raw = format == StorageFormat.JSON ? json.getBytes(StandardCharsets.UTF_8) : mapper(format).writeValueAsBytes(value);
+        byte[] body = compress(raw);
+        ByteBuffer buffer = ByteBuffer.allocate(Byte.BYTES * 2 + Integer.BYTES + body.length)
+                .put(format.getCode())
+                .put(compression.getCode())
+                .putInt(raw.length)
+                .put(body);
+        String encoded = MARKER + Base64.getEncoder().encodeToString(buffer.array());
+        return encoded.length() < json.length() ? encoded : json;
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+        if (!isEncoded(bytes)) {
+            return JSON_MAPPER.readValue(bytes, type);
+        }
+
+        ByteBuffer buffer = Base64.getDecoder().decode(ByteBuffer.wrap(bytes, 1, bytes.length - 1));
+        StorageFormat valueFormat = StorageFormat.from(buffer.get());
+        StorageCompression valueCompression = StorageCompression.from(buffer.get());
+        if (valueFormat == null || valueCompression == null) {
+            throw new IOException("unknown storage codec header");
+        }
+        int rawLength = buffer.getInt();
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+        return mapper(valueFormat).readValue(decompress(valueCompression, body, rawLength), type);
+    }
+
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == MARKER;
+    }
+
+    private byte[] compress(byte[] raw) {
+        return switch (compression) {
+            case LZ4 -> LZ4_FACTORY.fastCompressor().compress(raw);
+            case ZSTD -> Zstd.compress(raw, ZSTD_LEVEL);
+            case NONE -> raw;
+        };
+    }
+
+    private static byte[] decompress(StorageCompression valueCompression, byte[] body, int rawLength) {
+        return switch (valueCompression) {
+            case LZ4 -> LZ4_FACTORY.fastDecompressor().decompress(body, rawLength);
+            case ZSTD -> Zstd.decompress(body, rawLength);
+            case NONE -> body;
+        };
+    }
+
+    private static ObjectMapper mapper(StorageFormat valueFormat) {
+        return MAPPERS.computeIfAbsent(valueFormat, key -> switch (key) {
+            case JSON -> JSON_MAPPER;
+            case SMILE -> JSON_MAPPER.copyWith(new SmileFactory());
+            case CBOR -> JSON_MAPPER.copyWith(new CBORFactory());
+        });
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.codec;
+
+import java.io.IOException;
+
+/**
+ * 运行时存储中hash field值及DAG描述符的编解码
+ * <p>
+ * 编码结果以字符串形式通过lua脚本写入redis, 解码需兼容历史上以json写入的数据
+ */
+public interface StorageCodec {
+    String encode(Object value) throws IOException;
+
+    <T> T decode(byte[] bytes, Class<T> type) throws IOException;
+}
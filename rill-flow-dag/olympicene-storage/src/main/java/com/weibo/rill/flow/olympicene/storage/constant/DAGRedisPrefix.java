@@ -23,7 +23,15 @@ public enum DAGRedisPrefix {
     PREFIX_DAG_INFO("dag_info_"),
     PREFIX_DAG_DESCRIPTOR("dag_descriptor_"),
     PREFIX_SUB_TASK_MAPPING("sub_task_mapping_"),
-    PREFIX_SUB_TASK("sub_task_")
+    PREFIX_SUB_TASK("sub_task_"),
+    PREFIX_SUB_GROUP_COUNTER("sub_group_counter_"),
+    PREFIX_SUB_GROUP_READY("sub_group_ready_"),
+    PREFIX_DAG_EVENT("dag_event_"),
+    PREFIX_DAG_EVENT_SNAPSHOT("dag_event_snapshot_"),
+    PREFIX_CONTEXT_BLOB("context_blob_"),
+    PREFIX_BLOB_REF_COUNT("blob_ref_count_"),
+    PREFIX_BLOB_DELETING("blob_deleting_"),
+    BLOB_RELEASE_QUEUE("blob_release_queue")
     ;
 
     private final String value;
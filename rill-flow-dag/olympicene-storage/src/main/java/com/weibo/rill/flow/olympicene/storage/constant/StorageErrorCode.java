@@ -25,7 +25,9 @@ public enum StorageErrorCode {
     CLASS_TYPE_NONSUPPORT(5, "class type nonsupport"),
     CONTEXT_GET_FAIL(6, "context get fail"),
     CONTEXT_LENGTH_LIMITATION(7, "context length limitation"),
-    DAG_LENGTH_LIMITATION(8, "dag length limitation")
+    DAG_LENGTH_LIMITATION(8, "dag length limitation"),
+    WAL_FAIL(9, "write ahead log fail"),
+    BLOB_FAIL(10, "blob fail")
     ;
 
     private static final int BASE_ERROR_CODE = 30500;
@@ -18,13 +18,16 @@ package com.weibo.rill.flow.olympicene.storage.save.impl;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
 import com.weibo.rill.flow.olympicene.core.constant.ReservedConstant;
 import com.weibo.rill.flow.olympicene.core.constant.SystemConfig;
+import com.weibo.rill.flow.olympicene.storage.blob.BlobStore;
 import com.weibo.rill.flow.olympicene.storage.constant.DAGRedisPrefix;
 import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode;
 import com.weibo.rill.flow.olympicene.storage.exception.StorageException;
 import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
 import com.weibo.rill.flow.olympicene.storage.script.RedisScriptManager;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -95,6 +98,23 @@ import java.util.stream.Collectors;
  *       类型: hash
  *       key: sub_context_ + executionId + "_" + contextName
  *       field/value 同context
+ *
+ * 5. 大字段外置(设置blobStore且blobOffloadThreshold大于0时开启)
+ *   5.1 序列化后超过阈值的value写入blobStore, hash中value为内容sha256摘要, 类型field的值为 @blob: + 原类型
+ *       读取时按field取回内容, 仅被读取的field才会访问blobStore
+ *   5.2 execution引用的摘要
+ *       类型: hash
+ *       key: context_blob_ + executionId
+ *       field: 摘要 value: 1
+ *   5.3 引用计数
+ *       类型: string
+ *       key: blob_ref_count_ + 摘要      execution首次引用该摘要时加1
+ *   5.4 待释放execution
+ *       类型: zset
+ *       key: blob_release_queue      score为预计过期时间, 到期且context已不存在时引用计数减1, 归零后删除blob
+ *   5.5 删除标记
+ *       类型: string
+ *       key: blob_deleting_ + 摘要   引用计数归零时原子设置, blob删除后清除; 删除期间重新引用该摘要的写入等待删除结束后再写blob
  * </pre>
  *
  * @see DAGInfoDAO
@@ -103,10 +123,18 @@ import java.util.stream.Collectors;
 public class ContextDAO {
     private static final String ROOT_LEVEL_CONTEXT = "@rootContext";
     private static final String REDIS_SUB_CONTEXT_NAME_PREFIX = "@subContextName_";
+    private static final int BATCH_UPDATE_SIZE = 50;
+    private static final String BLOB_TYPE_PREFIX = "@blob:";
+    private static final String BLOB_RELEASE_QUEUE = DAGRedisPrefix.BLOB_RELEASE_QUEUE.getValue();
+    private static final long BLOB_RELEASE_RETRY_DELAY_IN_MILLIS = 60_000L;
+    private static final long BLOB_DELETING_EXPIRE_IN_MILLIS = 30_000L;
+    private static final long BLOB_DELETING_CHECK_INTERVAL_IN_MILLIS = 50L;
 
     private final RedisClient redisClient;
     private final int finishStatusReserveTimeInSecond;
     private final int unfinishedStatusReserveTimeInSecond;
+    @Setter
+    private volatile BlobStore blobStore;
 
     public ContextDAO(RedisClient redisClient) {
         this.redisClient = redisClient;
@@ -142,34 +170,43 @@ public class ContextDAO {
         log.debug("contextMaxLength length:10000 executionId:{}", executionId);
         return 10000;
     }
-    // 目前只支持修改时间及context长度检查设置
+
+    protected int blobOffloadThreshold(String executionId) {
+        log.debug("blobOffloadThreshold disabled executionId:{}", executionId);
+        return -1;
+    }
+    // 目前只支持修改时间、context长度检查及大字段外置设置
     // ------------------------------------------------------
 
     public Map<String, Object> getContext(String executionId, boolean needSubContext) {
         try {
             log.info("getContext executionId:{} needSubContext:{}", executionId, needSubContext);
             List<List<List<byte[]>>> contextByte = getContextFromRedis(executionId, needSubContext);
-            if (CollectionUtils.isEmpty(contextByte)) {
-                return Maps.newHashMap();
-            }
-
-            List<byte[]> contents = contextByte.stream()
-                    .map(array -> array.get(1))
-                    .filter(CollectionUtils::isNotEmpty)
-                    .flatMap(Collection::stream)
-                    .toList();
-
-            if (!needSubContext) {
-                checkContextLength(executionId, contents);
-            }
-
-            return buildContext(executionId, contextByte);
+            return buildTotalContext(executionId, needSubContext, contextByte);
         } catch (Exception e) {
             log.warn("getContext fails, executionId:{}", executionId, e);
             throw e;
         }
     }
 
+    private Map<String, Object> buildTotalContext(String executionId, boolean needSubContext, List<List<List<byte[]>>> contextByte) {
+        if (CollectionUtils.isEmpty(contextByte)) {
+            return Maps.newHashMap();
+        }
+
+        List<byte[]> contents = contextByte.stream()
+                .map(array -> array.get(1))
+                .filter(CollectionUtils::isNotEmpty)
+                .flatMap(Collection::stream)
+                .toList();
+
+        if (!needSubContext) {
+            checkContextLength(executionId, contents);
+        }
+
+        return buildContext(executionId, contextByte);
+    }
+
     private List<List<List<byte[]>>> getContextFromRedis(String executionId, boolean needSubContext) {
         List<String> keys = !needSubContext ?
                 Lists.newArrayList(buildContextRedisKey(executionId)) :
@@ -208,7 +245,7 @@ public class ContextDAO {
         contextBytes.forEach(context -> {
             List<byte[]> setting = context.get(0);
             List<byte[]> contextByte = context.get(1);
-            contextNameToContext.put(DagStorageSerializer.getString(setting.get(1)), DagStorageSerializer.deserializeHash(contextByte));
+            contextNameToContext.put(DagStorageSerializer.getString(setting.get(1)), deserializeHash(contextByte));
         });
         return contextNameToContext;
     }
@@ -262,27 +299,7 @@ public class ContextDAO {
             List<List<byte[]>> contextBytes = (List<List<byte[]>>) redisClient.eval(
                     RedisScriptManager.getRedisGetByFieldAndKey(), executionId, keys, argv);
 
-            // 获取keys对应的返回值
-            if (CollectionUtils.isEmpty(contextBytes) || contextBytes.size() != keys.size()) {
-                throw new StorageException(StorageErrorCode.CONTEXT_GET_FAIL.getCode(), "context size not match key size");
-            }
-
-            List<byte[]> contents = contextBytes.stream()
-                    .filter(CollectionUtils::isNotEmpty)
-                    .flatMap(Collection::stream)
-                    .toList();
-
-            if (CollectionUtils.isEmpty(subContextNames)) {
-                checkContextLength(executionId, contents);
-            }
-
-            Map<String, List<byte[]>> redisKeyToContent = Maps.newHashMap();
-            for (int i = 0; i < keys.size(); i++) {
-                redisKeyToContent.put(keys.get(i), contextBytes.get(i));
-            }
-
-            // 根据rootContextFields subContextNames构造context值
-            return buildContext(executionId, rootContextFields, subContextNames, redisKeyToContent);
+            return buildContextByFields(executionId, rootContextFields, subContextNames, keys, contextBytes);
         } catch (Exception e) {
             log.warn("getContext fails, executionId:{}", executionId, e);
             throw e;
@@ -300,7 +317,7 @@ public class ContextDAO {
                 log.info("buildContext can not get subContext, subContextName:{}", subContextName);
                 return;
             }
-            Map<String, Object> subContext = DagStorageSerializer.deserializeHash(subContextRedis);
+            Map<String, Object> subContext = deserializeHash(subContextRedis);
             removeSubContextPlaceholder(subContext);
             context.put(subContextName, subContext);
         });
@@ -330,11 +347,69 @@ public class ContextDAO {
         }
         Optional.of(rootContext)
                 .filter(CollectionUtils::isNotEmpty)
-                .ifPresent(it -> context.putAll(DagStorageSerializer.deserializeHash(it)));
+                .ifPresent(it -> context.putAll(deserializeHash(it)));
 
         return context;
     }
 
+    private Map<String, Object> buildContextByFields(String executionId, List<String> rootContextFields, List<String> subContextNames,
+                                                     List<String> keys, List<List<byte[]>> contextBytes) {
+        // 获取keys对应的返回值
+        if (CollectionUtils.isEmpty(contextBytes) || contextBytes.size() != keys.size()) {
+            throw new StorageException(StorageErrorCode.CONTEXT_GET_FAIL.getCode(), "context size not match key size");
+        }
+
+        List<byte[]> contents = contextBytes.stream()
+                .filter(CollectionUtils::isNotEmpty)
+                .flatMap(Collection::stream)
+                .toList();
+
+        if (CollectionUtils.isEmpty(subContextNames)) {
+            checkContextLength(executionId, contents);
+        }
+
+        Map<String, List<byte[]>> redisKeyToContent = Maps.newHashMap();
+        for (int i = 0; i < keys.size(); i++) {
+            redisKeyToContent.put(keys.get(i), contextBytes.get(i));
+        }
+
+        // 根据rootContextFields subContextNames构造context值
+        return buildContext(executionId, rootContextFields, subContextNames, redisKeyToContent);
+    }
+
+    /**
+     * 构造组合脚本中读取context的keys及argv, fields为null时读取全部context
+     */
+    void buildContextEvalParam(String executionId, Collection<String> fields, List<String> keys, List<String> argv) {
+        if (fields == null) {
+            keys.add(buildContextRedisKey(executionId));
+            return;
+        }
+
+        List<String> rootContextFields = Lists.newArrayList();
+        List<String> subContextNames = Lists.newArrayList();
+        distinguishField(fields, rootContextFields, subContextNames);
+        buildEvalParam(executionId, rootContextFields, subContextNames, keys, argv);
+    }
+
+    /**
+     * 解析组合脚本返回的context内容, keys为buildContextEvalParam构造的keys
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> parseContext(String executionId, Collection<String> fields, List<String> keys, Object contextBytes) {
+        if (keys.isEmpty()) {
+            return Maps.newHashMap();
+        }
+        if (fields == null) {
+            return buildTotalContext(executionId, false, (List<List<List<byte[]>>>) contextBytes);
+        }
+
+        List<String> rootContextFields = Lists.newArrayList();
+        List<String> subContextNames = Lists.newArrayList();
+        distinguishField(fields, rootContextFields, subContextNames);
+        return buildContextByFields(executionId, rootContextFields, subContextNames, keys, (List<List<byte[]>>) contextBytes);
+    }
+
     private void buildEvalParam(String executionId, List<String> rootContextFields, List<String> subContextNames, List<String> keys, List<String> argv) {
         if (CollectionUtils.isNotEmpty(rootContextFields)) {
             keys.add(buildContextRedisKey(executionId));
@@ -376,6 +451,9 @@ public class ContextDAO {
                     executionId,
                     Lists.newArrayList(buildContextRedisKey(executionId), buildContextNameToContextRedisKey(executionId)),
                     Lists.newArrayList(String.valueOf(expireTimeInSecond)));
+            if (blobOffloadEnabled(executionId)) {
+                scheduleBlobRelease(executionId, expireTimeInSecond * 1000L, true);
+            }
         } catch (Exception e) {
             log.warn("deleteContext fails, executionId:{}, expireTimeInSecond:{}", executionId, expireTimeInSecond, e);
             throw e;
@@ -392,7 +470,9 @@ public class ContextDAO {
 
             List<String> keys = Lists.newArrayList();
             List<String> argv = Lists.newArrayList();
-            serializeContext(executionId, context, keys, argv);
+            Map<String, byte[]> blobs = Maps.newHashMap();
+            serializeContext(executionId, context, keys, argv, blobs);
+            storeBlobs(executionId, blobs);
 
             redisClient.eval(RedisScriptManager.getRedisSetWithExpire(), executionId, keys, argv);
         } catch (Exception e) {
@@ -401,16 +481,55 @@ public class ContextDAO {
         }
     }
 
-    private void serializeContext(String executionId, Map<String, Object> context, List<String> keys, List<String> argv) {
+    /**
+     * 批量更新context, 每批次合并为一次脚本调用
+     * 同一批次的executionId需属于同一serviceId, 以保证路由到同一redis及过期时间一致
+     */
+    public void updateContexts(Map<String, Map<String, Object>> executionIdToContext) {
+        if (MapUtils.isEmpty(executionIdToContext)) {
+            return;
+        }
+
+        List<String> executionIds = executionIdToContext.entrySet().stream()
+                .filter(entry -> MapUtils.isNotEmpty(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .toList();
+        for (List<String> batchExecutionIds : Lists.partition(executionIds, BATCH_UPDATE_SIZE)) {
+            String shardingKey = batchExecutionIds.get(0);
+            try {
+                log.info("updateContexts executionId:{}, size:{}", shardingKey, batchExecutionIds.size());
+                List<String> keys = Lists.newArrayList();
+                List<String> argv = Lists.newArrayList();
+                argv.add(String.valueOf(getUnfinishedStatusReserveTimeInSecond(shardingKey)));
+                for (String executionId : batchExecutionIds) {
+                    Map<String, byte[]> blobs = Maps.newHashMap();
+                    serializeContextContent(executionId, executionIdToContext.get(executionId), keys, argv, blobs);
+                    storeBlobs(executionId, blobs);
+                }
+
+                redisClient.eval(RedisScriptManager.getRedisSetWithExpire(), shardingKey, keys, argv);
+            } catch (Exception e) {
+                log.warn("updateContexts fails, executionId:{}, size:{}", shardingKey, batchExecutionIds.size(), e);
+                throw e;
+            }
+        }
+    }
+
+    private void serializeContext(String executionId, Map<String, Object> context, List<String> keys, List<String> argv,
+                                  Map<String, byte[]> blobs) {
         argv.add(String.valueOf(getUnfinishedStatusReserveTimeInSecond(executionId)));
+        serializeContextContent(executionId, context, keys, argv, blobs);
+    }
 
+    private void serializeContextContent(String executionId, Map<String, Object> context, List<String> keys, List<String> argv,
+                                         Map<String, byte[]> blobs) {
         Map<String, Map<String, Object>> contextNameToContentMap = getContextNameToContentMap(1, ROOT_LEVEL_CONTEXT, context);
 
         Map<String, Object> rootContext = contextNameToContentMap.get(ROOT_LEVEL_CONTEXT);
         if (MapUtils.isNotEmpty(rootContext)) {
             keys.add(buildContextRedisKey(executionId));
             argv.add(ReservedConstant.PLACEHOLDER);
-            argv.addAll(DagStorageSerializer.serializeHashToList(rootContext));
+            argv.addAll(serializeHashToList(executionId, rootContext, blobs));
         }
 
         Map<String, String> subContextNameToRedisKey = Maps.newHashMap();
@@ -422,7 +541,7 @@ public class ContextDAO {
             String subContextRedisKey = buildSubContextRedisKey(executionId, contextName);
             keys.add(subContextRedisKey);
             argv.add(ReservedConstant.PLACEHOLDER);
-            argv.addAll(DagStorageSerializer.serializeHashToList(contextContent));
+            argv.addAll(serializeHashToList(executionId, contextContent, blobs));
             subContextNameToRedisKey.put(contextName, subContextRedisKey);
         });
 
@@ -464,6 +583,228 @@ public class ContextDAO {
         return contextNameToContentMap;
     }
 
+    /**
+     * 序列化hash, 开启大字段外置时超过阈值的value替换为摘要, 内容放入blobs等待写入
+     */
+    private List<String> serializeHashToList(String executionId, Map<String, Object> content, Map<String, byte[]> blobs) {
+        Map<String, String> serializedContent = DagStorageSerializer.serializeHash(content);
+        int threshold = blobOffloadEnabled(executionId) ? blobOffloadThreshold(executionId) : -1;
+        if (threshold > 0) {
+            content.keySet().forEach(field -> {
+                String value = serializedContent.get(field);
+                byte[] bytes = value == null || value.length() * 3L <= threshold ? null : DagStorageSerializer.getBytes(value);
+                if (bytes == null || bytes.length <= threshold) {
+                    return;
+                }
+                String digest = Hashing.sha256().hashBytes(bytes).toString();
+                blobs.put(digest, bytes);
+                serializedContent.put(field, digest);
+                String typeField = DagStorageSerializer.buildTypeKeyPrefix(field);
+                serializedContent.put(typeField, BLOB_TYPE_PREFIX + serializedContent.get(typeField));
+            });
+        }
+
+        List<String> ret = Lists.newArrayList();
+        serializedContent.forEach((key, value) -> {
+            ret.add(key);
+            ret.add(value);
+        });
+        return ret;
+    }
+
+    private Map<String, Object> deserializeHash(List<byte[]> content) {
+        return DagStorageSerializer.deserializeHash(resolveBlobs(content));
+    }
+
+    /**
+     * 将外置字段的摘要替换为blobStore中的内容, 类型还原为原类型
+     */
+    private List<byte[]> resolveBlobs(List<byte[]> content) {
+        if (CollectionUtils.isEmpty(content)) {
+            return content;
+        }
+
+        String typeFieldPrefix = DagStorageSerializer.buildTypeKeyPrefix(StringUtils.EMPTY);
+        List<byte[]> ret = null;
+        Map<String, Integer> fieldToIndex = null;
+        for (int i = 0; i + 1 < content.size(); i += 2) {
+            String type = DagStorageSerializer.getString(content.get(i + 1));
+            String typeField = DagStorageSerializer.getString(content.get(i));
+            if (type == null || !type.startsWith(BLOB_TYPE_PREFIX) || typeField == null || !typeField.startsWith(typeFieldPrefix)) {
+                continue;
+            }
+
+            if (ret == null) {
+                ret = Lists.newArrayList(content);
+                fieldToIndex = Maps.newHashMap();
+                for (int j = 0; j + 1 < content.size(); j += 2) {
+                    fieldToIndex.put(DagStorageSerializer.getString(content.get(j)), j);
+                }
+            }
+            String field = typeField.substring(typeFieldPrefix.length());
+            Integer valueIndex = fieldToIndex.get(field);
+            if (valueIndex == null) {
+                continue;
+            }
+            String digest = DagStorageSerializer.getString(content.get(valueIndex + 1));
+            byte[] blob = blobStore == null ? null : blobStore.get(digest);
+            if (blob == null) {
+                throw new StorageException(StorageErrorCode.CONTEXT_GET_FAIL.getCode(),
+                        String.format("context blob not found, field:%s, digest:%s", field, digest));
+            }
+            ret.set(valueIndex + 1, blob);
+            ret.set(i + 1, DagStorageSerializer.getBytes(type.substring(BLOB_TYPE_PREFIX.length())));
+        }
+        return ret == null ? content : ret;
+    }
+
+    private boolean blobOffloadEnabled(String executionId) {
+        return blobStore != null && blobOffloadThreshold(executionId) > 0;
+    }
+
+    /**
+     * 先登记引用再写blob, 保证写入期间不会被并发的释放流程删除
+     */
+    @SuppressWarnings("unchecked")
+    private void storeBlobs(String executionId, Map<String, byte[]> blobs) {
+        if (MapUtils.isEmpty(blobs)) {
+            return;
+        }
+
+        List<Object> attached = (List<Object>) redisClient.eval(RedisScriptManager.contextBlobAttachScript(), executionId,
+                Lists.newArrayList(buildContextBlobRedisKey(executionId)), Lists.newArrayList(blobs.keySet()));
+        if (CollectionUtils.isNotEmpty(attached)) {
+            List<String> digests = attached.stream().map(ContextDAO::getString).toList();
+            List<String> keys = Lists.newArrayList(BLOB_RELEASE_QUEUE);
+            digests.forEach(digest -> keys.add(buildBlobRefCountRedisKey(digest)));
+            digests.forEach(digest -> keys.add(buildBlobDeletingRedisKey(digest)));
+            long releaseTime = System.currentTimeMillis() + getUnfinishedStatusReserveTimeInSecond(executionId) * 1000L;
+            List<Object> deleting = (List<Object>) redisClient.eval(RedisScriptManager.blobRefIncrScript(), BLOB_RELEASE_QUEUE, keys,
+                    Lists.newArrayList(executionId, String.valueOf(releaseTime)));
+            if (CollectionUtils.isNotEmpty(deleting)) {
+                deleting.stream().map(ContextDAO::getString).forEach(this::awaitBlobDeleted);
+            }
+        }
+        blobs.forEach(blobStore::put);
+    }
+
+    /**
+     * 引用计数归零后的删除尚未完成时, 需等待删除结束再写入, 否则写入的blob可能被随后的删除清除
+     * 删除方异常退出时删除标记到期自动清除
+     */
+    private void awaitBlobDeleted(String deletingKey) {
+        long deadline = System.currentTimeMillis() + BLOB_DELETING_EXPIRE_IN_MILLIS;
+        while (redisClient.get(BLOB_RELEASE_QUEUE, deletingKey) != null) {
+            if (System.currentTimeMillis() > deadline) {
+                log.warn("awaitBlobDeleted timeout, deletingKey:{}", deletingKey);
+                return;
+            }
+            try {
+                Thread.sleep(BLOB_DELETING_CHECK_INTERVAL_IN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StorageException(StorageErrorCode.BLOB_FAIL.getCode(), "await blob deleted interrupted");
+            }
+        }
+    }
+
+    /**
+     * 释放已到期execution引用的blob, 需由调度任务周期调用
+     *
+     * @return 本次取出的execution数
+     */
+    @SuppressWarnings("unchecked")
+    public int releaseExpiredBlobs(int limit) {
+        if (blobStore == null || limit <= 0) {
+            return 0;
+        }
+
+        List<Object> executionIds = (List<Object>) redisClient.eval(RedisScriptManager.blobReleasePopScript(), BLOB_RELEASE_QUEUE,
+                Lists.newArrayList(BLOB_RELEASE_QUEUE),
+                Lists.newArrayList(String.valueOf(System.currentTimeMillis()), String.valueOf(limit)));
+        if (CollectionUtils.isEmpty(executionIds)) {
+            return 0;
+        }
+
+        executionIds.stream().map(ContextDAO::getString).forEach(executionId -> {
+            try {
+                releaseBlobs(executionId);
+            } catch (Exception e) {
+                log.warn("releaseBlobs fails, executionId:{}", executionId, e);
+                scheduleBlobRelease(executionId, BLOB_RELEASE_RETRY_DELAY_IN_MILLIS, false);
+            }
+        });
+        return executionIds.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void releaseBlobs(String executionId) {
+        List<Object> ret = (List<Object>) redisClient.eval(RedisScriptManager.contextBlobDetachScript(), executionId,
+                Lists.newArrayList(buildContextRedisKey(executionId), buildContextBlobRedisKey(executionId)), Lists.newArrayList());
+        if (CollectionUtils.isEmpty(ret)) {
+            return;
+        }
+
+        long ttl = Long.parseLong(getString(ret.get(0)));
+        if (ttl != -2) {
+            // context仍存在(被续期或无过期时间), 推迟释放
+            long delayInMillis = ttl > 0 ? ttl : getUnfinishedStatusReserveTimeInSecond(executionId) * 1000L;
+            scheduleBlobRelease(executionId, delayInMillis, false);
+            return;
+        }
+
+        List<String> digests = ret.stream().skip(1).map(ContextDAO::getString).toList();
+        if (digests.isEmpty()) {
+            return;
+        }
+        log.info("releaseBlobs executionId:{}, digests size:{}", executionId, digests.size());
+        List<String> keys = Lists.newArrayList();
+        digests.forEach(digest -> keys.add(buildBlobRefCountRedisKey(digest)));
+        digests.forEach(digest -> keys.add(buildBlobDeletingRedisKey(digest)));
+        List<String> argv = Lists.newArrayList(digests);
+        argv.add(String.valueOf(BLOB_DELETING_EXPIRE_IN_MILLIS));
+        List<Object> released = (List<Object>) redisClient.eval(RedisScriptManager.blobRefDecrScript(), BLOB_RELEASE_QUEUE, keys, argv);
+        if (CollectionUtils.isNotEmpty(released)) {
+            released.stream().map(ContextDAO::getString).forEach(this::deleteBlob);
+        }
+    }
+
+    /**
+     * 引用计数归零时已原子设置删除标记, 删除期间重新引用的写入会等待标记清除后再写blob
+     */
+    private void deleteBlob(String digest) {
+        blobStore.delete(digest);
+        redisClient.eval(RedisScriptManager.blobDeleteFinishScript(), BLOB_RELEASE_QUEUE,
+                Lists.newArrayList(buildBlobDeletingRedisKey(digest)), Lists.newArrayList());
+    }
+
+    private void scheduleBlobRelease(String executionId, long delayInMillis, boolean onlyScheduled) {
+        List<String> argv = Lists.newArrayList(executionId, String.valueOf(System.currentTimeMillis() + delayInMillis));
+        if (onlyScheduled) {
+            argv.add("XX");
+        }
+        redisClient.eval(RedisScriptManager.blobRefIncrScript(), BLOB_RELEASE_QUEUE, Lists.newArrayList(BLOB_RELEASE_QUEUE), argv);
+    }
+
+    private static String getString(Object value) {
+        if (value instanceof byte[] bytes) {
+            return DagStorageSerializer.getString(bytes);
+        }
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private String buildContextBlobRedisKey(String executionId) {
+        return DAGRedisPrefix.PREFIX_CONTEXT_BLOB.getValue() + executionId;
+    }
+
+    private String buildBlobRefCountRedisKey(String digest) {
+        return DAGRedisPrefix.PREFIX_BLOB_REF_COUNT.getValue() + digest;
+    }
+
+    private String buildBlobDeletingRedisKey(String digest) {
+        return DAGRedisPrefix.PREFIX_BLOB_DELETING.getValue() + digest;
+    }
+
     private String buildContextRedisKey(String executionId) {
         return DAGRedisPrefix.PREFIX_CONTEXT.getValue() + executionId;
     }
@@ -0,0 +1,296 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl;
+
+import com.google.common.collect.Lists;
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.core.runtime.DAGContextStorage;
+import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage;
+import com.weibo.rill.flow.olympicene.storage.constant.DAGRedisPrefix;
+import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
+import com.weibo.rill.flow.olympicene.storage.script.RedisScriptManager;
+import com.weibo.rill.flow.olympicene.storage.wal.WALRecord;
+import com.weibo.rill.flow.olympicene.storage.wal.WALRecordType;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <pre>
+ * 基于redis stream的事件溯源存储, 每次状态变更追加为一条事件, 读取时由快照及其后的事件折叠得到当前状态
+ * 1. 事件流
+ *    类型: stream
+ *    key: dag_event_ + executionId
+ *    field     | value
+ *    "type"    | 事件类型, 与预写日志记录类型(WALRecordType)一致
+ *    "payload" | 事件内容(WALRecord)
+ *    事件包括: dag信息保存、任务状态变更(含分组状态)、上下文增量、描述符更新及清理
+ * 2. 快照
+ *    类型: hash
+ *    key: dag_event_snapshot_ + executionId
+ *    field     | value
+ *    "last_id" | 快照包含的最后一条事件id
+ *    "payload" | 折叠后的DAGInfo及完整上下文
+ * </pre>
+ * 写操作只追加事件, 不读取也不覆盖已有数据, 并发写入互不影响; 读取时快照之后的事件数达到compactThreshold则写入新快照,
+ * trimCompactedEvents为false时保留全部事件用于回放与审计
+ * <p>
+ * dag信息与上下文共用同一事件流, 过期时间一致; 分组状态随父任务的saveTaskInfos事件记录,
+ * 直接写dag_info hash的RedisSubGroupTracker不适用于本存储
+ */
+@Slf4j
+public class DAGEventStreamStorage implements DAGInfoStorage, DAGContextStorage {
+    private static final String TRIM_COMPACTED_EVENTS = "1";
+
+    private final RedisClient redisClient;
+    private final int unfinishedStatusReserveTimeInSecond;
+    private final int finishStatusReserveTimeInSecond;
+
+    @Setter
+    private int compactThreshold = 200;
+    @Setter
+    private boolean trimCompactedEvents = false;
+
+    public DAGEventStreamStorage(RedisClient redisClient) {
+        this(redisClient, 2 * 24 * 3600, 0);
+    }
+
+    public DAGEventStreamStorage(RedisClient redisClient, int unfinishedStatusReserveTimeInSecond, int finishStatusReserveTimeInSecond) {
+        this.redisClient = redisClient;
+        this.unfinishedStatusReserveTimeInSecond = unfinishedStatusReserveTimeInSecond;
+        this.finishStatusReserveTimeInSecond = finishStatusReserveTimeInSecond;
+    }
+
+    protected int getFinishStatusReserveTimeInSecond(String executionId) {
+        return finishStatusReserveTimeInSecond;
+    }
+
+    protected int getUnfinishedStatusReserveTimeInSecond(String executionId) {
+        return unfinishedStatusReserveTimeInSecond;
+    }
+
+    @Override
+    public void saveDAGInfo(String executionId, DAGInfo dagInfo) {
+        if (dagInfo == null) {
+            return;
+        }
+        WALRecord record = executionRecord(executionId);
+        record.setDagInfo(DAGInfo.cloneToSave(dagInfo));
+        append(executionId, WALRecordType.SAVE_DAG_INFO, record);
+    }
+
+    @Override
+    public void saveTaskInfos(String executionId, Set<TaskInfo> taskInfos) {
+        if (CollectionUtils.isEmpty(taskInfos)) {
+            return;
+        }
+        WALRecord record = executionRecord(executionId);
+        record.setTaskInfos(taskInfos.stream().map(TaskInfo::cloneToSave).toList());
+        append(executionId, WALRecordType.SAVE_TASK_INFOS, record);
+    }
+
+    @Override
+    public void updateContext(String executionId, Map<String, Object> context) {
+        if (MapUtils.isEmpty(context)) {
+            return;
+        }
+        WALRecord record = executionRecord(executionId);
+        record.setContext(DagStorageSerializer.serializeHash(context));
+        append(executionId, WALRecordType.UPDATE_CONTEXT, record);
+    }
+
+    @Override
+    public void updateDAGDescriptor(String executionId, DAG dag) {
+        if (dag == null) {
+            return;
+        }
+        WALRecord record = executionRecord(executionId);
+        record.setDag(dag);
+        append(executionId, WALRecordType.UPDATE_DESCRIPTOR, record);
+    }
+
+    @Override
+    public void clearContext(String executionId) {
+        append(executionId, WALRecordType.CLEAR_CONTEXT, executionRecord(executionId));
+    }
+
+    @Override
+    public void clearDAGInfo(String executionId) {
+        clearDAGInfo(executionId, getFinishStatusReserveTimeInSecond(executionId));
+    }
+
+    /**
+     * 与redis存储一致, 设置事件流及快照的过期时间, 之后追加的事件不再刷新过期时间
+     */
+    @Override
+    public void clearDAGInfo(String executionId, int expireTimeInSecond) {
+        if (expireTimeInSecond < 0) {
+            return;
+        }
+        log.info("clearDAGInfo executionId:{} expireTime:{}", executionId, expireTimeInSecond);
+        redisClient.eval(RedisScriptManager.dagEventAppendScript(), executionId, buildKeys(executionId),
+                Lists.newArrayList(String.valueOf(expireTimeInSecond)));
+    }
+
+    @Override
+    public DAGInfo getDAGInfo(String executionId) {
+        return materialize(executionId).getDAGInfo(executionId);
+    }
+
+    @Override
+    public DAGInfo getBasicDAGInfo(String executionId) {
+        return getDAGInfo(executionId);
+    }
+
+    @Override
+    public TaskInfo getBasicTaskInfo(String executionId, String taskName) {
+        return getTaskInfo(executionId, taskName);
+    }
+
+    @Override
+    public TaskInfo getTaskInfo(String executionId, String taskName) {
+        DAGLocalStorage state = materialize(executionId);
+        return state.getDAGInfo(executionId) == null ? null : state.getTaskInfo(executionId, taskName);
+    }
+
+    @Override
+    public TaskInfo getParentTaskInfoWithSibling(String executionId, String taskName) {
+        DAGLocalStorage state = materialize(executionId);
+        return state.getDAGInfo(executionId) == null ? null : state.getParentTaskInfoWithSibling(executionId, taskName);
+    }
+
+    @Override
+    public DAG getDAGDescriptor(String executionId) {
+        return Optional.ofNullable(getDAGInfo(executionId)).map(DAGInfo::getDag).orElse(null);
+    }
+
+    @Override
+    public Map<String, Object> getContext(String executionId) {
+        return materialize(executionId).getContext(executionId);
+    }
+
+    @Override
+    public Map<String, Object> getContext(String executionId, Collection<String> fields) {
+        return materialize(executionId).getContext(executionId, fields);
+    }
+
+    private void append(String executionId, WALRecordType type, WALRecord record) {
+        List<String> argv = Lists.newArrayList(String.valueOf(getUnfinishedStatusReserveTimeInSecond(executionId)),
+                String.valueOf(type.getCode()), DagStorageSerializer.serializeToStorage(record));
+        redisClient.eval(RedisScriptManager.dagEventAppendScript(), executionId, buildKeys(executionId), argv);
+    }
+
+    /**
+     * 读取快照及其后的事件, 按顺序折叠到本地存储中
+     */
+    @SuppressWarnings("unchecked")
+    private DAGLocalStorage materialize(String executionId) {
+        List<List<Object>> ret = (List<List<Object>>) redisClient.eval(
+                RedisScriptManager.dagEventGetScript(), executionId, buildKeys(executionId), Lists.newArrayList());
+        DAGLocalStorage state = new DAGLocalStorage();
+        if (CollectionUtils.isEmpty(ret)) {
+            return state;
+        }
+
+        byte[] snapshot = getBytes(ret.get(0).get(1));
+        if (snapshot != null && snapshot.length > 0) {
+            apply(state, executionId, WALRecordType.SNAPSHOT, snapshot);
+        }
+        List<Object> events = ret.get(1);
+        String lastEventId = null;
+        for (int i = 0; i + 2 < events.size(); i += 3) {
+            lastEventId = DagStorageSerializer.getString(getBytes(events.get(i)));
+            String type = DagStorageSerializer.getString(getBytes(events.get(i + 1)));
+            WALRecordType recordType = StringUtils.isNumeric(type) ? WALRecordType.from(Byte.parseByte(type)) : null;
+            if (recordType == null) {
+                log.warn("unknown dag event type:{}, executionId:{}, eventId:{}, skip", type, executionId, lastEventId);
+                continue;
+            }
+            apply(state, executionId, recordType, getBytes(events.get(i + 2)));
+        }
+        Optional.ofNullable(state.getDAGInfo(executionId)).ifPresent(StorageRecordReplayer::rebuildTaskRelation);
+
+        int eventCount = events.size() / 3;
+        if (eventCount >= compactThreshold) {
+            compact(executionId, state, lastEventId, eventCount);
+        }
+        return state;
+    }
+
+    private void apply(DAGLocalStorage state, String executionId, WALRecordType type, byte[] payload) {
+        WALRecord record = DagStorageSerializer.deserialize(payload, WALRecord.class);
+        switch (type) {
+            case SNAPSHOT -> {
+                Optional.ofNullable(record.getDagInfo()).ifPresent(dagInfo -> state.saveDAGInfo(executionId, dagInfo));
+                Optional.ofNullable(record.getContext()).filter(MapUtils::isNotEmpty)
+                        .ifPresent(context -> state.updateContext(executionId, StorageRecordReplayer.deserializeContext(context)));
+            }
+            case SAVE_DAG_INFO -> state.saveDAGInfo(executionId, record.getDagInfo());
+            case SAVE_TASK_INFOS -> StorageRecordReplayer.mergeTaskInfos(state.getDAGInfo(executionId), record.getTaskInfos());
+            case UPDATE_CONTEXT -> state.updateContext(executionId, StorageRecordReplayer.deserializeContext(record.getContext()));
+            case CLEAR_CONTEXT -> state.clearContext(executionId);
+            case CLEAR_DAG_INFO -> state.clearDAGInfo(executionId);
+            case UPDATE_DESCRIPTOR -> Optional.ofNullable(state.getDAGInfo(executionId)).ifPresent(dagInfo -> dagInfo.setDag(record.getDag()));
+        }
+    }
+
+    /**
+     * 快照写入失败不影响本次读取, 下次读取时重试
+     */
+    private void compact(String executionId, DAGLocalStorage state, String lastEventId, int eventCount) {
+        try {
+            WALRecord record = executionRecord(executionId);
+            record.setDagInfo(DAGInfo.cloneToSave(state.getDAGInfo(executionId)));
+            record.setContext(DagStorageSerializer.serializeHash(state.getContext(executionId, Collections.emptyList())));
+            List<String> argv = Lists.newArrayList(lastEventId, DagStorageSerializer.serializeToStorage(record),
+                    trimCompactedEvents ? TRIM_COMPACTED_EVENTS : "0");
+            redisClient.eval(RedisScriptManager.dagEventCompactScript(), executionId, buildKeys(executionId), argv);
+            log.info("compact dag event stream, executionId:{}, lastEventId:{}, events:{}", executionId, lastEventId, eventCount);
+        } catch (Exception e) {
+            log.warn("compact dag event stream fails, executionId:{}, lastEventId:{}", executionId, lastEventId, e);
+        }
+    }
+
+    private WALRecord executionRecord(String executionId) {
+        WALRecord record = new WALRecord();
+        record.setExecutionId(executionId);
+        return record;
+    }
+
+    private List<String> buildKeys(String executionId) {
+        return Lists.newArrayList(DAGRedisPrefix.PREFIX_DAG_EVENT.getValue() + executionId,
+                DAGRedisPrefix.PREFIX_DAG_EVENT_SNAPSHOT.getValue() + executionId);
+    }
+
+    private static byte[] getBytes(Object value) {
+        if (value instanceof byte[] bytes) {
+            return bytes;
+        }
+        return value == null ? null : DagStorageSerializer.getBytes(String.valueOf(value));
+    }
+}
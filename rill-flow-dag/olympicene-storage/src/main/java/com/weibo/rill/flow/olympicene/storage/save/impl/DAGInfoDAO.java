@@ -16,6 +16,8 @@
 
 package com.weibo.rill.flow.olympicene.storage.save.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -37,9 +39,10 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -105,9 +108,15 @@ import java.util.stream.Collectors;
  *       #B    | xxx     对于map TaskInfo->children
  *                       field: #+key
  *                       value: taskInfo中next/parent/children/dependencies设置为空后bean序列化为字符串
+ *       开启按分组存储(isSubTaskPartitionedByRoute)时, 子任务按所在分组存储, 每个分组一个hash
+ *       key: sub_task_ + executionId + _ + routeName, 如: sub_task_id_A_0, 任务与其子任务映射中field为routeName
+ *       routeName以"_" + 分组下标结尾, 不会与任务名称重复; 开启前已按父任务存储的分组读写时仍使用原hash
+ *   3.4 任务分组状态
+ *       存储在任务所在的hash中, 每个分组一个field, 如: "!status#A#0" | "SUCCEED", 详见SubGroupFields
  * </pre>
  *
  * @see ContextDAO
+ * @see SubGroupFields
  */
 @Slf4j
 public class DAGInfoDAO {
@@ -116,11 +125,22 @@ public class DAGInfoDAO {
     public static final String DAG_DESCRIBER = "dag";
     public static final String DAG_INVOKE_MSG = "dag_invoke_msg";
     public static final String DAG_STATUS = "dag_status";
+    private static final String ALT_KEY = "_alt_key_";
+    private static final String ROUTE_CONTENT = "_route_content_";
+    private static final String DAG_DESCRIPTOR_KEY = "_dag_descriptor_key";
+    private static final DateTimeFormatter DESCRIPTOR_MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int BATCH_UPDATE_SIZE = 50;
 
     private final RedisClient redisClient;
     private final int finishStatusReserveTimeInSecond;
     private final int unfinishedStatusReserveTimeInSecond;
     private final DAGInfoDeserializeService dagInfoDeserializeService;
+    /**
+     * 从redis读取的dag实例对应的描述符key, 写回时无需重新序列化及计算md5
+     */
+    private final Cache<DAG, String> dagToDescriptorKey = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
 
     public DAGInfoDAO(RedisClient redisClient, DAGInfoDeserializeService dagInfoDeserializeService) {
         this(redisClient, dagInfoDeserializeService, 2 * 24 * 3600, 0);
@@ -143,6 +163,13 @@ public class DAGInfoDAO {
         log.debug("getUnfinishedStatusReserveTimeInSecond executionId:{}, time:{}", executionId, unfinishedStatusReserveTimeInSecond);
         return unfinishedStatusReserveTimeInSecond;
     }
+
+    /**
+     * 子任务是否按分组(routeName)存储, 父任务的分组数较多时只需读写单个分组的hash
+     */
+    protected boolean isSubTaskPartitionedByRoute(String executionId) {
+        return false;
+    }
     // ------------------------------------------------------
 
     public DAGInfo getDagInfo(String executionId, boolean needSubTasks) {
@@ -168,20 +195,119 @@ public class DAGInfoDAO {
                 RedisScriptManager.dagInfoGetScript(), executionId, keys, Lists.newArrayList());
     }
 
-    private DAGInfo deserializeDagInfo(List<List<List<byte[]>>> dagInfoByte) {
-        DAGInfo dagInfo = dagInfoDeserializeService.deserializeBaseDagInfo(dagInfoByte.get(0));
+    /**
+     * DAGInfo基础信息直接反序列化, 任务在首次访问时才反序列化, 只需dag状态等信息的调用方无需处理全部任务
+     */
+    private DAGInfo deserializeDagInfo(List<List<List<byte[]>>> rawDagInfoByte) {
+        List<List<byte[]>> rootContent = rawDagInfoByte.get(0);
+        if (rootContent == null || rootContent.size() != 2 || rootContent.get(1) == null) {
+            return dagInfoDeserializeService.deserializeBaseDagInfo(rootContent);
+        }
+
+        List<byte[]> baseContent = Lists.newArrayList();
+        List<byte[]> rootTaskContent = Lists.newArrayList();
+        List<byte[]> rootFields = rootContent.get(1);
+        String descriptorKey = null;
+        for (int i = 0; i + 1 < rootFields.size(); i += 2) {
+            String field = DagStorageSerializer.getString(rootFields.get(i));
+            if (DAG_DESCRIPTOR_KEY.equals(field)) {
+                descriptorKey = DagStorageSerializer.getString(rootFields.get(i + 1));
+                continue;
+            }
+            List<byte[]> target = isTaskContentField(field) ? rootTaskContent : baseContent;
+            target.add(rootFields.get(i));
+            target.add(rootFields.get(i + 1));
+        }
+        DAGInfo dagInfo = dagInfoDeserializeService.deserializeBaseDagInfo(Lists.newArrayList(rootContent.get(0), baseContent));
         if (dagInfo == null) {
             return null;
         }
-        appendTask(dagInfo, dagInfoByte);
-        appendTaskRelation(1, dagInfo.getTasks());
+
+        DAG dag = dagInfo.getDag();
+        if (dag != null && StringUtils.isNotBlank(descriptorKey)) {
+            dagToDescriptorKey.put(dag, descriptorKey);
+        }
+        List<List<List<byte[]>>> dagInfoByte = mergeRouteSubTasks(rawDagInfoByte);
+        String executionId = dagInfo.getExecutionId();
+        dagInfo.setTasks(new LazyTaskMap(() -> loadTasks(executionId, dag, rootTaskContent, dagInfoByte)));
         return dagInfo;
     }
 
-    private void appendTask(DAGInfo dagInfo, List<List<List<byte[]>>> dagInfoByte) {
-        Map<String, BaseTask> baseTaskMap = getBaseTask(1, Optional.ofNullable(dagInfo.getDag()).map(DAG::getTasks).orElse(null));
-        Map<String, Map<String, TaskInfo>> taskNameToSubTasks = dagInfoDeserializeService.getTaskNameToSubTasksMap(dagInfoByte);
-        doAppendTask(1, dagInfo.getTasks(), baseTaskMap, taskNameToSubTasks);
+    /**
+     * 任务反序列化在首次访问时执行, 已不在getDagInfo的异常处理范围内, 此处补充日志并统一转换为SerializationException
+     */
+    private Map<String, TaskInfo> loadTasks(String executionId, DAG dag, List<byte[]> rootTaskContent, List<List<List<byte[]>>> dagInfoByte) {
+        try {
+            return deserializeTasks(dag, rootTaskContent, dagInfoByte);
+        } catch (SerializationException e) {
+            log.warn("deserializeTasks fails, executionId:{}", executionId, e);
+            throw e;
+        } catch (Exception e) {
+            log.warn("deserializeTasks fails, executionId:{}", executionId, e);
+            throw new SerializationException(StorageErrorCode.SERIALIZATION_FAIL.getCode(), "deserialize tasks fails, executionId:" + executionId, e);
+        }
+    }
+
+    private Map<String, TaskInfo> deserializeTasks(DAG dag, List<byte[]> rootTaskContent, List<List<List<byte[]>>> dagInfoByte) {
+        Map<String, Map<String, String>> taskNameToGroupStatuses = Maps.newHashMap();
+        Map<String, Map<String, String>> taskNameToGroupIdentities = Maps.newHashMap();
+        Map<String, TaskInfo> tasks = new LinkedHashMap<>();
+        DagStorageSerializer.deserializeHash(SubGroupFields.extract(rootTaskContent, taskNameToGroupStatuses, taskNameToGroupIdentities))
+                .values().forEach(taskInfo -> tasks.put(((TaskInfo) taskInfo).getName(), (TaskInfo) taskInfo));
+
+        List<List<List<byte[]>>> subTaskContents = Lists.newArrayList();
+        subTaskContents.add(dagInfoByte.get(0));
+        dagInfoByte.subList(1, dagInfoByte.size()).stream()
+                .map(content -> content == null || content.size() != 2 ? content :
+                        Lists.newArrayList(content.get(0), SubGroupFields.extract(content.get(1), taskNameToGroupStatuses, taskNameToGroupIdentities)))
+                .forEach(subTaskContents::add);
+        Map<String, BaseTask> baseTaskMap = getBaseTask(1, Optional.ofNullable(dag).map(DAG::getTasks).orElse(null));
+        doAppendTask(1, tasks, baseTaskMap, dagInfoDeserializeService.getTaskNameToSubTasksMap(subTaskContents));
+        SubGroupFields.applyAll(1, SystemConfig.getTaskMaxDepth(), tasks, taskNameToGroupStatuses, taskNameToGroupIdentities);
+        appendTaskRelation(1, tasks);
+        return tasks;
+    }
+
+    /**
+     * DAGInfo hash中taskInfo及其类型、分组状态field
+     */
+    private boolean isTaskContentField(String field) {
+        return field != null && (field.startsWith(TASK_FIELD_PREFIX) || SubGroupFields.isSubGroupField(field)
+                || field.startsWith(DagStorageSerializer.buildTypeKeyPrefix(TASK_FIELD_PREFIX)));
+    }
+
+    /**
+     * 按分组存储的子任务在映射中以routeName为field, 合并到父任务名称下
+     */
+    private List<List<List<byte[]>>> mergeRouteSubTasks(List<List<List<byte[]>>> dagInfoByte) {
+        if (dagInfoByte.size() < 2) {
+            return dagInfoByte;
+        }
+
+        List<List<List<byte[]>>> ret = Lists.newArrayList();
+        ret.add(dagInfoByte.get(0));
+        Map<String, List<byte[]>> parentNameToContent = Maps.newHashMap();
+        dagInfoByte.subList(1, dagInfoByte.size()).forEach(subContent -> {
+            if (subContent == null || subContent.size() != 2 || subContent.get(0) == null || subContent.get(0).size() != 2) {
+                ret.add(subContent);
+                return;
+            }
+
+            String contentName = DagStorageSerializer.getString(subContent.get(0).get(1));
+            String parentName = isRouteName(contentName) ?
+                    contentName.substring(0, contentName.lastIndexOf(ReservedConstant.ROUTE_NAME_CONNECTOR)) : contentName;
+            List<byte[]> content = Optional.ofNullable(subContent.get(1)).orElse(Collections.emptyList());
+            List<byte[]> mergedContent = parentNameToContent.get(parentName);
+            if (mergedContent != null) {
+                mergedContent.addAll(content);
+                return;
+            }
+            mergedContent = new ArrayList<>(content);
+            parentNameToContent.put(parentName, mergedContent);
+            ret.add(Lists.newArrayList(
+                    Lists.newArrayList(subContent.get(0).get(0), DagStorageSerializer.getBytes(parentName)), mergedContent));
+        });
+        return ret;
     }
 
     private Map<String, BaseTask> getBaseTask(int depth, List<BaseTask> baseTasks) {
@@ -235,11 +361,11 @@ public class DAGInfoDAO {
     }
 
     public TaskInfo getBasicTaskInfo(String executionId, String taskName) {
-        return getTaskInfo(executionId, taskName, null);
+        return getTaskInfo(executionId, taskName, null, null);
     }
 
     public TaskInfo getTaskInfoWithAllSubTask(String executionId, String taskName) {
-        return getTaskInfo(executionId, taskName, TASK_FIELD_PREFIX);
+        return getTaskInfo(executionId, taskName, TASK_FIELD_PREFIX, null);
     }
 
     /**
@@ -262,32 +388,67 @@ public class DAGInfoDAO {
         // - 在lua正则表达式中为特殊字符表示 匹配前一字符0次或多次 需要加%转义
         String subTaskPrefix = (TASK_FIELD_PREFIX + taskRootName + ReservedConstant.TASK_NAME_CONNECTOR)
                 .replaceAll(ReservedConstant.TASK_NAME_CONNECTOR, "%" + ReservedConstant.TASK_NAME_CONNECTOR);
-        return getTaskInfo(executionId, chainNames.get(chainNames.size() - 2), subTaskPrefix);
+        return getTaskInfo(executionId, chainNames.get(chainNames.size() - 2), subTaskPrefix, taskName);
     }
 
+    /**
+     * @param siblingTaskName 非空时子任务只获取与该任务在同一分组中的任务
+     */
     @SuppressWarnings("unchecked")
-    private TaskInfo getTaskInfo(String executionId, String taskName, String subTaskPrefix) {
+    private TaskInfo getTaskInfo(String executionId, String taskName, String subTaskPrefix, String siblingTaskName) {
         log.info("getTaskInfo executionId:{} taskName:{} subTaskPrefix:{}", executionId, taskName, subTaskPrefix);
 
         boolean needSubTasks = StringUtils.isNotEmpty(subTaskPrefix);
+        boolean partitioned = isSubTaskPartitionedByRoute(executionId);
         List<String> chainNames = DAGWalkHelper.getInstance().taskInfoNamesCurrentChain(taskName);
         boolean dagDescriberTaskInfoInSameKey = chainNames.size() < 2;
+        String taskInfoRedisKey = buildTaskInfoRedisKey(executionId, taskName);
+        List<String> taskInfoAltArgs = buildRouteAltArgs(executionId, taskName);
+        // 按分组存储时子任务只需读取兄弟任务所在分组的hash, 获取全部子任务时还需读取各分组的hash
+        boolean siblingInRoute = partitioned && siblingTaskName != null;
+        String subTaskRedisKey = siblingInRoute ? buildTaskInfoRedisKey(executionId, siblingTaskName) : buildSubTaskRedisKey(executionId, taskName);
+        List<String> subTaskAltArgs = siblingInRoute ? buildRouteAltArgs(executionId, siblingTaskName) : Collections.emptyList();
+        boolean needRouteContent = needSubTasks && partitioned && siblingTaskName == null;
 
         List<String> keys = Lists.newArrayList();
         List<String> argv = Lists.newArrayList();
         keys.add(buildDagInfoRedisKey(executionId));
         argv.add(DAG_DESCRIBER); // 获取dag描述文件内容 构造TaskInfo.baskTask 及 task间依赖关系
         if (!dagDescriberTaskInfoInSameKey) {
-            keys.add(buildSubTaskRedisKey(executionId, chainNames.get(chainNames.size() - 2)));
+            keys.add(taskInfoRedisKey);
             argv.add(ReservedConstant.PLACEHOLDER);
+            argv.addAll(taskInfoAltArgs);
         }
         argv.add(buildTaskNameRedisField(taskName)); // 获取taskInfo
+        int subTaskIndex = keys.size();
         if (needSubTasks) {
-            keys.add(buildSubTaskRedisKey(executionId, taskName));
+            keys.add(subTaskRedisKey);
             argv.add(ReservedConstant.PLACEHOLDER); // 获取子任务TaskInfo
+            argv.addAll(subTaskAltArgs);
             argv.add(ReservedConstant.KEY_PREFIX);
             argv.add(subTaskPrefix);
         }
+        // 获取分组状态
+        int groupFieldIndex = keys.size();
+        keys.add(taskInfoRedisKey);
+        argv.add(ReservedConstant.PLACEHOLDER);
+        argv.addAll(taskInfoAltArgs);
+        argv.add(SubGroupFields.FIELD_PREFIX_QUERY);
+        argv.addAll(SubGroupFields.buildTaskQueryPrefixes(taskName));
+        if (needSubTasks) {
+            keys.add(subTaskRedisKey);
+            argv.add(ReservedConstant.PLACEHOLDER);
+            argv.addAll(subTaskAltArgs);
+            argv.add(SubGroupFields.FIELD_PREFIX_QUERY);
+            argv.addAll(SubGroupFields.buildSubTaskQueryPrefixes(subTaskPrefix));
+        }
+        int routeContentIndex = keys.size();
+        if (needRouteContent) {
+            keys.add(buildTaskNameToSubTaskRedisKey(executionId));
+            argv.add(ReservedConstant.PLACEHOLDER);
+            argv.add(ROUTE_CONTENT);
+            argv.add(taskName + ReservedConstant.ROUTE_NAME_CONNECTOR);
+        }
         List<List<byte[]>> ret = (List<List<byte[]>>) redisClient.eval(RedisScriptManager.dagInfoGetByFieldScript(), executionId, keys, argv);
 
         // dag描述符
@@ -300,16 +461,34 @@ public class DAGInfoDAO {
         }
         TaskInfo taskInfo = DagStorageSerializer.deserialize(rawTaskInfo, TaskInfo.class);
         taskInfo.setTask(baseTaskMap.get(DAGWalkHelper.getInstance().getBaseTaskName(taskInfo)));
+        Map<String, Map<String, String>> taskNameToGroupStatuses = Maps.newHashMap();
+        Map<String, Map<String, String>> taskNameToGroupIdentities = Maps.newHashMap();
         // subTaskInfo
         if (needSubTasks) {
+            List<byte[]> rawSubTasks = new ArrayList<>(ret.get(subTaskIndex));
+            if (needRouteContent) {
+                List<byte[]> routeContent = SubGroupFields.extract(ret.get(routeContentIndex), taskNameToGroupStatuses, taskNameToGroupIdentities);
+                for (int i = 0; i + 1 < routeContent.size(); i += 2) {
+                    if (DagStorageSerializer.getString(routeContent.get(i)).startsWith(TASK_FIELD_PREFIX)) {
+                        rawSubTasks.add(routeContent.get(i + 1));
+                    }
+                }
+            }
             Map<String, TaskInfo> subTaskInfos = new LinkedHashMap<>();
-            ret.get(ret.size() - 1).stream()
+            rawSubTasks.stream()
                     .filter(Objects::nonNull)
                     .map(rawSubTask -> DagStorageSerializer.deserialize(rawSubTask, TaskInfo.class))
                     .peek(it -> it.setTask(baseTaskMap.get(DAGWalkHelper.getInstance().getBaseTaskName(it))))
                     .forEach(it -> subTaskInfos.put(it.getName(), it));
             taskInfo.setChildren(subTaskInfos);
         }
+        ret.subList(groupFieldIndex, routeContentIndex)
+                .forEach(groupFields -> SubGroupFields.extract(groupFields, taskNameToGroupStatuses, taskNameToGroupIdentities));
+        SubGroupFields.apply(taskInfo, taskNameToGroupStatuses.get(taskInfo.getName()), taskNameToGroupIdentities.get(taskInfo.getName()));
+        if (needSubTasks) {
+            taskInfo.getChildren().values().forEach(subTaskInfo -> SubGroupFields.apply(subTaskInfo,
+                    taskNameToGroupStatuses.get(subTaskInfo.getName()), taskNameToGroupIdentities.get(subTaskInfo.getName())));
+        }
         appendTaskRelation(1, ImmutableMap.of(taskInfo.getName(), taskInfo));
 
         return taskInfo;
@@ -337,11 +516,8 @@ public class DAGInfoDAO {
 
         argv.add(String.valueOf(getUnfinishedStatusReserveTimeInSecond(executionId)));
 
-        String descriptor = DagStorageSerializer.serializeToString(dag);
-        String descriptorKey = buildDagDescriptorRedisKey(descriptor);
-        keys.add(descriptorKey);
-        argv.add(ReservedConstant.PLACEHOLDER);
-        argv.add(descriptor);
+        Set<String> descriptorKeys = new HashSet<>();
+        String descriptorKey = serializeDagDescriptor(dag, keys, argv, descriptorKeys);
 
         Map<String, Object> dagInfo = ImmutableMap.of(DAG_DESCRIBER, descriptorKey);
         keys.add(buildDagInfoRedisKey(executionId));
@@ -379,30 +555,70 @@ public class DAGInfoDAO {
 
         try {
             log.info("updateDagInfo executionId:{}", executionId);
-            DAGInfo dagInfoClone = DAGInfo.cloneToSave(dagInfo);
-
             List<String> keys = Lists.newArrayList();
             List<String> argv = Lists.newArrayList();
-            serializeDagInfo(executionId, dagInfoClone, keys, argv);
+            Set<String> descriptorKeys = new HashSet<>();
+            SubGroupFields subGroupFields = new SubGroupFields();
+            serializeDagInfo(executionId, dagInfo, keys, argv, descriptorKeys, subGroupFields);
 
             redisClient.eval(RedisScriptManager.dagInfoSetScript(), executionId, keys, argv);
+            subGroupFields.clearChanges();
         } catch (Exception e) {
             log.warn("updateDagInfo fails, executionId:{}", executionId, e);
             throw e;
         }
     }
 
-    private void serializeDagInfo(String executionId, DAGInfo dagInfoClone, List<String> keys, List<String> argv) {
-        argv.add(String.valueOf(getUnfinishedStatusReserveTimeInSecond(executionId)));
+    /**
+     * 批量更新dag信息, 每批次合并为一次脚本调用, 相同的dag描述符只写一次
+     * 同一批次的executionId需属于同一serviceId, 以保证路由到同一redis及过期时间一致
+     */
+    public void updateDagInfos(Map<String, DAGInfo> executionIdToDAGInfo) {
+        if (MapUtils.isEmpty(executionIdToDAGInfo)) {
+            return;
+        }
 
-        String descriptorKey = null;
-        if (dagInfoClone.getDag() != null) {
-            String descriptor = DagStorageSerializer.serializeToString(dagInfoClone.getDag());
-            descriptorKey = buildDagDescriptorRedisKey(descriptor);
-            keys.add(descriptorKey);
-            argv.add(ReservedConstant.PLACEHOLDER);
-            argv.add(descriptor);
+        List<String> executionIds = executionIdToDAGInfo.entrySet().stream()
+                .filter(entry -> entry.getValue() != null)
+                .map(Map.Entry::getKey)
+                .toList();
+        for (List<String> batchExecutionIds : Lists.partition(executionIds, BATCH_UPDATE_SIZE)) {
+            String shardingKey = batchExecutionIds.get(0);
+            try {
+                log.info("updateDagInfos executionId:{}, size:{}", shardingKey, batchExecutionIds.size());
+                List<String> keys = Lists.newArrayList();
+                List<String> argv = Lists.newArrayList();
+                argv.add(String.valueOf(getUnfinishedStatusReserveTimeInSecond(shardingKey)));
+                Set<String> descriptorKeys = new HashSet<>();
+                SubGroupFields subGroupFields = new SubGroupFields();
+                batchExecutionIds.forEach(executionId -> serializeDagInfoContent(executionId,
+                        executionIdToDAGInfo.get(executionId), keys, argv, descriptorKeys, subGroupFields));
+
+                redisClient.eval(RedisScriptManager.dagInfoSetScript(), shardingKey, keys, argv);
+                subGroupFields.clearChanges();
+            } catch (Exception e) {
+                log.warn("updateDagInfos fails, executionId:{}, size:{}", shardingKey, batchExecutionIds.size(), e);
+                throw e;
+            }
         }
+    }
+
+    private void serializeDagInfo(String executionId, DAGInfo dagInfo, List<String> keys, List<String> argv,
+                                  Set<String> descriptorKeys, SubGroupFields subGroupFields) {
+        argv.add(String.valueOf(getUnfinishedStatusReserveTimeInSecond(executionId)));
+        serializeDagInfoContent(executionId, dagInfo, keys, argv, descriptorKeys, subGroupFields);
+    }
+
+    private void serializeDagInfoContent(String executionId, DAGInfo originalDagInfo, List<String> keys, List<String> argv,
+                                         Set<String> descriptorKeys, SubGroupFields subGroupFields) {
+        DAGInfo dagInfoClone = DAGInfo.cloneToSave(originalDagInfo);
+        String dagInfoRedisKey = buildDagInfoRedisKey(executionId);
+        subGroupFields.collect(1, SystemConfig.getTaskMaxDepth(), originalDagInfo.getTasks(),
+                taskInfo -> buildTaskInfoRedisKey(executionId, taskInfo.getName()));
+        SubGroupFields.detachGroupMaps(1, SystemConfig.getTaskMaxDepth(), dagInfoClone.getTasks());
+
+        String descriptorKey = dagInfoClone.getDag() == null ? null :
+                serializeDagDescriptor(dagInfoClone.getDag(), keys, argv, descriptorKeys);
 
         Map<String, Object> dagInfo = Maps.newHashMap();
         dagInfo.put(EXECUTION_ID, dagInfoClone.getExecutionId());
@@ -414,14 +630,29 @@ public class DAGInfoDAO {
         Map<String, Map<String, TaskInfo>> taskNameToSubTasks = getSubTasks(1, dagInfoClone.getTasks());
 
         // DAGInfo hash内容
-        keys.add(buildDagInfoRedisKey(executionId));
-        argv.add(ReservedConstant.PLACEHOLDER);
-        argv.addAll(DagStorageSerializer.serializeHashToList(dagInfo));
+        serializeHash(dagInfoRedisKey, dagInfo, keys, argv, subGroupFields);
+
+        serializeSubTasks(executionId, keys, argv, taskNameToSubTasks, subGroupFields);
+        subGroupFields.appendRemaining(keys, argv, taskName -> buildRouteAltArgs(executionId, taskName));
+    }
 
-        serializeSubTasks(executionId, keys, argv, taskNameToSubTasks);
+    private void serializeHash(String redisKey, Map<String, ?> content, List<String> keys, List<String> argv,
+                               SubGroupFields subGroupFields) {
+        serializeHash(redisKey, Collections.emptyList(), content, keys, argv, subGroupFields);
     }
 
-    private void serializeSubTasks(String executionId, List<String> keys, List<String> argv, Map<String, Map<String, TaskInfo>> taskNameToSubTasks) {
+    private void serializeHash(String redisKey, List<String> altArgs, Map<String, ?> content, List<String> keys, List<String> argv,
+                               SubGroupFields subGroupFields) {
+        keys.add(redisKey);
+        argv.add(ReservedConstant.PLACEHOLDER);
+        argv.addAll(altArgs);
+        argv.addAll(subGroupFields.pollDeleteArgs(redisKey));
+        argv.addAll(DagStorageSerializer.serializeHashToList(content));
+        argv.addAll(subGroupFields.pollFieldArgs(redisKey));
+    }
+
+    private void serializeSubTasks(String executionId, List<String> keys, List<String> argv,
+                                   Map<String, Map<String, TaskInfo>> taskNameToSubTasks, SubGroupFields subGroupFields) {
         if (MapUtils.isEmpty(taskNameToSubTasks)) {
             return;
         }
@@ -433,11 +664,23 @@ public class DAGInfoDAO {
                 return;
             }
 
-            String subTaskRedisKey = buildSubTaskRedisKey(executionId, taskName);
-            keys.add(subTaskRedisKey);
-            argv.add(ReservedConstant.PLACEHOLDER);
-            argv.addAll(DagStorageSerializer.serializeHashToList(subTasks));
-            taskNameToSubTaskRedisKey.put(taskName, subTaskRedisKey);
+            if (!isSubTaskPartitionedByRoute(executionId)) {
+                String subTaskRedisKey = buildSubTaskRedisKey(executionId, taskName);
+                serializeHash(subTaskRedisKey, subTasks, keys, argv, subGroupFields);
+                taskNameToSubTaskRedisKey.put(taskName, subTaskRedisKey);
+                return;
+            }
+
+            Map<String, Map<String, TaskInfo>> routeNameToSubTasks = new LinkedHashMap<>();
+            subTasks.forEach((field, subTask) -> routeNameToSubTasks
+                    .computeIfAbsent(DAGWalkHelper.getInstance().getRootName(subTask.getName()), key -> Maps.newHashMap())
+                    .put(field, subTask));
+            routeNameToSubTasks.forEach((routeName, routeSubTasks) -> {
+                String routeRedisKey = buildSubTaskRedisKey(executionId, routeName);
+                String memberTaskName = routeSubTasks.values().iterator().next().getName();
+                serializeHash(routeRedisKey, buildRouteAltArgs(executionId, memberTaskName), routeSubTasks, keys, argv, subGroupFields);
+                taskNameToSubTaskRedisKey.put(routeName, routeRedisKey);
+            });
         });
 
         // 任务与其子任务映射
@@ -479,19 +722,79 @@ public class DAGInfoDAO {
 
             List<String> keys = Lists.newArrayList();
             List<String> argv = Lists.newArrayList();
-            serializeTaskInfos(executionId, taskInfos, keys, argv);
+            SubGroupFields subGroupFields = new SubGroupFields();
+            serializeTaskInfos(executionId, taskInfos, keys, argv, subGroupFields);
 
             redisClient.eval(RedisScriptManager.dagInfoSetScript(), executionId, keys, argv);
+            subGroupFields.clearChanges();
         } catch (Exception e) {
             log.warn("saveTaskInfos fails, executionId:{}", executionId, e);
             throw e;
         }
     }
 
-    private void serializeTaskInfos(String executionId, Set<TaskInfo> taskInfos, List<String> keys, List<String> argv) {
+    /**
+     * 加锁并在同一脚本中读取basic DAGInfo及context, 锁与DAGInfo需位于同一redis
+     *
+     * @param contextKeys  读取context的keys, 由ContextDAO构造
+     * @param totalContext 为true时contextKeys为context根key, 读取全部context
+     * @return 锁被占用时返回null, 否则为DAGInfo及context原始内容
+     */
+    public Pair<DAGInfo, Object> lockAndGetDagInfo(String lockName, String lockAcquirerId, int lockExpireTimeInSecond, String executionId,
+                                                   boolean totalContext, List<String> contextKeys, List<String> contextArgv) {
+        try {
+            log.info("lockAndGetDagInfo executionId:{} lockName:{}", executionId, lockName);
+            List<String> keys = Lists.newArrayList(lockName, buildDagInfoRedisKey(executionId));
+            keys.addAll(contextKeys);
+            List<String> argv = Lists.newArrayList(lockAcquirerId, String.valueOf(lockExpireTimeInSecond), totalContext ? "all" : "fields");
+            argv.addAll(contextArgv);
+
+            List<Object> ret = (List<Object>) redisClient.eval(RedisScriptManager.dagTraversalLockAndLoadScript(), executionId, keys, argv);
+            Object lockRet = ret.get(0);
+            String lockStatus = lockRet instanceof String ? (String) lockRet : DagStorageSerializer.getString((byte[]) lockRet);
+            if (!"OK".equals(lockStatus)) {
+                return null;
+            }
+
+            List<List<List<byte[]>>> dagInfos = (List<List<List<byte[]>>>) ret.get(1);
+            DAGInfo dagInfo = CollectionUtils.isEmpty(dagInfos) ? null : deserializeDagInfo(dagInfos);
+            return Pair.of(dagInfo, ret.get(2));
+        } catch (Exception e) {
+            log.warn("lockAndGetDagInfo fails, executionId:{}", executionId, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 保存任务状态并在同一脚本中释放锁, 锁与DAGInfo需位于同一redis
+     */
+    public void saveTaskInfosAndUnlock(String executionId, Set<TaskInfo> taskInfos, String lockName, String lockAcquirerId) {
+        try {
+            log.info("saveTaskInfosAndUnlock executionId:{} lockName:{}", executionId, lockName);
+            List<String> keys = Lists.newArrayList(lockName);
+            List<String> argv = Lists.newArrayList(lockAcquirerId);
+            SubGroupFields subGroupFields = new SubGroupFields();
+            if (CollectionUtils.isNotEmpty(taskInfos)) {
+                serializeTaskInfos(executionId, taskInfos, keys, argv, subGroupFields);
+            }
+
+            redisClient.eval(RedisScriptManager.dagTraversalSaveAndUnlockScript(), executionId, keys, argv);
+            subGroupFields.clearChanges();
+        } catch (Exception e) {
+            log.warn("saveTaskInfosAndUnlock fails, executionId:{}", executionId, e);
+            throw e;
+        }
+    }
+
+    private void serializeTaskInfos(String executionId, Set<TaskInfo> taskInfos, List<String> keys, List<String> argv,
+                                    SubGroupFields subGroupFields) {
+        subGroupFields.collect(1, SystemConfig.getTaskMaxDepth(),
+                taskInfos.stream().collect(Collectors.toMap(TaskInfo::getName, taskInfo -> taskInfo, (a, b) -> b)),
+                taskInfo -> buildTaskInfoRedisKey(executionId, taskInfo.getName()));
         Map<String, TaskInfo> clonedTaskInfos = taskInfos.stream().
                 map(TaskInfo::cloneToSave)
                 .collect(Collectors.toMap(TaskInfo::getName, taskInfo -> taskInfo));
+        SubGroupFields.detachGroupMaps(1, SystemConfig.getTaskMaxDepth(), clonedTaskInfos);
 
         Map<String, Map<String, TaskInfo>> taskNameToSubTasks = getSubTasks(1, clonedTaskInfos);
         Map<String, TaskInfo> ancestorTaskMap = Maps.newHashMap();
@@ -509,22 +812,74 @@ public class DAGInfoDAO {
         argv.add(String.valueOf(getUnfinishedStatusReserveTimeInSecond(executionId)));
 
         if (MapUtils.isNotEmpty(ancestorTaskMap)) {
-            keys.add(buildDagInfoRedisKey(executionId));
-            argv.add(ReservedConstant.PLACEHOLDER);
-            argv.addAll(DagStorageSerializer.serializeHashToList(ancestorTaskMap));
+            serializeHash(buildDagInfoRedisKey(executionId), ancestorTaskMap, keys, argv, subGroupFields);
         }
 
-        serializeSubTasks(executionId, keys, argv, taskNameToSubTasks);
+        serializeSubTasks(executionId, keys, argv, taskNameToSubTasks, subGroupFields);
+        subGroupFields.appendRemaining(keys, argv, taskName -> buildRouteAltArgs(executionId, taskName));
     }
 
     private String buildDagInfoRedisKey(String executionId) {
         return DAGRedisPrefix.PREFIX_DAG_INFO.getValue() + executionId;
     }
 
+    /**
+     * taskInfo所在的hash: 祖先任务存储在DAGInfo中, 其余任务存储在父任务或所在分组的子任务hash中
+     */
+    private String buildTaskInfoRedisKey(String executionId, String taskName) {
+        List<String> chainNames = DAGWalkHelper.getInstance().taskInfoNamesCurrentChain(taskName);
+        if (chainNames.size() < 2) {
+            return buildDagInfoRedisKey(executionId);
+        }
+        return isSubTaskPartitionedByRoute(executionId) ?
+                buildSubTaskRedisKey(executionId, DAGWalkHelper.getInstance().getRootName(taskName)) :
+                buildSubTaskRedisKey(executionId, chainNames.get(chainNames.size() - 2));
+    }
+
+    /**
+     * 按分组存储时读写分组hash的附加参数: 分组hash中不存在该任务而父任务hash中存在时
+     * 说明该分组在开启前已按父任务存储, lua中改为读写父任务hash
+     */
+    private List<String> buildRouteAltArgs(String executionId, String taskName) {
+        List<String> chainNames = DAGWalkHelper.getInstance().taskInfoNamesCurrentChain(taskName);
+        if (chainNames.size() < 2 || !isSubTaskPartitionedByRoute(executionId)) {
+            return Collections.emptyList();
+        }
+        return Lists.newArrayList(ALT_KEY, buildSubTaskRedisKey(executionId, chainNames.get(chainNames.size() - 2)),
+                buildTaskNameRedisField(taskName));
+    }
+
+    /**
+     * routeName以"_" + 分组下标结尾, 任务名称以"-" + 基础任务名结尾或不含"_"
+     */
+    private boolean isRouteName(String name) {
+        return name != null && name.lastIndexOf(ReservedConstant.ROUTE_NAME_CONNECTOR) > name.lastIndexOf(ReservedConstant.TASK_NAME_CONNECTOR);
+    }
+
+    /**
+     * 返回dag描述符key, 同一批次中相同的描述符内容只追加一次到脚本参数中, 由脚本以SET NX写入
+     * 描述符需随每次写入发送: 按路由写入的redis可能变化(clientId调整、扩容或数据丢失), 不能依赖之前已写入
+     * 从redis读取的dag沿用读取时的key, 不再序列化及计算md5
+     */
+    private String serializeDagDescriptor(DAG dag, List<String> keys, List<String> argv, Set<String> descriptorKeys) {
+        String cachedDescriptorKey = dagToDescriptorKey.getIfPresent(dag);
+        if (cachedDescriptorKey != null) {
+            return cachedDescriptorKey;
+        }
+
+        String descriptor = DagStorageSerializer.serializeToStorage(dag);
+        String descriptorKey = buildDagDescriptorRedisKey(descriptor);
+        if (descriptorKeys.add(descriptorKey)) {
+            keys.add(descriptorKey);
+            argv.add(ReservedConstant.PLACEHOLDER);
+            argv.add(descriptor);
+        }
+        return descriptorKey;
+    }
+
     private String buildDagDescriptorRedisKey(String descriptor) {
         String md5 = DigestUtils.md5Hex(descriptor);
-        DateFormat dateFormat = new SimpleDateFormat("yyyyMM");
-        String time = dateFormat.format(new Date());
+        String time = LocalDate.now().format(DESCRIPTOR_MONTH_FORMATTER);
         return DAGRedisPrefix.PREFIX_DAG_DESCRIPTOR.getValue() + time + "_" + md5;
     }
 
@@ -158,4 +158,10 @@ public class DAGLocalStorage implements DAGInfoStorage, DAGContextStorage {
     public void updateDAGDescriptor(String executionId, DAG dag) {
         dagInfoCache.get(executionId).setDag(dag);
     }
+
+    protected Set<String> executionIds() {
+        Set<String> executionIds = new HashSet<>(dagInfoCache.keySet());
+        executionIds.addAll(contextCache.keySet());
+        return executionIds;
+    }
 }
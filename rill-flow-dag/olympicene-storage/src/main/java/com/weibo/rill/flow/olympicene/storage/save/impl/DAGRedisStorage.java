@@ -16,17 +16,22 @@
 
 package com.weibo.rill.flow.olympicene.storage.save.impl;
 
+import com.google.common.collect.Lists;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.LockedDAGInfo;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGContextStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage;
+import com.weibo.rill.flow.olympicene.core.runtime.DAGTraversalStorage;
+import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public class DAGRedisStorage implements DAGInfoStorage, DAGContextStorage {
+public class DAGRedisStorage implements DAGInfoStorage, DAGContextStorage, DAGTraversalStorage {
     protected DAGInfoDAO dagInfoDAO;
     protected ContextDAO contextDao;
 
@@ -40,6 +45,11 @@ public class DAGRedisStorage implements DAGInfoStorage, DAGContextStorage {
         dagInfoDAO.updateDagInfo(executionId, dagInfo);
     }
 
+    @Override
+    public void saveDAGInfos(Map<String, DAGInfo> executionIdToDAGInfo) {
+        dagInfoDAO.updateDagInfos(executionIdToDAGInfo);
+    }
+
     @Override
     public void saveTaskInfos(String executionId, Set<TaskInfo> taskInfos) {
         dagInfoDAO.saveTaskInfos(executionId, taskInfos);
@@ -75,6 +85,11 @@ public class DAGRedisStorage implements DAGInfoStorage, DAGContextStorage {
         contextDao.updateContext(executionId, context);
     }
 
+    @Override
+    public void updateContexts(Map<String, Map<String, Object>> executionIdToContext) {
+        contextDao.updateContexts(executionIdToContext);
+    }
+
     @Override
     public Map<String, Object> getContext(String executionId) {
         return contextDao.getContext(executionId, false);
@@ -109,4 +124,31 @@ public class DAGRedisStorage implements DAGInfoStorage, DAGContextStorage {
     public void updateDAGDescriptor(String executionId, DAG dag) {
         dagInfoDAO.updateDAGDescriptor(executionId, dag);
     }
+
+    @Override
+    public boolean lockedTraversalSupported(String lockName, String executionId) {
+        return true;
+    }
+
+    @Override
+    public LockedDAGInfo tryLockAndLoad(String lockName, String lockAcquirerId, int lockExpireTimeInSecond,
+                                        String executionId, Collection<String> contextFields) {
+        List<String> contextKeys = Lists.newArrayList();
+        List<String> contextArgv = Lists.newArrayList();
+        contextDao.buildContextEvalParam(executionId, contextFields, contextKeys, contextArgv);
+
+        Pair<DAGInfo, Object> dagInfoToContext = dagInfoDAO.lockAndGetDagInfo(lockName, lockAcquirerId, lockExpireTimeInSecond,
+                executionId, contextFields == null, contextKeys, contextArgv);
+        if (dagInfoToContext == null) {
+            return null;
+        }
+        Map<String, Object> context = contextDao.parseContext(executionId, contextFields, contextKeys, dagInfoToContext.getRight());
+        return new LockedDAGInfo(lockName, lockAcquirerId, executionId, dagInfoToContext.getLeft(), context);
+    }
+
+    @Override
+    public void saveTaskInfosAndUnlock(LockedDAGInfo lockedDAGInfo, Set<TaskInfo> taskInfos) {
+        dagInfoDAO.saveTaskInfosAndUnlock(lockedDAGInfo.getExecutionId(), taskInfos,
+                lockedDAGInfo.getLockName(), lockedDAGInfo.getLockAcquirerId());
+    }
 }
@@ -0,0 +1,340 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode;
+import com.weibo.rill.flow.olympicene.storage.exception.StorageException;
+import com.weibo.rill.flow.olympicene.storage.wal.WALRecord;
+import com.weibo.rill.flow.olympicene.storage.wal.WALRecordType;
+import com.weibo.rill.flow.olympicene.storage.wal.WriteAheadLog;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+/**
+ * 基于预写日志持久化的本地存储, 读操作与DAGLocalStorage一致直接访问内存, 写操作追加日志后更新内存
+ * <p>
+ * 引擎在调用saveTaskInfos之前已直接修改内存中的TaskInfo, 日志记录的是写入时复制的TaskInfo, 同一执行的日志顺序与写入调用顺序一致(按executionId分段加锁)。
+ * 内存中的对象随时可能被引擎修改, 因此快照不读取内存: 切换segment后将上一个快照与其后已关闭的segment回放到独立的存储中,
+ * 写入snapshot-{segmentId}.snap, 成功后删除更早的快照与日志segment。进程重启时调用{@link #init()}加载最新快照, 回放快照之后的日志并重建任务间的引用关系
+ * <p>
+ * 过期时间仅保存在内存中, 重启后按DAG状态重新计算
+ */
+@Slf4j
+public class DAGWALStorage extends DAGLocalStorage {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final WriteAheadLog writeAheadLog;
+    private final Striped<Lock> executionLocks = Striped.lock(256);
+    private final Map<String, Long> expireTimes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Setter
+    private int finishedReserveSeconds = 3600;
+    @Setter
+    private int unfinishedReserveSeconds = 86400;
+    @Setter
+    private int snapshotIntervalSeconds = 300;
+    @Setter
+    private int expireCheckIntervalSeconds = 10;
+
+    public DAGWALStorage(String directory) {
+        this(directory, 64 * 1024 * 1024, false);
+    }
+
+    public DAGWALStorage(String directory, int segmentSize, boolean syncOnAppend) {
+        this.directory = Paths.get(directory);
+        this.writeAheadLog = new WriteAheadLog(directory, segmentSize, syncOnAppend);
+    }
+
+    public void init() {
+        DAGLocalStorage recovered = new DAGLocalStorage();
+        long snapshotSegmentId = loadLatestSnapshot(recovered);
+        writeAheadLog.replay(snapshotSegmentId, (code, payload) -> applyRecord(recovered, code, payload));
+        long now = System.currentTimeMillis();
+        recovered.executionIds().forEach(executionId -> {
+            Optional.ofNullable(recovered.getDAGInfo(executionId)).ifPresent(dagInfo -> {
+                StorageRecordReplayer.rebuildTaskRelation(dagInfo);
+                super.saveDAGInfo(executionId, dagInfo);
+                expireTimes.put(executionId, now + reserveMillis(dagInfo));
+            });
+            Optional.ofNullable(recovered.getContext(executionId, Collections.emptyList())).filter(MapUtils::isNotEmpty)
+                    .ifPresent(context -> super.updateContext(executionId, context));
+        });
+        writeAheadLog.open();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("dag-wal-storage-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::clearExpired, expireCheckIntervalSeconds, expireCheckIntervalSeconds, TimeUnit.SECONDS);
+        log.info("dag wal storage initialized, directory:{}, executions:{}", directory, executionIds().size());
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        writeAheadLog.close();
+    }
+
+    @Override
+    public void saveDAGInfo(String executionId, DAGInfo dagInfo) {
+        WALRecord record = new WALRecord();
+        record.setExecutionId(executionId);
+        record.setDagInfo(DAGInfo.cloneToSave(dagInfo));
+        write(WALRecordType.SAVE_DAG_INFO, record, () -> {
+            super.saveDAGInfo(executionId, dagInfo);
+            expireTimes.put(executionId, System.currentTimeMillis() + reserveMillis(dagInfo));
+        });
+    }
+
+    @Override
+    public void saveTaskInfos(String executionId, Set<TaskInfo> taskInfos) {
+        if (CollectionUtils.isEmpty(taskInfos)) {
+            return;
+        }
+        WALRecord record = new WALRecord();
+        record.setExecutionId(executionId);
+        record.setTaskInfos(taskInfos.stream().map(TaskInfo::cloneToSave).toList());
+        write(WALRecordType.SAVE_TASK_INFOS, record, () -> super.saveTaskInfos(executionId, taskInfos));
+    }
+
+    @Override
+    public void updateContext(String executionId, Map<String, Object> context) {
+        WALRecord record = new WALRecord();
+        record.setExecutionId(executionId);
+        record.setContext(DagStorageSerializer.serializeHash(context));
+        write(WALRecordType.UPDATE_CONTEXT, record, () -> super.updateContext(executionId, context));
+    }
+
+    @Override
+    public void clearContext(String executionId) {
+        write(WALRecordType.CLEAR_CONTEXT, executionRecord(executionId), () -> super.clearContext(executionId));
+    }
+
+    @Override
+    public void clearDAGInfo(String executionId) {
+        write(WALRecordType.CLEAR_DAG_INFO, executionRecord(executionId), () -> {
+            super.clearDAGInfo(executionId);
+            expireTimes.remove(executionId);
+        });
+    }
+
+    /**
+     * 与redis存储一致, 到达过期时间后才删除
+     */
+    @Override
+    public void clearDAGInfo(String executionId, int expireTimeInSecond) {
+        if (expireTimeInSecond <= 0) {
+            clearDAGInfo(executionId);
+            return;
+        }
+        expireTimes.put(executionId, System.currentTimeMillis() + expireTimeInSecond * 1000L);
+    }
+
+    @Override
+    public void updateDAGDescriptor(String executionId, DAG dag) {
+        WALRecord record = executionRecord(executionId);
+        record.setDag(dag);
+        write(WALRecordType.UPDATE_DESCRIPTOR, record, () -> super.updateDAGDescriptor(executionId, dag));
+    }
+
+    /**
+     * 生成快照并删除快照之前的日志, 快照由上一个快照及已关闭的segment回放得到, 不阻塞写操作
+     */
+    public synchronized void snapshot() {
+        long segmentId = writeAheadLog.roll();
+        DAGLocalStorage compacted = new DAGLocalStorage();
+        long previousSegmentId = loadLatestSnapshot(compacted);
+        writeAheadLog.replay(previousSegmentId, segmentId, (code, payload) -> applyRecord(compacted, code, payload));
+
+        List<byte[]> payloads = Lists.newArrayList();
+        compacted.executionIds().forEach(executionId -> {
+            WALRecord record = executionRecord(executionId);
+            record.setDagInfo(compacted.getDAGInfo(executionId));
+            record.setContext(DagStorageSerializer.serializeHash(compacted.getContext(executionId, Collections.emptyList())));
+            payloads.add(DagStorageSerializer.serialize(record));
+        });
+
+        writeSnapshot(segmentId, payloads);
+        deleteSnapshotsBefore(segmentId);
+        writeAheadLog.deleteSegmentsBefore(segmentId);
+        log.info("dag wal storage snapshot succeed, segmentId:{}, executions:{}", segmentId, payloads.size());
+    }
+
+    private void write(WALRecordType type, WALRecord record, Runnable apply) {
+        byte[] payload = DagStorageSerializer.serialize(record);
+        Lock executionLock = executionLocks.get(record.getExecutionId());
+        executionLock.lock();
+        try {
+            writeAheadLog.append(type.getCode(), payload);
+            apply.run();
+        } finally {
+            executionLock.unlock();
+        }
+    }
+
+    private WALRecord executionRecord(String executionId) {
+        WALRecord record = new WALRecord();
+        record.setExecutionId(executionId);
+        return record;
+    }
+
+    private static void applyRecord(DAGLocalStorage target, byte code, byte[] payload) {
+        WALRecordType type = WALRecordType.from(code);
+        if (type == null) {
+            log.warn("unknown wal record type:{}, skip", code);
+            return;
+        }
+        WALRecord record = DagStorageSerializer.deserialize(payload, WALRecord.class);
+        String executionId = record.getExecutionId();
+        switch (type) {
+            case SNAPSHOT -> {
+                Optional.ofNullable(record.getDagInfo()).ifPresent(dagInfo -> target.saveDAGInfo(executionId, dagInfo));
+                Optional.ofNullable(record.getContext()).filter(MapUtils::isNotEmpty)
+                        .ifPresent(context -> target.updateContext(executionId, StorageRecordReplayer.deserializeContext(context)));
+            }
+            case SAVE_DAG_INFO -> target.saveDAGInfo(executionId, record.getDagInfo());
+            case SAVE_TASK_INFOS -> StorageRecordReplayer.mergeTaskInfos(target.getDAGInfo(executionId), record.getTaskInfos());
+            case UPDATE_CONTEXT -> target.updateContext(executionId, StorageRecordReplayer.deserializeContext(record.getContext()));
+            case CLEAR_CONTEXT -> target.clearContext(executionId);
+            case CLEAR_DAG_INFO -> target.clearDAGInfo(executionId);
+            case UPDATE_DESCRIPTOR -> Optional.ofNullable(target.getDAGInfo(executionId)).ifPresent(dagInfo -> dagInfo.setDag(record.getDag()));
+        }
+    }
+
+    private long reserveMillis(DAGInfo dagInfo) {
+        boolean completed = dagInfo.getDagStatus() != null && dagInfo.getDagStatus().isCompleted();
+        return (completed ? finishedReserveSeconds : unfinishedReserveSeconds) * 1000L;
+    }
+
+    private void clearExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            expireTimes.entrySet().stream()
+                    .filter(entry -> entry.getValue() <= now)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(executionId -> {
+                        clearDAGInfo(executionId);
+                        clearContext(executionId);
+                    });
+        } catch (Exception e) {
+            log.warn("clear expired dag info fails", e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.warn("dag wal storage snapshot fails", e);
+        }
+    }
+
+    private long loadLatestSnapshot(DAGLocalStorage target) {
+        List<Long> snapshotIds = listSnapshotIds();
+        if (snapshotIds.isEmpty()) {
+            return 0;
+        }
+        long segmentId = snapshotIds.get(snapshotIds.size() - 1);
+        try {
+            int count = WriteAheadLog.readRecords(ByteBuffer.wrap(Files.readAllBytes(snapshotPath(segmentId))),
+                    (code, payload) -> applyRecord(target, code, payload));
+            log.info("dag wal storage snapshot loaded, segmentId:{}, executions:{}", segmentId, count);
+            return segmentId;
+        } catch (IOException e) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "load snapshot fails: " + segmentId, e);
+        }
+    }
+
+    private void writeSnapshot(long segmentId, List<byte[]> payloads) {
+        ByteBuffer buffer = ByteBuffer.allocate(payloads.stream().mapToInt(WriteAheadLog::recordSize).sum());
+        payloads.forEach(payload -> WriteAheadLog.writeRecord(buffer, WALRecordType.SNAPSHOT.getCode(), payload));
+        buffer.flip();
+
+        Path tmpPath = directory.resolve(snapshotPath(segmentId).getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "write snapshot fails: " + segmentId, e);
+        }
+        try {
+            Files.move(tmpPath, snapshotPath(segmentId), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "move snapshot fails: " + segmentId, e);
+        }
+    }
+
+    private void deleteSnapshotsBefore(long segmentId) {
+        listSnapshotIds().stream()
+                .filter(id -> id < segmentId)
+                .forEach(id -> {
+                    try {
+                        Files.deleteIfExists(snapshotPath(id));
+                    } catch (IOException e) {
+                        log.warn("delete snapshot fails, segmentId:{}", id, e);
+                    }
+                });
+    }
+
+    private List<Long> listSnapshotIds() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Long> snapshotIds = new ArrayList<>(files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())))
+                    .toList());
+            Collections.sort(snapshotIds);
+            return snapshotIds;
+        } catch (IOException e) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "list snapshots fails", e);
+        }
+    }
+
+    private Path snapshotPath(long segmentId) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, segmentId, SNAPSHOT_SUFFIX));
+    }
+}
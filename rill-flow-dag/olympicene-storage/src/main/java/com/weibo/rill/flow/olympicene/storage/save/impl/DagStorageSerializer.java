@@ -21,6 +21,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.weibo.rill.flow.olympicene.core.exception.SerializationException;
 import com.weibo.rill.flow.olympicene.ddl.serialize.ObjectMapperFactory;
+import com.weibo.rill.flow.olympicene.storage.codec.DefaultStorageCodec;
+import com.weibo.rill.flow.olympicene.storage.codec.StorageCodec;
 import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
@@ -38,6 +40,18 @@ import java.util.stream.Collectors;
 public class DagStorageSerializer {
     private static final String TYPE_PLACEHOLDER = "@class";
     public static final ObjectMapper MAPPER = ObjectMapperFactory.getJSONMapper();
+    private static volatile StorageCodec codec = new DefaultStorageCodec();
+
+    public static StorageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * 设置运行时存储的编解码方式, 只影响新写入的数据, 已写入的数据按其自身格式解码
+     */
+    public static void setCodec(StorageCodec storageCodec) {
+        codec = storageCodec;
+    }
 
     public static byte[] serialize(Object object) {
         try {
@@ -55,9 +69,20 @@ public class DagStorageSerializer {
         }
     }
 
+    /**
+     * 写入运行时存储的值使用codec编码, 其余场景使用serializeToString
+     */
+    public static String serializeToStorage(Object object) {
+        try {
+            return codec.encode(object);
+        } catch (IOException e) {
+            throw new SerializationException(StorageErrorCode.SERIALIZATION_FAIL.getCode(), e);
+        }
+    }
+
     public static <T> T deserialize(byte[] bytes, Class<T> type) {
         try {
-            return MAPPER.readValue(bytes, type);
+            return codec.decode(bytes, type);
         } catch (IOException e) {
             throw new SerializationException(StorageErrorCode.SERIALIZATION_FAIL.getCode(), e);
         }
@@ -81,7 +106,7 @@ public class DagStorageSerializer {
 
                 String className = getString(stringByteContent.get(buildTypeKeyPrefix(field)));
                 Class<?> klass = className != null ? Class.forName(className) : Object.class;
-                map.put(field, MAPPER.readValue(value, klass));
+                map.put(field, codec.decode(value, klass));
             } catch (Exception e) {
                 log.warn("deserializeHash fails, field:{}", field, e);
                 throw new SerializationException(StorageErrorCode.SERIALIZATION_FAIL.getCode(), e);
@@ -98,7 +123,7 @@ public class DagStorageSerializer {
         Map<String, String> serializedContent = Maps.newHashMap();
         content.forEach((field, value) -> {
             try {
-                serializedContent.put(field, MAPPER.writeValueAsString(value));
+                serializedContent.put(field, codec.encode(value));
                 serializedContent.put(buildTypeKeyPrefix(field), value.getClass().getName());
             } catch (Exception e) {
                 log.warn("serializeHash fails, field:{}, value:{}", field, value, e);
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl;
+
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 首次访问时才反序列化的DAGInfo任务map
+ * <p>
+ * 任务间next/dependencies/parent关系的建立需要全部任务, 因此首次访问任一方法时整体反序列化, 之后释放原始内容
+ */
+class LazyTaskMap extends AbstractMap<String, TaskInfo> {
+    private Supplier<Map<String, TaskInfo>> loader;
+    private volatile Map<String, TaskInfo> tasks;
+
+    LazyTaskMap(Supplier<Map<String, TaskInfo>> loader) {
+        this.loader = loader;
+    }
+
+    boolean isLoaded() {
+        return tasks != null;
+    }
+
+    private Map<String, TaskInfo> tasks() {
+        Map<String, TaskInfo> ret = tasks;
+        if (ret != null) {
+            return ret;
+        }
+
+        synchronized (this) {
+            if (tasks == null) {
+                tasks = loader.get();
+                loader = null;
+            }
+            return tasks;
+        }
+    }
+
+    @Override
+    public Set<Entry<String, TaskInfo>> entrySet() {
+        return tasks().entrySet();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return tasks().keySet();
+    }
+
+    @Override
+    public Collection<TaskInfo> values() {
+        return tasks().values();
+    }
+
+    @Override
+    public int size() {
+        return tasks().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tasks().isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return tasks().containsKey(key);
+    }
+
+    @Override
+    public TaskInfo get(Object key) {
+        return tasks().get(key);
+    }
+
+    @Override
+    public TaskInfo put(String key, TaskInfo value) {
+        return tasks().put(key, value);
+    }
+
+    @Override
+    public TaskInfo remove(Object key) {
+        return tasks().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends TaskInfo> m) {
+        tasks().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        tasks().clear();
+    }
+
+    /**
+     * 日志中打印DAGInfo时不触发反序列化
+     */
+    @Override
+    public String toString() {
+        Map<String, TaskInfo> ret = tasks;
+        return ret != null ? ret.toString() : "{unloaded}";
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super TaskInfo> action) {
+        tasks().forEach(action);
+    }
+}
@@ -28,17 +28,25 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * 进程内锁, 同一lockName在被持有或等待期间始终对应同一把锁, 无人使用后才从map中移除
+ */
 @Slf4j
 public class LocalStorageProcedure implements DAGStorageProcedure {
-    private final Map<String, ReadWriteLock> lockers = new ConcurrentHashMap<>();
+    private final Map<String, LockEntry> lockers = new ConcurrentHashMap<>();
 
     @Override
     public void lockAndRun(String lockName, Runnable runnable) {
-        Lock lock = null;
+        LockEntry lockEntry = lockers.compute(lockName, (key, entry) -> {
+            LockEntry current = entry == null ? new LockEntry() : entry;
+            current.users++;
+            return current;
+        });
+        Lock lock = lockEntry.lock.writeLock();
+        boolean locked = false;
         try {
-            ReadWriteLock dagInfoLock = lockers.computeIfAbsent(lockName, it -> new ReentrantReadWriteLock());
-            lock = dagInfoLock.writeLock();
-            if (tryLock(lockName, lock)) {
+            locked = tryLock(lockName, lock);
+            if (locked) {
                 log.info("get lock lockName:{}", lockName);
                 runnable.run();
             } else {
@@ -46,14 +54,14 @@ public class LocalStorageProcedure implements DAGStorageProcedure {
                 throw new StorageException(StorageErrorCode.LOCK_TIMEOUT.getCode(), "lock fails");
             }
         } finally {
-            lockers.remove(lockName);
-            if (lock != null) {
+            if (locked) {
                 try {
                     lock.unlock();
                 } catch (Exception e) {
                     log.warn("unlock {} failed. ", lockName, e);
                 }
             }
+            lockers.computeIfPresent(lockName, (key, entry) -> --entry.users == 0 ? null : entry);
         }
     }
 
@@ -65,4 +73,10 @@ public class LocalStorageProcedure implements DAGStorageProcedure {
             return false;
         }
     }
+
+    private static class LockEntry {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        // 仅在ConcurrentHashMap.compute中读写
+        private int users = 0;
+    }
 }
@@ -16,19 +16,35 @@
 
 package com.weibo.rill.flow.olympicene.storage.save.impl;
 
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
 import com.weibo.rill.flow.olympicene.core.lock.LockerKey;
-import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure;
+import com.weibo.rill.flow.olympicene.core.model.dag.LockedDAGInfo;
+import com.weibo.rill.flow.olympicene.core.runtime.DAGTraversalStorage;
+import com.weibo.rill.flow.olympicene.core.runtime.LockedTraversalStorageProcedure;
 import com.weibo.rill.flow.olympicene.storage.redis.lock.Locker;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collection;
+import java.util.Set;
 
-public class RedisStorageProcedure implements DAGStorageProcedure {
+@Slf4j
+public class RedisStorageProcedure implements LockedTraversalStorageProcedure {
     private final String instanceId;
     private final Locker locker;
 
     @Setter
     private int lockExpireTimeInSecond = 300;
 
+    @Setter
+    private long lockTimeout = 10 * 1000L;
+
+    /**
+     * 不为null时遍历可将加锁与读取、保存与释放锁分别合并为一次存储交互
+     */
+    @Setter
+    private DAGTraversalStorage traversalStorage;
+
     public RedisStorageProcedure(String instanceId, Locker locker) {
         this.instanceId = instanceId;
         this.locker = locker;
@@ -44,4 +60,55 @@ public class RedisStorageProcedure implements DAGStorageProcedure {
             locker.unlock(lockName, lockAcquirerId);
         }
     }
+
+    @Override
+    public LockedDAGInfo lockAndLoad(String lockName, String executionId, Collection<String> contextFields) {
+        DAGTraversalStorage storage = traversalStorage;
+        if (storage == null || !storage.lockedTraversalSupported(lockName, executionId)) {
+            return null;
+        }
+
+        String lockAcquirerId = LockerKey.getLockId(instanceId);
+        long startTime = System.currentTimeMillis();
+        int count = 0;
+        try {
+            while (true) {
+                count++;
+                LockedDAGInfo lockedDAGInfo = storage.tryLockAndLoad(lockName, lockAcquirerId, lockExpireTimeInSecond, executionId, contextFields);
+                if (lockedDAGInfo != null) {
+                    log.debug("lockAndLoad {} value {} success in {} times, cost {} ms",
+                            lockName, lockAcquirerId, count, System.currentTimeMillis() - startTime);
+                    return lockedDAGInfo;
+                }
+                long elapsed = System.currentTimeMillis() - startTime;
+                if (elapsed > lockTimeout) {
+                    throw new RuntimeException("try " + count + " times lock " + lockName + " timeout " + elapsed);
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        } catch (RuntimeException e) {
+            // 加锁成功但读取失败时锁已被持有, 需释放
+            locker.unlock(lockName, lockAcquirerId);
+            throw e;
+        }
+    }
+
+    @Override
+    public void saveTaskInfosAndUnlock(LockedDAGInfo lockedDAGInfo, Set<TaskInfo> taskInfos) {
+        try {
+            traversalStorage.saveTaskInfosAndUnlock(lockedDAGInfo, taskInfos);
+        } catch (RuntimeException e) {
+            unlock(lockedDAGInfo);
+            throw e;
+        }
+    }
+
+    @Override
+    public void unlock(LockedDAGInfo lockedDAGInfo) {
+        locker.unlock(lockedDAGInfo.getLockName(), lockedDAGInfo.getLockAcquirerId());
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl;
+
+import com.google.common.collect.Lists;
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
+import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
+import com.weibo.rill.flow.olympicene.core.model.task.SubGroupProgress;
+import com.weibo.rill.flow.olympicene.core.runtime.SubGroupTracker;
+import com.weibo.rill.flow.olympicene.storage.constant.DAGRedisPrefix;
+import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
+import com.weibo.rill.flow.olympicene.storage.script.RedisScriptManager;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 基于redis的分组计数器
+ * 1. 分组计数
+ *    类型: hash
+ *    key: sub_group_counter_ + executionId + _ + 父任务名称
+ *    field                | value
+ *    "completed"          | 已完成分组数
+ *    "failed"             | 失败分组数
+ *    "running"            | 运行中分组数
+ *    "done_" + 分组下标     | 分组完成状态, 用于忽略重复的完成通知
+ * 2. 待运行分组队列
+ *    类型: list
+ *    key: sub_group_ready_ + executionId + _ + 父任务名称
+ * 分组完成时在同一脚本中更新计数、写入父任务的分组状态field并取出下一个待运行分组
+ * </pre>
+ *
+ * @see SubGroupFields
+ */
+@Slf4j
+public class RedisSubGroupTracker implements SubGroupTracker {
+    private final RedisClient redisClient;
+    private final int expireTimeInSecond;
+
+    public RedisSubGroupTracker(RedisClient redisClient) {
+        this(redisClient, 2 * 24 * 3600);
+    }
+
+    public RedisSubGroupTracker(RedisClient redisClient, int expireTimeInSecond) {
+        this.redisClient = redisClient;
+        this.expireTimeInSecond = expireTimeInSecond;
+    }
+
+    @Override
+    public void init(String executionId, String taskInfoName, Map<String, TaskStatus> subGroupIndexToStatus) {
+        if (MapUtils.isEmpty(subGroupIndexToStatus)) {
+            return;
+        }
+
+        long runningCount = subGroupIndexToStatus.values().stream()
+                .filter(status -> status == TaskStatus.RUNNING || status == TaskStatus.STASHED)
+                .count();
+        List<String> readyGroupIndexes = subGroupIndexToStatus.entrySet().stream()
+                .filter(entry -> entry.getValue() == TaskStatus.READY)
+                .map(Map.Entry::getKey)
+                .sorted(Comparator.comparing(String::length).thenComparing(Comparator.naturalOrder()))
+                .toList();
+        log.info("init sub group counter executionId:{}, taskInfoName:{}, running:{}, ready:{}",
+                executionId, taskInfoName, runningCount, readyGroupIndexes.size());
+
+        List<String> argv = Lists.newArrayList(String.valueOf(expireTimeInSecond), String.valueOf(runningCount));
+        argv.addAll(readyGroupIndexes);
+        redisClient.eval(RedisScriptManager.subGroupInitScript(), executionId,
+                Lists.newArrayList(buildCounterKey(executionId, taskInfoName), buildReadyQueueKey(executionId, taskInfoName)), argv);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public SubGroupProgress completeGroup(String executionId, String taskInfoName, String groupIndex, TaskStatus groupStatus) {
+        List<String> keys = Lists.newArrayList(buildCounterKey(executionId, taskInfoName), buildReadyQueueKey(executionId, taskInfoName));
+        keys.addAll(buildTaskInfoRedisKeys(executionId, taskInfoName));
+        List<String> argv = Lists.newArrayList(groupIndex, groupStatus.name(), groupStatus.isFailed() ? "1" : "0",
+                SubGroupFields.buildStatusFieldPrefix(taskInfoName), DAGInfoDAO.TASK_FIELD_PREFIX + taskInfoName);
+        List<Object> ret = (List<Object>) redisClient.eval(RedisScriptManager.subGroupCompleteScript(), executionId, keys, argv);
+        if (CollectionUtils.isEmpty(ret) || ret.size() < 6) {
+            return null;
+        }
+
+        String nextGroupIndex = getString(ret.get(5));
+        SubGroupProgress progress = SubGroupProgress.builder()
+                .duplicated(getInt(ret.get(0)) == 1)
+                .completedCount(getInt(ret.get(1)))
+                .failedCount(getInt(ret.get(2)))
+                .runningCount(getInt(ret.get(3)))
+                .readyCount(getInt(ret.get(4)))
+                .nextGroupIndex(StringUtils.isEmpty(nextGroupIndex) ? null : nextGroupIndex)
+                .build();
+        log.info("completeGroup executionId:{}, taskInfoName:{}, groupIndex:{}, progress:{}", executionId, taskInfoName, groupIndex, progress);
+        return progress;
+    }
+
+    @Override
+    public void clear(String executionId, String taskInfoName) {
+        log.info("clear sub group counter executionId:{}, taskInfoName:{}", executionId, taskInfoName);
+        List<String> expireArgs = Lists.newArrayList("0");
+        redisClient.eval(RedisScriptManager.getRedisExpire(), executionId,
+                Lists.newArrayList(buildCounterKey(executionId, taskInfoName)), expireArgs);
+        redisClient.eval(RedisScriptManager.getRedisExpire(), executionId,
+                Lists.newArrayList(buildReadyQueueKey(executionId, taskInfoName)), expireArgs);
+    }
+
+    private static int getInt(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        String stringValue = getString(value);
+        return StringUtils.isNumeric(stringValue) ? Integer.parseInt(stringValue) : 0;
+    }
+
+    private static String getString(Object value) {
+        if (value instanceof byte[] bytes) {
+            return DagStorageSerializer.getString(bytes);
+        }
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private String buildCounterKey(String executionId, String taskInfoName) {
+        return DAGRedisPrefix.PREFIX_SUB_GROUP_COUNTER.getValue() + executionId + "_" + taskInfoName;
+    }
+
+    private String buildReadyQueueKey(String executionId, String taskInfoName) {
+        return DAGRedisPrefix.PREFIX_SUB_GROUP_READY.getValue() + executionId + "_" + taskInfoName;
+    }
+
+    /**
+     * 与DAGInfoDAO一致: 祖先任务存储在DAGInfo中, 其余任务存储在所在分组或父任务的子任务hash中
+     * 脚本中优先使用存在该任务的分组hash
+     */
+    private List<String> buildTaskInfoRedisKeys(String executionId, String taskInfoName) {
+        List<String> chainNames = DAGWalkHelper.getInstance().taskInfoNamesCurrentChain(taskInfoName);
+        if (chainNames.size() < 2) {
+            return Lists.newArrayList(DAGRedisPrefix.PREFIX_DAG_INFO.getValue() + executionId);
+        }
+        String subTaskPrefix = DAGRedisPrefix.PREFIX_SUB_TASK.getValue() + executionId + "_";
+        return Lists.newArrayList(subTaskPrefix + DAGWalkHelper.getInstance().getRootName(taskInfoName),
+                subTaskPrefix + chainNames.get(chainNames.size() - 2));
+    }
+}
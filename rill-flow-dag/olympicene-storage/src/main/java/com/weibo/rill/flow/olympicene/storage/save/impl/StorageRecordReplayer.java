@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.weibo.rill.flow.interfaces.model.task.BaseTask;
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.constant.SystemConfig;
+import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
+import com.weibo.rill.flow.olympicene.core.helper.TaskInfoMaker;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 按顺序回放存储记录(WALRecord)时共用的逻辑, 供预写日志存储及事件流存储使用
+ */
+@Slf4j
+final class StorageRecordReplayer {
+    private StorageRecordReplayer() {
+    }
+
+    /**
+     * 将serializeHash的结果还原为上下文
+     */
+    static Map<String, Object> deserializeContext(Map<String, String> context) {
+        List<byte[]> content = Lists.newArrayList();
+        context.forEach((field, value) -> {
+            content.add(DagStorageSerializer.getBytes(field));
+            content.add(DagStorageSerializer.getBytes(value));
+        });
+        return DagStorageSerializer.deserializeHash(content);
+    }
+
+    /**
+     * 运行时saveTaskInfos传入的是内存中对象的引用, 回放时需将其合并到对应的父任务下
+     */
+    static void mergeTaskInfos(DAGInfo dagInfo, List<TaskInfo> taskInfos) {
+        if (dagInfo == null || CollectionUtils.isEmpty(taskInfos)) {
+            return;
+        }
+        taskInfos.forEach(taskInfo -> {
+            List<String> chainNames = DAGWalkHelper.getInstance().taskInfoNamesCurrentChain(taskInfo.getName());
+            Map<String, TaskInfo> siblings = dagInfo.getTasks();
+            if (chainNames.size() > 1) {
+                TaskInfo parent = DAGWalkHelper.getInstance().getTaskInfoByName(dagInfo, chainNames.get(chainNames.size() - 2));
+                if (parent == null) {
+                    log.warn("merge task info fails, parent not found, executionId:{}, taskName:{}", dagInfo.getExecutionId(), taskInfo.getName());
+                    return;
+                }
+                if (parent.getChildren() == null) {
+                    parent.setChildren(new LinkedHashMap<>());
+                }
+                siblings = parent.getChildren();
+            }
+            TaskInfo current = siblings.get(taskInfo.getName());
+            if (current == null) {
+                siblings.put(taskInfo.getName(), taskInfo);
+            } else {
+                current.update(taskInfo);
+            }
+        });
+    }
+
+    /**
+     * 反序列化得到的taskInfo不含任务定义及任务间引用, 需按DAG描述符重建
+     */
+    static void rebuildTaskRelation(DAGInfo dagInfo) {
+        Map<String, BaseTask> baseTaskMap = Maps.newHashMap();
+        Optional.ofNullable(dagInfo.getDag()).map(DAG::getTasks).ifPresent(baseTasks -> collectBaseTask(1, baseTasks, baseTaskMap));
+        doRebuildTaskRelation(1, dagInfo.getTasks(), null, baseTaskMap);
+    }
+
+    private static void collectBaseTask(int depth, List<BaseTask> baseTasks, Map<String, BaseTask> baseTaskMap) {
+        if (CollectionUtils.isEmpty(baseTasks) || depth > SystemConfig.getTaskMaxDepth()) {
+            return;
+        }
+        baseTasks.forEach(baseTask -> {
+            baseTaskMap.put(baseTask.getName(), baseTask);
+            collectBaseTask(depth + 1, baseTask.subTasks(), baseTaskMap);
+        });
+    }
+
+    private static void doRebuildTaskRelation(int depth, Map<String, TaskInfo> taskInfoMap, TaskInfo parent, Map<String, BaseTask> baseTaskMap) {
+        if (depth > SystemConfig.getTaskMaxDepth() || MapUtils.isEmpty(taskInfoMap)) {
+            return;
+        }
+        taskInfoMap.values().forEach(taskInfo -> {
+            taskInfo.setTask(baseTaskMap.get(DAGWalkHelper.getInstance().getBaseTaskName(taskInfo)));
+            taskInfo.setParent(parent);
+            taskInfo.setNext(new LinkedList<>());
+            taskInfo.setDependencies(new LinkedList<>());
+        });
+        TaskInfoMaker.getMaker().appendNextAndDependencyTask(taskInfoMap);
+        taskInfoMap.values().forEach(taskInfo -> doRebuildTaskRelation(depth + 1, taskInfo.getChildren(), taskInfo, baseTaskMap));
+    }
+}
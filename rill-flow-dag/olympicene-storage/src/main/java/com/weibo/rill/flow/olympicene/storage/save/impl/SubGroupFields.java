@@ -0,0 +1,287 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
+import com.weibo.rill.flow.olympicene.core.constant.ReservedConstant;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 任务分组状态(subGroupIndexToStatus/subGroupIndexToIdentity)的分字段存储
+ * <pre>
+ * 分组信息与taskInfo存储在同一个hash中, 每个分组单独一个field, 分组完成时只需更新一个field
+ * field                          | value
+ * "!status#" + 任务名 + "#" + 下标   | 分组状态, 如 SUCCEED
+ * "!identity#" + 任务名 + "#" + 下标 | 分组标识
+ * taskInfo本身序列化时分组map置为空map
+ * </pre>
+ * 写入时只写入TaskInfo记录的变更分组, 分组map被整体替换时先删除该任务已有的分组field再全量写入
+ */
+class SubGroupFields {
+    static final String FIELD_PREFIX = "!";
+    static final String DEL_PREFIX = "_del_prefix_";
+    static final String FIELD_PREFIX_QUERY = "_field_prefix_";
+    private static final String STATUS = FIELD_PREFIX + "status";
+    private static final String IDENTITY = FIELD_PREFIX + "identity";
+    private static final String SEPARATOR = "#";
+
+    private final Map<String, List<String>> keyToDeleteArgs = new LinkedHashMap<>();
+    private final Map<String, List<String>> keyToFieldArgs = new LinkedHashMap<>();
+    private final Map<String, String> keyToTaskName = Maps.newHashMap();
+    private final Map<TaskInfo, Set<String>> persistedGroupIndexes = new IdentityHashMap<>();
+
+    /**
+     * 收集任务及其子任务的分组变更
+     *
+     * @param depth           与DAGInfoDAO.getSubTasks一致, 超过最大深度的子任务随父任务整体序列化
+     * @param redisKeyBuilder taskInfo所在的hash
+     */
+    void collect(int depth, int maxDepth, Map<String, TaskInfo> tasks, Function<TaskInfo, String> redisKeyBuilder) {
+        if (MapUtils.isEmpty(tasks)) {
+            return;
+        }
+
+        tasks.values().stream().filter(Objects::nonNull).forEach(taskInfo -> {
+            collect(taskInfo, redisKeyBuilder.apply(taskInfo));
+            if (depth <= maxDepth && MapUtils.isNotEmpty(taskInfo.getChildren())) {
+                collect(depth + 1, maxDepth, taskInfo.getChildren(), redisKeyBuilder);
+            }
+        });
+    }
+
+    private void collect(TaskInfo taskInfo, String redisKey) {
+        String taskName = taskInfo.getName();
+        Map<String, TaskStatus> indexToStatus = taskInfo.getSubGroupIndexToStatus();
+        Map<String, String> indexToIdentity = taskInfo.getSubGroupIndexToIdentity();
+
+        Set<String> groupIndexes = new HashSet<>(taskInfo.getChangedSubGroupIndexes());
+        if (taskInfo.isSubGroupsReplaced()) {
+            keyToTaskName.putIfAbsent(redisKey, taskName);
+            List<String> deleteArgs = keyToDeleteArgs.computeIfAbsent(redisKey, key -> Lists.newArrayList());
+            deleteArgs.add(DEL_PREFIX);
+            deleteArgs.add(buildFieldPrefix(STATUS, taskName));
+            deleteArgs.add(DEL_PREFIX);
+            deleteArgs.add(buildFieldPrefix(IDENTITY, taskName));
+            Optional.ofNullable(indexToStatus).map(Map::keySet).ifPresent(groupIndexes::addAll);
+            Optional.ofNullable(indexToIdentity).map(Map::keySet).ifPresent(groupIndexes::addAll);
+        }
+        persistedGroupIndexes.put(taskInfo, groupIndexes);
+        if (groupIndexes.isEmpty()) {
+            return;
+        }
+
+        keyToTaskName.putIfAbsent(redisKey, taskName);
+        List<String> fieldArgs = keyToFieldArgs.computeIfAbsent(redisKey, key -> Lists.newArrayList());
+        groupIndexes.forEach(groupIndex -> {
+            Optional.ofNullable(indexToStatus).map(it -> it.get(groupIndex)).ifPresent(status -> {
+                fieldArgs.add(buildFieldPrefix(STATUS, taskName) + groupIndex);
+                fieldArgs.add(status.name());
+            });
+            Optional.ofNullable(indexToIdentity).map(it -> it.get(groupIndex)).ifPresent(identity -> {
+                fieldArgs.add(buildFieldPrefix(IDENTITY, taskName) + groupIndex);
+                fieldArgs.add(identity);
+            });
+        });
+    }
+
+    /**
+     * 需紧跟在redisKey对应的_placeholder_之后
+     */
+    List<String> pollDeleteArgs(String redisKey) {
+        return Optional.ofNullable(keyToDeleteArgs.remove(redisKey)).orElse(Collections.emptyList());
+    }
+
+    List<String> pollFieldArgs(String redisKey) {
+        return Optional.ofNullable(keyToFieldArgs.remove(redisKey)).orElse(Collections.emptyList());
+    }
+
+    /**
+     * 未随taskInfo写入的key单独写入
+     *
+     * @param altArgsBuilder 根据key中的任务名称构建需放在删除参数之前的备选key参数
+     */
+    void appendRemaining(List<String> keys, List<String> argv, Function<String, List<String>> altArgsBuilder) {
+        Set<String> redisKeys = new LinkedHashSet<>(keyToDeleteArgs.keySet());
+        redisKeys.addAll(keyToFieldArgs.keySet());
+        redisKeys.forEach(redisKey -> {
+            List<String> deleteArgs = pollDeleteArgs(redisKey);
+            List<String> fieldArgs = pollFieldArgs(redisKey);
+            keys.add(redisKey);
+            argv.add(ReservedConstant.PLACEHOLDER);
+            argv.addAll(altArgsBuilder.apply(keyToTaskName.get(redisKey)));
+            argv.addAll(deleteArgs);
+            argv.addAll(fieldArgs);
+        });
+    }
+
+    /**
+     * 写入成功后清除已持久化的变更记录
+     */
+    void clearChanges() {
+        persistedGroupIndexes.forEach(TaskInfo::clearSubGroupChanges);
+    }
+
+    // ------------------------------------------------------
+
+    /**
+     * 待序列化的taskInfo副本中分组map置为空map, 分组信息只通过分组field存储
+     */
+    static void detachGroupMaps(int depth, int maxDepth, Map<String, TaskInfo> clonedTasks) {
+        if (MapUtils.isEmpty(clonedTasks)) {
+            return;
+        }
+
+        clonedTasks.values().stream().filter(Objects::nonNull).forEach(taskInfo -> {
+            if (taskInfo.getSubGroupIndexToStatus() != null) {
+                taskInfo.setSubGroupIndexToStatus(new LinkedHashMap<>());
+            }
+            if (taskInfo.getSubGroupIndexToIdentity() != null) {
+                taskInfo.setSubGroupIndexToIdentity(new LinkedHashMap<>());
+            }
+            if (depth <= maxDepth) {
+                detachGroupMaps(depth + 1, maxDepth, taskInfo.getChildren());
+            }
+        });
+    }
+
+    /**
+     * 分组状态field前缀, 拼接分组下标即为field
+     */
+    static String buildStatusFieldPrefix(String taskName) {
+        return buildFieldPrefix(STATUS, taskName);
+    }
+
+    static boolean isSubGroupField(String field) {
+        return field != null && field.startsWith(FIELD_PREFIX);
+    }
+
+    /**
+     * 查询单个任务分组field的lua匹配前缀
+     */
+    static List<String> buildTaskQueryPrefixes(String taskName) {
+        String escapedTaskName = taskName.replaceAll(ReservedConstant.TASK_NAME_CONNECTOR, "%" + ReservedConstant.TASK_NAME_CONNECTOR);
+        return Lists.newArrayList(buildFieldPrefix(STATUS, escapedTaskName), buildFieldPrefix(IDENTITY, escapedTaskName));
+    }
+
+    /**
+     * 查询子任务分组field的lua匹配前缀
+     *
+     * @param subTaskPrefix 子任务taskInfo field的lua匹配前缀, 以"#"开头
+     */
+    static List<String> buildSubTaskQueryPrefixes(String subTaskPrefix) {
+        return Lists.newArrayList(STATUS + subTaskPrefix, IDENTITY + subTaskPrefix);
+    }
+
+    /**
+     * 从hash内容中取出分组field
+     *
+     * @return 去除分组field后的hash内容
+     */
+    static List<byte[]> extract(List<byte[]> content, Map<String, Map<String, String>> taskNameToStatuses,
+                                Map<String, Map<String, String>> taskNameToIdentities) {
+        if (content == null) {
+            return null;
+        }
+
+        List<byte[]> ret = new ArrayList<>(content.size());
+        for (int i = 0; i + 1 < content.size(); i += 2) {
+            String field = DagStorageSerializer.getString(content.get(i));
+            if (!isSubGroupField(field)) {
+                ret.add(content.get(i));
+                ret.add(content.get(i + 1));
+                continue;
+            }
+            parseField(field, DagStorageSerializer.getString(content.get(i + 1)), taskNameToStatuses, taskNameToIdentities);
+        }
+        return ret;
+    }
+
+    private static void parseField(String field, String value, Map<String, Map<String, String>> taskNameToStatuses,
+                                   Map<String, Map<String, String>> taskNameToIdentities) {
+        int typeEnd = field.indexOf(SEPARATOR);
+        int indexStart = field.lastIndexOf(SEPARATOR);
+        if (value == null || typeEnd < 0 || indexStart <= typeEnd) {
+            return;
+        }
+
+        String type = field.substring(0, typeEnd);
+        String taskName = field.substring(typeEnd + 1, indexStart);
+        String groupIndex = field.substring(indexStart + 1);
+        if (STATUS.equals(type)) {
+            taskNameToStatuses.computeIfAbsent(taskName, key -> Maps.newHashMap()).put(groupIndex, value);
+        } else if (IDENTITY.equals(type)) {
+            taskNameToIdentities.computeIfAbsent(taskName, key -> Maps.newHashMap()).put(groupIndex, value);
+        }
+    }
+
+    /**
+     * 将分组field合并到taskInfo
+     * 旧数据的分组信息序列化在taskInfo中, 保留替换标记以便下次写入时迁移为分字段存储
+     */
+    static void apply(TaskInfo taskInfo, Map<String, String> statuses, Map<String, String> identities) {
+        boolean legacy = MapUtils.isNotEmpty(taskInfo.getSubGroupIndexToStatus())
+                || MapUtils.isNotEmpty(taskInfo.getSubGroupIndexToIdentity());
+
+        if (MapUtils.isNotEmpty(statuses)) {
+            Map<String, TaskStatus> indexToStatus = Optional.ofNullable(taskInfo.getSubGroupIndexToStatus()).orElseGet(LinkedHashMap::new);
+            sortedGroupIndexes(statuses.keySet()).forEach(groupIndex -> indexToStatus.put(groupIndex, TaskStatus.valueOf(statuses.get(groupIndex))));
+            taskInfo.setSubGroupIndexToStatus(indexToStatus);
+        }
+        if (MapUtils.isNotEmpty(identities)) {
+            Map<String, String> indexToIdentity = Optional.ofNullable(taskInfo.getSubGroupIndexToIdentity()).orElseGet(LinkedHashMap::new);
+            sortedGroupIndexes(identities.keySet()).forEach(groupIndex -> indexToIdentity.put(groupIndex, identities.get(groupIndex)));
+            taskInfo.setSubGroupIndexToIdentity(indexToIdentity);
+        }
+
+        if (!legacy) {
+            taskInfo.clearSubGroupChanges(Collections.emptySet());
+        }
+    }
+
+    /**
+     * 按名称将分组field合并到任务树中的各taskInfo
+     */
+    static void applyAll(int depth, int maxDepth, Map<String, TaskInfo> tasks, Map<String, Map<String, String>> taskNameToStatuses,
+                         Map<String, Map<String, String>> taskNameToIdentities) {
+        if (depth > maxDepth + 1 || MapUtils.isEmpty(tasks)) {
+            return;
+        }
+
+        tasks.values().stream().filter(Objects::nonNull).forEach(taskInfo -> {
+            apply(taskInfo, taskNameToStatuses.get(taskInfo.getName()), taskNameToIdentities.get(taskInfo.getName()));
+            applyAll(depth + 1, maxDepth, taskInfo.getChildren(), taskNameToStatuses, taskNameToIdentities);
+        });
+    }
+
+    private static List<String> sortedGroupIndexes(Collection<String> groupIndexes) {
+        return groupIndexes.stream()
+                .sorted(Comparator.comparing((String groupIndex) -> StringUtils.isNumeric(groupIndex) ? groupIndex.length() : Integer.MAX_VALUE)
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList();
+    }
+
+    private static String buildFieldPrefix(String type, String taskName) {
+        return type + SEPARATOR + taskName + SEPARATOR;
+    }
+}
@@ -30,6 +30,19 @@ public class RedisScriptManager {
     private static final String DAG_INFO_SET;
     private static final String DAG_INFO_GET;
     private static final String DAG_INFO_GET_BY_FIELD;
+    private static final String SUB_GROUP_INIT;
+    private static final String SUB_GROUP_COMPLETE;
+    private static final String DAG_EVENT_APPEND;
+    private static final String DAG_EVENT_GET;
+    private static final String DAG_EVENT_COMPACT;
+    private static final String CONTEXT_BLOB_ATTACH;
+    private static final String CONTEXT_BLOB_DETACH;
+    private static final String BLOB_REF_INCR;
+    private static final String BLOB_REF_DECR;
+    private static final String BLOB_RELEASE_POP;
+    private static final String BLOB_DELETE_FINISH;
+    private static final String DAG_TRAVERSAL_LOCK_AND_LOAD;
+    private static final String DAG_TRAVERSAL_SAVE_AND_UNLOCK;
 
     static {
         try {
@@ -40,6 +53,28 @@ public class RedisScriptManager {
             DAG_INFO_SET = ResourceLoader.loadResourceAsText("lua/dag_info_set.lua");
             DAG_INFO_GET = ResourceLoader.loadResourceAsText("lua/dag_info_get.lua");
             DAG_INFO_GET_BY_FIELD = ResourceLoader.loadResourceAsText("lua/dag_info_get_by_field.lua");
+            SUB_GROUP_INIT = ResourceLoader.loadResourceAsText("lua/sub_group_init.lua");
+            SUB_GROUP_COMPLETE = ResourceLoader.loadResourceAsText("lua/sub_group_complete.lua");
+            DAG_EVENT_APPEND = ResourceLoader.loadResourceAsText("lua/dag_event_append.lua");
+            DAG_EVENT_GET = ResourceLoader.loadResourceAsText("lua/dag_event_get.lua");
+            DAG_EVENT_COMPACT = ResourceLoader.loadResourceAsText("lua/dag_event_compact.lua");
+            CONTEXT_BLOB_ATTACH = ResourceLoader.loadResourceAsText("lua/context_blob_attach.lua");
+            CONTEXT_BLOB_DETACH = ResourceLoader.loadResourceAsText("lua/context_blob_detach.lua");
+            BLOB_REF_INCR = ResourceLoader.loadResourceAsText("lua/blob_ref_incr.lua");
+            BLOB_REF_DECR = ResourceLoader.loadResourceAsText("lua/blob_ref_decr.lua");
+            BLOB_RELEASE_POP = ResourceLoader.loadResourceAsText("lua/blob_release_pop.lua");
+            BLOB_DELETE_FINISH = ResourceLoader.loadResourceAsText("lua/blob_delete_finish.lua");
+
+            String redisLock = ResourceLoader.loadResourceAsText("lua/redis_lock.lua");
+            String redisUnlock = ResourceLoader.loadResourceAsText("lua/redis_unlock.lua");
+            DAG_TRAVERSAL_LOCK_AND_LOAD = asFunction("redis_lock", redisLock)
+                    + asFunction("dag_info_get", DAG_INFO_GET)
+                    + asFunction("redis_get", REDIS_GET)
+                    + asFunction("redis_get_by_field_and_key", REDIS_GET_BY_FIELD_AND_KEY)
+                    + ResourceLoader.loadResourceAsText("lua/dag_traversal_lock_and_load.lua");
+            DAG_TRAVERSAL_SAVE_AND_UNLOCK = asFunction("dag_info_set", DAG_INFO_SET)
+                    + asFunction("redis_unlock", redisUnlock)
+                    + ResourceLoader.loadResourceAsText("lua/dag_traversal_save_and_unlock.lua");
         } catch (IOException e) {
             throw new StorageException(StorageErrorCode.RESOURCE_NOT_FOUND.getCode(), StorageErrorCode.RESOURCE_NOT_FOUND.getMessage());
         }
@@ -73,4 +108,63 @@ public class RedisScriptManager {
         return DAG_INFO_GET_BY_FIELD;
     }
 
+    public static String subGroupInitScript() {
+        return SUB_GROUP_INIT;
+    }
+
+    public static String subGroupCompleteScript() {
+        return SUB_GROUP_COMPLETE;
+    }
+
+    public static String dagEventAppendScript() {
+        return DAG_EVENT_APPEND;
+    }
+
+    public static String dagEventGetScript() {
+        return DAG_EVENT_GET;
+    }
+
+    public static String dagEventCompactScript() {
+        return DAG_EVENT_COMPACT;
+    }
+
+    public static String contextBlobAttachScript() {
+        return CONTEXT_BLOB_ATTACH;
+    }
+
+    public static String contextBlobDetachScript() {
+        return CONTEXT_BLOB_DETACH;
+    }
+
+    public static String blobRefIncrScript() {
+        return BLOB_REF_INCR;
+    }
+
+    public static String blobRefDecrScript() {
+        return BLOB_REF_DECR;
+    }
+
+    public static String blobReleasePopScript() {
+        return BLOB_RELEASE_POP;
+    }
+
+    public static String blobDeleteFinishScript() {
+        return BLOB_DELETE_FINISH;
+    }
+
+    public static String dagTraversalLockAndLoadScript() {
+        return DAG_TRAVERSAL_LOCK_AND_LOAD;
+    }
+
+    public static String dagTraversalSaveAndUnlockScript() {
+        return DAG_TRAVERSAL_SAVE_AND_UNLOCK;
+    }
+
+    /**
+     * 将已有脚本包装为lua函数, 组合脚本在一次eval中复用其逻辑
+     */
+    private static String asFunction(String functionName, String script) {
+        return "local function " + functionName + "(KEYS, ARGV)\n" + script + "\nend\n";
+    }
+
 }
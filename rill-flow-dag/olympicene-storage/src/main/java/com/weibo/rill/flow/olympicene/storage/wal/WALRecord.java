@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.wal;
+
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预写日志中一条记录的内容, 按记录类型只填充需要的字段
+ * <p>
+ * context使用DagStorageSerializer.serializeHash序列化, 保留每个字段值的类型, 与redis存储格式一致
+ */
+@Data
+public class WALRecord {
+    private String executionId;
+    private DAGInfo dagInfo;
+    private List<TaskInfo> taskInfos;
+    private Map<String, String> context;
+    private DAG dag;
+}
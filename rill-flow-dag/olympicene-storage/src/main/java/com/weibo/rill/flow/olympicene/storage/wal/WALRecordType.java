@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.wal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+@Getter
+@AllArgsConstructor
+public enum WALRecordType {
+    SAVE_DAG_INFO((byte) 1),
+    SAVE_TASK_INFOS((byte) 2),
+    UPDATE_CONTEXT((byte) 3),
+    CLEAR_CONTEXT((byte) 4),
+    CLEAR_DAG_INFO((byte) 5),
+    UPDATE_DESCRIPTOR((byte) 6),
+    /**
+     * 快照文件中的记录, 包含一个执行的完整DAGInfo及上下文
+     */
+    SNAPSHOT((byte) 7);
+
+    private final byte code;
+
+    public static WALRecordType from(byte code) {
+        return Arrays.stream(values())
+                .filter(type -> type.code == code)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.wal;
+
+import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode;
+import com.weibo.rill.flow.olympicene.storage.exception.StorageException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的预写日志, 日志按固定大小切分为多个segment: wal-{segmentId}.log
+ * <p>
+ * 单条记录格式: [int payload长度][byte 记录类型][payload][int crc32(类型+payload)]
+ * segment中未写入的区域全部为0, 读取时遇到长度为0、数据不完整或crc不一致的记录即认为该segment结束,
+ * 因此进程在写入中途退出只会丢失最后一条不完整的记录
+ * <p>
+ * 写入内容在append返回时已位于page cache, 进程崩溃不会丢失; syncOnAppend为true时每次写入后force到磁盘, 可抵御机器掉电
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncOnAppend;
+    private long currentSegmentId = -1;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    public WriteAheadLog(String directory, int segmentSize, boolean syncOnAppend) {
+        this.directory = new File(directory).toPath();
+        this.segmentSize = segmentSize;
+        this.syncOnAppend = syncOnAppend;
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "create wal directory fails: " + directory, e);
+        }
+    }
+
+    /**
+     * 在已有segment之后新建segment并开始写入, 不会向已存在的segment追加
+     */
+    public synchronized void open() {
+        List<Long> segmentIds = listSegmentIds();
+        openSegment(segmentIds.isEmpty() ? 0 : segmentIds.get(segmentIds.size() - 1) + 1);
+    }
+
+    public synchronized void append(byte type, byte[] payload) {
+        if (buffer == null) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "wal not opened");
+        }
+        int recordSize = RECORD_OVERHEAD + payload.length;
+        if (recordSize > segmentSize) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(),
+                    String.format("wal record size %d exceeds segment size %d", recordSize, segmentSize));
+        }
+        if (buffer.remaining() < recordSize) {
+            roll();
+        }
+        writeRecord(buffer, type, payload);
+        if (syncOnAppend) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * 关闭当前segment并切换到新的segment
+     *
+     * @return 新segment的id, 此前写入的记录均位于id更小的segment中
+     */
+    public synchronized long roll() {
+        closeSegment();
+        openSegment(currentSegmentId + 1);
+        return currentSegmentId;
+    }
+
+    public synchronized void flush() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    public synchronized void deleteSegmentsBefore(long segmentId) {
+        listSegmentIds().stream()
+                .filter(id -> id < segmentId)
+                .forEach(id -> {
+                    try {
+                        Files.deleteIfExists(segmentPath(id));
+                    } catch (IOException e) {
+                        log.warn("delete wal segment fails, segmentId:{}", id, e);
+                    }
+                });
+    }
+
+    /**
+     * 按顺序回放id不小于fromSegmentId的segment中的全部记录
+     */
+    public void replay(long fromSegmentId, BiConsumer<Byte, byte[]> consumer) {
+        replay(fromSegmentId, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * 按顺序回放id在[fromSegmentId, toSegmentId)之间的segment中的全部记录
+     */
+    public void replay(long fromSegmentId, long toSegmentId, BiConsumer<Byte, byte[]> consumer) {
+        for (long segmentId : listSegmentIds()) {
+            if (segmentId < fromSegmentId || segmentId >= toSegmentId) {
+                continue;
+            }
+            try (FileChannel segmentChannel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+                int count = readRecords(segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size()), consumer);
+                log.info("wal segment replayed, segmentId:{}, records:{}", segmentId, count);
+            } catch (IOException e) {
+                throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "replay wal segment fails: " + segmentId, e);
+            }
+        }
+    }
+
+    public List<Long> listSegmentIds() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Long> segmentIds = new ArrayList<>(files
+                    .map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .toList());
+            Collections.sort(segmentIds);
+            return segmentIds;
+        } catch (IOException e) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "list wal segments fails", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeSegment();
+    }
+
+    public static void writeRecord(ByteBuffer target, byte type, byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(type);
+        crc32.update(payload);
+        target.putInt(payload.length);
+        target.put(type);
+        target.put(payload);
+        target.putInt((int) crc32.getValue());
+    }
+
+    /**
+     * @return 成功读取的记录数
+     */
+    public static int readRecords(ByteBuffer source, BiConsumer<Byte, byte[]> consumer) {
+        int count = 0;
+        while (source.remaining() >= RECORD_OVERHEAD) {
+            int length = source.getInt();
+            if (length <= 0 || source.remaining() < length + Byte.BYTES + Integer.BYTES) {
+                break;
+            }
+            byte type = source.get();
+            byte[] payload = new byte[length];
+            source.get(payload);
+            CRC32 crc32 = new CRC32();
+            crc32.update(type);
+            crc32.update(payload);
+            if (source.getInt() != (int) crc32.getValue()) {
+                log.warn("wal record crc mismatch, stop reading at record:{}", count);
+                break;
+            }
+            consumer.accept(type, payload);
+            count++;
+        }
+        return count;
+    }
+
+    public static int recordSize(byte[] payload) {
+        return RECORD_OVERHEAD + payload.length;
+    }
+
+    private void openSegment(long segmentId) {
+        try {
+            channel = FileChannel.open(segmentPath(segmentId),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            currentSegmentId = segmentId;
+        } catch (IOException e) {
+            throw new StorageException(StorageErrorCode.WAL_FAIL.getCode(), "open wal segment fails: " + segmentId, e);
+        }
+    }
+
+    private void closeSegment() {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("close wal segment fails, segmentId:{}", currentSegmentId, e);
+            }
+            channel = null;
+        }
+    }
+
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+    }
+}
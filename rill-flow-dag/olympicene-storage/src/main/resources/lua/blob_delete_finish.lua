@@ -0,0 +1,4 @@
+--blob_delete_finish.lua
+-- KEYS[1]: blob删除标记
+-- blob已从blobStore删除后调用, 清除删除标记使等待中的写入继续
+return redis.call("del", KEYS[1]);
@@ -0,0 +1,14 @@
+--blob_ref_decr.lua
+-- KEYS[1..n]: blob引用计数 KEYS[n+1..2n]: 与引用计数一一对应的blob删除标记
+-- ARGV[1..n]: 与引用计数一一对应的blob摘要 ARGV[n+1]: 删除标记过期时间(毫秒)
+-- 返回: 引用计数归零的摘要, 归零与设置删除标记在同一步完成, 删除期间的新引用可据此等待删除结束
+local count = #ARGV - 1;
+local released = {};
+for keyIndex = 1, count, 1 do
+    if (redis.call("decr", KEYS[keyIndex]) <= 0) then
+        redis.call("del", KEYS[keyIndex]);
+        redis.call("set", KEYS[count + keyIndex], "1", "PX", ARGV[count + 1]);
+        table.insert(released, ARGV[keyIndex]);
+    end
+end
+return released;
@@ -0,0 +1,18 @@
+--blob_ref_incr.lua
+-- KEYS[1]: 待释放execution的zset KEYS[2..n+1]: blob引用计数 KEYS[n+2..2n+1]: 与引用计数一一对应的blob删除标记
+-- ARGV[1]: executionId ARGV[2]: 预计释放时间(毫秒) ARGV[3]: 可选, 传XX时仅更新已在zset中的execution
+-- 返回: 正在删除中的blob删除标记, 调用方需等待删除结束后再写入blob
+local count = (#KEYS - 1) / 2;
+local deleting = {};
+for keyIndex = 2, count + 1, 1 do
+    redis.call("incr", KEYS[keyIndex]);
+    if (redis.call("exists", KEYS[count + keyIndex]) == 1) then
+        table.insert(deleting, KEYS[count + keyIndex]);
+    end
+end
+if (ARGV[3]) then
+    redis.call("zadd", KEYS[1], ARGV[3], ARGV[2], ARGV[1]);
+else
+    redis.call("zadd", KEYS[1], ARGV[2], ARGV[1]);
+end
+return deleting;
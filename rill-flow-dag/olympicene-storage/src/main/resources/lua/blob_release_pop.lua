@@ -0,0 +1,8 @@
+--blob_release_pop.lua
+-- KEYS[1]: 待释放execution的zset
+-- ARGV[1]: 当前时间(毫秒) ARGV[2]: 最多取出个数
+local executionIds = redis.call("zrangebyscore", KEYS[1], "-inf", ARGV[1], "limit", 0, ARGV[2]);
+for _, executionId in ipairs(executionIds) do
+    redis.call("zrem", KEYS[1], executionId);
+end
+return executionIds;
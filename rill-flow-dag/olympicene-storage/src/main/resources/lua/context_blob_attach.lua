@@ -0,0 +1,11 @@
+--context_blob_attach.lua
+-- KEYS[1]: execution引用的blob摘要hash
+-- ARGV[1..]: 本次写入引用的blob摘要
+-- 返回: 该execution首次引用的摘要
+local attached = {};
+for argvIndex = 1, #ARGV, 1 do
+    if (redis.call("hsetnx", KEYS[1], ARGV[argvIndex], "1") == 1) then
+        table.insert(attached, ARGV[argvIndex]);
+    end
+end
+return attached;
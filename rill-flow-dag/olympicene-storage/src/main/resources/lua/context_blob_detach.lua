@@ -0,0 +1,13 @@
+--context_blob_detach.lua
+-- KEYS[1]: context hash KEYS[2]: execution引用的blob摘要hash
+-- 返回: context未过期时为 {context剩余毫秒数}, context不存在时为 {-2, 摘要1, 摘要2...} 并删除摘要hash
+local ttl = redis.call("pttl", KEYS[1]);
+if (ttl ~= -2) then
+    return {ttl};
+end
+local ret = {-2};
+for _, digest in ipairs(redis.call("hkeys", KEYS[2])) do
+    table.insert(ret, digest);
+end
+redis.call("del", KEYS[2]);
+return ret;
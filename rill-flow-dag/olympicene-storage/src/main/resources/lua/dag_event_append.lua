@@ -0,0 +1,28 @@
+--dag_event_append.lua
+-- KEYS[1]: 事件流 KEYS[2]: 快照hash
+-- ARGV[1]: 过期时间 ARGV[2..]: 依次为事件类型及内容, 不传事件时为clearDAGInfo, 直接设置过期时间并标记已清理
+-- 追加事件时只延长过期时间, 已清理的执行不再刷新, 避免迟到的事件覆盖结束后较短的保留时间
+local function extendExpire(key, expireTime)
+    local ttl = redis.call("ttl", key);
+    if (ttl == -1 or (ttl >= 0 and ttl < expireTime)) then
+        redis.call("expire", key, expireTime);
+    end
+end
+
+if (#ARGV == 1) then
+    redis.call("hset", KEYS[2], "cleared", "1");
+    redis.call("expire", KEYS[1], ARGV[1]);
+    redis.call("expire", KEYS[2], ARGV[1]);
+    return "";
+end
+
+local lastId = "";
+for argvIndex = 2, #ARGV, 2 do
+    lastId = redis.call("xadd", KEYS[1], "*", "type", ARGV[argvIndex], "payload", ARGV[argvIndex + 1]);
+end
+if (redis.call("hexists", KEYS[2], "cleared") == 0) then
+    local expireTime = tonumber(ARGV[1]);
+    extendExpire(KEYS[1], expireTime);
+    extendExpire(KEYS[2], expireTime);
+end
+return lastId;
@@ -0,0 +1,34 @@
+--dag_event_compact.lua
+-- KEYS[1]: 事件流 KEYS[2]: 快照hash
+-- ARGV[1]: 快照包含的最后事件id ARGV[2]: 快照内容 ARGV[3]: 为1时删除快照已包含的事件
+-- 并发压缩时只保留包含事件最多的快照
+local function compareId(left, right)
+    local leftMs, leftSeq = string.match(left, "(%d+)-(%d+)");
+    local rightMs, rightSeq = string.match(right, "(%d+)-(%d+)");
+    if (tonumber(leftMs) ~= tonumber(rightMs)) then
+        return tonumber(leftMs) < tonumber(rightMs) and -1 or 1;
+    end
+    if (tonumber(leftSeq) ~= tonumber(rightSeq)) then
+        return tonumber(leftSeq) < tonumber(rightSeq) and -1 or 1;
+    end
+    return 0;
+end
+
+local snapshotId = redis.call("hget", KEYS[2], "last_id");
+if (snapshotId and compareId(snapshotId, ARGV[1]) >= 0) then
+    return 0;
+end
+
+redis.call("hmset", KEYS[2], "last_id", ARGV[1], "payload", ARGV[2]);
+local ttl = redis.call("ttl", KEYS[1]);
+if (ttl > 0) then
+    redis.call("expire", KEYS[2], ttl);
+end
+
+if (ARGV[3] == "1") then
+    local entries = redis.call("xrange", KEYS[1], "-", ARGV[1]);
+    for entryIndex = 1, #entries, 1 do
+        redis.call("xdel", KEYS[1], entries[entryIndex][1]);
+    end
+end
+return 1;
@@ -0,0 +1,31 @@
+--dag_event_get.lua
+-- KEYS[1]: 事件流 KEYS[2]: 快照hash
+-- 返回 {{快照对应的最后事件id, 快照内容}, {事件id, 事件类型, 事件内容, ...}}, 只返回快照之后的事件
+local snapshot = redis.call("hmget", KEYS[2], "last_id", "payload");
+local snapshotId = snapshot[1];
+local startId = "-";
+if (snapshotId) then
+    startId = snapshotId;
+end
+
+local events = {};
+local entries = redis.call("xrange", KEYS[1], startId, "+");
+for entryIndex = 1, #entries, 1 do
+    local eventId = entries[entryIndex][1];
+    if (eventId ~= snapshotId) then
+        local fields = entries[entryIndex][2];
+        local eventType = "";
+        local payload = "";
+        for fieldIndex = 1, #fields, 2 do
+            if (fields[fieldIndex] == "type") then
+                eventType = fields[fieldIndex + 1];
+            elseif (fields[fieldIndex] == "payload") then
+                payload = fields[fieldIndex + 1];
+            end
+        end
+        table.insert(events, eventId);
+        table.insert(events, eventType);
+        table.insert(events, payload);
+    end
+end
+return {{snapshotId or "", snapshot[2] or ""}, events};
@@ -2,17 +2,23 @@
 local ret = {};
 local rootContent = {};
 local rootHGetAll = redis.call("hgetall", KEYS[1]);
+local descriptorKey;
 for rootIndex = 1, #rootHGetAll, 2 do
     local rootField = rootHGetAll[rootIndex];
     local rootValue = rootHGetAll[rootIndex + 1];
 
     if (rootField == "dag" and string.find(rootValue, "\"dag_descriptor_") == 1) then
-        local descriptorKey = string.gsub(rootValue, "\"", "");
+        descriptorKey = string.gsub(rootValue, "\"", "");
         rootHGetAll[rootIndex + 1] = redis.call("get", descriptorKey);
     elseif (rootField == "@class_dag") then
         rootHGetAll[rootIndex + 1] = "com.weibo.rill.flow.olympicene.core.model.dag.DAG";
     end
 end
+-- 返回描述符key, 再次写入时直接引用
+if (descriptorKey) then
+    table.insert(rootHGetAll, "_dag_descriptor_key");
+    table.insert(rootHGetAll, descriptorKey);
+end
 table.insert(rootContent, {"name", KEYS[1]});
 table.insert(rootContent, rootHGetAll);
 table.insert(ret, rootContent);
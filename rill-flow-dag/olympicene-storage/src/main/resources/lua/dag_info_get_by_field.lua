@@ -15,6 +15,14 @@ for k = 1, #KEYS, 1 do
         end
     end
 
+    -- 以_alt_key_开头时, 当前key中不存在探测field而备选key中存在, 则读取备选key
+    if (args[1] == "_alt_key_") then
+        if (redis.call("hexists", key, args[3]) == 0 and redis.call("hexists", args[2], args[3]) == 1) then
+            key = args[2]
+        end
+        args = { unpack(args, 4) }
+    end
+
     if (#args == 0) then
         table.insert(ret, redis.call("hgetall", key));
     elseif (args[1] == "_key_prefix_") then
@@ -33,6 +41,35 @@ for k = 1, #KEYS, 1 do
         else
             table.insert(ret, redis.call("hmget", key, unpack(filteredMapKeys)));
         end
+    elseif (args[1] == "_route_content_") then
+        -- key为任务与其子任务映射, 返回父任务各分组hash的全部field及其值
+        local routePrefix = args[2]
+        local routeContent = {}
+        local mapping = redis.call("hgetall", key)
+        for mappingIndex = 1, #mapping, 2 do
+            local routeName = mapping[mappingIndex]
+            if (string.find(routeName, routePrefix, 1, true) == 1 and not string.find(routeName, "-", #routePrefix + 1, true)) then
+                local content = redis.call("hgetall", mapping[mappingIndex + 1])
+                for contentIndex = 1, #content, 1 do
+                    table.insert(routeContent, content[contentIndex])
+                end
+            end
+        end
+        table.insert(ret, routeContent)
+    elseif (args[1] == "_field_prefix_") then
+        -- 返回匹配任一前缀的field及其值
+        local fieldContent = {}
+        local mapKeys = redis.call("hkeys", key)
+        for mapKeyIndex = 1, #mapKeys, 1 do
+            for prefixIndex = 2, #args, 1 do
+                if (string.find(mapKeys[mapKeyIndex], args[prefixIndex]) == 1) then
+                    table.insert(fieldContent, mapKeys[mapKeyIndex])
+                    table.insert(fieldContent, redis.call("hget", key, mapKeys[mapKeyIndex]))
+                    break
+                end
+            end
+        end
+        table.insert(ret, fieldContent)
     else
         local hmgetContent = redis.call("hmget", key, unpack(args));
         if (string.find(key, "dag_info_") == 1) then
@@ -17,9 +17,39 @@ for keyIndex = 1, #KEYS, 1 do
     end
 
     if (string.find(key, "dag_descriptor_") == 1) then
-        redis.call("set", key, args[1]);
+        -- 描述符key由内容md5构成, 已存在时无需覆盖
+        redis.call("set", key, args[1], "NX");
     else
-        redis.call("hmset", key, unpack(args));
+        -- 以_alt_key_开头时, 当前key中不存在探测field而备选key中存在, 则写入备选key
+        local fieldIndex = 1;
+        if (args[1] == "_alt_key_") then
+            if (redis.call("hexists", key, args[3]) == 0 and redis.call("hexists", args[2], args[3]) == 1) then
+                key = args[2];
+            end
+            fieldIndex = 4;
+        end
+
+        -- 以_del_prefix_开头的参数为需删除的field前缀
+        local delPrefixes = {};
+        while (args[fieldIndex] == "_del_prefix_") do
+            table.insert(delPrefixes, args[fieldIndex + 1]);
+            fieldIndex = fieldIndex + 2;
+        end
+        if (#delPrefixes > 0) then
+            local mapKeys = redis.call("hkeys", key);
+            for mapKeyIndex = 1, #mapKeys, 1 do
+                for prefixIndex = 1, #delPrefixes, 1 do
+                    if (string.find(mapKeys[mapKeyIndex], delPrefixes[prefixIndex], 1, true) == 1) then
+                        redis.call("hdel", key, mapKeys[mapKeyIndex]);
+                        break ;
+                    end
+                end
+            end
+        end
+
+        if (#args >= fieldIndex) then
+            redis.call("hmset", key, unpack(args, fieldIndex));
+        end
         redis.call("expire", key, expireTime);
     end
 end
\ No newline at end of file
@@ -0,0 +1,26 @@
+--dag_traversal_lock_and_load.lua
+-- 加锁并读取basic DAGInfo及context, 依赖的redis_lock等函数由RedisScriptManager拼接在前
+-- KEYS: lockKey, dagInfoKey, contextKeys...
+-- ARGV: lockAcquirerId, lockExpire, contextMode(fields/all), contextArgv...
+if (redis_lock({KEYS[1]}, {ARGV[1], ARGV[2]}) == "FAIL") then
+    return {"FAIL"};
+end
+
+local contextKeys = {};
+for keyIndex = 3, #KEYS, 1 do
+    table.insert(contextKeys, KEYS[keyIndex]);
+end
+local contextArgv = {};
+for argvIndex = 4, #ARGV, 1 do
+    table.insert(contextArgv, ARGV[argvIndex]);
+end
+
+local ret = {"OK", dag_info_get({KEYS[2]}, {})};
+if (#contextKeys == 0) then
+    table.insert(ret, {});
+elseif (ARGV[3] == "all") then
+    table.insert(ret, redis_get(contextKeys, contextArgv));
+else
+    table.insert(ret, redis_get_by_field_and_key(contextKeys, contextArgv));
+end
+return ret;
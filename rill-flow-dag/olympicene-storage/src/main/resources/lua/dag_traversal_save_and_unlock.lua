@@ -0,0 +1,17 @@
+--dag_traversal_save_and_unlock.lua
+-- 保存任务状态并释放锁, 依赖的dag_info_set及redis_unlock函数由RedisScriptManager拼接在前
+-- KEYS: lockKey, taskInfoKeys...
+-- ARGV: lockAcquirerId, taskInfoArgv...
+local taskInfoKeys = {};
+for keyIndex = 2, #KEYS, 1 do
+    table.insert(taskInfoKeys, KEYS[keyIndex]);
+end
+local taskInfoArgv = {};
+for argvIndex = 2, #ARGV, 1 do
+    table.insert(taskInfoArgv, ARGV[argvIndex]);
+end
+
+if (#taskInfoKeys > 0) then
+    dag_info_set(taskInfoKeys, taskInfoArgv);
+end
+return redis_unlock({KEYS[1]}, {ARGV[1]});
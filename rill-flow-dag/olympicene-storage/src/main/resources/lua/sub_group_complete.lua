@@ -0,0 +1,36 @@
+--sub_group_complete.lua
+-- KEYS[1]: 分组计数hash KEYS[2]: 待运行分组队列 KEYS[3]: 父任务taskInfo所在hash KEYS[4]: 可选, 父任务taskInfo的备选hash
+-- ARGV[1]: 分组下标 ARGV[2]: 分组状态 ARGV[3]: 分组是否失败 1/0 ARGV[4]: 分组状态field前缀 ARGV[5]: 父任务taskInfo field
+-- 返回: {是否重复通知, 已完成数, 失败数, 运行中数, 待运行数, 下一个运行的分组下标}
+local counterKey = KEYS[1];
+local readyKey = KEYS[2];
+local taskKey = KEYS[3];
+if (KEYS[4] and redis.call("hexists", taskKey, ARGV[5]) == 0) then
+    taskKey = KEYS[4];
+end
+local groupIndex = ARGV[1];
+local groupStatus = ARGV[2];
+local statusFieldPrefix = ARGV[4];
+
+if (redis.call("exists", counterKey) == 0) then
+    return {};
+end
+
+if (redis.call("hsetnx", counterKey, "done_" .. groupIndex, groupStatus) == 0) then
+    local counter = redis.call("hmget", counterKey, "completed", "failed", "running");
+    return {1, tonumber(counter[1]), tonumber(counter[2]), tonumber(counter[3]), redis.call("llen", readyKey), ""};
+end
+
+local completed = redis.call("hincrby", counterKey, "completed", 1);
+local failed = redis.call("hincrby", counterKey, "failed", ARGV[3] == "1" and 1 or 0);
+local running = redis.call("hincrby", counterKey, "running", -1);
+redis.call("hset", taskKey, statusFieldPrefix .. groupIndex, groupStatus);
+
+local nextGroupIndex = redis.call("lpop", readyKey);
+if (nextGroupIndex) then
+    running = redis.call("hincrby", counterKey, "running", 1);
+    redis.call("hset", taskKey, statusFieldPrefix .. nextGroupIndex, "RUNNING");
+else
+    nextGroupIndex = "";
+end
+return {0, completed, failed, running, redis.call("llen", readyKey), nextGroupIndex};
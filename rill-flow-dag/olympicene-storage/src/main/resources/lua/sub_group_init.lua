@@ -0,0 +1,18 @@
+--sub_group_init.lua
+-- KEYS[1]: 分组计数hash KEYS[2]: 待运行分组队列
+-- ARGV[1]: 过期时间 ARGV[2]: 运行中分组数 ARGV[3...]: 待运行分组下标
+local counterKey = KEYS[1];
+local readyKey = KEYS[2];
+local expireTime = ARGV[1];
+
+redis.call("del", counterKey, readyKey);
+redis.call("hmset", counterKey, "completed", 0, "failed", 0, "running", ARGV[2]);
+redis.call("expire", counterKey, expireTime);
+
+if (#ARGV > 2) then
+    for argvIndex = 3, #ARGV, 1000 do
+        redis.call("rpush", readyKey, unpack(ARGV, argvIndex, math.min(argvIndex + 999, #ARGV)));
+    end
+    redis.call("expire", readyKey, expireTime);
+end
+return "OK";
@@ -0,0 +1,39 @@
+package com.weibo.rill.flow.olympicene.storage.blob
+
+import com.weibo.rill.flow.olympicene.storage.exception.StorageException
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class LocalFileBlobStoreTest extends Specification {
+    Path root = Files.createTempDirectory("blob_test")
+    LocalFileBlobStore blobStore = new LocalFileBlobStore(root)
+
+    def cleanup() {
+        root.toFile().deleteDir()
+    }
+
+    def "put get and delete blob by digest"() {
+        when:
+        blobStore.put("abcdef", "content".getBytes())
+
+        then:
+        Files.exists(root.resolve("ab").resolve("abcdef"))
+        blobStore.get("abcdef") == "content".getBytes()
+
+        when:
+        blobStore.delete("abcdef")
+
+        then:
+        blobStore.get("abcdef") == null
+    }
+
+    def "illegal digest is rejected"() {
+        when:
+        blobStore.get("../etc")
+
+        then:
+        thrown(StorageException)
+    }
+}
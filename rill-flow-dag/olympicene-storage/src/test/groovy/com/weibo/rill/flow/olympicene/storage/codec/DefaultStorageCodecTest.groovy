@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.codec
+
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo
+import com.weibo.rill.flow.interfaces.model.task.TaskInvokeMsg
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class DefaultStorageCodecTest extends Specification {
+    Map<String, Object> largeValue = [segments: (0..<200).collect { "http://test.com/video/segment_${it}.ts".toString() }, duration: 3600]
+
+    def "default codec keeps json format"() {
+        given:
+        DefaultStorageCodec codec = new DefaultStorageCodec()
+
+        when:
+        String encoded = codec.encode(largeValue)
+
+        then:
+        encoded.startsWith("{")
+        codec.decode(encoded.getBytes(StandardCharsets.UTF_8), Map.class) == largeValue
+    }
+
+    def "large value is encoded with format #format and compression #compression"() {
+        given:
+        DefaultStorageCodec codec = new DefaultStorageCodec(format, compression, 256)
+        String json = new DefaultStorageCodec().encode(largeValue)
+
+        when:
+        String encoded = codec.encode(largeValue)
+
+        then:
+        encoded.charAt(0) == DefaultStorageCodec.MARKER
+        encoded.length() < json.length()
+        codec.decode(encoded.getBytes(StandardCharsets.UTF_8), Map.class) == largeValue
+        new DefaultStorageCodec().decode(encoded.getBytes(StandardCharsets.UTF_8), Map.class) == largeValue
+
+        where:
+        format              | compression
+        StorageFormat.JSON  | StorageCompression.LZ4
+        StorageFormat.SMILE | StorageCompression.LZ4
+        StorageFormat.CBOR  | StorageCompression.ZSTD
+        StorageFormat.SMILE | StorageCompression.ZSTD
+    }
+
+    def "small value and legacy json are readable"() {
+        given:
+        DefaultStorageCodec codec = new DefaultStorageCodec(StorageFormat.SMILE, StorageCompression.ZSTD, 256)
+        TaskInfo taskInfo = new TaskInfo(name: "A", taskStatus: TaskStatus.SUCCEED,
+                taskInvokeMsg: TaskInvokeMsg.builder().msg("succeed").build())
+
+        when:
+        String encoded = codec.encode(taskInfo)
+        TaskInfo decoded = codec.decode(encoded.getBytes(StandardCharsets.UTF_8), TaskInfo.class)
+        TaskInfo legacy = codec.decode('{"name":"B","task_status":"FAILED"}'.getBytes(StandardCharsets.UTF_8), TaskInfo.class)
+
+        then:
+        encoded.startsWith("{")
+        decoded.name == "A"
+        decoded.taskStatus == TaskStatus.SUCCEED
+        decoded.taskInvokeMsg.msg == "succeed"
+        legacy.name == "B"
+        legacy.taskStatus == TaskStatus.FAILED
+    }
+
+    def "descriptor key stays plain json"() {
+        given:
+        DefaultStorageCodec codec = new DefaultStorageCodec(StorageFormat.CBOR, StorageCompression.LZ4, 1)
+
+        expect:
+        codec.encode("dag_descriptor_6f1ed002ab5595859014ebf0951522d9") == '"dag_descriptor_6f1ed002ab5595859014ebf0951522d9"'
+    }
+}
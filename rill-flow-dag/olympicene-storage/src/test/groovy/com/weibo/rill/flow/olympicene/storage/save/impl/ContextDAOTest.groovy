@@ -1,6 +1,8 @@
 package com.weibo.rill.flow.olympicene.storage.save.impl
 
 import com.google.common.collect.Lists
+import com.google.common.hash.Hashing
+import com.weibo.rill.flow.olympicene.storage.blob.BlobStore
 import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient
 import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode
 import com.weibo.rill.flow.olympicene.storage.exception.StorageException
@@ -37,6 +39,18 @@ class ContextDAOTest extends Specification {
         )
     }
 
+    def "updateContexts merges contexts of a batch into one script call"() {
+        when:
+        contextDAO.updateContexts(["executionId1": ["A": "url"], "executionId2": [:], "executionId3": ["B": "url"]])
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.getRedisSetWithExpire(),
+                'executionId1',
+                ['context_executionId1', 'context_executionId3'],
+                ['172800', '_placeholder_', 'A', '"url"', '@class_A', 'java.lang.String', '_placeholder_', 'B', '"url"', '@class_B', 'java.lang.String']
+        )
+    }
+
     def "deleteContext invoke setting if time above zero"() {
         given:
         contextDAOMock.getFinishStatusReserveTimeInSecond(*_) >> reserveTime
@@ -127,4 +141,96 @@ class ContextDAOTest extends Specification {
         []         | ["__C", "__D"] | ["sub_context_executionId___C", "sub_context_executionId___D"]                        | []
         ["A", "B"] | []             | ["context_executionId"]                                                               | ["A", "@class_A", "B", "@class_B"]
     }
+
+    def "updateContext offload value above threshold to blob store"() {
+        given:
+        BlobStore blobStore = Mock(BlobStore)
+        contextDAOMock.blobOffloadThreshold(*_) >> 16
+        contextDAOMock.setBlobStore(blobStore)
+        String largeValue = '"' + 'a' * 32 + '"'
+        String digest = Hashing.sha256().hashBytes(largeValue.getBytes('UTF-8')).toString()
+
+        when:
+        contextDAOMock.updateContext(executionId, ["A": 'a' * 32, "B": "url"])
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.contextBlobAttachScript(), executionId, ['context_blob_executionId'], [digest]) >> [digest]
+        1 * redisClient.eval(RedisScriptManager.blobRefIncrScript(), 'blob_release_queue',
+                ['blob_release_queue', 'blob_ref_count_' + digest, 'blob_deleting_' + digest], { it[0] == executionId }) >> []
+        1 * blobStore.put(digest, largeValue.getBytes('UTF-8'))
+        1 * redisClient.eval(RedisScriptManager.getRedisSetWithExpire(), executionId, ['context_executionId'], { List<String> argv ->
+            argv.indexOf('A') > 0 && argv[argv.indexOf('A') + 1] == digest &&
+                    argv[argv.indexOf('@class_A') + 1] == '@blob:java.lang.String' &&
+                    argv[argv.indexOf('B') + 1] == '"url"'
+        })
+    }
+
+    def "getContext resolve offloaded field from blob store"() {
+        given:
+        BlobStore blobStore = Mock(BlobStore)
+        contextDAO.setBlobStore(blobStore)
+        redisClient.eval(RedisScriptManager.getRedisGetByFieldAndKey(), executionId, ['context_executionId'], ['A', '@class_A']) >>
+                [['digest'.getBytes(), '@blob:java.lang.String'.getBytes()]]
+        blobStore.get('digest') >> '"large"'.getBytes()
+
+        expect:
+        contextDAO.getContext(executionId, ['A']) == ['A': 'large']
+    }
+
+    def "getContext throws exception when blob is missing"() {
+        given:
+        redisClient.eval(RedisScriptManager.getRedisGetByFieldAndKey(), executionId, ['context_executionId'], ['A', '@class_A']) >>
+                [['digest'.getBytes(), '@blob:java.lang.String'.getBytes()]]
+
+        when:
+        contextDAO.getContext(executionId, ['A'])
+
+        then:
+        def e = thrown(StorageException)
+        e.getErrorCode() == StorageErrorCode.CONTEXT_GET_FAIL.getCode()
+    }
+
+    def "releaseExpiredBlobs delete blob whose reference count drops to zero"() {
+        given:
+        BlobStore blobStore = Mock(BlobStore)
+        contextDAO.setBlobStore(blobStore)
+        redisClient.eval(RedisScriptManager.blobReleasePopScript(), 'blob_release_queue', ['blob_release_queue'], _) >> ['executionId1', 'executionId2']
+        redisClient.eval(RedisScriptManager.contextBlobDetachScript(), 'executionId1', ['context_executionId1', 'context_blob_executionId1'], []) >> [-2L, 'd1'.getBytes(), 'd2'.getBytes()]
+        redisClient.eval(RedisScriptManager.contextBlobDetachScript(), 'executionId2', ['context_executionId2', 'context_blob_executionId2'], []) >> [5000L]
+        redisClient.eval(RedisScriptManager.blobRefDecrScript(), 'blob_release_queue',
+                ['blob_ref_count_d1', 'blob_ref_count_d2', 'blob_deleting_d1', 'blob_deleting_d2'], ['d1', 'd2', '30000']) >> ['d1']
+
+        when:
+        int count = contextDAO.releaseExpiredBlobs(10)
+
+        then:
+        count == 2
+        1 * blobStore.delete('d1')
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.blobDeleteFinishScript(), 'blob_release_queue', ['blob_deleting_d1'], [])
+        0 * blobStore.delete('d2')
+        0 * blobStore.put(*_)
+        1 * redisClient.eval(RedisScriptManager.blobRefIncrScript(), 'blob_release_queue', ['blob_release_queue'], { it[0] == 'executionId2' && it.size() == 2 })
+    }
+
+    def "updateContext waits for in-progress blob deletion before writing blob"() {
+        given:
+        BlobStore blobStore = Mock(BlobStore)
+        contextDAOMock.blobOffloadThreshold(*_) >> 16
+        contextDAOMock.setBlobStore(blobStore)
+        String largeValue = '"' + 'a' * 32 + '"'
+        String digest = Hashing.sha256().hashBytes(largeValue.getBytes('UTF-8')).toString()
+        redisClient.eval(RedisScriptManager.contextBlobAttachScript(), executionId, _, _) >> [digest]
+        redisClient.eval(RedisScriptManager.blobRefIncrScript(), 'blob_release_queue', _, _) >> ['blob_deleting_' + digest]
+
+        when:
+        contextDAOMock.updateContext(executionId, ["A": 'a' * 32])
+
+        then:
+        2 * redisClient.get('blob_release_queue', 'blob_deleting_' + digest) >>> ['1', null]
+
+        then:
+        1 * blobStore.put(digest, largeValue.getBytes('UTF-8'))
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl
+
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
+import com.weibo.rill.flow.olympicene.core.helper.DAGInfoMaker
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus
+import com.weibo.rill.flow.olympicene.ddl.parser.DAGStringParser
+import com.weibo.rill.flow.olympicene.ddl.serialize.YAMLSerializer
+import com.weibo.rill.flow.olympicene.ddl.validation.dag.impl.FlowDAGValidator
+import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient
+import com.weibo.rill.flow.olympicene.storage.script.RedisScriptManager
+import spock.lang.Specification
+
+class DAGEventStreamStorageTest extends Specification {
+    String executionId = "testBusiness:testFeatureName_c_8921a32f-3c9d-4b36-9f0f-b8c1d6a1e5f3"
+    String yaml = "version: 0.0.1\n" +
+            "workspace: olympicene\n" +
+            "dagName: event\n" +
+            "type: flow\n" +
+            "tasks: \n" +
+            "- category: function\n" +
+            "  name: A\n" +
+            "  resourceName: http://test.com/a\n" +
+            "  pattern: task_sync\n" +
+            "  next: B\n" +
+            "- category: foreach\n" +
+            "  name: B\n" +
+            "  inputMappings:\n" +
+            "    - target: \$.input.segments\n" +
+            "      source: \$.context.segments\n" +
+            "  iterationMapping:\n" +
+            "    collection: \$.input.segments\n" +
+            "    item: segmentUrl\n" +
+            "  tasks:\n" +
+            "    - category: function\n" +
+            "      name: C\n" +
+            "      resourceName: http://test.com/c\n" +
+            "      pattern: task_sync"
+    DAG dag = new DAGStringParser(new YAMLSerializer(), [new FlowDAGValidator()]).parse(yaml)
+    RedisClient redisClient = Mock(RedisClient)
+    DAGEventStreamStorage storage = new DAGEventStreamStorage(redisClient)
+    List<String> events = []
+    List<String> snapshot = ["", ""]
+
+    def setup() {
+        redisClient.eval(RedisScriptManager.dagEventAppendScript(), executionId, _, _) >> { String script, String shardingKey, List<String> keys, List<String> argv ->
+            for (int i = 1; i + 1 < argv.size(); i += 2) {
+                events.addAll([(events.size().intdiv(3) + 1) + "-0", argv.get(i), argv.get(i + 1)])
+            }
+            return events.isEmpty() ? "" : events.get(events.size() - 3)
+        }
+        redisClient.eval(RedisScriptManager.dagEventGetScript(), executionId, _, _) >> {
+            [snapshot.collect { it.getBytes() }, events.collect { it.getBytes() }]
+        }
+    }
+
+    def "every write is appended as an event to the execution stream"() {
+        when:
+        storage.saveTaskInfos(executionId, [new TaskInfo(name: "A", taskStatus: TaskStatus.SUCCEED)] as Set)
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagEventAppendScript(), executionId,
+                ["dag_event_" + executionId, "dag_event_snapshot_" + executionId],
+                { List<String> argv -> argv.size() == 3 && argv[0] == "172800" && argv[1] == "2" && argv[2].contains('"name":"A"') })
+    }
+
+    def "state is folded from events and task relation is rebuilt"() {
+        given:
+        DAGInfo dagInfo = new DAGInfoMaker().executionId(executionId).dag(dag).dagStatus(DAGStatus.RUNNING).make()
+        storage.saveDAGInfo(executionId, dagInfo)
+        storage.updateContext(executionId, [segments: ["s0"], duration: 10])
+        TaskInfo taskA = dagInfo.getTask("A")
+        taskA.setTaskStatus(TaskStatus.SUCCEED)
+        TaskInfo taskB = dagInfo.getTask("B")
+        taskB.setTaskStatus(TaskStatus.RUNNING)
+        storage.saveTaskInfos(executionId, [taskA, taskB] as Set)
+        storage.saveTaskInfos(executionId, [new TaskInfo(name: "B_0-C", routeName: "B_0", taskStatus: TaskStatus.RUNNING)] as Set)
+        storage.updateContext(executionId, [duration: 20])
+
+        when:
+        DAGInfo foldedDagInfo = storage.getDAGInfo(executionId)
+
+        then:
+        events.size() == 15
+        foldedDagInfo.getTask("A").getTaskStatus() == TaskStatus.SUCCEED
+        foldedDagInfo.getTask("A").getNext()*.name == ["B"]
+        foldedDagInfo.getTask("B").getDependencies()*.name == ["A"]
+        storage.getTaskInfo(executionId, "B_0-C").getTaskStatus() == TaskStatus.RUNNING
+        storage.getTaskInfo(executionId, "B_0-C").getTask().getName() == "C"
+        storage.getParentTaskInfoWithSibling(executionId, "B_0-C").getChildren().keySet() == ["B_0-C"] as Set
+        storage.getContext(executionId) == [segments: ["s0"], duration: 20]
+        storage.getContext(executionId, ["duration"]) == [duration: 20]
+    }
+
+    def "events after threshold are compacted into snapshot"() {
+        given:
+        storage.setCompactThreshold(2)
+        storage.saveDAGInfo(executionId, new DAGInfoMaker().executionId(executionId).dag(dag).dagStatus(DAGStatus.RUNNING).make())
+        storage.updateContext(executionId, [step: 1])
+        String snapshotPayload = null
+
+        when:
+        storage.getContext(executionId)
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagEventCompactScript(), executionId, _,
+                { List<String> argv -> argv[0] == "2-0" && argv[2] == "0" }) >> { String script, String shardingKey, List<String> keys, List<String> argv ->
+            snapshotPayload = argv[1]
+            return 1
+        }
+
+        when:
+        snapshot = ["2-0", snapshotPayload]
+        events.clear()
+        storage.updateContext(executionId, [step: 2])
+
+        then:
+        storage.getDAGInfo(executionId).getTask("B").getTask().getName() == "B"
+        storage.getContext(executionId) == [step: 2]
+        0 * redisClient.eval(RedisScriptManager.dagEventCompactScript(), _, _, _)
+    }
+
+    def "cleared context is not folded and clearDAGInfo only sets expire"() {
+        given:
+        storage.updateContext(executionId, [step: 1])
+        storage.clearContext(executionId)
+
+        when:
+        storage.clearDAGInfo(executionId, 0)
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagEventAppendScript(), executionId, _, ["0"])
+        storage.getContext(executionId).isEmpty()
+        storage.getDAGInfo(executionId) == null
+    }
+}
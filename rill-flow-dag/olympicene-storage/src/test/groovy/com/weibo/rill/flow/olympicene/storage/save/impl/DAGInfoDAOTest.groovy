@@ -2,11 +2,13 @@ package com.weibo.rill.flow.olympicene.storage.save.impl
 
 import com.google.common.collect.Lists
 import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient
+import com.weibo.rill.flow.olympicene.core.exception.SerializationException
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGType
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
 import com.weibo.rill.flow.olympicene.storage.script.RedisScriptManager
 import spock.lang.Specification
 
@@ -54,6 +56,35 @@ class DAGInfoDAOTest extends Specification {
         )
     }
 
+    def "updateDagInfo write descriptor on every save"() {
+        when:
+        dagInfoDAO.updateDagInfo(executionId, dagInfo)
+        dagInfoDAO.updateDagInfo(executionId, dagInfo)
+
+        then:
+        2 * redisClient.eval(RedisScriptManager.dagInfoSetScript(), "executionId",
+                { List<String> keys -> keys.size() == 2 && keys.get(0).startsWith('dag_descriptor_') }, _)
+    }
+
+    def "updateDagInfo reuse descriptor key of dag read from redis"() {
+        given:
+        List<byte[]> rootContent = ['execution_id', '"executionId"', '_dag_descriptor_key', 'dag_descriptor_202301_md5'].collect { it.getBytes() }
+        redisClient.eval(RedisScriptManager.dagInfoGetScript(), executionId, _, _) >> [[['name', 'dag_info_executionId'].collect { it.getBytes() }, rootContent]]
+        dagInfoDeserializeService.deserializeBaseDagInfo({ List<List<byte[]>> content ->
+            content.get(1).collect { new String(it) } == ['execution_id', '"executionId"']
+        }) >> dagInfo
+        dagInfoDeserializeService.getTaskNameToSubTasksMap(_) >> [:]
+
+        when:
+        DAGInfo storedDAGInfo = dagInfoDAO.getDagInfo(executionId, false)
+        dagInfoDAO.updateDagInfo(executionId, storedDAGInfo)
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagInfoSetScript(), "executionId",
+                { List<String> keys -> keys == ['dag_info_executionId'] },
+                { List<String> args -> args.get(args.indexOf('dag') + 1) == '"dag_descriptor_202301_md5"' })
+    }
+
     def "updateDagInfo with no nested tasks"() {
         given:
         dagInfo.setTask("A", new TaskInfo(name: "A"))
@@ -141,6 +172,194 @@ class DAGInfoDAOTest extends Specification {
         )
     }
 
+    def "saveTaskInfos only write changed sub group fields"() {
+        given:
+        TaskInfo taskInfo = new TaskInfo(name: "A", subGroupIndexToStatus: ['0': TaskStatus.RUNNING, '1': TaskStatus.RUNNING])
+        taskInfo.clearSubGroupChanges([])
+        taskInfo.putSubGroupStatus('1', TaskStatus.SUCCEED)
+
+        when:
+        dagInfoDAO.saveTaskInfos(executionId, [taskInfo] as Set)
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagInfoSetScript(),
+                "executionId",
+                ['dag_info_executionId'],
+                {
+                    List<String> args ->
+                        args.size() == 8 &&
+                                args.subList(0, 2) == ['172800', '_placeholder_'] &&
+                                args.get(args.indexOf('#A') + 1).contains('"sub_group_index_to_status":{}') &&
+                                args.subList(6, 8) == ['!status#A#1', 'SUCCEED']
+                }
+        )
+        taskInfo.getChangedSubGroupIndexes().isEmpty()
+        taskInfo.getSubGroupIndexToStatus() == ['0': TaskStatus.RUNNING, '1': TaskStatus.SUCCEED]
+    }
+
+    def "saveTaskInfos rewrite all sub group fields when sub group map replaced"() {
+        given:
+        TaskInfo taskInfo = new TaskInfo(name: "A", subGroupIndexToStatus: ['0': TaskStatus.SUCCEED], subGroupIndexToIdentity: ['0': 'id0'])
+
+        when:
+        dagInfoDAO.saveTaskInfos(executionId, [taskInfo] as Set)
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagInfoSetScript(),
+                "executionId",
+                ['dag_info_executionId'],
+                {
+                    List<String> args ->
+                        args.size() == 14 &&
+                                args.subList(0, 6) == ['172800', '_placeholder_', '_del_prefix_', '!status#A#', '_del_prefix_', '!identity#A#'] &&
+                                args.subList(10, 14) == ['!status#A#0', 'SUCCEED', '!identity#A#0', 'id0']
+                }
+        )
+        !taskInfo.isSubGroupsReplaced()
+    }
+
+    def "getBasicTaskInfo merge sub group fields"() {
+        given:
+        TaskInfo storedTaskInfo = new TaskInfo(name: "A", subGroupIndexToStatus: [:])
+        List<List<byte[]>> ret = [
+                [DagStorageSerializer.serialize(dagInfo.dag), DagStorageSerializer.serialize(storedTaskInfo)],
+                ['!status#A#1', 'SUCCEED', '!status#A#0', 'RUNNING'].collect { it.getBytes() }
+        ]
+
+        when:
+        TaskInfo taskInfo = dagInfoDAO.getBasicTaskInfo(executionId, "A")
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagInfoGetByFieldScript(), executionId,
+                ['dag_info_executionId', 'dag_info_executionId'],
+                ['dag', '#A', '_placeholder_', '_field_prefix_', '!status#A#', '!identity#A#']) >> ret
+        taskInfo.getSubGroupIndexToStatus().keySet().toList() == ['0', '1']
+        taskInfo.getSubGroupIndexToStatus() == ['0': TaskStatus.RUNNING, '1': TaskStatus.SUCCEED]
+        !taskInfo.isSubGroupsReplaced()
+    }
+
+    def "saveTaskInfos write sub tasks to route hash when partitioned by route"() {
+        given:
+        DAGInfoDAO partitionedDAO = Spy(DAGInfoDAO, constructorArgs: [redisClient, dagInfoDeserializeService]) as DAGInfoDAO
+        partitionedDAO.isSubTaskPartitionedByRoute(*_) >> true
+
+        when:
+        partitionedDAO.saveTaskInfos(executionId, [new TaskInfo(name: "A_0-A1")] as Set)
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagInfoSetScript(),
+                "executionId",
+                ['sub_task_executionId_A_0', 'sub_task_mapping_executionId'],
+                {
+                    List<String> args ->
+                        args.size() == 12 &&
+                                args.subList(0, 6) == ['172800', '_placeholder_', '_alt_key_', 'sub_task_executionId_A', '#A_0-A1', '#A_0-A1'] &&
+                                args.subList(9, 12) == ['_placeholder_', 'A_0', 'sub_task_executionId_A_0']
+                }
+        )
+    }
+
+    def "getParentTaskInfoWithSibling read route hash when partitioned by route"() {
+        given:
+        DAGInfoDAO partitionedDAO = Spy(DAGInfoDAO, constructorArgs: [redisClient, dagInfoDeserializeService]) as DAGInfoDAO
+        partitionedDAO.isSubTaskPartitionedByRoute(*_) >> true
+        List<List<byte[]>> ret = [
+                [DagStorageSerializer.serialize(dagInfo.dag), DagStorageSerializer.serialize(new TaskInfo(name: "A"))],
+                [DagStorageSerializer.serialize(new TaskInfo(name: "A_0-A1")), DagStorageSerializer.serialize(new TaskInfo(name: "A_0-A2"))],
+                [],
+                ['!status#A_0-A1#0', 'SUCCEED'].collect { it.getBytes() }
+        ]
+
+        when:
+        TaskInfo taskInfo = partitionedDAO.getParentTaskInfoWithSibling(executionId, "A_0-A1")
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagInfoGetByFieldScript(), executionId,
+                ['dag_info_executionId', 'sub_task_executionId_A_0', 'dag_info_executionId', 'sub_task_executionId_A_0'],
+                ['dag', '#A',
+                 '_placeholder_', '_alt_key_', 'sub_task_executionId_A', '#A_0-A1', '_key_prefix_', '#A_0%-',
+                 '_placeholder_', '_field_prefix_', '!status#A#', '!identity#A#',
+                 '_placeholder_', '_alt_key_', 'sub_task_executionId_A', '#A_0-A1', '_field_prefix_', '!status#A_0%-', '!identity#A_0%-']) >> ret
+        taskInfo.getChildren().keySet() == ['A_0-A1', 'A_0-A2'] as Set
+        taskInfo.getChildren().get('A_0-A1').getSubGroupIndexToStatus() == ['0': TaskStatus.SUCCEED]
+    }
+
+    def "getDagInfo merge route sub tasks into parent"() {
+        given:
+        List<List<List<byte[]>>> ret = [
+                [['name', 'dag_info_executionId'].collect { it.getBytes() }, []],
+                [['name', 'A_0'].collect { it.getBytes() }, ['#A_0-A1', 'v1'].collect { it.getBytes() }],
+                [['name', 'A_1'].collect { it.getBytes() }, ['#A_1-A1', 'v2'].collect { it.getBytes() }],
+                [['name', 'A_1-A1'].collect { it.getBytes() }, ['#A_1-A1_0-B', 'v3'].collect { it.getBytes() }]
+        ]
+        redisClient.eval(RedisScriptManager.dagInfoGetScript(), executionId, _, _) >> ret
+
+        dagInfoDeserializeService.deserializeBaseDagInfo(_) >> new DAGInfo(executionId: executionId)
+
+        when:
+        dagInfoDAO.getDagInfo(executionId, true).getTasks().size()
+
+        then:
+        1 * dagInfoDeserializeService.getTaskNameToSubTasksMap({
+            List<List<List<byte[]>>> merged ->
+                merged.size() == 3 &&
+                        new String(merged.get(1).get(0).get(1)) == 'A' &&
+                        merged.get(1).get(1).collect { new String(it) } == ['#A_0-A1', 'v1', '#A_1-A1', 'v2'] &&
+                        new String(merged.get(2).get(0).get(1)) == 'A_1-A1'
+        }) >> [:]
+    }
+
+    def "getDagInfo deserialize tasks on first access"() {
+        given:
+        TaskInfo storedTaskInfo = new TaskInfo(name: "A", taskStatus: TaskStatus.RUNNING)
+        List<byte[]> rootContent = ['execution_id'.getBytes(), '"executionId"'.getBytes(),
+                                    '#A'.getBytes(), DagStorageSerializer.serialize(storedTaskInfo),
+                                    '@class_#A'.getBytes(), TaskInfo.class.getName().getBytes(),
+                                    '!status#A#0'.getBytes(), 'SUCCEED'.getBytes()]
+        redisClient.eval(RedisScriptManager.dagInfoGetScript(), executionId, _, _) >> [[['name', 'dag_info_executionId'].collect { it.getBytes() }, rootContent]]
+
+        when:
+        DAGInfo basicDAGInfo = dagInfoDAO.getDagInfo(executionId, false)
+
+        then:
+        1 * dagInfoDeserializeService.deserializeBaseDagInfo({ List<List<byte[]>> content ->
+            content.get(1).collect { new String(it) } == ['execution_id', '"executionId"']
+        }) >> new DAGInfo(executionId: executionId, dagStatus: DAGStatus.RUNNING)
+        0 * dagInfoDeserializeService.getTaskNameToSubTasksMap(_)
+        !((LazyTaskMap) basicDAGInfo.getTasks()).isLoaded()
+
+        when:
+        TaskInfo taskInfo = basicDAGInfo.getTask("A")
+
+        then:
+        1 * dagInfoDeserializeService.getTaskNameToSubTasksMap(_) >> [:]
+        taskInfo.getTaskStatus() == TaskStatus.RUNNING
+        taskInfo.getSubGroupIndexToStatus() == ['0': TaskStatus.SUCCEED]
+        basicDAGInfo.getTasks().keySet() == ['A'] as Set
+    }
+
+    def "getDagInfo lazy tasks translate decode errors and toString does not load"() {
+        given:
+        List<byte[]> rootContent = ['execution_id'.getBytes(), '"executionId"'.getBytes(),
+                                    '#A'.getBytes(), 'not json'.getBytes(),
+                                    '@class_#A'.getBytes(), TaskInfo.class.getName().getBytes()]
+        redisClient.eval(RedisScriptManager.dagInfoGetScript(), executionId, _, _) >> [[['name', 'dag_info_executionId'].collect { it.getBytes() }, rootContent]]
+        dagInfoDeserializeService.deserializeBaseDagInfo(_) >> new DAGInfo(executionId: executionId, dagStatus: DAGStatus.RUNNING)
+
+        when:
+        DAGInfo basicDAGInfo = dagInfoDAO.getDagInfo(executionId, false)
+        basicDAGInfo.toString()
+
+        then:
+        !((LazyTaskMap) basicDAGInfo.getTasks()).isLoaded()
+
+        when:
+        basicDAGInfo.getTask("A")
+
+        then:
+        thrown(SerializationException)
+    }
+
     def "delDagInfo invoke setting if time above zero"() {
         given:
         DAGInfoDAO dagInfoDAOMock = Spy(DAGInfoDAO, constructorArgs: [redisClient, dagInfoDeserializeService]) as DAGInfoDAO
@@ -174,4 +393,32 @@ class DAGInfoDAOTest extends Specification {
         true        | ["dag_info_executionId", "sub_task_mapping_executionId"]
         false       | ["dag_info_executionId"]
     }
+
+    def "lockAndGetDagInfo return null if lock held by others"() {
+        when:
+        def ret = dagInfoDAO.lockAndGetDagInfo("lock_dag_info_executionId", "instanceId:1", 300, executionId,
+                false, ["context_executionId"], ["url", "@class_url"])
+
+        then:
+        ret == null
+        1 * redisClient.eval(RedisScriptManager.dagTraversalLockAndLoadScript(), executionId,
+                ["lock_dag_info_executionId", "dag_info_executionId", "context_executionId"],
+                ["instanceId:1", "300", "fields", "url", "@class_url"]) >> ["FAIL".bytes]
+        0 * dagInfoDeserializeService._
+    }
+
+    def "saveTaskInfosAndUnlock put lock before task info params"() {
+        given:
+        TaskInfo taskInfo = new TaskInfo()
+        taskInfo.name = "A"
+        taskInfo.taskStatus = TaskStatus.READY
+
+        when:
+        dagInfoDAO.saveTaskInfosAndUnlock(executionId, [taskInfo] as Set, "lock_dag_info_executionId", "instanceId:1")
+
+        then:
+        1 * redisClient.eval(RedisScriptManager.dagTraversalSaveAndUnlockScript(), executionId,
+                { List<String> keys -> keys == ["lock_dag_info_executionId", "dag_info_executionId"] },
+                { List<String> args -> args.subList(0, 3) == ["instanceId:1", "172800", "_placeholder_"] && args.contains("#A") })
+    }
 }
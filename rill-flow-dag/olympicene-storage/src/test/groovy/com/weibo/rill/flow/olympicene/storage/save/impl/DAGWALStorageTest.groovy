@@ -0,0 +1,193 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl
+
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
+import com.weibo.rill.flow.olympicene.core.helper.DAGInfoMaker
+import com.weibo.rill.flow.olympicene.core.model.dag.DAG
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus
+import com.weibo.rill.flow.olympicene.ddl.parser.DAGStringParser
+import com.weibo.rill.flow.olympicene.ddl.serialize.YAMLSerializer
+import com.weibo.rill.flow.olympicene.ddl.validation.dag.impl.FlowDAGValidator
+import com.weibo.rill.flow.olympicene.storage.wal.WriteAheadLog
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+
+class DAGWALStorageTest extends Specification {
+    String executionId = "testBusiness:testFeatureName_c_8921a32f-3c9d-4b36-9f0f-b8c1d6a1e5f3"
+    String yaml = "version: 0.0.1\n" +
+            "workspace: olympicene\n" +
+            "dagName: wal\n" +
+            "type: flow\n" +
+            "tasks: \n" +
+            "- category: function\n" +
+            "  name: A\n" +
+            "  resourceName: http://test.com/a\n" +
+            "  pattern: task_sync\n" +
+            "  next: B\n" +
+            "- category: foreach\n" +
+            "  name: B\n" +
+            "  inputMappings:\n" +
+            "    - target: \$.input.segments\n" +
+            "      source: \$.context.segments\n" +
+            "  iterationMapping:\n" +
+            "    collection: \$.input.segments\n" +
+            "    item: segmentUrl\n" +
+            "  tasks:\n" +
+            "    - category: function\n" +
+            "      name: C\n" +
+            "      resourceName: http://test.com/c\n" +
+            "      pattern: task_sync"
+    DAG dag = new DAGStringParser(new YAMLSerializer(), [new FlowDAGValidator()]).parse(yaml)
+    Path directory
+    DAGWALStorage storage
+
+    def setup() {
+        directory = Files.createTempDirectory("dag-wal")
+        storage = new DAGWALStorage(directory.toString(), 1024 * 1024, false)
+        storage.init()
+    }
+
+    def cleanup() {
+        storage.shutdown()
+        directory.toFile().deleteDir()
+    }
+
+    def "state is recovered from wal after restart"() {
+        given:
+        DAGInfo dagInfo = new DAGInfoMaker().executionId(executionId).dag(dag).dagStatus(DAGStatus.RUNNING).make()
+        storage.saveDAGInfo(executionId, dagInfo)
+        storage.updateContext(executionId, [segments: ["s0"], duration: 10])
+
+        TaskInfo taskA = dagInfo.getTask("A")
+        taskA.setTaskStatus(TaskStatus.SUCCEED)
+        TaskInfo taskB = dagInfo.getTask("B")
+        taskB.setTaskStatus(TaskStatus.RUNNING)
+        TaskInfo taskC = new TaskInfo(name: "B_0-C", routeName: "B_0", taskStatus: TaskStatus.RUNNING, parent: taskB)
+        taskB.getChildren().put(taskC.getName(), taskC)
+        storage.saveTaskInfos(executionId, [taskA, taskB] as Set)
+
+        when:
+        DAGWALStorage recovered = restart()
+        DAGInfo recoveredDagInfo = recovered.getDAGInfo(executionId)
+
+        then:
+        recoveredDagInfo.getDagStatus() == DAGStatus.RUNNING
+        recoveredDagInfo.getTask("A").getTaskStatus() == TaskStatus.SUCCEED
+        recoveredDagInfo.getTask("A").getTask().getName() == "A"
+        recoveredDagInfo.getTask("A").getNext()*.name == ["B"]
+        recoveredDagInfo.getTask("B").getDependencies()*.name == ["A"]
+        recovered.getTaskInfo(executionId, "B_0-C").getTaskStatus() == TaskStatus.RUNNING
+        recovered.getTaskInfo(executionId, "B_0-C").getParent().is(recoveredDagInfo.getTask("B"))
+        recovered.getTaskInfo(executionId, "B_0-C").getTask().getName() == "C"
+        recovered.getContext(executionId) == [segments: ["s0"], duration: 10]
+    }
+
+    def "snapshot compacts segments and keeps later writes"() {
+        given:
+        storage.saveDAGInfo(executionId, new DAGInfoMaker().executionId(executionId).dag(dag).dagStatus(DAGStatus.RUNNING).make())
+        storage.updateContext(executionId, [step: 1])
+        storage.snapshot()
+        storage.updateContext(executionId, [step: 2])
+        storage.clearContext("removed")
+
+        when:
+        DAGWALStorage recovered = restart()
+
+        then:
+        Files.exists(directory.resolve(String.format("snapshot-%020d.snap", 1)))
+        !Files.exists(directory.resolve(String.format("wal-%020d.log", 0)))
+        recovered.getDAGInfo(executionId).getTask("B").getTask().getName() == "B"
+        recovered.getContext(executionId) == [step: 2]
+    }
+
+    def "snapshot is built from logged records instead of in-memory objects"() {
+        given:
+        DAGInfo dagInfo = new DAGInfoMaker().executionId(executionId).dag(dag).dagStatus(DAGStatus.RUNNING).make()
+        storage.saveDAGInfo(executionId, dagInfo)
+        TaskInfo taskA = dagInfo.getTask("A")
+        taskA.setTaskStatus(TaskStatus.RUNNING)
+        storage.saveTaskInfos(executionId, [taskA] as Set)
+        storage.snapshot()
+        storage.updateContext(executionId, [step: 1])
+        taskA.setTaskStatus(TaskStatus.SUCCEED)
+        storage.snapshot()
+
+        when:
+        DAGWALStorage recovered = restart()
+
+        then:
+        Files.exists(directory.resolve(String.format("snapshot-%020d.snap", 2)))
+        !Files.exists(directory.resolve(String.format("snapshot-%020d.snap", 1)))
+        !Files.exists(directory.resolve(String.format("wal-%020d.log", 1)))
+        recovered.getDAGInfo(executionId).getTask("A").getTaskStatus() == TaskStatus.RUNNING
+        recovered.getContext(executionId) == [step: 1]
+    }
+
+    def "cleared execution is not recovered"() {
+        given:
+        storage.saveDAGInfo(executionId, new DAGInfoMaker().executionId(executionId).dag(dag).dagStatus(DAGStatus.SUCCEED).make())
+        storage.updateContext(executionId, [step: 1])
+        storage.clearDAGInfo(executionId, 0)
+        storage.clearContext(executionId)
+
+        when:
+        DAGWALStorage recovered = restart()
+
+        then:
+        recovered.getDAGInfo(executionId) == null
+        recovered.getContext(executionId).isEmpty()
+    }
+
+    def "replay stops at truncated or corrupted record"() {
+        given:
+        ByteBuffer buffer = ByteBuffer.allocate(64)
+        WriteAheadLog.writeRecord(buffer, (byte) 1, "first".bytes)
+        int firstEnd = buffer.position()
+        WriteAheadLog.writeRecord(buffer, (byte) 1, "second".bytes)
+        buffer.put(firstEnd + 6, (byte) 0)
+        buffer.flip()
+        List<String> payloads = []
+
+        when:
+        int count = WriteAheadLog.readRecords(buffer, { type, payload -> payloads.add(new String(payload)) })
+
+        then:
+        count == 1
+        payloads == ["first"]
+
+        when:
+        payloads.clear()
+        count = WriteAheadLog.readRecords(ByteBuffer.wrap(Arrays.copyOf(buffer.array(), firstEnd + 4)), { type, payload -> payloads.add(new String(payload)) })
+
+        then:
+        count == 1
+        payloads == ["first"]
+    }
+
+    private DAGWALStorage restart() {
+        storage.shutdown()
+        storage = new DAGWALStorage(directory.toString(), 1024 * 1024, false)
+        storage.init()
+        return storage
+    }
+}
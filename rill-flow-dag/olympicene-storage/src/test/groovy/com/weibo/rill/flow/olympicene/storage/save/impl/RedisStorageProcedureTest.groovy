@@ -1,5 +1,8 @@
 package com.weibo.rill.flow.olympicene.storage.save.impl
 
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo
+import com.weibo.rill.flow.olympicene.core.model.dag.LockedDAGInfo
+import com.weibo.rill.flow.olympicene.core.runtime.DAGTraversalStorage
 import com.weibo.rill.flow.olympicene.storage.redis.lock.Locker
 import spock.lang.Specification
 
@@ -35,4 +38,67 @@ class RedisStorageProcedureTest extends Specification {
         1 * locker.lock(*_)
         1 * locker.unlock(*_)
     }
+
+    def "lockAndLoad should return null if traversal storage not set or not supported"() {
+        given:
+        DAGTraversalStorage traversalStorage = Mock(DAGTraversalStorage.class)
+
+        expect:
+        redisStorageProcedure.lockAndLoad("lockName", "executionId", null) == null
+
+        when:
+        redisStorageProcedure.setTraversalStorage(traversalStorage)
+        def ret = redisStorageProcedure.lockAndLoad("lockName", "executionId", null)
+
+        then:
+        ret == null
+        1 * traversalStorage.lockedTraversalSupported("lockName", "executionId") >> false
+        0 * traversalStorage.tryLockAndLoad(*_)
+    }
+
+    def "lockAndLoad should retry until lock acquired"() {
+        given:
+        DAGTraversalStorage traversalStorage = Mock(DAGTraversalStorage.class)
+        redisStorageProcedure.setTraversalStorage(traversalStorage)
+        LockedDAGInfo lockedDAGInfo = new LockedDAGInfo("lockName", "instanceId:1", "executionId", new DAGInfo(), [:])
+
+        when:
+        def ret = redisStorageProcedure.lockAndLoad("lockName", "executionId", ["url"])
+
+        then:
+        ret == lockedDAGInfo
+        1 * traversalStorage.lockedTraversalSupported(*_) >> true
+        2 * traversalStorage.tryLockAndLoad("lockName", _, 300, "executionId", ["url"]) >>> [null, lockedDAGInfo]
+        0 * locker.unlock(*_)
+    }
+
+    def "lockAndLoad should release lock if load fails"() {
+        given:
+        DAGTraversalStorage traversalStorage = Mock(DAGTraversalStorage.class)
+        redisStorageProcedure.setTraversalStorage(traversalStorage)
+        traversalStorage.lockedTraversalSupported(*_) >> true
+        traversalStorage.tryLockAndLoad(*_) >> { throw new RuntimeException("context length limitation") }
+
+        when:
+        redisStorageProcedure.lockAndLoad("lockName", "executionId", null)
+
+        then:
+        thrown(RuntimeException)
+        1 * locker.unlock("lockName", _)
+    }
+
+    def "saveTaskInfosAndUnlock should release lock if save fails"() {
+        given:
+        DAGTraversalStorage traversalStorage = Mock(DAGTraversalStorage.class)
+        redisStorageProcedure.setTraversalStorage(traversalStorage)
+        LockedDAGInfo lockedDAGInfo = new LockedDAGInfo("lockName", "instanceId:1", "executionId", new DAGInfo(), [:])
+        traversalStorage.saveTaskInfosAndUnlock(*_) >> { throw new RuntimeException("save fails") }
+
+        when:
+        redisStorageProcedure.saveTaskInfosAndUnlock(lockedDAGInfo, [] as Set)
+
+        then:
+        thrown(RuntimeException)
+        1 * locker.unlock("lockName", "instanceId:1")
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.storage.save.impl
+
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
+import com.weibo.rill.flow.olympicene.core.model.task.SubGroupProgress
+import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient
+import spock.lang.Specification
+
+class RedisSubGroupTrackerTest extends Specification {
+    String executionId = "testBusiness:testFeatureName_c_8921a32f-3c9d-4b36-9f0f-b8c1d6a1e5f3"
+    RedisClient redisClient = Mock(RedisClient)
+    RedisSubGroupTracker tracker = new RedisSubGroupTracker(redisClient, 100)
+
+    def "init counts running groups and queues ready groups in index order"() {
+        when:
+        tracker.init(executionId, "A", ["0": TaskStatus.SUCCEED, "1": TaskStatus.RUNNING, "2": TaskStatus.STASHED,
+                                        "10": TaskStatus.READY, "3": TaskStatus.READY])
+
+        then:
+        1 * redisClient.eval(_, executionId,
+                ["sub_group_counter_" + executionId + "_A", "sub_group_ready_" + executionId + "_A"],
+                ["100", "2", "3", "10"])
+    }
+
+    def "complete group result is parsed into progress"() {
+        given:
+        redisClient.eval(_, executionId, _, _) >> [0L, 1L, 0L, 2L, 3L, "5".bytes]
+
+        when:
+        SubGroupProgress progress = tracker.completeGroup(executionId, "A_1-B", "2", TaskStatus.FAILED)
+
+        then:
+        !progress.isDuplicated()
+        progress.getCompletedCount() == 1
+        progress.getRunningCount() == 2
+        progress.getReadyCount() == 3
+        progress.getNextGroupIndex() == "5"
+        !progress.isSettled()
+    }
+
+    def "complete group passes route and parent sub task hash and returns null when not initialized"() {
+        when:
+        SubGroupProgress progress = tracker.completeGroup(executionId, "A_1-B", "2", TaskStatus.FAILED)
+
+        then:
+        1 * redisClient.eval(_, executionId,
+                ["sub_group_counter_" + executionId + "_A_1-B", "sub_group_ready_" + executionId + "_A_1-B",
+                 "sub_task_" + executionId + "_A_1", "sub_task_" + executionId + "_A"],
+                ["2", "FAILED", "1", "!status#A_1-B#", "#A_1-B"]) >> []
+        progress == null
+    }
+}
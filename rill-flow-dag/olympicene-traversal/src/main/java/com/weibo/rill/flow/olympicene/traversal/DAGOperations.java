@@ -158,9 +158,9 @@ public class DAGOperations {
             executionResultStatus = executionResult.getTaskStatus();
             // 对应1.2
             if (executionResult.getTaskStatus() == TaskStatus.RUNNING) {
-                Timeline timeline = Optional.ofNullable(taskInfo.getTask()).map(BaseTask::getTimeline).orElse(null);
-                Optional.ofNullable(getTimeoutSeconds(executionResult.getInput(), new HashMap<>(), timeline))
-                        .ifPresent(timeoutSeconds -> timeCheckRunner.addTaskToTimeoutCheck(executionId, taskInfo, timeoutSeconds));
+                if (!executionResult.isTimeoutCheckRegistered()) {
+                    addTaskToTimeoutCheck(executionId, taskInfo, executionResult.getInput());
+                }
                 tracerHelper.saveSpan(executionId, taskInfo.getName(), executionContext, span);
                 return;
             }
@@ -185,6 +185,16 @@ public class DAGOperations {
         }
     }
 
+    /**
+     * 按任务timeline配置注册超时检查, 任务完成时由finish移除
+     * 任务可能在置为RUNNING后立即完成(如非阻塞分发), 此时需在分发前调用, 避免完成后才注册的检查不再被移除
+     */
+    public void addTaskToTimeoutCheck(String executionId, TaskInfo taskInfo, Map<String, Object> input) {
+        Timeline timeline = Optional.ofNullable(taskInfo.getTask()).map(BaseTask::getTimeline).orElse(null);
+        Optional.ofNullable(getTimeoutSeconds(input, new HashMap<>(), timeline))
+                .ifPresent(timeoutSeconds -> timeCheckRunner.addTaskToTimeoutCheck(executionId, taskInfo, timeoutSeconds));
+    }
+
     private Long getTimeoutSeconds(Map<String, Object> input, Map<String, Object> context, Timeline timeline) {
         try {
             if (timeline == null || StringUtils.isBlank(timeline.getTimeoutInSeconds())) {
@@ -320,6 +330,31 @@ public class DAGOperations {
         }
     }
 
+    /**
+     * 批量提交同一DAG描述符的多个执行, 存储写入由{@link DAGRunner#submitDAGs}合并完成
+     */
+    public void submitDAGs(List<String> executionIds, List<DAG> dags, DAGSettings settings, List<Map<String, Object>> datas, NotifyInfo notifyInfo) {
+        log.info("submitDAGs task begin to execute executionId:{} size:{} notifyInfo:{}", executionIds.get(0), executionIds.size(), notifyInfo);
+        List<ExecutionResult> executionResults = dagRunner.submitDAGs(executionIds, dags, settings, datas, notifyInfo);
+
+        for (int i = 0; i < executionIds.size(); i++) {
+            String executionId = executionIds.get(i);
+            DAG dag = dags.get(i);
+            Span dagSpan = tracerHelper.getTracer().spanBuilder("submitDAG " + executionId.split(ReservedConstant.EXECUTION_ID_CONNECTOR)[0])
+                    .setAttribute("execution.id", executionId)
+                    .setAttribute("dag.name", dag.getDagName())
+                    .setParent(Context.current())
+                    .startSpan();
+            Context dagContext = Context.current().with(dagSpan);
+            try (Scope ignored = dagContext.makeCurrent()) {
+                tracerHelper.saveExecutionContext(executionId, dagContext);
+                Optional.ofNullable(getTimeoutSeconds(new HashMap<>(), executionResults.get(i).getContext(), dag.getTimeline()))
+                        .ifPresent(timeoutSeconds -> timeCheckRunner.addDAGToTimeoutCheck(executionId, timeoutSeconds));
+                dagTraversal.submitTraversal(executionId, null);
+            }
+        }
+    }
+
     public void finishDAG(String executionId, DAGInfo dagInfo, DAGStatus dagStatus, DAGInvokeMsg dagInvokeMsg) {
         log.info("finishDAG task begin to execute executionId:{} dagStatus:{}", executionId, dagStatus);
         
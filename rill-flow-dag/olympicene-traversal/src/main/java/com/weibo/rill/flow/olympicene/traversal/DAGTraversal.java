@@ -17,6 +17,8 @@
 package com.weibo.rill.flow.olympicene.traversal;
 
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
 import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
@@ -27,10 +29,12 @@ import com.weibo.rill.flow.olympicene.core.lock.LockerKey;
 import com.weibo.rill.flow.olympicene.core.model.NotifyInfo;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus;
+import com.weibo.rill.flow.olympicene.core.model.dag.LockedDAGInfo;
 import com.weibo.rill.flow.olympicene.core.model.task.ForeachTask;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGContextStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure;
+import com.weibo.rill.flow.olympicene.core.runtime.LockedTraversalStorageProcedure;
 import com.weibo.rill.flow.olympicene.traversal.helper.ContextHelper;
 import com.weibo.rill.flow.olympicene.traversal.helper.PluginHelper;
 import com.weibo.rill.flow.olympicene.traversal.helper.Stasher;
@@ -46,6 +50,7 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -59,6 +64,13 @@ public class DAGTraversal {
     private final DAGInfoStorage dagInfoStorage;
     private final DAGStorageProcedure dagStorageProcedure;
     private final ExecutorService traversalExecutor;
+    /**
+     * execution最外层任务读取的context字段, Optional.empty()表示需读取全部context
+     */
+    private final Cache<String, Optional<Set<String>>> ancestorContextFields = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .build();
     @Setter
     private DAGOperations dagOperations;
     @Setter
@@ -97,8 +109,12 @@ public class DAGTraversal {
                     params.put("executionId", executionId);
                     params.put("completedTaskName", completedTaskName);
 
-                    Runnable basicActions = () -> dagStorageProcedure.lockAndRun(
-                            LockerKey.buildDagInfoLockName(executionId), () -> doTraversal(executionId, completedTaskName));
+                    Runnable basicActions = () -> {
+                        if (!lockAndTraversal(executionId, completedTaskName)) {
+                            dagStorageProcedure.lockAndRun(
+                                    LockerKey.buildDagInfoLockName(executionId), () -> doTraversal(executionId, completedTaskName));
+                        }
+                    };
                     Runnable runnable = PluginHelper.pluginInvokeChain(basicActions, params, SystemConfig.TRAVERSAL_CUSTOMIZED_PLUGINS);
                     DAGOperations.OPERATE_WITH_RETRY.accept(runnable, SystemConfig.getTraversalRetryTimes());
                 }
@@ -170,6 +186,9 @@ public class DAGTraversal {
             if (dagInfo == null || dagInfo.getDagStatus().isCompleted()) {
                 return;
             }
+            if (contextHelper.isContextFieldProjection()) {
+                ancestorContextFields.put(executionId, Optional.ofNullable(contextHelper.ancestorContextFields(dagInfo.getTasks().values())));
+            }
 
             Set<TaskInfo> readyToRunTasks = DAGWalkHelper.getInstance().getReadyToRunTasks(dagInfo.getTasks().values());
             if (CollectionUtils.isNotEmpty(readyToRunTasks)) {
@@ -178,19 +197,86 @@ public class DAGTraversal {
                 return;
             }
 
-            DAGStatus calculatedDAGStatus = DAGWalkHelper.getInstance().calculateDAGStatus(dagInfo);
-            if (calculatedDAGStatus.isCompleted()) {
-                dagOperations.finishDAG(executionId, dagInfo, calculatedDAGStatus, null);
+            finishDAGIfCompleted(executionId, dagInfo);
+        } finally {
+            ancestorSpan.end();
+        }
+    }
+
+    /**
+     * 最外层任务遍历时加锁与读取DAGInfo、context合并为一次存储交互, 保存任务状态与释放锁合并为一次
+     * 首次遍历尚未确定需读取的context字段或存储不支持时返回false, 由调用方使用lockAndRun
+     */
+    private boolean lockAndTraversal(String executionId, String completedTaskName) {
+        if (StringUtils.isNotEmpty(completedTaskName) && !DAGWalkHelper.getInstance().isAncestorTask(completedTaskName)) {
+            return false;
+        }
+        Optional<Set<String>> contextFields = contextHelper.isContextFieldProjection() ?
+                ancestorContextFields.getIfPresent(executionId) : Optional.empty();
+        if (contextFields == null) {
+            return false;
+        }
+
+        if (!(dagStorageProcedure instanceof LockedTraversalStorageProcedure lockedProcedure)) {
+            return false;
+        }
+        LockedDAGInfo lockedDAGInfo = lockedProcedure.lockAndLoad(
+                LockerKey.buildDagInfoLockName(executionId), executionId, contextFields.orElse(null));
+        if (lockedDAGInfo == null) {
+            return false;
+        }
+
+        Span ancestorSpan = tracerHelper.getTracer().spanBuilder("traversalAncestorTasks")
+                .setAttribute("execution.id", executionId)
+                .setParent(Context.current())
+                .startSpan();
+        boolean unlocked = false;
+        try (Scope scope = ancestorSpan.makeCurrent()) {
+            DAGInfo dagInfo = lockedDAGInfo.getDagInfo();
+            if (dagInfo == null || dagInfo.getDagStatus().isCompleted()) {
+                ancestorContextFields.invalidate(executionId);
+                return true;
+            }
+
+            Set<TaskInfo> readyToRunTasks = DAGWalkHelper.getInstance().getReadyToRunTasks(dagInfo.getTasks().values());
+            if (CollectionUtils.isEmpty(readyToRunTasks)) {
+                finishDAGIfCompleted(executionId, dagInfo);
+                return true;
             }
 
-            if (DAGStatus.KEY_SUCCEED.equals(calculatedDAGStatus)) {
-                dagOperations.finishDAG(executionId, dagInfo, calculatedDAGStatus, null);
+            List<Pair<TaskInfo, Map<String, Object>>> taskToContexts = contextHelper.getContext(readyToRunTasks, lockedDAGInfo.getContext());
+            Set<TaskInfo> taskInfos = markTaskStatus(executionId, taskToContexts);
+            if (taskInfos.stream().anyMatch(taskInfo -> taskInfo.getTaskStatus() == TaskStatus.STASHED)) {
+                // stash需在锁内完成
+                dagInfoStorage.saveTaskInfos(executionId, taskInfos);
+                dispatchTasks(executionId, taskToContexts);
+                return true;
             }
+
+            lockedProcedure.saveTaskInfosAndUnlock(lockedDAGInfo, taskInfos);
+            unlocked = true;
+            // 任务已保存为READY, 其他遍历不会重复提交, 提交执行无需持有锁
+            dispatchTasks(executionId, taskToContexts);
+            return true;
         } finally {
+            if (!unlocked) {
+                lockedProcedure.unlock(lockedDAGInfo);
+            }
             ancestorSpan.end();
         }
     }
 
+    private void finishDAGIfCompleted(String executionId, DAGInfo dagInfo) {
+        DAGStatus calculatedDAGStatus = DAGWalkHelper.getInstance().calculateDAGStatus(dagInfo);
+        if (calculatedDAGStatus.isCompleted()) {
+            dagOperations.finishDAG(executionId, dagInfo, calculatedDAGStatus, null);
+        }
+
+        if (DAGStatus.KEY_SUCCEED.equals(calculatedDAGStatus)) {
+            dagOperations.finishDAG(executionId, dagInfo, calculatedDAGStatus, null);
+        }
+    }
+
     private void traversalNestedTasks(String executionId, String completedTaskName) {
         TaskInfo parent = dagInfoStorage.getParentTaskInfoWithSibling(executionId, completedTaskName);
         if (parent == null) {
@@ -218,6 +304,12 @@ public class DAGTraversal {
     }
 
     private void runTasks(String executionId, List<Pair<TaskInfo, Map<String, Object>>> taskInfoToContexts) {
+        Set<TaskInfo> readyToRunTasks = markTaskStatus(executionId, taskInfoToContexts);
+        dagInfoStorage.saveTaskInfos(executionId, readyToRunTasks);
+        dispatchTasks(executionId, taskInfoToContexts);
+    }
+
+    private Set<TaskInfo> markTaskStatus(String executionId, List<Pair<TaskInfo, Map<String, Object>>> taskInfoToContexts) {
         // 若此处不设置为READY 则同一个任务可能触发多次执行
         taskInfoToContexts.forEach(taskInfoMapPair -> {
             TaskInfo taskInfo = taskInfoMapPair.getLeft();
@@ -227,18 +319,19 @@ public class DAGTraversal {
                 if (groupIndex != null) {
                     Optional.ofNullable(taskInfo.getParent())
                             .filter(it -> it.getTask() instanceof ForeachTask)
-                            .ifPresent(it -> it.getSubGroupIndexToStatus().put(groupIndex, TaskStatus.STASHED));
+                            .ifPresent(it -> it.putSubGroupStatus(groupIndex, TaskStatus.STASHED));
                 }
             } else {
                 taskInfo.setTaskStatus(TaskStatus.READY);
             }
         });
 
-        Set<TaskInfo> readyToRunTasks = taskInfoToContexts.stream()
+        return taskInfoToContexts.stream()
                 .map(Pair::getLeft)
                 .collect(Collectors.toSet());
-        dagInfoStorage.saveTaskInfos(executionId, readyToRunTasks);
+    }
 
+    private void dispatchTasks(String executionId, List<Pair<TaskInfo, Map<String, Object>>> taskInfoToContexts) {
         Map<TaskStatus, List<Pair<TaskInfo, Map<String, Object>>>> classifiedTaskInfoToContexts = taskInfoToContexts.stream().collect(Collectors.groupingBy(it -> it.getLeft().getTaskStatus()));
 
         // 1. stash
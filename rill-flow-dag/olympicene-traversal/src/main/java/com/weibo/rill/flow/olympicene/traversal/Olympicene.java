@@ -72,6 +72,21 @@ public class Olympicene implements DAGInteraction {
                 () -> dagOperations.submitDAG(executionId, dag, settings, data, notifyInfo));
     }
 
+    /**
+     * 批量提交同一DAG描述符的多个执行, 整批作为一个任务执行 context及dagInfo合并写入存储
+     */
+    public void submit(List<String> executionIds, List<DAG> dags, List<Map<String, Object>> datas, DAGSettings settings, NotifyInfo notifyInfo) {
+        if (executionIds == null || executionIds.isEmpty()) {
+            return;
+        }
+        if (dags == null || datas == null || dags.size() != executionIds.size() || datas.size() != executionIds.size()) {
+            throw new DAGTraversalException(TraversalErrorCode.OPERATION_UNSUPPORTED.getCode(), "executionIds, dags and datas size not match");
+        }
+
+        runNotify(executionIds.get(0), NotifyType.SUBMIT, notifyInfo,
+                () -> dagOperations.submitDAGs(executionIds, dags, settings, datas, notifyInfo));
+    }
+
     public void runNotify(String executionId, NotifyType notifyType, NotifyInfo notifyInfo, Runnable actions) {
         notifyExecutor.execute(new ExecutionRunnable(executionId, () -> doRunNotify(executionId, notifyType, notifyInfo, actions)));
     }
@@ -70,6 +70,9 @@ public class OlympiceneFacade {
         dagTraversal.setDagOperations(dagOperations);
         dagTraversal.setStasher(stasher);
         timeCheckRunner.setDagOperations(dagOperations);
+        if (taskRunners.get(TaskCategory.FUNCTION.getValue()) instanceof FunctionTaskRunner functionTaskRunner) {
+            functionTaskRunner.setDagOperations(dagOperations);
+        }
         return new Olympicene(dagInfoStorage, dagOperations, executor, dagResultHandler);
     }
 
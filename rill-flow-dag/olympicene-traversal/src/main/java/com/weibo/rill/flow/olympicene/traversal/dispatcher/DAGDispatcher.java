@@ -16,8 +16,31 @@
 
 package com.weibo.rill.flow.olympicene.traversal.dispatcher;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.weibo.rill.flow.interfaces.model.strategy.DispatchInfo;
+import com.weibo.rill.flow.olympicene.traversal.serialize.DAGTraversalSerializer;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface DAGDispatcher {
     String dispatch(DispatchInfo taskGroup);
+
+    /**
+     * 异步分发, 结果为解析后的返回值, 返回值为空或不是json时为null
+     * 默认在调用线程上同步执行{@link #dispatch(DispatchInfo)}, 支持非阻塞调用的实现可覆盖该方法
+     */
+    default CompletableFuture<JsonNode> dispatchAsync(DispatchInfo taskGroup) {
+        String dispatchRet;
+        try {
+            dispatchRet = dispatch(taskGroup);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return CompletableFuture.completedFuture(StringUtils.isBlank(dispatchRet) ? null : DAGTraversalSerializer.MAPPER.readTree(dispatchRet));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
 }
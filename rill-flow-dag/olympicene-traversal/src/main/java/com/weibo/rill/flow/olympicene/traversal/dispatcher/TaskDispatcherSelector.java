@@ -16,6 +16,7 @@
 
 package com.weibo.rill.flow.olympicene.traversal.dispatcher;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.weibo.rill.flow.interfaces.model.strategy.DispatchInfo;
 import com.weibo.rill.flow.interfaces.model.task.BaseTask;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
@@ -26,6 +27,7 @@ import org.apache.commons.collections.MapUtils;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -42,6 +44,19 @@ public class TaskDispatcherSelector implements DAGDispatcher {
 
     @Override
     public String dispatch(DispatchInfo taskGroup) {
+        return selectDispatcher(taskGroup).dispatch(taskGroup);
+    }
+
+    @Override
+    public CompletableFuture<JsonNode> dispatchAsync(DispatchInfo taskGroup) {
+        try {
+            return selectDispatcher(taskGroup).dispatchAsync(taskGroup);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private DAGDispatcher selectDispatcher(DispatchInfo taskGroup) {
         String taskCategory = Optional.ofNullable(taskGroup)
                 .map(DispatchInfo::getTaskInfo)
                 .map(TaskInfo::getTask)
@@ -57,7 +72,6 @@ public class TaskDispatcherSelector implements DAGDispatcher {
             log.warn("handle task dispatcher not defined");
             throw new DAGTraversalException(TraversalErrorCode.OPERATION_UNSUPPORTED.getCode(), "handle task fails, cannot find dispatcher for task type: " + taskCategory);
         }
-
-        return dispatcher.dispatch(taskGroup);
+        return dispatcher;
     }
 }
@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.traversal.helper;
+
+import com.google.common.collect.Sets;
+import com.weibo.rill.flow.interfaces.model.mapping.Mapping;
+import com.weibo.rill.flow.interfaces.model.task.BaseTask;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 静态分析任务inputMappings读取的context字段
+ * <p>
+ * 返回null表示无法确定读取范围, 需读取完整context:
+ * 1. mapping包含transform, 表达式执行环境中可访问整个context
+ * 2. source为$.context本身、通配、深度扫描或第一级字段无法静态确定
+ */
+public class ContextFieldAnalyzer {
+    public static final String FLOW_EXECUTION_ID = "flow_execution_id";
+
+    private static final String CONTEXT_PATH = "$.context";
+    private static final Pattern DOT_FIELD = Pattern.compile("^\\$\\.context\\.([^.\\[\\]*?()@$]+)(?:$|[.\\[])");
+    private static final Pattern BRACKET_FIELD = Pattern.compile("^\\$\\.context\\[\\s*(['\"])([^'\"*]+)\\1\\s*](?:$|[.\\[])");
+
+    private ContextFieldAnalyzer() {
+    }
+
+    public static Set<String> readContextFields(BaseTask task) {
+        if (task == null) {
+            return null;
+        }
+        return readContextFields(task.getInputMappings());
+    }
+
+    public static Set<String> readContextFields(List<Mapping> inputMappings) {
+        if (CollectionUtils.isEmpty(inputMappings)) {
+            return Collections.emptySet();
+        }
+
+        Set<String> fields = Sets.newHashSet();
+        for (Mapping mapping : inputMappings) {
+            if (mapping == null || StringUtils.isBlank(mapping.getTarget())) {
+                continue;
+            }
+            if (StringUtils.isNotBlank(mapping.getTransform())) {
+                return null;
+            }
+            String source = StringUtils.trim(mapping.getSource());
+            if (StringUtils.isBlank(source) || !source.startsWith("$")) {
+                continue;
+            }
+            if (source.startsWith("$.tasks.")) {
+                // trigger_url依赖flow_execution_id拼接回调地址
+                fields.add(FLOW_EXECUTION_ID);
+                continue;
+            }
+            if (source.startsWith("$..") || source.equals("$") || source.startsWith("$[") || source.startsWith("$.*")) {
+                return null;
+            }
+            if (!source.startsWith(CONTEXT_PATH)) {
+                continue;
+            }
+            String field = contextField(source);
+            if (field == null) {
+                return null;
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private static String contextField(String source) {
+        Matcher dotMatcher = DOT_FIELD.matcher(source);
+        if (dotMatcher.find()) {
+            return dotMatcher.group(1);
+        }
+        Matcher bracketMatcher = BRACKET_FIELD.matcher(source);
+        if (bracketMatcher.find()) {
+            return bracketMatcher.group(2);
+        }
+        return null;
+    }
+}
@@ -45,6 +45,10 @@ public class ContextHelper {
     @Setter
     private volatile boolean independentContext = true;
 
+    @Getter
+    @Setter
+    private volatile boolean contextFieldProjection = true;
+
     @SuppressWarnings("unchecked")
     public Map<String, Object> getContext(DAGContextStorage dagContextStorage, String executionId, TaskInfo taskInfo) {
         Map<String, Object> context;
@@ -150,7 +154,7 @@ public class ContextHelper {
     /**
      * 分组获取每种类型的context
      * subTask中routeName相同的对应相同的context
-     * 最外层对应一种context
+     * 最外层对应一种context, 开启字段裁剪时仅读取最外层任务inputMappings引用的字段
      */
     public Map<String, Object> groupedContextByTaskInfos(DAGContextStorage dagContextStorage, String executionId, Set<TaskInfo> readyToRunTasks) {
         Set<TaskInfo> allTaskInfos = readyToRunTasks.stream().filter(Objects::nonNull).collect(Collectors.toSet());
@@ -158,19 +162,47 @@ public class ContextHelper {
                 .filter(taskInfo -> !DAGWalkHelper.getInstance().isAncestorTask(taskInfo.getName()))
                 .collect(Collectors.toSet());
 
-        Map<String, Object> groupedContext = Maps.newHashMap();
+        boolean hasAncestorTask = allTaskInfos.size() != subTaskInfos.size();
+        Set<String> ancestorFields = hasAncestorTask && contextFieldProjection ? ancestorContextFields(allTaskInfos) : null;
 
+        Map<String, Object> groupedContext = Maps.newHashMap();
+        Set<String> fields = new HashSet<>();
         if (!subTaskInfos.isEmpty()) {
-            groupedContext.putAll(dagContextStorage.getContext(executionId, DAGWalkHelper.getInstance().buildSubTaskContextFieldName(subTaskInfos)));
+            fields.addAll(DAGWalkHelper.getInstance().buildSubTaskContextFieldName(subTaskInfos));
+        }
+        if (ancestorFields != null) {
+            fields.addAll(ancestorFields);
+        }
+        if (!fields.isEmpty()) {
+            groupedContext.putAll(dagContextStorage.getContext(executionId, fields));
         }
 
-        if (allTaskInfos.size() != subTaskInfos.size()) {
+        if (hasAncestorTask && ancestorFields == null) {
             groupedContext.putAll(dagContextStorage.getContext(executionId));
         }
 
         return groupedContext;
     }
 
+    /**
+     * 最外层任务读取的context字段并集, 任一任务无法静态确定时返回null
+     */
+    public Set<String> ancestorContextFields(Collection<TaskInfo> taskInfos) {
+        Set<String> fields = new HashSet<>();
+        fields.add(ContextFieldAnalyzer.FLOW_EXECUTION_ID);
+        for (TaskInfo taskInfo : taskInfos) {
+            if (!DAGWalkHelper.getInstance().isAncestorTask(taskInfo.getName())) {
+                continue;
+            }
+            Set<String> taskFields = ContextFieldAnalyzer.readContextFields(taskInfo.getTask());
+            if (taskFields == null) {
+                return null;
+            }
+            fields.addAll(taskFields);
+        }
+        return fields;
+    }
+
     private ContextHelper() {
 
     }
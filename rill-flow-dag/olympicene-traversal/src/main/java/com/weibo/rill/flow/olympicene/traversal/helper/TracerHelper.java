@@ -102,8 +102,7 @@ public class TracerHelper {
             contextInfo.put("spanId", spanContext.getSpanId());
             contextInfo.put("traceFlags", spanContext.getTraceFlags().asHex());
             
-            redisClient.set(key, contextInfo.toJSONString());
-            redisClient.expire(key, TRACE_EXPIRE_SECONDS);
+            redisClient.setex(key, TRACE_EXPIRE_SECONDS, contextInfo.toJSONString());
         } catch (Exception e) {
             log.error("Failed to save execution context to Redis for execution: {}", executionId, e);
         }
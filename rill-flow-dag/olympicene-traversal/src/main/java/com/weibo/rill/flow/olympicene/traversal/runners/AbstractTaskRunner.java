@@ -363,19 +363,11 @@ public abstract class AbstractTaskRunner implements TaskRunner {
             String completedGroupIndex = notifyInfo.getCompletedGroupIndex();
             TaskStatus groupTaskStatus = notifyInfo.getGroupTaskStatus();
             if (!groupTaskStatus.equals(taskInfo.getSubGroupIndexToStatus().get(completedGroupIndex))) {
-                taskInfo.getSubGroupIndexToStatus().put(completedGroupIndex, groupTaskStatus);
+                taskInfo.putSubGroupStatus(completedGroupIndex, groupTaskStatus);
                 groupStatusChanged = true;
             }
             if (groupTaskStatus.isFailed()) {
-                Optional.ofNullable(DAGWalkHelper.getInstance().getFailedTasks(notifyInfo.getTasks()))
-                        .filter(CollectionUtils::isNotEmpty)
-                        .map(it -> it.get(0))
-                        .map(TaskInfo::getTaskInvokeMsg)
-                        .ifPresent(failedTaskInvokeMsg -> {
-                            TaskInvokeMsg update = failedTaskInvokeMsg.copy();
-                            update.setInvokeTimeInfos(getInvokeTimeInfoList(taskInfo));
-                            taskInfo.setTaskInvokeMsg(update);
-                        });
+                updateInvokeMsgWithFailedGroup(taskInfo, notifyInfo);
             }
 
             TaskStatus taskStatus = DAGWalkHelper.getInstance().calculateParentStatus(taskInfo);
@@ -400,7 +392,7 @@ public abstract class AbstractTaskRunner implements TaskRunner {
                             .map(Map.Entry::getKey)
                             .findFirst()
                             .ifPresent(readyToRunGroupIndex -> {
-                                taskInfo.getSubGroupIndexToStatus().put(readyToRunGroupIndex, TaskStatus.RUNNING);
+                                taskInfo.putSubGroupStatus(readyToRunGroupIndex, TaskStatus.RUNNING);
                                 String routName = DAGWalkHelper.getInstance().buildTaskInfoRouteName(taskInfo.getName(), readyToRunGroupIndex);
                                 String mockTaskName = DAGWalkHelper.getInstance().buildTaskInfoName(routName, "foreachMockName");
                                 executionResult.setTaskNameNeedToTraversal(mockTaskName);
@@ -417,6 +409,25 @@ public abstract class AbstractTaskRunner implements TaskRunner {
         return executionResult;
     }
 
+    /**
+     * 使用失败分组中第一个失败任务的调用信息更新父任务调用信息
+     *
+     * @return 是否更新
+     */
+    protected boolean updateInvokeMsgWithFailedGroup(TaskInfo taskInfo, NotifyInfo notifyInfo) {
+        return Optional.ofNullable(DAGWalkHelper.getInstance().getFailedTasks(notifyInfo.getTasks()))
+                .filter(CollectionUtils::isNotEmpty)
+                .map(it -> it.get(0))
+                .map(TaskInfo::getTaskInvokeMsg)
+                .map(failedTaskInvokeMsg -> {
+                    TaskInvokeMsg update = failedTaskInvokeMsg.copy();
+                    update.setInvokeTimeInfos(getInvokeTimeInfoList(taskInfo));
+                    taskInfo.setTaskInvokeMsg(update);
+                    return true;
+                })
+                .orElse(false);
+    }
+
     private void updateTaskInfoStatusWhenKeySucceed(TaskInfo taskInfo, TaskStatus taskStatus) {
         if (TaskStatus.KEY_SUCCEED.equals(taskStatus)) {
             taskInfo.setTaskStatus(taskStatus);
@@ -16,11 +16,9 @@
 
 package com.weibo.rill.flow.olympicene.traversal.runners;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.jayway.jsonpath.JsonPath;
 import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
 import com.weibo.rill.flow.olympicene.core.helper.TaskInfoMaker;
 import com.weibo.rill.flow.olympicene.core.model.NotifyInfo;
@@ -105,8 +103,7 @@ public class ChoiceTaskRunner extends AbstractTaskRunner {
 
                     boolean condition = false;
                     try {
-                        List<String> result = JsonPath.using(ConditionsUtil.valuePathConf).parse(ImmutableMap.of("input", input)).read(it.getCondition());
-                        condition = !result.isEmpty();
+                        condition = ConditionsUtil.conditionMatch(it.getCondition(), input, "input");
                     } catch (Exception e) {
                         log.warn("choiceTask {} evaluation condition expression {} exception. ", taskInfo.getName(), it.getCondition(), e);
                     }
@@ -118,7 +115,7 @@ public class ChoiceTaskRunner extends AbstractTaskRunner {
                         subTaskInfosAndContext.add(Pair.of(subTaskInfos, groupedContext));
                     } else {
                         subTaskInfos.forEach(t -> t.setTaskStatus(TaskStatus.SKIPPED));
-                        taskInfo.getSubGroupIndexToStatus().put(String.valueOf(groupIndex), TaskStatus.SKIPPED);
+                        taskInfo.putSubGroupStatus(String.valueOf(groupIndex), TaskStatus.SKIPPED);
                     }
                 });
 
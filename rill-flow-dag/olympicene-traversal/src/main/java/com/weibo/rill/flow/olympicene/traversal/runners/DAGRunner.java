@@ -74,53 +74,83 @@ public class DAGRunner {
         dagStorageProcedure.lockAndRun(LockerKey.buildDagInfoLockName(executionId), () -> {
             DAGInfo currentExecutionIdDagInfo = dagInfoStorage.getBasicDAGInfo(executionId);
             submitValidate(executionId, dag, settings.isIgnoreExist(), currentExecutionIdDagInfo);
+            buildSubmitResult(executionId, dag, settings, data, notifyInfo, ret);
 
-            // 任务执行过程中会频繁获取DAG
-            // 理论上对默认context大小不做限制 默认context存入存储后 dag中定义的默认存储在后续逻辑中不会使用
-            // 为减少后续获DAG的大小从而减少网络开销 此处将默认context设置为null
-            Map<String, Object> context = Maps.newHashMap();
-            Map<String, String> defaultContext = Optional.ofNullable(dag.getDefaultContext()).orElse(Collections.emptyMap());
-            defaultContext.forEach((key, value) -> context.put(key, JSONPathInputOutputMapping.parseSource(value)));
-            Optional.ofNullable(data).ifPresent(context::putAll);
-            ret.setContext(context);
-            dag.setDefaultContext(null);
-
-            // inputMapping/outputMapping中可能存在引用通用mapping的情况
-            // 此处将引用替换为实际内容
-            // 后续处理中存在只获取TaskInfo不获取DAG的情况 所以若不替换 则需要在每个获取TaskInfo的地方同时获取DAG
-            // 采用空间换时间的策略 此处将引用替换为实际内容后 存储DAG的大小会变大 但可以简化后续处理的复杂度 不用每次都获取DAG
-            // mapping中引用替换为实际内容后 后续处理将不再使用commonMapping 为减少DAG大小 此处将commonMapping设置为null
-            handleMappingReference(1, dag.getCommonMapping(), dag.getTasks());
-            handleMappingReference(dag.getCommonMapping(), dag.getCallbackConfig());
-            dag.setCommonMapping(null);
-
-            Optional.ofNullable(dag.getResources()).ifPresent(resources ->
-                    handleResources(1, resources.stream().collect(Collectors.toMap(BaseResource::getName, it -> it)), dag.getTasks()));
-            dag.setResources(null);
-
-            DAGInvokeMsg dagInvokeMsg = buildInvokeMsg(executionId, settings, notifyInfo);
-            DAGInfo dagInfoToUpdate = new DAGInfoMaker()
-                    .dag(dag)
-                    .executionId(executionId)
-                    .dagInvokeMsg(dagInvokeMsg)
-                    .dagStatus(DAGStatus.RUNNING)
-                    .make();
-            ret.setDagInfo(dagInfoToUpdate);
-            Optional.ofNullable(dagInvokeMsg)
-                    .map(DAGInvokeMsg::getExecutionRoutes)
-                    .filter(CollectionUtils::isNotEmpty)
-                    .map(it -> it.get(0))
-                    .map(ExecutionInfo::getExecutionId)
-                    .filter(StringUtils::isNotBlank)
-                    .ifPresent(rootExecutionId -> context.putIfAbsent("flow_root_execution_id", rootExecutionId));
-
-            dagContextStorage.updateContext(executionId, context);
-            dagInfoStorage.saveDAGInfo(executionId, dagInfoToUpdate);
+            dagContextStorage.updateContext(executionId, ret.getContext());
+            dagInfoStorage.saveDAGInfo(executionId, ret.getDagInfo());
         });
 
         return ret;
     }
 
+    /**
+     * 批量提交同一DAG描述符的多个执行, context及dagInfo分别合并后批量写入存储
+     * executionId均由调用方新生成 不存在重复提交的情况 因此不再逐个加锁及校验执行是否已存在
+     */
+    public List<ExecutionResult> submitDAGs(List<String> executionIds, List<DAG> dags, DAGSettings settings,
+                                            List<Map<String, Object>> datas, NotifyInfo notifyInfo) {
+        List<ExecutionResult> rets = new ArrayList<>();
+        Map<String, Map<String, Object>> executionIdToContext = new LinkedHashMap<>();
+        Map<String, DAGInfo> executionIdToDAGInfo = new LinkedHashMap<>();
+        for (int i = 0; i < executionIds.size(); i++) {
+            String executionId = executionIds.get(i);
+            DAG dag = dags.get(i);
+            submitValidate(executionId, dag, true, null);
+
+            ExecutionResult ret = ExecutionResult.builder().build();
+            buildSubmitResult(executionId, dag, settings, datas.get(i), notifyInfo, ret);
+            rets.add(ret);
+            executionIdToContext.put(executionId, ret.getContext());
+            executionIdToDAGInfo.put(executionId, ret.getDagInfo());
+        }
+
+        dagContextStorage.updateContexts(executionIdToContext);
+        dagInfoStorage.saveDAGInfos(executionIdToDAGInfo);
+        return rets;
+    }
+
+    private void buildSubmitResult(String executionId, DAG dag, DAGSettings settings, Map<String, Object> data,
+                                   NotifyInfo notifyInfo, ExecutionResult ret) {
+        // 任务执行过程中会频繁获取DAG
+        // 理论上对默认context大小不做限制 默认context存入存储后 dag中定义的默认存储在后续逻辑中不会使用
+        // 为减少后续获DAG的大小从而减少网络开销 此处将默认context设置为null
+        Map<String, Object> context = Maps.newHashMap();
+        Map<String, String> defaultContext = Optional.ofNullable(dag.getDefaultContext()).orElse(Collections.emptyMap());
+        defaultContext.forEach((key, value) -> context.put(key, JSONPathInputOutputMapping.parseSource(value)));
+        Optional.ofNullable(data).ifPresent(context::putAll);
+        ret.setContext(context);
+        dag.setDefaultContext(null);
+
+        // inputMapping/outputMapping中可能存在引用通用mapping的情况
+        // 此处将引用替换为实际内容
+        // 后续处理中存在只获取TaskInfo不获取DAG的情况 所以若不替换 则需要在每个获取TaskInfo的地方同时获取DAG
+        // 采用空间换时间的策略 此处将引用替换为实际内容后 存储DAG的大小会变大 但可以简化后续处理的复杂度 不用每次都获取DAG
+        // mapping中引用替换为实际内容后 后续处理将不再使用commonMapping 为减少DAG大小 此处将commonMapping设置为null
+        handleMappingReference(1, dag.getCommonMapping(), dag.getTasks());
+        handleMappingReference(dag.getCommonMapping(), dag.getCallbackConfig());
+        dag.setCommonMapping(null);
+
+        Optional.ofNullable(dag.getResources()).ifPresent(resources ->
+                handleResources(1, resources.stream().collect(Collectors.toMap(BaseResource::getName, it -> it)), dag.getTasks()));
+        dag.setResources(null);
+
+        DAGInvokeMsg dagInvokeMsg = buildInvokeMsg(executionId, settings, notifyInfo);
+        DAGInfo dagInfoToUpdate = new DAGInfoMaker()
+                .dag(dag)
+                .executionId(executionId)
+                .dagInvokeMsg(dagInvokeMsg)
+                .dagStatus(DAGStatus.RUNNING)
+                .make();
+        ret.setDagInfo(dagInfoToUpdate);
+        Optional.ofNullable(dagInvokeMsg)
+                .map(DAGInvokeMsg::getExecutionRoutes)
+                .filter(CollectionUtils::isNotEmpty)
+                .map(it -> it.get(0))
+                .map(ExecutionInfo::getExecutionId)
+                .filter(StringUtils::isNotBlank)
+                .ifPresent(rootExecutionId -> context.putIfAbsent("flow_root_execution_id", rootExecutionId));
+    }
+
     private void handleResources(int currentDepth, Map<String, BaseResource> resourceMap, List<BaseTask> tasks) {
         if (MapUtils.isEmpty(resourceMap) || CollectionUtils.isEmpty(tasks)) {
             return;
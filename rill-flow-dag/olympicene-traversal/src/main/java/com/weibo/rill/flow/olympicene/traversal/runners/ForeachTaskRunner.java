@@ -27,15 +27,18 @@ import com.weibo.rill.flow.interfaces.model.task.TaskInvokeMsg;
 import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
 import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
 import com.weibo.rill.flow.olympicene.core.helper.TaskInfoMaker;
+import com.weibo.rill.flow.olympicene.core.lock.LockerKey;
 import com.weibo.rill.flow.olympicene.core.model.NotifyInfo;
 import com.weibo.rill.flow.olympicene.core.model.mapping.IterationMapping;
 import com.weibo.rill.flow.olympicene.core.model.strategy.Synchronization;
 import com.weibo.rill.flow.olympicene.core.model.task.ExecutionResult;
 import com.weibo.rill.flow.olympicene.core.model.task.ForeachTask;
+import com.weibo.rill.flow.olympicene.core.model.task.SubGroupProgress;
 import com.weibo.rill.flow.olympicene.core.model.task.TaskCategory;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGContextStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure;
+import com.weibo.rill.flow.olympicene.core.runtime.SubGroupTracker;
 import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import com.weibo.rill.flow.olympicene.traversal.utils.ConditionsUtil;
 import com.weibo.rill.flow.olympicene.traversal.helper.Stasher;
@@ -56,6 +59,11 @@ public class ForeachTaskRunner extends AbstractTaskRunner {
     private final JSONPath jsonPath;
     @Setter
     private Stasher stasher;
+    /**
+     * 为空时分组完成均通过加锁更新父任务的方式处理
+     */
+    @Setter
+    private SubGroupTracker subGroupTracker;
 
     public ForeachTaskRunner(InputOutputMapping inputOutputMapping,
                              JSONPath jsonPath,
@@ -139,6 +147,10 @@ public class ForeachTaskRunner extends AbstractTaskRunner {
 
         dagContextStorage.updateContext(executionId, contextToUpdate);
         dagInfoStorage.saveTaskInfos(executionId, ImmutableSet.of(taskInfo));
+        // 含关键分组的任务需按全部分组状态判断KEY_SUCCEED, 不使用计数器
+        if (subGroupTracker != null && indexToKey.isEmpty() && switcherManager.getSwitcherState("ENABLE_FOREACH_SUB_GROUP_TRACKER")) {
+            subGroupTracker.init(executionId, taskInfo.getName(), indexToStatus);
+        }
 
         log.info("run foreach task completed, executionId:{}, taskInfoName:{}", executionId, taskInfo.getName());
         return ExecutionResult.builder().taskStatus(taskInfo.getTaskStatus()).subTaskInfosAndContext(readyToRun).build();
@@ -208,8 +220,7 @@ public class ForeachTaskRunner extends AbstractTaskRunner {
             String identityString = Optional.ofNullable(output.get("identity")).map(String::valueOf).orElse(null);
 
             if (StringUtils.isNotBlank(identityString)) {
-                taskInfo.setSubGroupIndexToIdentity(Optional.ofNullable(taskInfo.getSubGroupIndexToIdentity()).orElse(Maps.newConcurrentMap()));
-                taskInfo.getSubGroupIndexToIdentity().put(String.valueOf(groupIndex), identityString);
+                taskInfo.putSubGroupIdentity(String.valueOf(groupIndex), identityString);
             }
         } catch (Exception e) {
             log.warn("updateGroupIdentity fails, executionId:{}, taskInfoName:{}, groupIndex:{}, errorMsg:{}",
@@ -219,7 +230,62 @@ public class ForeachTaskRunner extends AbstractTaskRunner {
 
     @Override
     public ExecutionResult finish(String executionId, NotifyInfo notifyInfo, Map<String, Object> output) {
-        return finishParentTask(executionId, notifyInfo);
+        return Optional.ofNullable(finishGroupByTracker(executionId, notifyInfo))
+                .orElseGet(() -> finishParentTask(executionId, notifyInfo));
+    }
+
+    /**
+     * 运行时初始化了分组计数的任务, 分组完成时只更新计数, 无运行中及待运行的分组时再加锁计算父任务状态
+     *
+     * @return 未初始化分组计数时返回null
+     */
+    private ExecutionResult finishGroupByTracker(String executionId, NotifyInfo notifyInfo) {
+        String taskInfoName = notifyInfo.getTaskInfoName();
+        String completedGroupIndex = notifyInfo.getCompletedGroupIndex();
+        TaskStatus groupTaskStatus = notifyInfo.getGroupTaskStatus();
+        if (subGroupTracker == null || StringUtils.isEmpty(completedGroupIndex)
+                || groupTaskStatus == null || !groupTaskStatus.isCompleted()) {
+            return null;
+        }
+
+        SubGroupProgress progress = subGroupTracker.completeGroup(executionId, taskInfoName, completedGroupIndex, groupTaskStatus);
+        if (progress == null) {
+            return null;
+        }
+        if (progress.isSettled()) {
+            ExecutionResult executionResult = finishParentTask(executionId, notifyInfo);
+            if (executionResult.getTaskStatus() != null && executionResult.getTaskStatus().isCompleted()) {
+                subGroupTracker.clear(executionId, taskInfoName);
+            }
+            return executionResult;
+        }
+
+        if (!progress.isDuplicated() && groupTaskStatus.isFailed()) {
+            dagStorageProcedure.lockAndRun(LockerKey.buildTaskInfoLockName(executionId, taskInfoName), () -> {
+                TaskInfo taskInfo = dagInfoStorage.getBasicTaskInfo(executionId, taskInfoName);
+                if (taskInfo != null && updateInvokeMsgWithFailedGroup(taskInfo, notifyInfo)) {
+                    dagInfoStorage.saveTaskInfos(executionId, ImmutableSet.of(taskInfo));
+                }
+            });
+        }
+
+        String taskNameNeedToTraversal = null;
+        if (progress.getNextGroupIndex() != null) {
+            // 已结束的dag不再调度新分组
+            validateDAGInfo(executionId);
+            String routeName = DAGWalkHelper.getInstance().buildTaskInfoRouteName(taskInfoName, progress.getNextGroupIndex());
+            taskNameNeedToTraversal = DAGWalkHelper.getInstance().buildTaskInfoName(routeName, "foreachMockName");
+            log.info("finishGroupByTracker ready to execute group:{} executionId:{}, taskInfoName:{}",
+                    progress.getNextGroupIndex(), executionId, taskInfoName);
+        }
+        TaskInfo taskInfo = new TaskInfo();
+        taskInfo.setName(taskInfoName);
+        taskInfo.setTaskStatus(TaskStatus.RUNNING);
+        return ExecutionResult.builder()
+                .taskStatus(TaskStatus.RUNNING)
+                .taskInfo(taskInfo)
+                .taskNameNeedToTraversal(taskNameNeedToTraversal)
+                .build();
     }
 
 }
@@ -36,6 +36,7 @@ import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure;
 import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import com.weibo.rill.flow.olympicene.ddl.serialize.ObjectMapperFactory;
+import com.weibo.rill.flow.olympicene.traversal.DAGOperations;
 import com.weibo.rill.flow.olympicene.traversal.constant.TraversalErrorCode;
 import com.weibo.rill.flow.olympicene.traversal.dispatcher.DAGDispatcher;
 import com.weibo.rill.flow.olympicene.traversal.exception.DAGTraversalException;
@@ -45,6 +46,7 @@ import com.weibo.rill.flow.olympicene.traversal.serialize.DAGTraversalSerializer
 import com.weibo.rill.flow.olympicene.traversal.strategy.RetryPolicy;
 import com.weibo.rill.flow.olympicene.traversal.strategy.SimpleRetryPolicy;
 import com.weibo.rill.flow.olympicene.traversal.utils.ConditionsUtil;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
@@ -54,6 +56,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
@@ -67,6 +71,8 @@ import static com.weibo.rill.flow.interfaces.model.task.FunctionPattern.*;
 public class FunctionTaskRunner extends AbstractTaskRunner {
     private final DAGDispatcher dagDispatcher;
     private final RetryPolicy retryPolicy;
+    @Setter
+    private DAGOperations dagOperations;
 
     public FunctionTaskRunner(DAGDispatcher dagDispatcher,
                               InputOutputMapping inputOutputMapping,
@@ -109,6 +115,12 @@ public class FunctionTaskRunner extends AbstractTaskRunner {
             FunctionPattern functionPattern = ((FunctionTask) taskInfo.getTask()).getPattern();
             switch (functionPattern) {
                 case TASK_SYNC:
+                    if (dagOperations != null && switcherManager.getSwitcherState("ENABLE_FUNCTION_ASYNC_DISPATCH")) {
+                        executionRef.set(dispatchTaskAsync(executionId, taskInfo, input));
+                        break;
+                    }
+                    executionRef.set(dispatchTask(executionId, taskInfo, input, functionPattern, TaskStatus::isSuccessOrSkip));
+                    break;
                 case TASK_SCHEDULER:
                 case TASK_ASYNC:
                     executionRef.set(dispatchTask(executionId, taskInfo, input, functionPattern, TaskStatus::isSuccessOrSkip));
@@ -177,6 +189,52 @@ public class FunctionTaskRunner extends AbstractTaskRunner {
         }
     }
 
+    /**
+     * task_sync任务非阻塞分发: 发出请求并将任务置为RUNNING后即释放任务锁, 不占用线程等待响应
+     * 响应到达后按外部调用finish的流程完成任务(重试、context更新及后续遍历)
+     * 响应可能在本方法返回前到达, 超时检查需在分发前注册, 保证finish时能将其移除
+     */
+    private ExecutionResult dispatchTaskAsync(String executionId, TaskInfo taskInfo, Map<String, Object> input) {
+        DispatchInfo dispatchInfo = DispatchInfo.builder()
+                .taskInfo(taskInfo)
+                .input(input)
+                .executionId(executionId)
+                .build();
+
+        dagOperations.addTaskToTimeoutCheck(executionId, taskInfo, input);
+        CompletableFuture<JsonNode> dispatchFuture;
+        try {
+            dispatchFuture = dagDispatcher.dispatchAsync(dispatchInfo);
+        } catch (Exception e) {
+            // 与异步失败一致经finish流程处理重试, 同时移除已注册的超时检查
+            dispatchFuture = CompletableFuture.failedFuture(e);
+        }
+        // 分发过程会更新taskInfo(如计算出的资源名), 需在分发之后存储; 存储完成后再注册回调, 保证finish时任务已是RUNNING状态
+        taskInfo.setTaskStatus(TaskStatus.RUNNING);
+        dagInfoStorage.saveTaskInfos(executionId, ImmutableSet.of(taskInfo));
+
+        dispatchFuture.whenComplete((dispatchRetJson, throwable) -> {
+            try {
+                NotifyInfo notifyInfo;
+                Map<String, Object> output = null;
+                if (throwable == null) {
+                    output = buildOutput(dispatchRetJson);
+                    notifyInfo = NotifyInfo.builder().taskInfoName(taskInfo.getName()).taskInvokeMsg(buildInvokeMsg(dispatchRetJson)).build();
+                    log.info("dispatchTaskAsync success, executionId:{}, taskName:{}, output:{}", executionId, taskInfo.getName(), output);
+                } else {
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    log.error("dispatchTaskAsync fails, executionId:{}, taskName:{}, errorMsg:{}", executionId, taskInfo.getName(), cause.getMessage());
+                    notifyInfo = NotifyInfo.builder().taskInfoName(taskInfo.getName()).taskStatus(TaskStatus.FAILED)
+                            .taskInvokeMsg(TaskInvokeMsg.builder().msg(cause.getMessage()).build()).build();
+                }
+                dagOperations.finishTaskAsync(executionId, TaskCategory.FUNCTION.getValue(), notifyInfo, output);
+            } catch (Exception e) {
+                log.error("dispatchTaskAsync finish fails, executionId:{}, taskName:{}", executionId, taskInfo.getName(), e);
+            }
+        });
+        return ExecutionResult.builder().taskStatus(taskInfo.getTaskStatus()).taskInfo(taskInfo).timeoutCheckRegistered(true).build();
+    }
+
     private Map<String, Object> buildOutput(JsonNode dispatchRetJson) {
         if (dispatchRetJson == null) {
             return null;
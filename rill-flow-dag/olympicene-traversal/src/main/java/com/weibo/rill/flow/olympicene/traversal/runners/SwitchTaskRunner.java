@@ -1,6 +1,5 @@
 package com.weibo.rill.flow.olympicene.traversal.runners;
 
-import com.jayway.jsonpath.JsonPath;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
 import com.weibo.rill.flow.interfaces.model.task.TaskInvokeMsg;
 import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
@@ -158,9 +157,7 @@ public class SwitchTaskRunner extends AbstractTaskRunner {
             return defaultSwitch.isNeedDefault();
         }
         try {
-            List<String> result = JsonPath.using(ConditionsUtil.valuePathConf)
-                    .parse(Map.of("input", input)).read(switchObj.getCondition());
-            return !result.isEmpty();
+            return ConditionsUtil.conditionMatch(switchObj.getCondition(), input, "input");
         } catch (Exception e) {
             log.warn("switchTask {} evaluation condition expression {} exception. ",
                     taskInfo.getName(), switchObj.getCondition(), e);
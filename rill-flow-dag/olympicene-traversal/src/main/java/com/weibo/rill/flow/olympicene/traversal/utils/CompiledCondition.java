@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.traversal.utils;
+
+import com.google.common.collect.ImmutableMap;
+import com.jayway.jsonpath.JsonPath;
+import org.apache.commons.collections4.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的condition表达式
+ * <p>
+ * 形如 $.input.[?(@.status == "succeed")] 及 $.input[?(@.segments)] 的简单比较直接从map取值判断, 不构造JsonPath文档;
+ * 取值与常量类型不同、字段不存在或取值为null等情况由编译后的JsonPath判断, 与JsonPath过滤语义保持一致
+ */
+public final class CompiledCondition {
+    private static final Pattern SIMPLE_CONDITION = Pattern.compile(
+            "^\\$\\.(\\w+)\\.?\\[\\?\\(\\s*@\\.([A-Za-z_]\\w*(?:\\.[A-Za-z_]\\w*)*)\\s*" +
+                    "(?:(==|!=|<=|>=|<|>)\\s*(\"[^\"\\\\]*\"|'[^'\\\\]*'|-?\\d+(?:\\.\\d+)?|true|false)\\s*)?\\)]$");
+
+    private final JsonPath jsonPath;
+    private final String mapType;
+    private final String[] fieldPath;
+    private final String operator;
+    private final Object literal;
+
+    private CompiledCondition(JsonPath jsonPath, String mapType, String[] fieldPath, String operator, Object literal) {
+        this.jsonPath = jsonPath;
+        this.mapType = mapType;
+        this.fieldPath = fieldPath;
+        this.operator = operator;
+        this.literal = literal;
+    }
+
+    /**
+     * 表达式不合法时与JsonPath.compile抛出相同异常
+     */
+    public static CompiledCondition compile(String condition) {
+        JsonPath jsonPath = JsonPath.compile(condition);
+        Matcher matcher = SIMPLE_CONDITION.matcher(condition.trim());
+        if (!matcher.matches()) {
+            return new CompiledCondition(jsonPath, null, null, null, null);
+        }
+        return new CompiledCondition(jsonPath, matcher.group(1), matcher.group(2).split("\\."),
+                matcher.group(3), parseLiteral(matcher.group(4)));
+    }
+
+    public boolean matches(Map<String, Object> valueMap, String mapType) {
+        Boolean matched = fieldPath != null && valueMap != null && this.mapType.equals(mapType) ? simpleMatch(valueMap) : null;
+        if (matched != null) {
+            return matched;
+        }
+
+        List<Object> paths = jsonPath.read(ImmutableMap.of(mapType, valueMap), ConditionsUtil.valuePathConf);
+        return CollectionUtils.isNotEmpty(paths);
+    }
+
+    /**
+     * @return 无法确定与JsonPath结果一致时返回null
+     */
+    private Boolean simpleMatch(Map<String, Object> valueMap) {
+        Object value = valueMap;
+        for (String field : fieldPath) {
+            if (!(value instanceof Map<?, ?> map)) {
+                return null;
+            }
+            if (!map.containsKey(field)) {
+                // 字段不存在时仅存在性判断的结果是确定的
+                return operator == null ? Boolean.FALSE : null;
+            }
+            value = map.get(field);
+        }
+        if (operator == null) {
+            return Boolean.TRUE;
+        }
+
+        Integer compareResult = compare(value);
+        if (compareResult == null) {
+            return null;
+        }
+        return switch (operator) {
+            case "==" -> compareResult == 0;
+            case "!=" -> compareResult != 0;
+            case "<" -> compareResult < 0;
+            case "<=" -> compareResult <= 0;
+            case ">" -> compareResult > 0;
+            case ">=" -> compareResult >= 0;
+            default -> null;
+        };
+    }
+
+    private Integer compare(Object value) {
+        if (literal instanceof BigDecimal number && value instanceof Number) {
+            try {
+                return new BigDecimal(value.toString()).compareTo(number);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (literal instanceof String string && value instanceof String) {
+            return ((String) value).compareTo(string);
+        }
+        if (literal instanceof Boolean && value instanceof Boolean && ("==".equals(operator) || "!=".equals(operator))) {
+            return literal.equals(value) ? 0 : 1;
+        }
+        return null;
+    }
+
+    private static Object parseLiteral(String literal) {
+        if (literal == null) {
+            return null;
+        }
+        if (literal.startsWith("\"") || literal.startsWith("'")) {
+            return literal.substring(1, literal.length() - 1);
+        }
+        if ("true".equals(literal) || "false".equals(literal)) {
+            return Boolean.valueOf(literal);
+        }
+        return new BigDecimal(literal);
+    }
+}
@@ -1,10 +1,9 @@
 package com.weibo.rill.flow.olympicene.traversal.utils;
 
-import com.google.common.collect.ImmutableMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
-import org.apache.commons.collections4.CollectionUtils;
 
 import java.util.List;
 import java.util.Map;
@@ -18,15 +17,33 @@ public class ConditionsUtil {
             .options(Option.AS_PATH_LIST)
             .build();
 
+    private static final Cache<String, CompiledCondition> compiledConditions = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .build();
+
     public static boolean conditionsAllMatch(List<String> conditions, Map<String, Object> valueMap, String mapType) {
         return conditions.stream()
-                .map(condition -> JsonPath.using(valuePathConf).parse(ImmutableMap.of(mapType, valueMap)).read(condition))
-                .allMatch(it -> org.apache.commons.collections.CollectionUtils.isNotEmpty((List<Object>) it));
+                .allMatch(condition -> conditionMatch(condition, valueMap, mapType));
     }
 
     public static boolean conditionsAnyMatch(List<String> conditions, Map<String, Object> valueMap, String mapType) {
         return conditions.stream()
-                .map(condition -> JsonPath.using(valuePathConf).parse(ImmutableMap.of(mapType, valueMap)).read(condition))
-                .anyMatch(it -> CollectionUtils.isNotEmpty((List<Object>) it));
+                .anyMatch(condition -> conditionMatch(condition, valueMap, mapType));
+    }
+
+    public static boolean conditionMatch(String condition, Map<String, Object> valueMap, String mapType) {
+        return compile(condition).matches(valueMap, mapType);
+    }
+
+    /**
+     * 编译结果按表达式缓存, 编译失败时直接抛出JsonPath的异常
+     */
+    public static CompiledCondition compile(String condition) {
+        CompiledCondition compiledCondition = condition == null ? null : compiledConditions.getIfPresent(condition);
+        if (compiledCondition == null) {
+            compiledCondition = CompiledCondition.compile(condition);
+            compiledConditions.put(condition, compiledCondition);
+        }
+        return compiledCondition;
     }
 }
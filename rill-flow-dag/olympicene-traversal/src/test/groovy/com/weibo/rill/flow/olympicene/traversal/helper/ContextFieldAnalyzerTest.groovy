@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.traversal.helper
+
+import com.weibo.rill.flow.interfaces.model.mapping.Mapping
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo
+import com.weibo.rill.flow.olympicene.core.model.task.PassTask
+import com.weibo.rill.flow.olympicene.core.runtime.DAGContextStorage
+import spock.lang.Specification
+
+class ContextFieldAnalyzerTest extends Specification {
+    def "readContextFields collect first level context fields"() {
+        given:
+        List<Mapping> mappings = [
+                new Mapping('$.context.url', '$.input.url'),
+                new Mapping('$.context.segments[0]', '$.input.segment'),
+                new Mapping('$.context.meta.width', '$.input.width'),
+                new Mapping("\$.context['video_id']", '$.input.video_id'),
+                new Mapping('$.input.url', '$.input.origin_url'),
+                new Mapping('constant', '$.input.constant'),
+                new Mapping('$.tasks.callback.trigger_url', '$.input.callback')
+        ]
+
+        expect:
+        ContextFieldAnalyzer.readContextFields(mappings) == ['url', 'segments', 'meta', 'video_id', 'flow_execution_id'] as Set
+        ContextFieldAnalyzer.readContextFields([]) == [] as Set
+    }
+
+    def "readContextFields return null when fields can not be determined"() {
+        given:
+        Mapping mapping = new Mapping(source, '$.input.value')
+        mapping.setTransform(transform)
+
+        expect:
+        ContextFieldAnalyzer.readContextFields([new Mapping('$.context.url', '$.input.url'), mapping]) == null
+
+        where:
+        source                 | transform
+        '$.context'            | null
+        '$.context.*'          | null
+        '$..url'               | null
+        '$.context[*].url'     | null
+        '$.context.url'        | 'return context.size;'
+    }
+
+    def "groupedContextByTaskInfos only read referenced fields of ancestor tasks"() {
+        given:
+        DAGContextStorage storage = Mock(DAGContextStorage)
+        TaskInfo taskInfo = taskInfo('A', [new Mapping('$.context.url', '$.input.url')])
+
+        when:
+        Map<String, Object> context = ContextHelper.getInstance().groupedContextByTaskInfos(storage, 'id', [taskInfo] as Set)
+
+        then:
+        1 * storage.getContext('id', ['url', 'flow_execution_id'] as Set) >> [url: 'http://test.com']
+        0 * storage.getContext('id')
+        context == [url: 'http://test.com']
+    }
+
+    def "groupedContextByTaskInfos read full context when any ancestor task uses transform"() {
+        given:
+        DAGContextStorage storage = Mock(DAGContextStorage)
+        Mapping transformMapping = new Mapping('$.context.url', '$.input.url')
+        transformMapping.setTransform('return context.url;')
+        Set<TaskInfo> taskInfos = [taskInfo('A', [new Mapping('$.context.url', '$.input.url')]), taskInfo('B', [transformMapping])] as Set
+
+        when:
+        Map<String, Object> context = ContextHelper.getInstance().groupedContextByTaskInfos(storage, 'id', taskInfos)
+
+        then:
+        0 * storage.getContext('id', _)
+        1 * storage.getContext('id') >> [url: 'http://test.com', size: 1]
+        context == [url: 'http://test.com', size: 1]
+    }
+
+    private static TaskInfo taskInfo(String name, List<Mapping> inputMappings) {
+        PassTask task = new PassTask(name, null, null, null, null, inputMappings, null, null, null, null, false, null, null, null, null, null, null)
+        return new TaskInfo(name: name, task: task)
+    }
+}
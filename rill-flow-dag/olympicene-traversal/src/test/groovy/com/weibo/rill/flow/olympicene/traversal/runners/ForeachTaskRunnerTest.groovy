@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.olympicene.traversal.runners
+
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
+import com.weibo.rill.flow.olympicene.core.model.NotifyInfo
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus
+import com.weibo.rill.flow.olympicene.core.model.task.ExecutionResult
+import com.weibo.rill.flow.olympicene.core.model.task.SubGroupProgress
+import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage
+import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure
+import com.weibo.rill.flow.olympicene.core.runtime.SubGroupTracker
+import spock.lang.Specification
+
+class ForeachTaskRunnerTest extends Specification {
+    String executionId = "testBusiness:testFeatureName_c_8921a32f-3c9d-4b36-9f0f-b8c1d6a1e5f3"
+    DAGInfoStorage dagInfoStorage = Mock(DAGInfoStorage)
+    DAGStorageProcedure dagStorageProcedure = Mock(DAGStorageProcedure)
+    SubGroupTracker subGroupTracker = Mock(SubGroupTracker)
+    ForeachTaskRunner runner = new ForeachTaskRunner(null, null, null, dagInfoStorage, dagStorageProcedure, null)
+    NotifyInfo notifyInfo = NotifyInfo.builder().taskInfoName("A").completedGroupIndex("0").groupTaskStatus(TaskStatus.SUCCEED).build()
+
+    def setup() {
+        runner.setSubGroupTracker(subGroupTracker)
+        dagInfoStorage.getBasicDAGInfo(executionId) >> new DAGInfo(dagStatus: DAGStatus.RUNNING)
+    }
+
+    def "group completion schedules next ready group without parent lock"() {
+        given:
+        subGroupTracker.completeGroup(executionId, "A", "0", TaskStatus.SUCCEED) >>
+                SubGroupProgress.builder().completedCount(1).runningCount(1).readyCount(3).nextGroupIndex("2").build()
+
+        when:
+        ExecutionResult executionResult = runner.finish(executionId, notifyInfo, [:])
+
+        then:
+        0 * dagStorageProcedure.lockAndRun(*_)
+        executionResult.getTaskStatus() == TaskStatus.RUNNING
+        executionResult.getTaskInfo().getName() == "A"
+        executionResult.getTaskNameNeedToTraversal() == "A_2-foreachMockName"
+    }
+
+    def "parent task is finished with lock when all groups settled"() {
+        given:
+        subGroupTracker.completeGroup(executionId, "A", "0", TaskStatus.SUCCEED) >>
+                SubGroupProgress.builder().completedCount(2).runningCount(0).readyCount(0).build()
+
+        when:
+        runner.finish(executionId, notifyInfo, [:])
+
+        then:
+        1 * dagStorageProcedure.lockAndRun(*_)
+    }
+
+    def "untracked parent task falls back to locked update"() {
+        when:
+        runner.finish(executionId, notifyInfo, [:])
+
+        then:
+        1 * subGroupTracker.completeGroup(executionId, "A", "0", TaskStatus.SUCCEED) >> null
+        1 * dagStorageProcedure.lockAndRun(*_)
+    }
+}
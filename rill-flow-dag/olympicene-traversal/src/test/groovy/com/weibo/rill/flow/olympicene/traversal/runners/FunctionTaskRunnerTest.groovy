@@ -17,9 +17,20 @@
 package com.weibo.rill.flow.olympicene.traversal.runners
 
 import com.alibaba.fastjson.JSONObject
+import com.weibo.rill.flow.interfaces.model.task.FunctionPattern
+import com.weibo.rill.flow.interfaces.model.task.FunctionTask
+import com.weibo.rill.flow.interfaces.model.task.TaskInfo
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
 import com.weibo.rill.flow.olympicene.core.model.task.TaskCategory
+import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage
+import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager
+import com.weibo.rill.flow.olympicene.traversal.DAGOperations
+import com.weibo.rill.flow.olympicene.traversal.dispatcher.DAGDispatcher
 import spock.lang.Specification
 
+import java.util.concurrent.CompletableFuture
+
 class FunctionTaskRunnerTest extends Specification {
     FunctionTaskRunner runner = new FunctionTaskRunner(null, null, null, null, null, null)
 
@@ -38,4 +49,42 @@ class FunctionTaskRunnerTest extends Specification {
         fields.getJSONObject("next").getString("type") == "string"
         fields.getJSONObject("next").getBoolean("required") == false
     }
+
+    def "async dispatch registers timeout check before dispatching"() {
+        given:
+        DAGDispatcher dispatcher = Mock(DAGDispatcher)
+        DAGOperations dagOperations = Mock(DAGOperations)
+        DAGStorageProcedure storageProcedure = Mock(DAGStorageProcedure)
+        storageProcedure.lockAndRun(_, _) >> { String lockName, Runnable runnable -> runnable.run() }
+        SwitcherManager switcherManager = Mock(SwitcherManager)
+        switcherManager.getSwitcherState("ENABLE_FUNCTION_ASYNC_DISPATCH") >> true
+        FunctionTaskRunner asyncRunner = new FunctionTaskRunner(dispatcher, null, null, Mock(DAGInfoStorage), storageProcedure, switcherManager)
+        asyncRunner.setDagOperations(dagOperations)
+        FunctionTask task = Mock(FunctionTask)
+        task.getPattern() >> FunctionPattern.TASK_SYNC
+        TaskInfo taskInfo = new TaskInfo(name: "A", task: task)
+        Map<String, Object> input = [a: 1]
+
+        when:
+        def result = asyncRunner.doRun("executionId", taskInfo, input)
+
+        then:
+        1 * dagOperations.addTaskToTimeoutCheck("executionId", taskInfo, input)
+
+        then:
+        1 * dispatcher.dispatchAsync(_) >> {
+            if (dispatchFails) {
+                throw new IllegalStateException("dispatch rejected")
+            }
+            return CompletableFuture.completedFuture(null)
+        }
+        1 * dagOperations.finishTaskAsync("executionId", TaskCategory.FUNCTION.getValue(), { it.taskStatus == finishStatus }, _)
+        result.taskStatus == TaskStatus.RUNNING
+        result.timeoutCheckRegistered
+
+        where:
+        dispatchFails | finishStatus
+        false         | null
+        true          | TaskStatus.FAILED
+    }
 }
@@ -1,6 +1,9 @@
 package com.weibo.rill.flow.olympicene.traversal.utils
 
 
+import com.google.common.collect.ImmutableMap
+import com.jayway.jsonpath.InvalidPathException
+import com.jayway.jsonpath.JsonPath
 import spock.lang.Specification
 
 class ConditionsUtilTest extends Specification {
@@ -32,4 +35,39 @@ class ConditionsUtilTest extends Specification {
         List.of("\$.input.[?(@.a == 1)]", "\$.input.[?(@.b == 1)]", "\$.input.[?(@.c == 3)]") | true
         List.of("\$.input.[?(@.a == 0)]", "\$.input.[?(@.b == 0)]", "\$.input.[?(@.c == 0)]") | false
     }
+
+    def "test conditionMatch same as jsonPath filter"() {
+        given:
+        Map<String, Object> input = ["num": 5, "dbl": 5.0d, "str": "succeed", "numStr": "5", "flag": true,
+                                     "nil": null, "meta": ["width": 1920, "codec": "h264"], "list": [1, 2]]
+
+        when:
+        List<Object> paths = JsonPath.using(ConditionsUtil.valuePathConf).parse(ImmutableMap.of("input", input)).read(condition)
+
+        then:
+        ConditionsUtil.conditionMatch(condition, input, "input") == !paths.isEmpty()
+
+        where:
+        condition << [
+                "\$.input.[?(@.num == 5)]", "\$.input.[?(@.num != 5)]", "\$.input.[?(@.num <= 4)]", "\$.input.[?(@.num > 4.5)]",
+                "\$.input.[?(@.dbl == 5)]", "\$.input.[?(@.dbl >= 5.0)]", "\$.input.[?(@.num == -5)]",
+                "\$.input.[?(@.str == \"succeed\")]", "\$.input.[?(@.str == 'failed')]", "\$.input.[?(@.str != \"failed\")]", "\$.input.[?(@.str < \"t\")]",
+                "\$.input.[?(@.numStr == 5)]", "\$.input.[?(@.num == \"5\")]", "\$.input.[?(@.flag == true)]", "\$.input.[?(@.flag != true)]",
+                "\$.input.[?(@.missing == 5)]", "\$.input.[?(@.missing != 5)]", "\$.input.[?(@.nil == null)]", "\$.input.[?(@.nil == 5)]",
+                "\$.input.[?(@.meta.width == 1920)]", "\$.input.[?(@.meta.codec == \"h264\")]", "\$.input.[?(@.meta.missing == 1)]",
+                "\$.input[?(@.num)]", "\$.input[?(@.nil)]", "\$.input[?(@.missing)]", "\$.input.[?(@.meta.width)]",
+                "\$.input.[?(@.num == 5 && @.str == \"succeed\")]", "\$.input.[?(@.list[0] == 1)]", "\$.output.[?(@.num == 5)]"
+        ]
+    }
+
+    def "test compile cache and invalid condition"() {
+        expect:
+        ConditionsUtil.compile("\$.input.[?(@.a == 1)]").is(ConditionsUtil.compile("\$.input.[?(@.a == 1)]"))
+
+        when:
+        ConditionsUtil.conditionMatch("\$.input.[?(@.a == ", [a: 1], "input")
+
+        then:
+        thrown(InvalidPathException)
+    }
 }
@@ -55,6 +55,9 @@ public class BizDConfsImpl implements BizDConfs {
     @Value("#{${weibo.flow.runtime.redis.storage.business.id.to.context.max.length:{:}}}")
     private Map<String, Integer> redisBusinessIdToContextMaxLength;
 
+    @Value("#{${weibo.flow.runtime.redis.storage.business.id.to.context.blob.threshold:{:}}}")
+    private Map<String, Integer> redisBusinessIdToContextBlobThreshold;
+
     @Value("#{${weibo.flow.business.id.to.runtime.submit.context.max.size:{:}}}")
     private Map<String, Integer> redisBusinessIdToRuntimeSubmitContextMaxSize;
 
@@ -64,6 +67,12 @@ public class BizDConfsImpl implements BizDConfs {
     @Value("#{${weibo.flow.runtime.redis.storage.business.id.to.dag.info.max.length:{:}}}")
     private Map<String, Integer> redisBusinessIdToDAGInfoMaxLength;
 
+    @Value("#{'${weibo.flow.runtime.redis.storage.sub.task.route.partition.business.ids:}'.split(',')}")
+    private Set<String> redisSubTaskRoutePartitionBusinessIds;
+
+    @Value("#{'${weibo.flow.runtime.redis.storage.event.stream.business.ids:}'.split(',')}")
+    private Set<String> redisEventStreamStorageBusinessIds;
+
     @Value("#{${weibo.flow.runtime.swap.storage.business.id.to.client.id:{:}}}")
     private Map<String, String> swapBusinessIdToClientId;
 
@@ -73,6 +82,9 @@ public class BizDConfsImpl implements BizDConfs {
     @Value("#{${weibo.flow.runtime.swap.storage.business.id.to.unfinished.reserve.time:{:}}}")
     private Map<String, Integer> swapBusinessIdToUnfinishedReserveSecond;
 
+    @Value("#{${weibo.flow.runtime.swap.storage.business.id.to.idle.time:{:}}}")
+    private Map<String, Integer> swapBusinessIdToIdleSecond;
+
     @Value("#{${weibo.flow.task.score.exp.when.pop.service.id.to.exp:{:}}}")
     private Map<String, String> taskScoreExpWhenPop;
 
@@ -17,7 +17,11 @@
 package com.weibo.rill.flow.impl.service;
 
 import com.alibaba.fastjson.JSONObject;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.weibo.rill.flow.common.exception.TaskException;
 import com.weibo.rill.flow.common.model.BizError;
 import com.weibo.rill.flow.interfaces.model.http.HttpParameter;
@@ -25,11 +29,14 @@ import com.weibo.rill.flow.interfaces.model.resource.Resource;
 import com.weibo.rill.flow.interfaces.model.task.FunctionPattern;
 import com.weibo.rill.flow.interfaces.model.task.FunctionTask;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
+import com.weibo.rill.flow.olympicene.ddl.serialize.ObjectMapperFactory;
 import com.weibo.rill.flow.service.auth.AuthHeaderGenerator;
 import com.weibo.rill.flow.service.invoke.HttpInvokeHelper;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.client.utils.URIBuilder;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,11 +46,16 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.*;
 
 @Service
 @Slf4j
@@ -52,9 +64,25 @@ public class HttpInvokeHelperImpl implements HttpInvokeHelper {
     @Qualifier("rillFlowHttpTemplate")
     private RestTemplate defaultRestTemplate;
     @Autowired
+    @Qualifier("rillFlowAsyncHttpClient")
+    private OkHttpClient asyncHttpClient;
+    @Autowired
     @Qualifier("authHeaderGenerator")
     private AuthHeaderGenerator authHeaderGenerator;
 
+    private static final long RETRY_BASE_BACKOFF_MILLIS = 50L;
+    private static final long RETRY_MAX_BACKOFF_MILLIS = 1000L;
+    private static final okhttp3.MediaType JSON_MEDIA_TYPE = okhttp3.MediaType.get("application/json; charset=utf-8");
+    private static final okhttp3.MediaType TEXT_MEDIA_TYPE = okhttp3.MediaType.get("text/plain; charset=utf-8");
+    private static final ObjectMapper REQUEST_BODY_MAPPER = new ObjectMapper();
+    private static final ObjectMapper RESPONSE_BODY_MAPPER = ObjectMapperFactory.getJSONMapper();
+    private static final ScheduledExecutorService RETRY_TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("rill-flow-http-retry-%d").setDaemon(true).build());
+
+    static {
+        ObjectMapperFactory.addNetSfJSONNullSerializer(REQUEST_BODY_MAPPER);
+    }
+
     private final Logger httpAccessLogger = LoggerFactory.getLogger("httpclientaccess");
 
     @Override
@@ -132,36 +160,184 @@ public class HttpInvokeHelperImpl implements HttpInvokeHelper {
     @Override
     public String invokeRequest(String executionId, String taskInfoName, String url, HttpEntity<?> requestEntity, HttpMethod method, int maxInvokeTime) {
         RestTemplate restTemplate = defaultRestTemplate;
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (Exception e) {
+            throw new TaskException(BizError.ERROR_INVOKE_URI.getCode(), String.format("dispatchTask http fails due to %s", e.getMessage()));
+        }
         String cause = null;
         for (int i = 1; i <= maxInvokeTime; i++) {
             long startTime = System.currentTimeMillis();
             ResponseEntity<String> responseEntity = null;
             try {
                 if (method == HttpMethod.GET) {
-                    responseEntity = restTemplate.exchange(new URI(url), method, requestEntity, String.class);
+                    responseEntity = restTemplate.exchange(uri, method, requestEntity, String.class);
                 } else {
-                    responseEntity = restTemplate.postForEntity(new URI(url), requestEntity, String.class);
+                    responseEntity = restTemplate.postForEntity(uri, requestEntity, String.class);
                 }
                 return responseEntity.getBody();
             } catch (Exception e) {
                 cause = e.getMessage();
             } finally {
-                postHttpProcess(url, requestEntity, method, System.currentTimeMillis() - startTime, responseEntity);
+                int code = responseEntity == null ? 500 : responseEntity.getStatusCode().value();
+                String responseBody = responseEntity == null ? null : responseEntity.getBody();
+                postHttpProcess(url, requestEntity, method, System.currentTimeMillis() - startTime, code, responseBody);
             }
         }
         throw new TaskException(BizError.ERROR_INVOKE_URI.getCode(), String.format("dispatchTask http fails due to %s", cause));
     }
 
+    @Override
+    public CompletableFuture<JsonNode> invokeRequestAsync(String executionId, String taskInfoName, String url, HttpEntity<?> requestEntity,
+                                                          HttpMethod method, int maxInvokeTime) {
+        CompletableFuture<JsonNode> future = new CompletableFuture<>();
+        if (asyncHttpClient == null) {
+            future.completeExceptionally(new TaskException(BizError.ERROR_INVOKE_URI.getCode(), "async http client is not configured"));
+            return future;
+        }
+        Request request;
+        try {
+            request = buildAsyncRequest(url, requestEntity, method);
+        } catch (Exception e) {
+            log.warn("invokeRequestAsync build request fails, executionId:{}, taskInfoName:{}, url:{}", executionId, taskInfoName, url, e);
+            future.completeExceptionally(new TaskException(BizError.ERROR_INVOKE_URI.getCode(),
+                    String.format("dispatchTask http fails due to %s", e.getMessage())));
+            return future;
+        }
+        enqueueAsyncRequest(request, requestEntity, method, 1, Math.max(maxInvokeTime, 1), future);
+        return future;
+    }
+
+    /**
+     * 成功响应直接从响应流解析为json, 不先读为字符串
+     * 非2xx响应与RestTemplate一致以RestClientResponseException结束
+     * 重试条件与同步调用invokeRequest一致: 非2xx响应及网络异常均重试, 区别仅在于重试间隔按指数退避而非立即重试
+     */
+    private void enqueueAsyncRequest(Request request, HttpEntity<?> requestEntity, HttpMethod method,
+                                     int invokeTime, int maxInvokeTime, CompletableFuture<JsonNode> future) {
+        String url = request.url().toString();
+        long startTime = System.currentTimeMillis();
+        asyncHttpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.isSuccessful()) {
+                        JsonNode responseJson = readResponseJson(url, body);
+                        postHttpProcess(url, requestEntity, method, System.currentTimeMillis() - startTime, response.code(),
+                                responseJson == null || !httpAccessLogger.isInfoEnabled() ? null : responseJson.toString());
+                        future.complete(responseJson);
+                        return;
+                    }
+
+                    byte[] responseBody = body == null ? new byte[0] : body.bytes();
+                    postHttpProcess(url, requestEntity, method, System.currentTimeMillis() - startTime, response.code(),
+                            new String(responseBody, StandardCharsets.UTF_8));
+                    RestClientResponseException failure = new RestClientResponseException(response.code() + " " + response.message(),
+                            response.code(), response.message(), null, responseBody, StandardCharsets.UTF_8);
+                    retryOrFail(request, requestEntity, method, invokeTime, maxInvokeTime, future, failure);
+                } catch (Exception e) {
+                    postHttpProcess(url, requestEntity, method, System.currentTimeMillis() - startTime, response.code(), null);
+                    retryOrFail(request, requestEntity, method, invokeTime, maxInvokeTime, future, buildInvokeException(e));
+                }
+            }
+
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                postHttpProcess(url, requestEntity, method, System.currentTimeMillis() - startTime, 500, null);
+                retryOrFail(request, requestEntity, method, invokeTime, maxInvokeTime, future, buildInvokeException(e));
+            }
+        });
+    }
 
-    private void postHttpProcess(String url, HttpEntity<?> requestEntity, HttpMethod method, long timeout, ResponseEntity<String> responseEntity) {
+    /**
+     * 与同步调用一致: 响应不是json时按空结果处理, 不重试
+     */
+    private JsonNode readResponseJson(String url, ResponseBody body) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        try {
+            JsonNode responseJson = RESPONSE_BODY_MAPPER.readTree(body.byteStream());
+            return responseJson == null || responseJson.isMissingNode() ? null : responseJson;
+        } catch (JsonProcessingException e) {
+            log.warn("readResponseJson response is not json, url:{}, errorMsg:{}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    private static TaskException buildInvokeException(Exception e) {
+        return new TaskException(BizError.ERROR_INVOKE_URI.getCode(), String.format("dispatchTask http fails due to %s", e.getMessage()));
+    }
+
+    private void retryOrFail(Request request, HttpEntity<?> requestEntity, HttpMethod method,
+                             int invokeTime, int maxInvokeTime, CompletableFuture<JsonNode> future, RuntimeException failure) {
+        if (invokeTime >= maxInvokeTime) {
+            future.completeExceptionally(failure);
+            return;
+        }
+        long backoffMillis = retryBackoffMillis(invokeTime);
+        try {
+            RETRY_TIMER.schedule(() -> enqueueAsyncRequest(request, requestEntity, method, invokeTime + 1, maxInvokeTime, future),
+                    backoffMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * 指数退避, 并在[backoff/2, backoff]之间随机抖动, 避免下游恢复时所有重试同时到达
+     */
+    static long retryBackoffMillis(int invokeTime) {
+        long backoff = Math.min(RETRY_MAX_BACKOFF_MILLIS, RETRY_BASE_BACKOFF_MILLIS << Math.min(invokeTime - 1, 10));
+        return ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+    }
+
+    private Request buildAsyncRequest(String url, HttpEntity<?> requestEntity, HttpMethod method) throws IOException {
+        Request.Builder builder = new Request.Builder().url(url);
+        HttpHeaders headers = requestEntity.getHeaders();
+        headers.forEach((name, values) -> values.forEach(value -> builder.addHeader(name, value)));
+        // 与同步调用保持一致: 除GET外均以POST方式发送
+        if (method == HttpMethod.GET) {
+            builder.get();
+        } else {
+            builder.post(buildAsyncRequestBody(requestEntity.getBody(), headers.getContentType()));
+        }
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RequestBody buildAsyncRequestBody(Object body, org.springframework.http.MediaType contentType) throws IOException {
+        okhttp3.MediaType mediaType = contentType == null ? null : okhttp3.MediaType.parse(contentType.toString());
+        if (body == null) {
+            return RequestBody.create(new byte[0], mediaType);
+        }
+        if (body instanceof MultiValueMap) {
+            FormBody.Builder formBuilder = new FormBody.Builder(StandardCharsets.UTF_8);
+            ((MultiValueMap<String, Object>) body).forEach((key, values) ->
+                    values.forEach(value -> formBuilder.add(key, String.valueOf(value))));
+            return formBuilder.build();
+        }
+        if (body instanceof String stringBody) {
+            return RequestBody.create(stringBody, mediaType == null ? TEXT_MEDIA_TYPE : mediaType);
+        }
+        if (body instanceof byte[] bytesBody) {
+            return RequestBody.create(bytesBody, mediaType);
+        }
+        return RequestBody.create(REQUEST_BODY_MAPPER.writeValueAsBytes(body), mediaType == null ? JSON_MEDIA_TYPE : mediaType);
+    }
+
+    private void postHttpProcess(String url, HttpEntity<?> requestEntity, HttpMethod method, long timeout, int code, String responseBody) {
+        if (!httpAccessLogger.isInfoEnabled()) {
+            return;
+        }
         try {
-            int code = responseEntity == null ? 500 : responseEntity.getStatusCode().value();
             // 打印 http_access 日志
             Object requestBody = parseBodyForHttpAccessLog(requestEntity.getBody());
-            String responseBody = (responseEntity == null || responseEntity.getBody() == null) ? "" : responseEntity.getBody();
-            int responseLength = responseBody.length();
-            responseBody = StringUtils.substring(responseBody, 0, 1000);
-            httpAccessLogger.info("{} {} {} {} {} {} {}", timeout, method, code, responseLength, url, requestBody, responseBody);
+            String body = responseBody == null ? "" : responseBody;
+            int responseLength = body.length();
+            body = StringUtils.substring(body, 0, 1000);
+            httpAccessLogger.info("{} {} {} {} {} {} {}", timeout, method, code, responseLength, url, requestBody, body);
         } catch (Exception e) {
             log.warn("httpAccess log error", e);
         }
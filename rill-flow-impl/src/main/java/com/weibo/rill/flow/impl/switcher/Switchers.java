@@ -22,16 +22,22 @@ public class Switchers {
     public static final AtomicBoolean ENABLE_DAG_CONTEXT_LENGTH_CHECK = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_DAG_INFO_LENGTH_CHECK = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_FUNCTION_DISPATCH_RET_CHECK = new AtomicBoolean(true);
+    public static final AtomicBoolean ENABLE_FUNCTION_DISPATCH_CIRCUIT_BREAKER = new AtomicBoolean(false);
     public static final AtomicBoolean ENABLE_RUNTIME_STORAGE_USAGE_CHECK = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_RUNTIME_RESOURCE_STATUS_CHECK = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_RUNTIME_SUBMIT_TRAFFIC_CONTROL = new AtomicBoolean(true);
+    public static final AtomicBoolean ENABLE_LOCAL_TRAFFIC_RATE_LIMITER = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_RUNTIME_SUBMIT_DAG_CHECK = new AtomicBoolean(true);
+    public static final AtomicBoolean ENABLE_RUNTIME_HEALTH_SAMPLER = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_GET_DESCRIPTOR_FROM_CACHE = new AtomicBoolean(true);
+    public static final AtomicBoolean ENABLE_PARSED_DAG_CACHE = new AtomicBoolean(true);
+    public static final AtomicBoolean ENABLE_DESCRIPTOR_META_CACHE = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_AVIATOR_COMPILE_EXPRESSION_CACHE = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_TENANT_TASK_FLOW_AGGREGATE = new AtomicBoolean(false);
     public static final AtomicBoolean ENABLE_TENANT_TASK_BUSINESS_AGGREGATE = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_FLOW_DAG_MULTI_REDO = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_FLOW_CONCURRENT_TASK_INDEPENDENT_CONTEXT = new AtomicBoolean(true);
+    public static final AtomicBoolean ENABLE_FLOW_CONTEXT_FIELD_PROJECTION = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_THREAD_ISOLATION = new AtomicBoolean(true);
     public static final AtomicBoolean ENABLE_RECORD_COMPLIANCE_WHEN_TASK_FINISHED = new AtomicBoolean(false);
     public static final AtomicBoolean ENABLE_FLOW_STASH = new AtomicBoolean(true);
@@ -48,6 +54,10 @@ public class Switchers {
 
     public static final AtomicBoolean ENABLE_SET_INPUT_OUTPUT = new AtomicBoolean(true);
 
+    public static final AtomicBoolean ENABLE_FOREACH_SUB_GROUP_TRACKER = new AtomicBoolean(false);
+
+    public static final AtomicBoolean ENABLE_FUNCTION_ASYNC_DISPATCH = new AtomicBoolean(false);
+
 
     private Switchers() {
 
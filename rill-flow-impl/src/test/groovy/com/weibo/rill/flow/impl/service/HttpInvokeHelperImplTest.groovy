@@ -2,6 +2,7 @@ package com.weibo.rill.flow.impl.service
 
 import com.weibo.rill.flow.common.exception.TaskException
 import com.weibo.rill.flow.service.invoke.HttpInvokeHelper
+import okhttp3.OkHttpClient
 import org.springframework.http.HttpEntity
 import org.springframework.http.HttpMethod
 import org.springframework.http.HttpStatus
@@ -11,6 +12,8 @@ import org.springframework.web.client.RestTemplate
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.util.concurrent.CompletionException
+
 class HttpInvokeHelperImplTest extends Specification {
     RestTemplate defaultRestTemplate = Mock(RestTemplate)
     HttpInvokeHelper httpInvokeHelper = new HttpInvokeHelperImpl(defaultRestTemplate: defaultRestTemplate)
@@ -78,4 +81,37 @@ class HttpInvokeHelperImplTest extends Specification {
         then:
         thrown(TaskException.class)
     }
+
+    def "test retryBackoffMillis bounded with jitter"() {
+        expect:
+        (1..20).every {
+            long backoff = HttpInvokeHelperImpl.retryBackoffMillis(invokeTime)
+            backoff >= min && backoff <= max
+        }
+
+        where:
+        invokeTime || min | max
+        1          || 25  | 50
+        3          || 100 | 200
+        10         || 500 | 1000
+        100        || 500 | 1000
+    }
+
+    def "test invokeRequestAsync fails when async client absent or url invalid"() {
+        given:
+        HttpEntity<?> requestEntity = new HttpEntity<>(null, null)
+        HttpInvokeHelper asyncHelper = new HttpInvokeHelperImpl(defaultRestTemplate: defaultRestTemplate, asyncHttpClient: client)
+
+        when:
+        asyncHelper.invokeRequestAsync("testExecutionId", "testTaskName", url, requestEntity, HttpMethod.POST, 1).join()
+
+        then:
+        CompletionException e = thrown(CompletionException)
+        e.cause instanceof TaskException
+
+        where:
+        client             | url
+        null               | "http://localhost:8080/testurl"
+        new OkHttpClient() | "not a url"
+    }
 }
@@ -20,9 +20,22 @@ import com.weibo.rill.flow.interfaces.model.resource.Resource;
 import com.weibo.rill.flow.interfaces.model.strategy.DispatchInfo;
 import org.pf4j.ExtensionPoint;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface DispatcherExtension extends ExtensionPoint {
     String handle(Resource resource, DispatchInfo dispatchInfo);
 
+    /**
+     * 异步分发, 默认在调用线程上同步执行{@link #handle(Resource, DispatchInfo)}, 支持非阻塞调用的实现可覆盖该方法
+     */
+    default CompletableFuture<String> handleAsync(Resource resource, DispatchInfo dispatchInfo) {
+        try {
+            return CompletableFuture.completedFuture(handle(resource, dispatchInfo));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     String getName();
 
     default String getIcon() { return null; }
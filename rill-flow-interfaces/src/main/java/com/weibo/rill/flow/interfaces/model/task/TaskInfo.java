@@ -18,13 +18,16 @@ package com.weibo.rill.flow.interfaces.model.task;
 
 
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import com.weibo.rill.flow.interfaces.model.exception.DAGException;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Setter
 @Getter
@@ -67,6 +70,62 @@ public class TaskInfo {
 
     private Set<String> skipNextTaskNames = new HashSet<>();
 
+    /**
+     * 以下为未持久化的分组变更记录, 存储层据此只写入发生变化的分组
+     * subGroupsReplaced: 分组map被整体替换, 需全量写入
+     * changedSubGroupIndexes: 通过putSubGroupStatus/putSubGroupIdentity修改过的分组下标
+     */
+    @Setter(AccessLevel.NONE)
+    @Getter(AccessLevel.NONE)
+    private boolean subGroupsReplaced = false;
+    @Setter(AccessLevel.NONE)
+    @Getter(AccessLevel.NONE)
+    private Set<String> changedSubGroupIndexes = ConcurrentHashMap.newKeySet();
+
+    public void setSubGroupIndexToStatus(Map<String, TaskStatus> subGroupIndexToStatus) {
+        this.subGroupIndexToStatus = subGroupIndexToStatus;
+        this.subGroupsReplaced = true;
+    }
+
+    public void setSubGroupIndexToIdentity(Map<String, String> subGroupIndexToIdentity) {
+        this.subGroupIndexToIdentity = subGroupIndexToIdentity;
+        this.subGroupsReplaced = true;
+    }
+
+    public void putSubGroupStatus(String groupIndex, TaskStatus status) {
+        if (subGroupIndexToStatus == null) {
+            subGroupIndexToStatus = new ConcurrentHashMap<>();
+        }
+        subGroupIndexToStatus.put(groupIndex, status);
+        changedSubGroupIndexes.add(groupIndex);
+    }
+
+    public void putSubGroupIdentity(String groupIndex, String identity) {
+        if (subGroupIndexToIdentity == null) {
+            subGroupIndexToIdentity = new ConcurrentHashMap<>();
+        }
+        subGroupIndexToIdentity.put(groupIndex, identity);
+        changedSubGroupIndexes.add(groupIndex);
+    }
+
+    @JsonIgnore
+    public boolean isSubGroupsReplaced() {
+        return subGroupsReplaced;
+    }
+
+    @JsonIgnore
+    public Set<String> getChangedSubGroupIndexes() {
+        return changedSubGroupIndexes;
+    }
+
+    /**
+     * 分组变更已持久化后调用
+     */
+    public void clearSubGroupChanges(Collection<String> persistedGroupIndexes) {
+        subGroupsReplaced = false;
+        changedSubGroupIndexes.removeAll(persistedGroupIndexes);
+    }
+
     @Override
     public String toString() {
         return "TaskInfo{" +
@@ -16,38 +16,91 @@
 
 package com.weibo.rill.flow.service.component;
 
-import com.weibo.rill.flow.service.util.UuidUtil;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.weibo.rill.flow.common.concurrent.BaseExecutorService;
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable;
 import com.weibo.rill.flow.olympicene.storage.redis.api.Crc32Sharding;
 import com.weibo.rill.flow.olympicene.storage.redis.api.Sharding;
-import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable;
-import com.weibo.rill.flow.common.concurrent.BaseExecutorService;
+import com.weibo.rill.flow.service.util.UuidUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * 按executionId隔离的执行器, 每个executionId拥有一个轻量的串行mailbox:
+ * <ul>
+ *     <li>同一个execution提交的任务按提交顺序串行执行, 不需要依赖外部锁保证本节点内的顺序</li>
+ *     <li>mailbox按executionId的crc32值亲和到某个worker, 空闲的worker会从繁忙worker的队列尾部窃取整个mailbox执行</li>
+ *     <li>每个mailbox单次最多连续执行{@code mailboxThroughput}个任务, 之后让出worker, 避免热点execution独占线程</li>
+ * </ul>
+ */
 @Slf4j
 public class ExecutionIsolatableExecutorService extends BaseExecutorService {
+    private static final int DEFAULT_MAILBOX_THROUGHPUT = 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
 
-    private List<ExecutorService> executors;
-    private Sharding<ExecutorService> sharding;
+    private final ConcurrentMap<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final List<Worker> workers;
+    private final Sharding<Worker> sharding;
+    private final int maxPendingTasks;
+    private final int mailboxThroughput;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final CountDownLatch terminationLatch;
+    private volatile boolean shutdown = false;
 
-    public ExecutionIsolatableExecutorService(List<ExecutorService> executors) {
-        this.executors = executors;
-        this.sharding = Crc32Sharding.singleton();
+    public ExecutionIsolatableExecutorService(String threadNameFormat, int workerCount, int maxPendingTasks) {
+        this(threadNameFormat, workerCount, maxPendingTasks, DEFAULT_MAILBOX_THROUGHPUT);
     }
-    public ExecutionIsolatableExecutorService(List<ExecutorService> executors, Sharding<ExecutorService> sharding) {
-        this.executors = executors;
-        this.sharding = sharding;
+
+    public ExecutionIsolatableExecutorService(String threadNameFormat, int workerCount, int maxPendingTasks, int mailboxThroughput) {
+        if (workerCount <= 0 || maxPendingTasks <= 0 || mailboxThroughput <= 0) {
+            throw new IllegalArgumentException("workerCount, maxPendingTasks and mailboxThroughput must be positive");
+        }
+        this.maxPendingTasks = maxPendingTasks;
+        this.mailboxThroughput = mailboxThroughput;
+        this.sharding = Crc32Sharding.singleton();
+        this.terminationLatch = new CountDownLatch(workerCount);
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat(threadNameFormat).build();
+        List<Worker> workerList = Lists.newArrayListWithCapacity(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workerList.add(new Worker(i));
+        }
+        this.workers = List.copyOf(workerList);
+        this.workers.forEach(worker -> {
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.start();
+        });
     }
 
     @Override
     public void execute(Runnable runnable) {
-        choose(getShardingKey(runnable), this.executors).execute(runnable);
-    }
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("executor has been shutdown");
+        }
+        if (pendingTasks.incrementAndGet() > maxPendingTasks) {
+            pendingTasks.decrementAndGet();
+            throw new RejectedExecutionException("too many pending tasks, maxPendingTasks: " + maxPendingTasks);
+        }
 
-    public ExecutorService choose(String shardingKey, List<ExecutorService> clients) {
-        return sharding.choose(clients, shardingKey);
+        // 入队与mailbox回收都在compute中完成, 保证同一个executionId任意时刻只有一个有效mailbox
+        Mailbox mailbox = mailboxes.compute(getShardingKey(runnable), (key, current) -> {
+            Mailbox target = current == null ? new Mailbox(key) : current;
+            target.tasks.offer(runnable);
+            return target;
+        });
+        if (mailbox.scheduled.compareAndSet(false, true)) {
+            schedule(mailbox);
+        }
     }
 
     public String getShardingKey(Runnable runnable) {
@@ -60,4 +113,156 @@ public class ExecutionIsolatableExecutorService extends BaseExecutorService {
         return key;
     }
 
+    public int getPendingTaskCount() {
+        return pendingTasks.get();
+    }
+
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        workers.forEach(worker -> LockSupport.unpark(worker.thread));
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> unExecutedTasks = Lists.newArrayList();
+        mailboxes.keySet().forEach(key -> mailboxes.computeIfPresent(key, (k, mailbox) -> {
+            Runnable task;
+            while ((task = mailbox.tasks.poll()) != null) {
+                pendingTasks.decrementAndGet();
+                unExecutedTasks.add(task);
+            }
+            return mailbox;
+        }));
+        workers.forEach(worker -> worker.thread.interrupt());
+        return unExecutedTasks;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationLatch.getCount() == 0;
+    }
+
+    private void schedule(Mailbox mailbox) {
+        Worker owner = sharding.choose(workers, mailbox.executionId);
+        owner.runQueue.offerLast(mailbox);
+        if (owner.idle) {
+            LockSupport.unpark(owner.thread);
+            return;
+        }
+        // 亲和的worker正忙, 唤醒一个空闲worker过来窃取
+        for (Worker worker : workers) {
+            if (worker != owner && worker.idle) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    private Mailbox steal(Worker thief) {
+        int size = workers.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            Worker victim = workers.get((start + i) % size);
+            if (victim == thief) {
+                continue;
+            }
+            Mailbox mailbox = victim.runQueue.pollLast();
+            if (mailbox != null) {
+                return mailbox;
+            }
+        }
+        return null;
+    }
+
+    private void process(Worker worker, Mailbox mailbox) {
+        int executed = 0;
+        Runnable task;
+        while (executed < mailboxThroughput && (task = mailbox.tasks.poll()) != null) {
+            pendingTasks.decrementAndGet();
+            executed++;
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.warn("run task fails, executionId:{}", mailbox.executionId, e);
+            }
+        }
+
+        // mailbox为空时从map中摘除, 非空则放回当前worker队列尾部, 让出线程并允许被其他worker窃取
+        AtomicBoolean released = new AtomicBoolean(false);
+        mailboxes.computeIfPresent(mailbox.executionId, (key, current) -> {
+            if (current == mailbox && mailbox.tasks.isEmpty()) {
+                mailbox.scheduled.set(false);
+                released.set(true);
+                return null;
+            }
+            return current;
+        });
+        if (!released.get()) {
+            worker.runQueue.offerLast(mailbox);
+        }
+    }
+
+    private static class Mailbox {
+        private final String executionId;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private Mailbox(String executionId) {
+            this.executionId = executionId;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final int index;
+        private final BlockingDeque<Mailbox> runQueue = new LinkedBlockingDeque<>();
+        private volatile Thread thread;
+        private volatile boolean idle = false;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Mailbox mailbox = runQueue.pollFirst();
+                    if (mailbox == null) {
+                        mailbox = steal(this);
+                    }
+                    if (mailbox != null) {
+                        process(this, mailbox);
+                        continue;
+                    }
+                    if (shutdown && pendingTasks.get() <= 0) {
+                        break;
+                    }
+                    idle = true;
+                    if (runQueue.isEmpty()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                }
+            } finally {
+                log.info("execution isolatable worker exit, index:{}", index);
+                terminationLatch.countDown();
+            }
+        }
+    }
 }
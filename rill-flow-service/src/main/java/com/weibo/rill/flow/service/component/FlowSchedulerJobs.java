@@ -19,6 +19,8 @@ package com.weibo.rill.flow.service.component;
 import com.weibo.rill.flow.service.statistic.BusinessTimeChecker;
 import com.weibo.rill.flow.service.statistic.SystemMonitorStatistic;
 import com.weibo.rill.flow.service.statistic.TenantTaskStatistic;
+import com.weibo.rill.flow.service.storage.LongTermStorage;
+import com.weibo.rill.flow.service.storage.RuntimeStorage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -34,6 +36,10 @@ public class FlowSchedulerJobs {
     private SystemMonitorStatistic systemMonitorStatistic;
     @Autowired
     private TenantTaskStatistic tenantTaskStatistic;
+    @Autowired
+    private RuntimeStorage runtimeStorage;
+    @Autowired
+    private LongTermStorage longTermStorage;
 
     @Scheduled(cron = "0/3 * * * * *")
     public void businessTimeCheck() {
@@ -49,4 +55,24 @@ public class FlowSchedulerJobs {
     public void tenantTaskRecord() {
         tenantTaskStatistic.setBusinessValue();
     }
+
+    @Scheduled(cron = "0/30 * * * * *")
+    public void contextBlobRelease() {
+        runtimeStorage.releaseExpiredContextBlobs(200);
+    }
+
+    @Scheduled(cron = "0/10 * * * * *")
+    public void runtimeAccessFlush() {
+        runtimeStorage.flushRuntimeAccess();
+    }
+
+    @Scheduled(cron = "0/30 * * * * *")
+    public void runtimeIdleSwapOut() {
+        runtimeStorage.swapOutIdleExecutions(200);
+    }
+
+    @Scheduled(cron = "0/5 * * * * *")
+    public void longTermArchiveFlush() {
+        longTermStorage.flushArchives(200);
+    }
 }
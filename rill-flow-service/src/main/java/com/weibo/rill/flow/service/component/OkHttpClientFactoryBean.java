@@ -18,6 +18,7 @@ package com.weibo.rill.flow.service.component;
 
 import com.weibo.rill.flow.service.manager.OkHttpFeaturesManager;
 import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.FactoryBean;
 
@@ -31,6 +32,8 @@ public class OkHttpClientFactoryBean implements FactoryBean<OkHttpClient> {
     private long readTimeOut;
     private long writeTimeOut;
     private ConnectionPool connectionPool;
+    private int maxRequests;
+    private int maxRequestsPerHost;
 
     public OkHttpClientFactoryBean() {
 
@@ -64,6 +67,17 @@ public class OkHttpClientFactoryBean implements FactoryBean<OkHttpClient> {
             builder.connectionPool(connectionPool);
         }
 
+        if (maxRequests > 0 || maxRequestsPerHost > 0) {
+            Dispatcher dispatcher = new Dispatcher();
+            if (maxRequests > 0) {
+                dispatcher.setMaxRequests(maxRequests);
+            }
+            if (maxRequestsPerHost > 0) {
+                dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+            }
+            builder.dispatcher(dispatcher);
+        }
+
         return builder.build();
     }
 
@@ -92,4 +106,12 @@ public class OkHttpClientFactoryBean implements FactoryBean<OkHttpClient> {
     public void setConnectionPool(ConnectionPool connectionPool) {
         this.connectionPool = connectionPool;
     }
+
+    public void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+    }
+
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
 }
@@ -19,6 +19,7 @@ package com.weibo.rill.flow.service.component;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.weibo.rill.flow.service.util.PrometheusActions;
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable;
 import com.weibo.rill.flow.olympicene.core.event.Callback;
 import com.weibo.rill.flow.olympicene.core.event.Event;
 import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
@@ -83,7 +84,7 @@ public class OlympiceneCallback implements Callback<DAGCallbackInfo> {
             return;
         }
 
-        callbackExecutor.execute(() -> {
+        callbackExecutor.execute(new ExecutionRunnable(event.getId(), () -> {
             int eventCode = event.getEventCode();
             DAGCallbackInfo eventData = event.getData();
             monitorLog(event.getId(), eventCode, eventData);
@@ -91,7 +92,7 @@ public class OlympiceneCallback implements Callback<DAGCallbackInfo> {
                 longTermStorage.storeDAGInfoAndContext(eventData);
                 flowCompletedCallback(eventCode, eventData);
             }
-        });
+        }));
     }
 
     private void monitorLog(String executionId, int eventCode, DAGCallbackInfo eventData) {
@@ -21,12 +21,14 @@ import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import com.weibo.rill.flow.service.util.ExecutionIdUtil;
 import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable;
 import com.weibo.rill.flow.common.concurrent.BaseExecutorService;
+import com.weibo.rill.flow.service.decorator.InstrumentedExecutorServiceDecorator;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 @Slf4j
@@ -37,14 +39,30 @@ public class RuntimeExecutorServiceProxy extends BaseExecutorService {
     private BizDConfs bizDConfs;
     private final Map<String, ExecutorService> executorsHolder;
     private final ExecutorService bizDefaultExecutorService;
+    private final String poolName;
+    /**
+     * 按业务隔离的线程池在多个proxy间共享, 每个proxy以自己的poolName分别统计
+     */
+    private final Map<ExecutorService, ExecutorService> instrumentedExecutors = new ConcurrentHashMap<>();
 
 
     public RuntimeExecutorServiceProxy(BizDConfs bizDConfs,
                                        Map<String, ExecutorService> executorsHolder,
                                        ExecutorService defaultExecutorService) {
+        this(bizDConfs, executorsHolder, defaultExecutorService, null);
+    }
+
+    /**
+     * @param poolName 不为空时按业务隔离的线程池以"poolName_clientId"为名统计排队与执行耗时
+     */
+    public RuntimeExecutorServiceProxy(BizDConfs bizDConfs,
+                                       Map<String, ExecutorService> executorsHolder,
+                                       ExecutorService defaultExecutorService,
+                                       String poolName) {
         this.bizDConfs = bizDConfs;
         this.executorsHolder = executorsHolder;
         this.bizDefaultExecutorService = defaultExecutorService;
+        this.poolName = poolName;
     }
 
     @Override
@@ -77,8 +95,17 @@ public class RuntimeExecutorServiceProxy extends BaseExecutorService {
         ExecutorService chosen = this.executorsHolder.get(clientId);
         if (chosen == null) {
             log.warn("choose by biz and type:{} not found in config, may use default.", clientId);
+            return null;
         }
 
-        return chosen;
+        return instrument(clientId, chosen);
+    }
+
+    private ExecutorService instrument(String clientId, ExecutorService executorService) {
+        if (StringUtils.isBlank(poolName)) {
+            return executorService;
+        }
+        return instrumentedExecutors.computeIfAbsent(executorService,
+                it -> new InstrumentedExecutorServiceDecorator(poolName + "_" + clientId, it));
     }
 }
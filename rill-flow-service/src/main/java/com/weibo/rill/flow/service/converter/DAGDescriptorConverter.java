@@ -16,6 +16,7 @@
 
 package com.weibo.rill.flow.service.converter;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
 import com.weibo.rill.flow.olympicene.core.model.dag.DescriptorPO;
 import com.weibo.rill.flow.olympicene.core.model.dag.DescriptorVO;
@@ -26,6 +27,8 @@ import com.weibo.rill.flow.olympicene.core.model.dag.DescriptorVO;
 public interface DAGDescriptorConverter {
     DAG convertDescriptorVOToDAG(DescriptorVO descriptorVO);
     DAG convertDescriptorPOToDAG(DescriptorPO descriptorPO);
+    DAG convertValidatedTreeToDAG(JsonNode validatedTree);
+    JsonNode convertDAGToValidatedTree(DAG dag);
     DescriptorVO convertDAGToDescriptorVO(DAG dag);
     DescriptorPO convertDAGToDescriptorPO(DAG dag);
 }
@@ -17,6 +17,7 @@
 package com.weibo.rill.flow.service.converter;
 
 import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Maps;
 import com.jayway.jsonpath.JsonPath;
@@ -51,6 +52,16 @@ public class DAGDescriptorConverterImpl implements DAGDescriptorConverter {
         return dagParser.parse(descriptorPO.getDescriptor());
     }
 
+    @Override
+    public DAG convertValidatedTreeToDAG(JsonNode validatedTree) {
+        return dagParser.bindValidated(validatedTree);
+    }
+
+    @Override
+    public JsonNode convertDAGToValidatedTree(DAG dag) {
+        return dagParser.serializeToTree(dag);
+    }
+
     @Override
     public DescriptorPO convertDAGToDescriptorPO(DAG dag) {
         String descriptor = dagParser.serialize(dag);
@@ -30,10 +30,14 @@ public interface BizDConfs {
     Map<String,Integer> getRedisBusinessIdToFinishReserveSecond();
     Map<String,Integer> getRedisBusinessIdToUnfinishedReserveSecond();
     Map<String,Integer> getRedisBusinessIdToContextMaxLength();
+    Map<String,Integer> getRedisBusinessIdToContextBlobThreshold();
     Map<String,Integer> getRedisBusinessIdToDAGInfoMaxLength();
+    Set<String> getRedisSubTaskRoutePartitionBusinessIds();
+    Set<String> getRedisEventStreamStorageBusinessIds();
     Map<String,String> getSwapBusinessIdToClientId();
     Map<String,Integer> getSwapBusinessIdToFinishReserveSecond();
     Map<String,Integer> getSwapBusinessIdToUnfinishedReserveSecond();
+    Map<String,Integer> getSwapBusinessIdToIdleSecond();
     Set<String> getRuntimeRedisUsageCheckIDs();
     Map<String,Integer> getRuntimeRedisStorageIdToMaxUsage();
     int getRuntimeRedisDefaultStorageMaxUsage();
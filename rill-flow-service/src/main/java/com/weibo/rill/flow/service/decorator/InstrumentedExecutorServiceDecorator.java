@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.decorator;
+
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable;
+import com.weibo.rill.flow.service.util.ExecutionIdUtil;
+import com.weibo.rill.flow.service.util.PrometheusActions;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 该类是{@link ExecutorService}的一个监控装饰器, 按线程池及租户(businessId)统计提交任务的排队耗时、执行耗时和被拒绝次数,
+ * 并以瞬时值的形式暴露线程池中正在执行及排队中的任务数, 数据通过{@link PrometheusActions}上报。
+ * <p>
+ * 该装饰器应当位于最外层, 使排队耗时从任务提交时开始计算。
+ */
+public class InstrumentedExecutorServiceDecorator extends AbstractExecutorService {
+    private static final String UNKNOWN_TENANT = "unknown";
+
+    private final String poolName;
+    private final ExecutorService underlyingExecutorService;
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicBoolean gaugesRegistered = new AtomicBoolean(false);
+
+    public InstrumentedExecutorServiceDecorator(String poolName, ExecutorService underlyingExecutorService) {
+        if (underlyingExecutorService == null) {
+            throw new IllegalArgumentException("underlying executor service must not be null");
+        }
+        this.poolName = poolName;
+        this.underlyingExecutorService = underlyingExecutorService;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        registerGaugesIfNecessary();
+
+        String tenant = getTenant(task);
+        long submitTime = System.currentTimeMillis();
+        Runnable instrumentedCommand = () -> {
+            queuedCount.decrementAndGet();
+            activeCount.incrementAndGet();
+            long startTime = System.currentTimeMillis();
+            try {
+                task.run();
+            } finally {
+                activeCount.decrementAndGet();
+                PrometheusActions.recordExecutorTask(poolName, tenant, startTime - submitTime, System.currentTimeMillis() - startTime);
+            }
+        };
+        if (task instanceof ExecutionRunnable executionRunnable) {
+            instrumentedCommand = new ExecutionRunnable(executionRunnable.getExecutionId(), instrumentedCommand);
+        }
+
+        queuedCount.incrementAndGet();
+        try {
+            underlyingExecutorService.execute(instrumentedCommand);
+        } catch (RejectedExecutionException e) {
+            queuedCount.decrementAndGet();
+            PrometheusActions.recordExecutorRejected(poolName, tenant);
+            throw e;
+        }
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    private String getTenant(Runnable task) {
+        if (task instanceof ExecutionRunnable executionRunnable && executionRunnable.getExecutionId() != null) {
+            return ExecutionIdUtil.getBusinessId(executionRunnable.getExecutionId());
+        }
+        return UNKNOWN_TENANT;
+    }
+
+    private void registerGaugesIfNecessary() {
+        if (!gaugesRegistered.get() && gaugesRegistered.compareAndSet(false, true)
+                && !PrometheusActions.registerExecutorGauges(poolName, activeCount, queuedCount)) {
+            // registry可能尚未初始化, 下次提交时重试
+            gaugesRegistered.set(false);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        underlyingExecutorService.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return underlyingExecutorService.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return underlyingExecutorService.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return underlyingExecutorService.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return underlyingExecutorService.awaitTermination(timeout, unit);
+    }
+}
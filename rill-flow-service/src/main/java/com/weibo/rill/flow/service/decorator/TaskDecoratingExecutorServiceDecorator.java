@@ -16,6 +16,8 @@
 
 package com.weibo.rill.flow.service.decorator;
 
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable;
+
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Iterator;
@@ -111,6 +113,10 @@ public class TaskDecoratingExecutorServiceDecorator extends AbstractExecutorServ
             TaskDecoratorAssembler taskDecoratorAssembler = taskDecoratorProviderIterator.next();
             eventualCommand = taskDecoratorAssembler.assembleDecorator(eventualCommand);
         }
+        // 保留executionId, 使底层按execution隔离的执行器仍然能够识别被装饰后的任务
+        if (task instanceof ExecutionRunnable executionRunnable && !(eventualCommand instanceof ExecutionRunnable)) {
+            eventualCommand = new ExecutionRunnable(executionRunnable.getExecutionId(), eventualCommand);
+        }
         underlyingExecutorService.execute(eventualCommand);
     }
 
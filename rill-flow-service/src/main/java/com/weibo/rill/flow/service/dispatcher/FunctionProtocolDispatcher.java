@@ -17,6 +17,7 @@
 package com.weibo.rill.flow.service.dispatcher;
 
 import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.weibo.rill.flow.common.exception.TaskException;
 import com.weibo.rill.flow.common.model.BizError;
 import com.weibo.rill.flow.interfaces.dispatcher.DispatcherExtension;
@@ -41,6 +42,8 @@ import org.springframework.web.client.RestClientResponseException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 
 @Service("functionDispatcher")
@@ -55,22 +58,12 @@ public class FunctionProtocolDispatcher implements DispatcherExtension {
     @Override
     public String handle(Resource resource, DispatchInfo dispatchInfo) {
         String executionId = dispatchInfo.getExecutionId();
-        Map<String, Object> input = dispatchInfo.getInput();
-        TaskInfo taskInfo = dispatchInfo.getTaskInfo();
-        String taskInfoName = taskInfo.getName();
-        String requestType = ((FunctionTask) taskInfo.getTask()).getRequestType();
-        MultiValueMap<String, String> header = dispatchInfo.getHeaders();
+        String taskInfoName = dispatchInfo.getTaskInfo().getName();
 
         try {
-            HttpParameter requestParams = httpInvokeHelper.functionRequestParams(executionId, taskInfoName, resource, input);
-            Optional.of(requestParams)
-                    .map(it -> requestParams.getHeader())
-                    .ifPresent(header::setAll);
-            String url = httpInvokeHelper.buildUrl(resource, requestParams.getQueryParams());
-            int maxInvokeTime = switcherManagerImpl.getSwitcherState("ENABLE_FUNCTION_DISPATCH_RET_CHECK") ? 2 : 1;
-            HttpMethod method = Optional.ofNullable(requestType).map(String::toUpperCase).map(HttpMethod::resolve).orElse(HttpMethod.POST);
-            HttpEntity<?> requestEntity = buildHttpEntity(method, header, requestParams);
-            String ret = httpInvokeHelper.invokeRequest(executionId, taskInfoName, url, requestEntity, method, maxInvokeTime);
+            HttpRequestSpec requestSpec = buildRequestSpec(resource, dispatchInfo);
+            String ret = httpInvokeHelper.invokeRequest(executionId, taskInfoName, requestSpec.url,
+                    requestSpec.requestEntity, requestSpec.method, requestSpec.maxInvokeTime);
             dagResourceStatistic.updateUrlTypeResourceStatus(executionId, taskInfoName, resource.getResourceName(), ret);
             return ret;
         } catch (RestClientResponseException e) {
@@ -81,6 +74,62 @@ public class FunctionProtocolDispatcher implements DispatcherExtension {
         }
     }
 
+    @Override
+    public CompletableFuture<String> handleAsync(Resource resource, DispatchInfo dispatchInfo) {
+        return handleJsonAsync(resource, dispatchInfo).thenApply(ret -> ret == null ? null : ret.toString());
+    }
+
+    /**
+     * 返回已解析的响应, 供异步调度路径直接使用, 失败时的资源状态更新与异常信息同handle
+     */
+    public CompletableFuture<JsonNode> handleJsonAsync(Resource resource, DispatchInfo dispatchInfo) {
+        String executionId = dispatchInfo.getExecutionId();
+        String taskInfoName = dispatchInfo.getTaskInfo().getName();
+
+        HttpRequestSpec requestSpec;
+        try {
+            requestSpec = buildRequestSpec(resource, dispatchInfo);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpInvokeHelper.invokeRequestAsync(executionId, taskInfoName, requestSpec.url,
+                        requestSpec.requestEntity, requestSpec.method, requestSpec.maxInvokeTime)
+                .handle((ret, throwable) -> {
+                    if (throwable == null) {
+                        dagResourceStatistic.updateUrlTypeResourceStatus(executionId, taskInfoName, resource.getResourceName(), ret);
+                        return ret;
+                    }
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    if (cause instanceof RestClientResponseException) {
+                        RestClientResponseException e = (RestClientResponseException) cause;
+                        String responseBody = e.getResponseBodyAsString();
+                        dagResourceStatistic.updateUrlTypeResourceStatus(executionId, taskInfoName, resource.getResourceName(), responseBody);
+                        throw new TaskException(BizError.ERROR_INVOKE_URI.getCode(),
+                                String.format("dispatchTask http fails status code: %s text: %s", e.getRawStatusCode(), responseBody));
+                    }
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+                });
+    }
+
+    private HttpRequestSpec buildRequestSpec(Resource resource, DispatchInfo dispatchInfo) {
+        String executionId = dispatchInfo.getExecutionId();
+        Map<String, Object> input = dispatchInfo.getInput();
+        TaskInfo taskInfo = dispatchInfo.getTaskInfo();
+        String taskInfoName = taskInfo.getName();
+        String requestType = ((FunctionTask) taskInfo.getTask()).getRequestType();
+        MultiValueMap<String, String> header = dispatchInfo.getHeaders();
+
+        HttpParameter requestParams = httpInvokeHelper.functionRequestParams(executionId, taskInfoName, resource, input);
+        Optional.of(requestParams)
+                .map(it -> requestParams.getHeader())
+                .ifPresent(header::setAll);
+        String url = httpInvokeHelper.buildUrl(resource, requestParams.getQueryParams());
+        int maxInvokeTime = switcherManagerImpl.getSwitcherState("ENABLE_FUNCTION_DISPATCH_RET_CHECK") ? 2 : 1;
+        HttpMethod method = Optional.ofNullable(requestType).map(String::toUpperCase).map(HttpMethod::resolve).orElse(HttpMethod.POST);
+        HttpEntity<?> requestEntity = buildHttpEntity(method, header, requestParams);
+        return new HttpRequestSpec(url, requestEntity, method, maxInvokeTime);
+    }
+
     HttpEntity<?> buildHttpEntity(HttpMethod method, MultiValueMap<String, String> header, HttpParameter requestParams) {
         Object body = null;
         if (method == HttpMethod.POST) {
@@ -111,4 +160,18 @@ public class FunctionProtocolDispatcher implements DispatcherExtension {
         return "function";
     }
 
+    private static final class HttpRequestSpec {
+        private final String url;
+        private final HttpEntity<?> requestEntity;
+        private final HttpMethod method;
+        private final int maxInvokeTime;
+
+        private HttpRequestSpec(String url, HttpEntity<?> requestEntity, HttpMethod method, int maxInvokeTime) {
+            this.url = url;
+            this.requestEntity = requestEntity;
+            this.method = method;
+            this.maxInvokeTime = maxInvokeTime;
+        }
+    }
+
 }
@@ -16,6 +16,7 @@
 
 package com.weibo.rill.flow.service.dispatcher;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.weibo.rill.flow.common.exception.TaskException;
 import com.weibo.rill.flow.common.model.BizError;
 import com.weibo.rill.flow.interfaces.dispatcher.DispatcherExtension;
@@ -25,10 +26,13 @@ import com.weibo.rill.flow.interfaces.model.task.FunctionTask;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
 import com.weibo.rill.flow.interfaces.model.task.TaskInvokeMsg;
 import com.weibo.rill.flow.olympicene.traversal.dispatcher.DAGDispatcher;
+import com.weibo.rill.flow.olympicene.traversal.serialize.DAGTraversalSerializer;
 import com.weibo.rill.flow.service.invoke.HttpInvokeHelper;
 import com.weibo.rill.flow.service.service.FunctionTaskService;
+import com.weibo.rill.flow.service.statistic.ResourceCircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
@@ -37,6 +41,7 @@ import org.springframework.stereotype.Service;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -45,6 +50,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class FunctionTaskDispatcher implements DAGDispatcher {
     private final FunctionTaskService functionTaskService;
     private final HttpInvokeHelper httpInvokeHelper;
+    private final ResourceCircuitBreaker resourceCircuitBreaker;
     public static final Map<String, DispatcherExtension> protocolDispatcherMap = new ConcurrentHashMap<>();
     public FunctionTaskDispatcher(@Autowired @Qualifier("functionDispatcher") FunctionProtocolDispatcher functionDispatcher,
                                   @Autowired FlowProtocolDispatcher flowDispatcher,
@@ -52,7 +58,8 @@ public class FunctionTaskDispatcher implements DAGDispatcher {
                                   @Autowired @Qualifier("resourceDispatcher") ResourceProtocolDispatcher resourceDispatcher,
                                   @Autowired @Qualifier("resourceRefDispatcher") ResourceRefProtocolDispatcher resourceRefDispatcher,
                                   @Autowired FunctionTaskService functionTaskService,
-                                  @Autowired HttpInvokeHelper httpInvokeHelper) {
+                                  @Autowired HttpInvokeHelper httpInvokeHelper,
+                                  @Autowired ResourceCircuitBreaker resourceCircuitBreaker) {
         protocolDispatcherMap.put("function", functionDispatcher);
         protocolDispatcherMap.put("http", httpDispatcher);
         protocolDispatcherMap.put("https", httpDispatcher);
@@ -61,37 +68,25 @@ public class FunctionTaskDispatcher implements DAGDispatcher {
         protocolDispatcherMap.put("resourceRef", resourceRefDispatcher);
         this.functionTaskService = functionTaskService;
         this.httpInvokeHelper = httpInvokeHelper;
+        this.resourceCircuitBreaker = resourceCircuitBreaker;
     }
 
     @Override
     public String dispatch(DispatchInfo dispatchInfo) {
         try {
-            FunctionTask functionTask = Optional.ofNullable(dispatchInfo)
-                    .map(DispatchInfo::getTaskInfo)
-                    .map(TaskInfo::getTask)
-                    .filter(task -> task instanceof FunctionTask)
-                    .map(task -> (FunctionTask) task)
-                    .filter(task -> StringUtils.isNotBlank(task.getResourceName()) || task.getResource() != null)
-                    .orElseThrow(() -> new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), "handle functionPattern null"));
-
-            HttpHeaders httpHeaders = new HttpHeaders();
-            httpInvokeHelper.appendRequestHeader(httpHeaders, dispatchInfo.getExecutionId(), dispatchInfo.getTaskInfo(), dispatchInfo.getInput());
-            dispatchInfo.setHeaders(httpHeaders);
-
-            // fill parameters as default value to input
-            Map<String, Object> input = dispatchInfo.getInput();
-            Map<String, Object> parameters = functionTask.getParameters();
-            if (parameters != null) {
-                parameters.forEach(input::putIfAbsent);
+            Pair<DispatcherExtension, Resource> dispatcherToResource = chooseDispatcher(dispatchInfo);
+            String resourceName = getResourceName(dispatcherToResource.getRight());
+            ResourceCircuitBreaker.Permit permit = resourceCircuitBreaker.acquirePermission(resourceName);
+            boolean success = false;
+            try {
+                String ret = dispatcherToResource.getLeft().handle(dispatcherToResource.getRight(), dispatchInfo);
+                success = true;
+                return ret;
+            } finally {
+                if (permit != null) {
+                    permit.release(success);
+                }
             }
-
-            if (functionTask.getResource() != null) {
-                log.info("handle task by function resource, executionId:{} taskName:{}",
-                        dispatchInfo.getExecutionId(), dispatchInfo.getTaskInfo().getName());
-                return protocolDispatcherMap.get("resource").handle(null, dispatchInfo);
-            }
-
-            return resourceNameProcess(dispatchInfo, functionTask);
         } catch (TaskException e) {
             throw e;
         } catch (Exception e) {
@@ -100,7 +95,89 @@ public class FunctionTaskDispatcher implements DAGDispatcher {
         }
     }
 
-    private String resourceNameProcess(DispatchInfo dispatchInfo, FunctionTask functionTask) {
+    @Override
+    public CompletableFuture<JsonNode> dispatchAsync(DispatchInfo dispatchInfo) {
+        try {
+            Pair<DispatcherExtension, Resource> dispatcherToResource = chooseDispatcher(dispatchInfo);
+            String resourceName = getResourceName(dispatcherToResource.getRight());
+            ResourceCircuitBreaker.Permit permit = resourceCircuitBreaker.acquirePermission(resourceName);
+            if (permit == null) {
+                return handleAsync(dispatcherToResource, dispatchInfo);
+            }
+            CompletableFuture<JsonNode> future;
+            try {
+                future = handleAsync(dispatcherToResource, dispatchInfo);
+            } catch (Exception e) {
+                permit.release(false);
+                throw e;
+            }
+            return future.whenComplete((ret, throwable) -> permit.release(throwable == null));
+        } catch (TaskException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (Exception e) {
+            log.warn("handle function task resource async fails, dispatchInfo:{}", dispatchInfo, e);
+            return CompletableFuture.failedFuture(
+                    new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), "handle fails: " + e.getMessage(), e.getCause()));
+        }
+    }
+
+    /**
+     * function协议直接使用流式解析的响应, 其他协议仍返回字符串, 在此解析
+     */
+    private CompletableFuture<JsonNode> handleAsync(Pair<DispatcherExtension, Resource> dispatcherToResource, DispatchInfo dispatchInfo) {
+        DispatcherExtension dispatcher = dispatcherToResource.getLeft();
+        if (dispatcher instanceof FunctionProtocolDispatcher) {
+            return ((FunctionProtocolDispatcher) dispatcher).handleJsonAsync(dispatcherToResource.getRight(), dispatchInfo);
+        }
+        return dispatcher.handleAsync(dispatcherToResource.getRight(), dispatchInfo).thenApply(this::parseResponse);
+    }
+
+    private JsonNode parseResponse(String ret) {
+        if (StringUtils.isBlank(ret)) {
+            return null;
+        }
+        try {
+            return DAGTraversalSerializer.MAPPER.readTree(ret);
+        } catch (Exception e) {
+            log.warn("parseResponse response is not json, errorMsg:{}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String getResourceName(Resource resource) {
+        return Optional.ofNullable(resource).map(Resource::getResourceName).orElse(null);
+    }
+
+    private Pair<DispatcherExtension, Resource> chooseDispatcher(DispatchInfo dispatchInfo) {
+        FunctionTask functionTask = Optional.ofNullable(dispatchInfo)
+                .map(DispatchInfo::getTaskInfo)
+                .map(TaskInfo::getTask)
+                .filter(task -> task instanceof FunctionTask)
+                .map(task -> (FunctionTask) task)
+                .filter(task -> StringUtils.isNotBlank(task.getResourceName()) || task.getResource() != null)
+                .orElseThrow(() -> new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), "handle functionPattern null"));
+
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpInvokeHelper.appendRequestHeader(httpHeaders, dispatchInfo.getExecutionId(), dispatchInfo.getTaskInfo(), dispatchInfo.getInput());
+        dispatchInfo.setHeaders(httpHeaders);
+
+        // fill parameters as default value to input
+        Map<String, Object> input = dispatchInfo.getInput();
+        Map<String, Object> parameters = functionTask.getParameters();
+        if (parameters != null) {
+            parameters.forEach(input::putIfAbsent);
+        }
+
+        if (functionTask.getResource() != null) {
+            log.info("handle task by function resource, executionId:{} taskName:{}",
+                    dispatchInfo.getExecutionId(), dispatchInfo.getTaskInfo().getName());
+            return Pair.of(protocolDispatcherMap.get("resource"), null);
+        }
+
+        return resourceNameProcess(dispatchInfo, functionTask);
+    }
+
+    private Pair<DispatcherExtension, Resource> resourceNameProcess(DispatchInfo dispatchInfo, FunctionTask functionTask) {
         String executionId = dispatchInfo.getExecutionId();
         Map<String, Object> input = dispatchInfo.getInput();
         Resource resource = new Resource(functionTask.getResourceName(), functionTask.getResourceProtocol());
@@ -120,7 +197,7 @@ public class FunctionTaskDispatcher implements DAGDispatcher {
             log.warn("handle function scheme protocol:{} do not support", resource.getSchemeProtocol());
             throw new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), "handle functionPattern protocol: " + resource.getSchemeProtocol() + "do not support");
         }
-        return protocolDispatcher.handle(resource, dispatchInfo);
+        return Pair.of(protocolDispatcher, resource);
     }
 
     private void updateResourceName(String executionId, String calculatedResourceName, TaskInfo taskInfo) {
@@ -48,6 +48,7 @@ import com.weibo.rill.flow.service.invoke.HttpInvokeHelper;
 import com.weibo.rill.flow.service.manager.AviatorCache;
 import com.weibo.rill.flow.service.service.DAGDescriptorService;
 import com.weibo.rill.flow.service.statistic.DAGResourceStatistic;
+import com.weibo.rill.flow.service.statistic.ResourceCircuitBreaker;
 import com.weibo.rill.flow.service.statistic.TenantTaskStatistic;
 import com.weibo.rill.flow.service.storage.LongTermStorage;
 import com.weibo.rill.flow.service.storage.RuntimeStorage;
@@ -87,6 +88,8 @@ public class DAGRuntimeFacade {
     @Autowired
     private DAGResourceStatistic dagResourceStatistic;
     @Autowired
+    private ResourceCircuitBreaker resourceCircuitBreaker;
+    @Autowired
     private HttpInvokeHelper httpInvokeHelper;
     @Autowired
     private TenantTaskStatistic tenantTaskStatistic;
@@ -416,12 +419,14 @@ public class DAGRuntimeFacade {
                     dagResourceStatistic.orderDependentResources(serviceId);
             ret.put(serviceId, resourceOrder);
         });
+        ret.put("circuit_breakers", resourceCircuitBreaker.getResourceStates());
         ret.put("current_time", System.currentTimeMillis());
 
         return ret;
     }
 
     public Map<String, Object> clearRuntimeResources(String serviceId, boolean clearAll, List<String> resourceNames) {
+        resourceCircuitBreaker.reset(clearAll, resourceNames);
         return ImmutableMap.of("ret", dagResourceStatistic.clearRuntimeResources(serviceId, clearAll, resourceNames));
     }
 
@@ -55,10 +55,12 @@ import com.weibo.rill.flow.service.storage.RuntimeStorage;
 import com.weibo.rill.flow.service.util.DescriptorIdUtil;
 import com.weibo.rill.flow.service.util.ExecutionIdUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
@@ -98,6 +100,9 @@ public class OlympiceneFacade {
     @Autowired
     private DAGContextInitializer dagContextInitializer;
 
+    @Value("${weibo.flow.submit.batch.max.size:1000}")
+    private int maxBatchSubmitSize = 1000;
+
     public Map<String, Object> submit(Long uid, String descriptorId, String callback, String resourceCheck, JSONObject data, String url) {
         Supplier<Map<String, Object>> submitActions = () -> {
             ResourceCheckConfig resourceCheckConfig = dagSubmitChecker.getCheckConfig(resourceCheck);
@@ -121,12 +126,7 @@ public class OlympiceneFacade {
 
         dagSubmitChecker.check(executionId, resourceCheckConfig);
 
-        NotifyInfo notifyInfo = null;
-        if (StringUtils.isNotBlank(callback)) {
-            notifyInfo = NotifyInfo.builder()
-                    .callbackConfig(DAGTraversalSerializer.deserialize(callback.getBytes(StandardCharsets.UTF_8), CallbackConfig.class))
-                    .build();
-        }
+        NotifyInfo notifyInfo = buildSubmitNotifyInfo(callback);
         context.put("flow_execution_id", executionId);
         olympicene.submit(executionId, dag, context, DAGSettings.DEFAULT, notifyInfo);
         Map<String, Object> ret = Maps.newHashMap();
@@ -134,6 +134,45 @@ public class OlympiceneFacade {
         return ret;
     }
 
+    /**
+     * 批量提交同一工作流的多个执行
+     * 描述符只解析一次(灰度规则按第一个context计算), 提交检查每批一次, context及dagInfo合并写入存储
+     *
+     * @return execution_ids 与contexts顺序一致
+     */
+    public Map<String, Object> submitBatch(Long uid, String descriptorId, List<Map<String, Object>> contexts, String callback, ResourceCheckConfig resourceCheckConfig) {
+        if (CollectionUtils.isEmpty(contexts) || contexts.size() > maxBatchSubmitSize) {
+            throw new TaskException(BizError.ERROR_DATA_FORMAT, "batch size should be between 1 and " + maxBatchSubmitSize);
+        }
+
+        List<DAG> dags = dagDescriptorService.getDAGs(uid, contexts.get(0), descriptorId, contexts.size());
+        List<String> executionIds = dags.stream().map(ExecutionIdUtil::generateExecutionId).toList();
+
+        dagSubmitChecker.check(executionIds.get(0), resourceCheckConfig, executionIds.size());
+
+        NotifyInfo notifyInfo = buildSubmitNotifyInfo(callback);
+        for (int i = 0; i < executionIds.size(); i++) {
+            contexts.get(i).put("flow_execution_id", executionIds.get(i));
+        }
+        olympicene.submit(executionIds, dags, contexts, DAGSettings.DEFAULT, notifyInfo);
+        Map<String, Object> ret = Maps.newHashMap();
+        ret.put("execution_ids", executionIds);
+        return ret;
+    }
+
+    public Map<String, Object> submitBatch(User flowUser, String descriptorId, List<Map<String, Object>> contexts, String callback, ResourceCheckConfig resourceCheckConfig) {
+        return submitBatch(Optional.ofNullable(flowUser).map(User::getUid).orElse(0L), descriptorId, contexts, callback, resourceCheckConfig);
+    }
+
+    private NotifyInfo buildSubmitNotifyInfo(String callback) {
+        if (StringUtils.isBlank(callback)) {
+            return null;
+        }
+        return NotifyInfo.builder()
+                .callbackConfig(DAGTraversalSerializer.deserialize(callback.getBytes(StandardCharsets.UTF_8), CallbackConfig.class))
+                .build();
+    }
+
     public Map<String, Object> finish(String executionId, Map<String, Object> data, JSONObject rawCallbackData) {
         JSONObject passThrough = rawCallbackData.getJSONObject("passthrough");
         String taskName = passThrough.getString("task_name");
@@ -16,6 +16,7 @@
 
 package com.weibo.rill.flow.service.invoke;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.weibo.rill.flow.interfaces.model.http.HttpParameter;
 import com.weibo.rill.flow.interfaces.model.resource.Resource;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
@@ -24,6 +25,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 public interface HttpInvokeHelper {
@@ -37,4 +39,11 @@ public interface HttpInvokeHelper {
     String buildUrl(Resource resource, Map<String, Object> queryParams);
 
     String invokeRequest(String executionId, String taskInfoName, String url, HttpEntity<?> requestEntity, HttpMethod method, int maxInvokeTime);
+
+    /**
+     * 非阻塞调用, 失败时按指数退避加随机抖动的间隔由定时器触发重试, 不占用调用线程
+     *
+     * @return 解析后的响应, 响应为空或不是json时为null; 非2xx响应以RestClientResponseException结束
+     */
+    CompletableFuture<JsonNode> invokeRequestAsync(String executionId, String taskInfoName, String url, HttpEntity<?> requestEntity, HttpMethod method, int maxInvokeTime);
 }
@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.weibo.rill.flow.service.manager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.weibo.rill.flow.service.storage.dao.DAGDescriptorMetaVersionDAO;
+import com.weibo.rill.flow.service.util.DAGStorageKeysUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * 灰度规则与别名->描述符redisKey的本地缓存
+ * <p>
+ * 缓存项记录加载时所在业务的元数据版本号, 后台线程定时拉取各业务的最新版本号,
+ * 版本号变化后旧缓存项在下次读取时重新加载, 提交路径上不再需要访问redis
+ */
+@Slf4j
+@Service
+public class DescriptorMetaCache {
+    @Autowired
+    private DAGDescriptorMetaVersionDAO dagDescriptorMetaVersionDAO;
+
+    @Value("${weibo.flow.descriptor.meta.version.poll.interval.millis:100}")
+    private long versionPollIntervalMillis = 100L;
+
+    // 长时间未读取的业务不再轮询
+    private final Cache<String, Long> businessIdToVersion = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(60, TimeUnit.SECONDS)
+            .build();
+
+    // 版本号拉取失败时兜底过期
+    private final Cache<String, VersionedValue<Map<String, String>>> grayCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(60, TimeUnit.SECONDS)
+            .build();
+
+    private final Cache<String, VersionedValue<String>> aliasToDescriptorRedisKeyCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(60, TimeUnit.SECONDS)
+            .build();
+
+    private ScheduledExecutorService versionPoller;
+
+    @PostConstruct
+    public void init() {
+        versionPoller = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("descriptor-meta-version-%d").setDaemon(true).build());
+        versionPoller.scheduleWithFixedDelay(this::refreshVersions, versionPollIntervalMillis, versionPollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (versionPoller != null) {
+            versionPoller.shutdownNow();
+        }
+    }
+
+    public Map<String, String> getGray(String businessId, String featureName, Supplier<Map<String, String>> loader) {
+        return get(grayCache, businessId, DAGStorageKeysUtil.buildDescriptorId(businessId, featureName, null),
+                () -> {
+                    Map<String, String> gray = loader.get();
+                    return gray == null ? null : Collections.unmodifiableMap(new HashMap<>(gray));
+                });
+    }
+
+    public String getDescriptorRedisKey(String businessId, String featureName, String alias, Supplier<String> loader) {
+        return get(aliasToDescriptorRedisKeyCache, businessId, DAGStorageKeysUtil.buildDescriptorId(businessId, featureName, alias), loader);
+    }
+
+    private <T> T get(Cache<String, VersionedValue<T>> cache, String businessId, String key, Supplier<T> loader) {
+        // 版本号需在加载前获取, 加载期间发生的变更会使该缓存项在下次读取时失效
+        Long version = getCurrentVersion(businessId);
+        VersionedValue<T> cached = cache.getIfPresent(key);
+        if (version != null && cached != null && cached.version == version) {
+            return cached.value;
+        }
+
+        T value = loader.get();
+        if (version != null && value != null) {
+            cache.put(key, new VersionedValue<>(version, value));
+        }
+        return value;
+    }
+
+    private Long getCurrentVersion(String businessId) {
+        Long version = businessIdToVersion.getIfPresent(businessId);
+        if (version != null) {
+            return version;
+        }
+        try {
+            long loaded = dagDescriptorMetaVersionDAO.getVersion(businessId);
+            Long previous = businessIdToVersion.asMap().putIfAbsent(businessId, loaded);
+            return previous == null ? loaded : previous;
+        } catch (Exception e) {
+            log.warn("getCurrentVersion fails, businessId:{}", businessId, e);
+            return null;
+        }
+    }
+
+    void refreshVersions() {
+        ConcurrentMap<String, Long> versions = businessIdToVersion.asMap();
+        // 遍历复制不计入访问, 否则轮询会使不再读取的业务永不过期
+        Map<String, Long> snapshot = new HashMap<>(versions);
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        try {
+            // 一次MGET拉取所有业务的版本号, 不再逐个GET
+            dagDescriptorMetaVersionDAO.getVersions(snapshot.keySet()).forEach((businessId, latest) -> {
+                // 只更新仍在缓存中的业务, 不使已过期的业务重新出现
+                Long previous = snapshot.get(businessId);
+                if (previous != null && previous.longValue() != latest && versions.replace(businessId, previous, latest)) {
+                    log.info("descriptor meta version changed, businessId:{}, from:{}, to:{}", businessId, previous, latest);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("refreshVersions fails, businessIds:{}", snapshot.keySet(), e);
+        }
+    }
+
+    private static final class VersionedValue<T> {
+        private final long version;
+        private final T value;
+
+        private VersionedValue(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.weibo.rill.flow.service.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
@@ -26,8 +27,10 @@ import com.weibo.rill.flow.common.model.BizError;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
 import com.weibo.rill.flow.olympicene.core.model.dag.DescriptorPO;
 import com.weibo.rill.flow.olympicene.core.model.dag.DescriptorVO;
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import com.weibo.rill.flow.service.converter.DAGDescriptorConverter;
 import com.weibo.rill.flow.service.manager.AviatorCache;
+import com.weibo.rill.flow.service.manager.DescriptorMetaCache;
 import com.weibo.rill.flow.service.storage.dao.*;
 import com.weibo.rill.flow.service.util.DAGStorageKeysUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -36,7 +39,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -59,19 +64,93 @@ public class DAGDescriptorService {
     private DAGBusinessDAO dagBusinessDAO;
     @Autowired
     private AviatorCache aviatorCache;
+    @Autowired
+    private SwitcherManager switcherManagerImpl;
+    @Autowired
+    private DescriptorMetaCache descriptorMetaCache;
 
     private final Cache<String, String> descriptorIdToRedisKeyCache = CacheBuilder.newBuilder()
             .maximumSize(300)
             .expireAfterWrite(60, TimeUnit.SECONDS)
             .build();
 
+    /**
+     * 描述符按md5存储, 同一个descriptorRedisKey对应的内容不会变化, 因此可以长期缓存解析结果
+     * 缓存的是首次解析并校验后的DAG的语法树(校验会补全字段), 命中时只绑定得到新的DAG对象不再校验, 调用方可以任意修改返回值
+     */
+    private final Cache<String, JsonNode> descriptorRedisKeyToDAGTreeCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
     public DAG getDAG(Long uid, Map<String, Object> input, String dagDescriptorId, boolean useCache) {
-        DescriptorPO descriptorPO = getDescriptorPOFromDAO(uid, input, dagDescriptorId, useCache);
-        return dagDescriptorConverter.convertDescriptorPOToDAG(descriptorPO);
+        String descriptorRedisKey = getDescriptorRedisKey(uid, input, dagDescriptorId, useCache);
+        if (!switcherManagerImpl.getSwitcherState("ENABLE_PARSED_DAG_CACHE")) {
+            return dagDescriptorConverter.convertDescriptorPOToDAG(getDescriptorPOFromDAO(dagDescriptorId, descriptorRedisKey));
+        }
+
+        DAG cachedDAG = getDAGFromParsedCache(descriptorRedisKey);
+        if (cachedDAG != null) {
+            return cachedDAG;
+        }
+        DAG dag = dagDescriptorConverter.convertDescriptorPOToDAG(getDescriptorPOFromDAO(dagDescriptorId, descriptorRedisKey));
+        putParsedCache(descriptorRedisKey, dag);
+        return dag;
+    }
+
+    private DAG getDAGFromParsedCache(String descriptorRedisKey) {
+        JsonNode validatedTree = descriptorRedisKeyToDAGTreeCache.getIfPresent(descriptorRedisKey);
+        if (validatedTree == null) {
+            return null;
+        }
+        try {
+            return dagDescriptorConverter.convertValidatedTreeToDAG(validatedTree);
+        } catch (Exception e) {
+            log.warn("getDAGFromParsedCache fails, descriptorRedisKey:{}", descriptorRedisKey, e);
+            descriptorRedisKeyToDAGTreeCache.invalidate(descriptorRedisKey);
+            return null;
+        }
+    }
+
+    /**
+     * 需在DAG返回给调用方之前调用 此时DAG仍为校验后的状态
+     */
+    private void putParsedCache(String descriptorRedisKey, DAG dag) {
+        if (StringUtils.isEmpty(descriptorRedisKey) || dag == null) {
+            return;
+        }
+        try {
+            descriptorRedisKeyToDAGTreeCache.put(descriptorRedisKey, dagDescriptorConverter.convertDAGToValidatedTree(dag));
+        } catch (Exception e) {
+            log.warn("putParsedCache fails, descriptorRedisKey:{}", descriptorRedisKey, e);
+        }
+    }
+
+    /**
+     * 批量提交时获取DAG: 描述符只获取、解析及校验一次, 每个执行都由校验后的语法树绑定得到独立的DAG实例(提交过程中会修改DAG 不能共享)
+     */
+    public List<DAG> getDAGs(Long uid, Map<String, Object> input, String dagDescriptorId, int count) {
+        String descriptorRedisKey = getDescriptorRedisKey(uid, input, dagDescriptorId, false);
+        boolean parsedCacheEnabled = switcherManagerImpl.getSwitcherState("ENABLE_PARSED_DAG_CACHE");
+        JsonNode validatedTree = parsedCacheEnabled ? descriptorRedisKeyToDAGTreeCache.getIfPresent(descriptorRedisKey) : null;
+
+        List<DAG> dags = new ArrayList<>(count);
+        if (validatedTree == null) {
+            DAG dag = dagDescriptorConverter.convertDescriptorPOToDAG(getDescriptorPOFromDAO(dagDescriptorId, descriptorRedisKey));
+            validatedTree = dagDescriptorConverter.convertDAGToValidatedTree(dag);
+            if (parsedCacheEnabled) {
+                descriptorRedisKeyToDAGTreeCache.put(descriptorRedisKey, validatedTree);
+            }
+            dags.add(dag);
+        }
+        while (dags.size() < count) {
+            dags.add(dagDescriptorConverter.convertValidatedTreeToDAG(validatedTree));
+        }
+        return dags;
     }
 
     public DAG getDAG(Long uid, Map<String, Object> input, String dagDescriptorId) {
-        // 调用量比较小 useCache为false 实时取最新的yaml保证更新会立即生效
+        // useCache为false 不使用按时间过期的缓存保证更新会立即生效; descriptorMetaCache写入时即失效 仍可使用
         return getDAG(uid, input, dagDescriptorId, false);
     }
 
@@ -100,26 +179,30 @@ public class DAGDescriptorService {
     }
 
     /**
-     * @param useCache 是否使用缓存:descriptorIdToRedisKeyCache
+     * @param useCache 是否使用按时间过期的descriptorIdToRedisKeyCache; descriptorMetaCache写入时即失效, 不受该参数影响
      * <pre>
      * 先根据descriptorId获取其对应的redisKey，再根据redisKey取对应版本的yaml文件具体内容
      *
-     * 该逻辑对应两个缓存
+     * 该逻辑对应以下缓存
      * 1. descriptorIdToRedisKeyCache（service 层）
      *    descriptorId最近更新版本yaml文件在redis存储的key
      *    如：testBusinessId:testFeatureName:release -> testBusinessId:testFeatureName:md5_4297f44b13955235245b2497399d7a93
      * 2. descriptorRedisKeyToYamlCache（DAO 层）
      *    redisKey与yaml文件一一对应 所以该缓存默认启用
      *    如: testBusinessId:testFeatureName:md5_4297f44b13955235245b2497399d7a93 -> yaml
+     * 3. descriptorMetaCache（service 层）
+     *    灰度规则及别名对应的redisKey 写入时递增业务元数据版本号使其失效 由ENABLE_DESCRIPTOR_META_CACHE控制
+     * 4. descriptorRedisKeyToDAGTreeCache（service 层）
+     *    redisKey与解析后的DAG一一对应 由ENABLE_PARSED_DAG_CACHE控制
      *
      * </pre>
      */
-    private DescriptorPO getDescriptorPOFromDAO(Long uid, Map<String, Object> input, String dagDescriptorId, boolean useCache) {
+    private String getDescriptorRedisKey(Long uid, Map<String, Object> input, String dagDescriptorId, boolean useCache) {
         try {
             // 校验dagDescriptorId
             String[] fields = StringUtils.isEmpty(dagDescriptorId) ? new String[0] : dagDescriptorId.trim().split(ReservedConstant.COLON);
             if (fields.length < 2 || DAGStorageKeysUtil.nameInvalid(fields[0], fields[1])) {
-                log.info("getDescriptorPOFromDAO dagDescriptorId data format error, dagDescriptorId:{}", dagDescriptorId);
+                log.info("getDescriptorRedisKey dagDescriptorId data format error, dagDescriptorId:{}", dagDescriptorId);
                 throw new TaskException(BizError.ERROR_DATA_FORMAT.getCode(), "dagDescriptorId:" + dagDescriptorId + " format error");
             }
 
@@ -129,30 +212,44 @@ public class DAGDescriptorService {
             String thirdField = fields.length > 2 ? fields[2] : null;
             if (StringUtils.isEmpty(thirdField)) {
                 thirdField = getDescriptorAliasByGrayRule(uid, input, businessId, featureName);
-                log.info("getDescriptorPOFromDAO result businessId:{} featureName:{} alias:{}", businessId, featureName, thirdField);
+                log.info("getDescriptorRedisKey result businessId:{} featureName:{} alias:{}", businessId, featureName, thirdField);
             }
-            String descriptorRedisKey;
             if (thirdField.startsWith(DAGStorageKeysUtil.MD5_PREFIX)) {
-                descriptorRedisKey = DAGStorageKeysUtil.buildDescriptorRedisKey(businessId, featureName, thirdField.replaceFirst(MD5_PREFIX, StringUtils.EMPTY));
-            } else {
-                String alias = thirdField;
-                descriptorRedisKey = useCache ?
-                        descriptorIdToRedisKeyCache.get(DAGStorageKeysUtil.buildDescriptorId(businessId, featureName, alias),
-                                () -> dagAliasDAO.getDescriptorRedisKeyByAlias(businessId, featureName, alias)) :
-                        dagAliasDAO.getDescriptorRedisKeyByAlias(businessId, featureName, alias);
+                return DAGStorageKeysUtil.buildDescriptorRedisKey(businessId, featureName, thirdField.replaceFirst(MD5_PREFIX, StringUtils.EMPTY));
+            }
+            String alias = thirdField;
+            if (switcherManagerImpl.getSwitcherState("ENABLE_DESCRIPTOR_META_CACHE")) {
+                return descriptorMetaCache.getDescriptorRedisKey(businessId, featureName, alias,
+                        () -> dagAliasDAO.getDescriptorRedisKeyByAlias(businessId, featureName, alias));
             }
+            return useCache ?
+                    descriptorIdToRedisKeyCache.get(DAGStorageKeysUtil.buildDescriptorId(businessId, featureName, alias),
+                            () -> dagAliasDAO.getDescriptorRedisKeyByAlias(businessId, featureName, alias)) :
+                    dagAliasDAO.getDescriptorRedisKeyByAlias(businessId, featureName, alias);
+        } catch (TaskException taskException) {
+            throw taskException;
+        } catch (Exception e) {
+            log.warn("getDescriptorRedisKey fails, uid:{}, dagDescriptorId:{}", uid, dagDescriptorId, e);
+            throw new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), String.format("get descriptor:%s fails", dagDescriptorId));
+        }
+    }
 
+    private DescriptorPO getDescriptorPOFromDAO(String dagDescriptorId, String descriptorRedisKey) {
+        try {
+            String businessId = dagDescriptorId.trim().split(ReservedConstant.COLON)[0];
             return dagDescriptorDAO.getDescriptorPO(dagDescriptorId, descriptorRedisKey, businessId);
         } catch (TaskException taskException) {
             throw taskException;
         } catch (Exception e) {
-            log.warn("getDescriptorPOFromDAO fails, uid:{}, dagDescriptorId:{}", uid, dagDescriptorId, e);
+            log.warn("getDescriptorPOFromDAO fails, dagDescriptorId:{}, descriptorRedisKey:{}", dagDescriptorId, descriptorRedisKey, e);
             throw new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), String.format("get descriptor:%s fails", dagDescriptorId));
         }
     }
 
     private String getDescriptorAliasByGrayRule(Long uid, Map<String, Object> input, String businessId, String featureName) {
-        Map<String, String> aliasToGrayRuleMap = dagGrayDAO.getGray(businessId, featureName);
+        Map<String, String> aliasToGrayRuleMap = switcherManagerImpl.getSwitcherState("ENABLE_DESCRIPTOR_META_CACHE") ?
+                descriptorMetaCache.getGray(businessId, featureName, () -> dagGrayDAO.getGray(businessId, featureName)) :
+                dagGrayDAO.getGray(businessId, featureName);
         log.info("getDescriptorAliasByGrayRule map empty:{}", MapUtils.isEmpty(aliasToGrayRuleMap));
         return getValueFromRuleMap(uid, input, aliasToGrayRuleMap, DAGStorageKeysUtil.RELEASE);
     }
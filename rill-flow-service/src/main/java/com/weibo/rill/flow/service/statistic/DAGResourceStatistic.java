@@ -18,6 +18,7 @@ package com.weibo.rill.flow.service.statistic;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -83,6 +84,13 @@ public class DAGResourceStatistic {
         }
     }
 
+    /**
+     * 实时获取运行时redis内存使用率, 不经过缓存, 供后台采样使用
+     */
+    public int sampleRuntimeRedisUsagePercent(String executionId) {
+        return redisUsagePercent(executionId);
+    }
+
     public Map<String, ConcurrentMap<String, ResourceStatus>> getDependentResourcesWithServiceId() {
         return serviceResourceCache.asMap();
     }
@@ -170,26 +178,44 @@ public class DAGResourceStatistic {
 
     public void updateUrlTypeResourceStatus(String executionId, String taskName, String resourceName, JSONObject urlRet) {
         try {
-            if (StringUtils.isBlank(taskName) || StringUtils.isBlank(resourceName)) {
-                return;
-            }
-
-            long updateTime = System.currentTimeMillis();
-            ResourceStatus resourceStatus = getResourceStatus(executionId, taskName, resourceName);
-            resourceStatus.setUpdateTime(updateTime);
+            updateUrlTypeResourceStatus(executionId, taskName, resourceName, getRetryIntervalSeconds(urlRet));
+        } catch (Exception e) {
+            log.warn("updateUrlTypeResourceStatus fails, executionId:{}, resourceName:{}, errorMsg:{}",
+                    executionId, resourceName, e.getMessage());
+        }
+    }
 
-            int retryIntervalSeconds = getRetryIntervalSeconds(urlRet);
-            if (retryIntervalSeconds > 0) {
-                resourceStatus.setResourceLimitedTime(updateTime + retryIntervalSeconds * 1000L);
-                log.info("update function url resource limit, executionId:{}, resourceName:{}, retryIntervalSeconds:{}",
-                        executionId, resourceName, retryIntervalSeconds);
+    /**
+     * 异步调用已解析为JsonNode的返回值, 避免再序列化为字符串后重复解析
+     */
+    public void updateUrlTypeResourceStatus(String executionId, String taskName, String resourceName, JsonNode urlRet) {
+        try {
+            if (urlRet == null || !urlRet.isObject()) {
+                return;
             }
+            updateUrlTypeResourceStatus(executionId, taskName, resourceName, getRetryIntervalSeconds(urlRet));
         } catch (Exception e) {
             log.warn("updateUrlTypeResourceStatus fails, executionId:{}, resourceName:{}, errorMsg:{}",
                     executionId, resourceName, e.getMessage());
         }
     }
 
+    private void updateUrlTypeResourceStatus(String executionId, String taskName, String resourceName, int retryIntervalSeconds) {
+        if (StringUtils.isBlank(taskName) || StringUtils.isBlank(resourceName)) {
+            return;
+        }
+
+        long updateTime = System.currentTimeMillis();
+        ResourceStatus resourceStatus = getResourceStatus(executionId, taskName, resourceName);
+        resourceStatus.setUpdateTime(updateTime);
+
+        if (retryIntervalSeconds > 0) {
+            resourceStatus.setResourceLimitedTime(updateTime + retryIntervalSeconds * 1000L);
+            log.info("update function url resource limit, executionId:{}, resourceName:{}, retryIntervalSeconds:{}",
+                    executionId, resourceName, retryIntervalSeconds);
+        }
+    }
+
     private static int getRetryIntervalSeconds(JSONObject urlRet) {
         return Optional.ofNullable(urlRet)
                 .map(it -> it.containsKey("data") && it.get("data") instanceof Map<?,?> ? it.getJSONObject("data") : it)
@@ -201,6 +227,15 @@ public class DAGResourceStatistic {
                         .orElse(0));
     }
 
+    private static int getRetryIntervalSeconds(JsonNode urlRet) {
+        JsonNode data = urlRet.path("data").isObject() ? urlRet.get("data") : urlRet;
+        JsonNode retryInterval = data.path("sys_info").path("retry_interval_seconds");
+        if (retryInterval.isMissingNode() || retryInterval.isNull()) {
+            retryInterval = urlRet.path("error_detail").path("retry_interval_seconds");
+        }
+        return retryInterval.asInt(0);
+    }
+
     public void updateFlowTypeResourceStatus(String executionId, String taskName, String resourceName, DAG dag) {
         try {
             if (StringUtils.isBlank(taskName) || StringUtils.isBlank(resourceName)) {
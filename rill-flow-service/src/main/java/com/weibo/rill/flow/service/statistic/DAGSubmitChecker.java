@@ -63,6 +63,8 @@ public class DAGSubmitChecker {
     private DynamicClientConfs dynamicClientConfs;
     @Autowired
     private SwitcherManager switcherManagerImpl;
+    @Autowired
+    private RuntimeHealthSampler runtimeHealthSampler;
 
     private static final int DAG_INFO_MAX_LENGTH_CONFIG = 30 * 1024 + 600 * 1024; // dag 描述符最大为 30K 每个任务大小最大为 600B 最大存 1000 个任务
 
@@ -78,8 +80,15 @@ public class DAGSubmitChecker {
     }
 
     public void check(String executionId, ResourceCheckConfig resourceCheckConfig) {
+        check(executionId, resourceCheckConfig, 1);
+    }
+
+    /**
+     * 批量提交时每批只检查一次, 限流按提交数量获取许可
+     */
+    public void check(String executionId, ResourceCheckConfig resourceCheckConfig, int submitCount) {
         try {
-            doCheck(executionId, resourceCheckConfig);
+            doCheck(executionId, resourceCheckConfig, submitCount);
         } catch (TaskException taskException) {
             log.warn("submit executionId:{}, msg:{}", executionId, taskException.getMessage());
             throw taskException;
@@ -88,7 +97,7 @@ public class DAGSubmitChecker {
         }
     }
 
-    private void doCheck(String executionId, ResourceCheckConfig resourceCheckConfig) {
+    private void doCheck(String executionId, ResourceCheckConfig resourceCheckConfig, int submitCount) {
         String serviceId = ExecutionIdUtil.getServiceId(executionId);
         String businessId = ExecutionIdUtil.getBusinessIdFromServiceId(serviceId);
 
@@ -104,7 +113,7 @@ public class DAGSubmitChecker {
         }
 
         if (switcherManagerImpl.getSwitcherState("ENABLE_RUNTIME_SUBMIT_TRAFFIC_CONTROL")) {
-            trafficControl(executionId, serviceId, businessId);
+            trafficControl(executionId, serviceId, businessId, submitCount);
         }
 
         FlowCheck flowCheck = flowRuntimeCheck(businessId, serviceId);
@@ -148,7 +157,7 @@ public class DAGSubmitChecker {
             return storageCheck;
         }
 
-        int currentUsagePercent = dagResourceStatistic.getRuntimeRedisUsagePercent(executionId, serviceId);
+        int currentUsagePercent = getRuntimeRedisUsagePercent(executionId, serviceId);
         storageCheck.setCurrentUsagePercent(currentUsagePercent);
 
         storageCheck.setUsageLimit(currentUsagePercent > maxUsagePercent);
@@ -156,6 +165,16 @@ public class DAGSubmitChecker {
         return storageCheck;
     }
 
+    private int getRuntimeRedisUsagePercent(String executionId, String serviceId) {
+        if (switcherManagerImpl.getSwitcherState("ENABLE_RUNTIME_HEALTH_SAMPLER")) {
+            Integer sampledUsagePercent = runtimeHealthSampler.getRedisUsagePercent(serviceId);
+            if (sampledUsagePercent != null) {
+                return sampledUsagePercent;
+            }
+        }
+        return dagResourceStatistic.getRuntimeRedisUsagePercent(executionId, serviceId);
+    }
+
     private int getRedisMaxUsagePercent(String serviceId, String businessId) {
         if (bizDConfs.getRedisServiceIdToClientId().containsKey(serviceId)) {
             return bizDConfs.getRuntimeRedisUsageCheckIDs().contains(serviceId) ?
@@ -235,21 +254,21 @@ public class DAGSubmitChecker {
         return ResourceCheckConfig.builder().checkType(ResourceCheckConfig.CheckType.SHORT_BOARD).build();
     }
 
-    private void trafficControl(String executionId, String serviceId, String businessId) {
-        if (needLimitTraffic(executionId, serviceId, businessId)) {
+    private void trafficControl(String executionId, String serviceId, String businessId, int submitCount) {
+        if (needLimitTraffic(executionId, serviceId, businessId, submitCount)) {
             throw new TaskException(BizError.ERROR_RUNTIME_RESOURCE_STATUS_LIMIT.getCode(), "submit traffic limit");
         }
     }
 
-    private boolean needLimitTraffic(String executionId, String serviceId, String businessId) {
+    private boolean needLimitTraffic(String executionId, String serviceId, String businessId, int submitCount) {
         Integer maxRate = bizDConfs.getSubmitTrafficLimitIdToConfig().get(serviceId);
         if (maxRate != null) {
-            return !trafficRateLimiter.tryAcquire(executionId, serviceId, maxRate);
+            return !trafficRateLimiter.tryAcquire(executionId, serviceId, maxRate, submitCount);
         }
 
         maxRate = bizDConfs.getSubmitTrafficLimitIdToConfig().get(businessId);
         if (maxRate != null) {
-            return !trafficRateLimiter.tryAcquire(executionId, businessId, maxRate);
+            return !trafficRateLimiter.tryAcquire(executionId, businessId, maxRate, submitCount);
         }
 
         return false;
@@ -270,8 +289,7 @@ public class DAGSubmitChecker {
             return flowCheck;
         }
 
-        JSONObject ret = systemMonitorStatistic.businessHeapMonitor(Lists.newArrayList(serviceId), null, null);
-        JSONObject serviceHeap = ret.getJSONObject(serviceId);
+        JSONObject serviceHeap = getBusinessHeap(serviceId);
         int successCount = serviceHeap.getIntValue("success_count");
         int failedCount = serviceHeap.getIntValue("failed_count");
         int runningCount = serviceHeap.getIntValue("running_count");
@@ -299,6 +317,16 @@ public class DAGSubmitChecker {
         return flowCheck;
     }
 
+    private JSONObject getBusinessHeap(String serviceId) {
+        if (switcherManagerImpl.getSwitcherState("ENABLE_RUNTIME_HEALTH_SAMPLER")) {
+            JSONObject sampledHeap = runtimeHealthSampler.getBusinessHeap(serviceId);
+            if (sampledHeap != null) {
+                return sampledHeap;
+            }
+        }
+        return systemMonitorStatistic.businessHeapMonitor(Lists.newArrayList(serviceId), null, null).getJSONObject(serviceId);
+    }
+
     public void checkDAGInfoLength(String executionId, List<byte[]> contents) {
         String businessId = ExecutionIdUtil.getBusinessId(executionId);
         checkDAGInfoLengthByBusinessId(businessId, contents);
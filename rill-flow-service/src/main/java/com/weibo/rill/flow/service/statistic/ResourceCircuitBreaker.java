@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.statistic;
+
+import com.google.common.collect.Maps;
+import com.weibo.rill.flow.common.exception.TaskException;
+import com.weibo.rill.flow.common.model.BizError;
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按资源名维护的熔断器与并发隔离(bulkhead), 用于在任务下发前保护下游资源:
+ * <ul>
+ *     <li>CLOSED: 统计最近{@code windowSize}次调用的失败率, 调用次数不少于{@code minimumCalls}且失败率达到阈值时熔断</li>
+ *     <li>OPEN: 直接拒绝调用, 经过{@code openDurationMillis}后进入HALF_OPEN</li>
+ *     <li>HALF_OPEN: 只放行一个探测请求, 成功则恢复CLOSED, 失败则重新OPEN</li>
+ * </ul>
+ * 同一资源同时执行中的调用数超过{@code maxConcurrentCalls}时同样拒绝, 避免慢资源占满runner线程。
+ * 被拒绝的调用抛出{@link TaskException}, 由任务的重试策略决定后续处理。
+ */
+@Slf4j
+@Service
+public class ResourceCircuitBreaker {
+    @Autowired
+    private SwitcherManager switcherManagerImpl;
+
+    @Value("${weibo.flow.runtime.dispatch.circuit.breaker.failure.rate.threshold:50}")
+    private int failureRateThreshold = 50;
+
+    @Value("${weibo.flow.runtime.dispatch.circuit.breaker.window.size:20}")
+    private int windowSize = 20;
+
+    @Value("${weibo.flow.runtime.dispatch.circuit.breaker.minimum.calls:10}")
+    private int minimumCalls = 10;
+
+    @Value("${weibo.flow.runtime.dispatch.circuit.breaker.open.duration.millis:30000}")
+    private long openDurationMillis = 30000L;
+
+    @Value("${weibo.flow.runtime.dispatch.bulkhead.max.concurrent.calls:64}")
+    private int maxConcurrentCalls = 64;
+
+    private final ConcurrentMap<String, ResourceBreaker> breakers = new ConcurrentHashMap<>();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * @return 已获取的许可, 调用结束后需调用{@link Permit#release(boolean)}; null: 资源未受保护
+     * @throws TaskException 熔断或并发数超限
+     */
+    public Permit acquirePermission(String resourceName) {
+        if (StringUtils.isBlank(resourceName) || !switcherManagerImpl.getSwitcherState("ENABLE_FUNCTION_DISPATCH_CIRCUIT_BREAKER")) {
+            return null;
+        }
+        ResourceBreaker breaker = breakers.computeIfAbsent(resourceName, key -> new ResourceBreaker(key, maxConcurrentCalls));
+        String rejectReason = breaker.tryAcquire(System.currentTimeMillis());
+        if (rejectReason != null) {
+            throw new TaskException(BizError.ERROR_HYSTRIX.getCode(),
+                    String.format("resource %s %s", resourceName, rejectReason));
+        }
+        return new Permit(breaker);
+    }
+
+    public State getState(String resourceName) {
+        ResourceBreaker breaker = breakers.get(resourceName);
+        return breaker == null ? State.CLOSED : breaker.state;
+    }
+
+    public Map<String, Map<String, Object>> getResourceStates() {
+        Map<String, Map<String, Object>> ret = Maps.newHashMap();
+        breakers.forEach((resourceName, breaker) -> ret.put(resourceName, breaker.snapshot()));
+        return ret;
+    }
+
+    public void reset(boolean resetAll, List<String> resourceNames) {
+        if (resetAll) {
+            breakers.clear();
+        } else if (CollectionUtils.isNotEmpty(resourceNames)) {
+            resourceNames.forEach(breakers::remove);
+        }
+    }
+
+    /**
+     * 许可绑定发放它的熔断器实例, reset替换熔断器后在途调用仍归还到原实例, 不会多释放新实例的并发数
+     */
+    public static final class Permit {
+        private final ResourceBreaker breaker;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(ResourceBreaker breaker) {
+            this.breaker = breaker;
+        }
+
+        public void release(boolean success) {
+            if (released.compareAndSet(false, true)) {
+                breaker.release(success, System.currentTimeMillis());
+            }
+        }
+    }
+
+    private class ResourceBreaker {
+        private final String resourceName;
+        private final Semaphore bulkhead;
+        private final int maxConcurrent;
+        private final boolean[] window = new boolean[windowSize];
+        private int windowIndex = 0;
+        private int windowCalls = 0;
+        private int windowFailures = 0;
+        private volatile State state = State.CLOSED;
+        private volatile long openedTime = 0L;
+        private boolean probing = false;
+
+        private ResourceBreaker(String resourceName, int maxConcurrent) {
+            this.resourceName = resourceName;
+            this.maxConcurrent = maxConcurrent;
+            this.bulkhead = new Semaphore(maxConcurrent);
+        }
+
+        /**
+         * @return 拒绝原因, null表示放行
+         */
+        private synchronized String tryAcquire(long now) {
+            boolean probe = false;
+            if (state == State.OPEN) {
+                if (now - openedTime < openDurationMillis) {
+                    return "circuit is open";
+                }
+                transitTo(State.HALF_OPEN, now);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probing) {
+                    return "circuit is half open";
+                }
+                probing = true;
+                probe = true;
+            }
+            if (!bulkhead.tryAcquire()) {
+                if (probe) {
+                    probing = false;
+                }
+                return "concurrent calls exceed " + maxConcurrent;
+            }
+            return null;
+        }
+
+        private synchronized void release(boolean success, long now) {
+            bulkhead.release();
+            if (state == State.HALF_OPEN) {
+                probing = false;
+                transitTo(success ? State.CLOSED : State.OPEN, now);
+                return;
+            }
+            if (state == State.OPEN) {
+                return;
+            }
+
+            if (windowCalls == window.length) {
+                windowFailures -= window[windowIndex] ? 1 : 0;
+            } else {
+                windowCalls++;
+            }
+            window[windowIndex] = !success;
+            windowFailures += success ? 0 : 1;
+            windowIndex = (windowIndex + 1) % window.length;
+
+            if (windowCalls >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+                transitTo(State.OPEN, now);
+            }
+        }
+
+        private void transitTo(State target, long now) {
+            log.info("resource circuit breaker state change, resourceName:{}, from:{}, to:{}, calls:{}, failures:{}",
+                    resourceName, state, target, windowCalls, windowFailures);
+            state = target;
+            if (target == State.OPEN) {
+                openedTime = now;
+            }
+            if (target != State.HALF_OPEN) {
+                windowIndex = 0;
+                windowCalls = 0;
+                windowFailures = 0;
+            }
+        }
+
+        private synchronized Map<String, Object> snapshot() {
+            Map<String, Object> ret = Maps.newHashMap();
+            ret.put("state", state.name());
+            ret.put("calls", windowCalls);
+            ret.put("failures", windowFailures);
+            ret.put("concurrent_calls", maxConcurrent - bulkhead.availablePermits());
+            ret.put("max_concurrent_calls", maxConcurrent);
+            ret.put("opened_time", openedTime);
+            return ret;
+        }
+    }
+}
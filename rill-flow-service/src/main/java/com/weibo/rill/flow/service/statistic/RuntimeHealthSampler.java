@@ -0,0 +1,177 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.statistic;
+
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.weibo.rill.flow.service.dconfs.BizDConfs;
+import com.weibo.rill.flow.service.util.ExecutionIdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 运行时存储及流程健康度的后台采样
+ * <p>
+ * 提交检查时登记serviceId, 后台线程定时采集各redis(按clientId去重)的内存使用率及各serviceId的执行统计,
+ * 提交检查只读取内存中的快照, 快照超过{@code maxStalenessMillis}未更新时视为无效, 由调用方回退到实时计算。
+ * 超过{@code idleExpireMillis}未被读取的serviceId不再采样
+ */
+@Slf4j
+@Service
+public class RuntimeHealthSampler {
+    private static final String DEFAULT_CLIENT_ID = "default";
+
+    @Autowired
+    private DAGResourceStatistic dagResourceStatistic;
+    @Autowired
+    private SystemMonitorStatistic systemMonitorStatistic;
+    @Autowired
+    private BizDConfs bizDConfs;
+
+    @Value("${weibo.flow.runtime.health.sample.interval.millis:5000}")
+    private long sampleIntervalMillis = 5000L;
+
+    @Value("${weibo.flow.runtime.health.max.staleness.millis:30000}")
+    private long maxStalenessMillis = 30000L;
+
+    @Value("${weibo.flow.runtime.health.idle.expire.millis:600000}")
+    private long idleExpireMillis = 600000L;
+
+    private final ConcurrentMap<String, Long> usageServiceIdToAccessTime = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> heapServiceIdToAccessTime = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Sample<Integer>> serviceIdToUsagePercent = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Sample<JSONObject>> serviceIdToHeap = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService sampler;
+
+    @PostConstruct
+    public void init() {
+        sampler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("runtime-health-sampler-%d").setDaemon(true).build());
+        sampler.scheduleWithFixedDelay(this::sample, sampleIntervalMillis, sampleIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return 运行时redis内存使用率, 尚未采样或采样过旧时返回null
+     */
+    public Integer getRedisUsagePercent(String serviceId) {
+        long now = System.currentTimeMillis();
+        usageServiceIdToAccessTime.put(serviceId, now);
+        return getFresh(serviceIdToUsagePercent.get(serviceId), now);
+    }
+
+    /**
+     * @return 与{@link SystemMonitorStatistic#businessHeapMonitor}中单个serviceId的结果相同, 尚未采样或采样过旧时返回null
+     */
+    public JSONObject getBusinessHeap(String serviceId) {
+        long now = System.currentTimeMillis();
+        heapServiceIdToAccessTime.put(serviceId, now);
+        return getFresh(serviceIdToHeap.get(serviceId), now);
+    }
+
+    private <T> T getFresh(Sample<T> sample, long now) {
+        return sample == null || now - sample.time > maxStalenessMillis ? null : sample.value;
+    }
+
+    void sample() {
+        long now = System.currentTimeMillis();
+        try {
+            sampleRedisUsage(activeServiceIds(usageServiceIdToAccessTime, serviceIdToUsagePercent, now), now);
+        } catch (Exception e) {
+            log.warn("sampleRedisUsage fails", e);
+        }
+        try {
+            sampleBusinessHeap(activeServiceIds(heapServiceIdToAccessTime, serviceIdToHeap, now), now);
+        } catch (Exception e) {
+            log.warn("sampleBusinessHeap fails", e);
+        }
+    }
+
+    private List<String> activeServiceIds(ConcurrentMap<String, Long> serviceIdToAccessTime, ConcurrentMap<String, ?> samples, long now) {
+        List<String> serviceIds = new ArrayList<>();
+        serviceIdToAccessTime.forEach((serviceId, accessTime) -> {
+            if (now - accessTime > idleExpireMillis) {
+                serviceIdToAccessTime.remove(serviceId, accessTime);
+                samples.remove(serviceId);
+            } else {
+                serviceIds.add(serviceId);
+            }
+        });
+        return serviceIds;
+    }
+
+    private void sampleRedisUsage(List<String> serviceIds, long now) {
+        Map<String, Integer> clientIdToUsagePercent = new HashMap<>();
+        serviceIds.forEach(serviceId -> {
+            Integer usagePercent = clientIdToUsagePercent.computeIfAbsent(getClientId(serviceId),
+                    clientId -> dagResourceStatistic.sampleRuntimeRedisUsagePercent(ExecutionIdUtil.generateExecutionId(serviceId)));
+            serviceIdToUsagePercent.put(serviceId, new Sample<>(now, usagePercent));
+        });
+    }
+
+    private void sampleBusinessHeap(List<String> serviceIds, long now) {
+        if (serviceIds.isEmpty()) {
+            return;
+        }
+        JSONObject heaps = systemMonitorStatistic.businessHeapMonitor(serviceIds, null, null);
+        serviceIds.forEach(serviceId -> {
+            JSONObject heap = heaps.getJSONObject(serviceId);
+            if (heap != null) {
+                serviceIdToHeap.put(serviceId, new Sample<>(now, heap));
+            }
+        });
+    }
+
+    /**
+     * 与{@link com.weibo.rill.flow.service.storage.RuntimeRedisClients#choose}的路由规则一致
+     */
+    private String getClientId(String serviceId) {
+        String clientId = bizDConfs.getRedisServiceIdToClientId().get(serviceId);
+        if (StringUtils.isBlank(clientId)) {
+            clientId = bizDConfs.getRedisBusinessIdToClientId().get(ExecutionIdUtil.getBusinessIdFromServiceId(serviceId));
+        }
+        return StringUtils.isBlank(clientId) ? DEFAULT_CLIENT_ID : clientId;
+    }
+
+    private static final class Sample<T> {
+        private final long time;
+        private final T value;
+
+        private Sample(long time, T value) {
+            this.time = time;
+            this.value = value;
+        }
+    }
+}
@@ -17,33 +17,54 @@
 package com.weibo.rill.flow.service.statistic;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.weibo.rill.flow.service.storage.RuntimeRedisClients;
 import com.weibo.rill.flow.olympicene.storage.redis.lock.ResourceLoader;
 import com.weibo.rill.flow.common.exception.TaskException;
 import com.weibo.rill.flow.common.model.BizError;
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 
+/**
+ * 提交限流, 按秒统计各serviceId/businessId的提交数
+ * <p>
+ * 开启ENABLE_LOCAL_TRAFFIC_RATE_LIMITER时, 每个节点在本地维护令牌桶, 令牌不足时从redis租借许可, 大部分提交无需访问redis。
+ * 单次租借量按本节点上一秒及当秒的实际获取数估算, 上限为maxRate * leasePercent%, 提交量小的节点不会占用过多许可,
+ * 节点数超过100 / leasePercent时其余节点仍能租借到许可; 并发租借超出上限的部分立即归还redis。
+ * 租借在锁外进行, 同一桶的其他提交不会等待redis调用。租借期间已进入下一秒或租到的许可不足本次提交时, 未使用的许可立即归还;
+ * 后台线程定时将当秒已空闲的本地令牌归还redis, 供其他节点使用。跨秒未用完的本地令牌作废, 集群整体提交数不会超过maxRate
+ */
 @Slf4j
 @Service
 public class TrafficRateLimiter {
     private static final String RATE_KEY_FORMAT = "rate_%s_%s";
+    private static final DateTimeFormatter RATE_KEY_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneId.systemDefault());
     private static final String ACQUIRE_PERMISSION;
+    private static final String LEASE_PERMISSION;
+    private static final String RETURN_PERMISSION;
 
     static {
         try {
             ACQUIRE_PERMISSION = ResourceLoader.loadResourceAsText("lua/traffic_rate_limit.lua");
+            LEASE_PERMISSION = ResourceLoader.loadResourceAsText("lua/traffic_rate_lease.lua");
+            RETURN_PERMISSION = ResourceLoader.loadResourceAsText("lua/traffic_rate_return.lua");
         } catch (IOException e) {
-            throw new TaskException(BizError.ERROR_INTERNAL, "cannot load traffic_rate_limit.lua", e.getCause());
+            throw new TaskException(BizError.ERROR_INTERNAL, "cannot load traffic rate limit lua", e.getCause());
         }
     }
 
@@ -51,23 +72,204 @@ public class TrafficRateLimiter {
     @Qualifier("runtimeRedisClients")
     private RuntimeRedisClients runtimeRedisClients;
 
+    @Autowired
+    private SwitcherManager switcherManagerImpl;
+
+    @Value("${weibo.flow.submit.traffic.lease.percent:10}")
+    private int leasePercent = 10;
+
+    @Value("${weibo.flow.submit.traffic.reconcile.interval.millis:200}")
+    private long reconcileIntervalMillis = 200L;
+
+    private final ConcurrentMap<String, LocalBucket> idToBucket = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reconciler;
+
+    @PostConstruct
+    public void init() {
+        reconciler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("traffic-rate-reconcile-%d").setDaemon(true).build());
+        reconciler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMillis, reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+
     /**
      * @return true: 不限速 false otherwise
      */
     public boolean tryAcquire(String executionId, String id, int maxRate) {
+        return tryAcquire(executionId, id, maxRate, 1);
+    }
+
+    /**
+     * 一次获取多个许可, 用于批量提交
+     *
+     * @return true: 不限速 false otherwise
+     */
+    public boolean tryAcquire(String executionId, String id, int maxRate, int permits) {
+        if (switcherManagerImpl.getSwitcherState("ENABLE_LOCAL_TRAFFIC_RATE_LIMITER")) {
+            return idToBucket.computeIfAbsent(id, key -> new LocalBucket())
+                    .tryAcquire(executionId, id, maxRate, permits, System.currentTimeMillis());
+        }
+
         try {
-            List<String> keys = Lists.newArrayList(buildRateKey(id));
-            List<String> args = Lists.newArrayList(String.valueOf(maxRate));
+            List<String> keys = Lists.newArrayList(buildRateKey(id, System.currentTimeMillis() / 1000));
+            List<String> args = Lists.newArrayList(String.valueOf(maxRate), String.valueOf(permits));
             return (Long) runtimeRedisClients.choose(executionId).eval(ACQUIRE_PERMISSION, keys, args) == 1L;
         } catch (Exception e) {
-            log.warn("tryAcquire fails, executionId:{}, id:{}, maxRate:{}", executionId, id, maxRate, e);
+            log.warn("tryAcquire fails, executionId:{}, id:{}, maxRate:{}, permits:{}", executionId, id, maxRate, permits, e);
             return true;
         }
     }
 
-    private String buildRateKey(String id) {
-        DateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
-        String time = dateFormat.format(new Date());
+    /**
+     * 将当秒内已空闲reconcileIntervalMillis以上的本地令牌归还redis
+     *
+     * @return 归还的许可数
+     */
+    long reconcile(long currentMillis) {
+        long returned = 0L;
+        for (Map.Entry<String, LocalBucket> entry : idToBucket.entrySet()) {
+            returned += entry.getValue().reconcile(entry.getKey(), currentMillis);
+        }
+        return returned;
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile(System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("reconcile traffic rate leases fails", e);
+        }
+    }
+
+    /**
+     * @return 实际租借到的许可数, 获取失败时返回null
+     */
+    private Long lease(String executionId, String id, int maxRate, long leaseCount, long second) {
+        try {
+            List<String> keys = Lists.newArrayList(buildRateKey(id, second));
+            List<String> args = Lists.newArrayList(String.valueOf(maxRate), String.valueOf(leaseCount));
+            return (Long) runtimeRedisClients.choose(executionId).eval(LEASE_PERMISSION, keys, args);
+        } catch (Exception e) {
+            log.warn("lease fails, executionId:{}, id:{}, maxRate:{}, leaseCount:{}", executionId, id, maxRate, leaseCount, e);
+            return null;
+        }
+    }
+
+    private void giveBack(String executionId, String id, long returnCount, long second) {
+        try {
+            List<String> keys = Lists.newArrayList(buildRateKey(id, second));
+            List<String> args = Lists.newArrayList(String.valueOf(returnCount));
+            runtimeRedisClients.choose(executionId).eval(RETURN_PERMISSION, keys, args);
+        } catch (Exception e) {
+            log.warn("giveBack fails, executionId:{}, id:{}, returnCount:{}", executionId, id, returnCount, e);
+        }
+    }
+
+    private String buildRateKey(String id, long second) {
+        String time = RATE_KEY_TIME_FORMATTER.format(Instant.ofEpochSecond(second));
         return String.format(RATE_KEY_FORMAT, id, time);
     }
+
+    private class LocalBucket {
+        private long second = -1L;
+        private long tokens = 0L;
+        private long acquired = 0L;
+        private long previousAcquired = 0L;
+        private boolean exhausted = false;
+        private long lastAcquireMillis = 0L;
+        private String lastExecutionId;
+
+        private boolean tryAcquire(String executionId, String id, int maxRate, int permits, long currentMillis) {
+            long currentSecond = currentMillis / 1000;
+            long maxLeaseCount = Math.max(1L, (long) maxRate * leasePercent / 100);
+            long leaseCount;
+            synchronized (this) {
+                rollTo(currentSecond);
+                lastAcquireMillis = currentMillis;
+                lastExecutionId = executionId;
+                if (take(permits)) {
+                    return true;
+                }
+                if (exhausted) {
+                    return false;
+                }
+                // 按实际提交量逐步放大租借量, 不超过maxLeaseCount
+                long demand = Math.max(1L, Math.max(previousAcquired, acquired));
+                leaseCount = Math.max(permits - tokens, Math.min(maxLeaseCount, demand));
+            }
+
+            Long granted = lease(executionId, id, maxRate, leaseCount, currentSecond);
+            if (granted == null) {
+                // 与redis限流一致 获取失败时不限流
+                return true;
+            }
+
+            boolean ret;
+            long excess;
+            synchronized (this) {
+                if (second != currentSecond) {
+                    // 租借期间已进入下一秒, 租到的许可属于上一秒, 只用于本次提交, 其余归还
+                    ret = granted >= permits;
+                    excess = ret ? granted - permits : granted;
+                } else {
+                    tokens += granted;
+                    if (granted < leaseCount) {
+                        // 当秒集群许可已分配完 本秒内不再访问redis
+                        exhausted = true;
+                    }
+                    ret = take(permits);
+                    // 租到的许可不足本次提交时全部归还; 并发租借时本地令牌可能超过单次租借上限, 多出的部分归还给其他节点
+                    excess = ret ? Math.max(0L, tokens - maxLeaseCount) : tokens;
+                    tokens -= excess;
+                }
+            }
+            if (excess > 0) {
+                giveBack(executionId, id, excess, currentSecond);
+            }
+            return ret;
+        }
+
+        private long reconcile(String id, long currentMillis) {
+            long returnCount;
+            String executionId;
+            synchronized (this) {
+                if (second != currentMillis / 1000 || tokens <= 0 || currentMillis - lastAcquireMillis < reconcileIntervalMillis) {
+                    return 0L;
+                }
+                returnCount = tokens;
+                executionId = lastExecutionId;
+                tokens = 0L;
+                // 归还后redis中已有可用许可, 下次提交重新租借
+                exhausted = false;
+            }
+            giveBack(executionId, id, returnCount, currentMillis / 1000);
+            return returnCount;
+        }
+
+        private void rollTo(long currentSecond) {
+            if (currentSecond <= second) {
+                return;
+            }
+            previousAcquired = currentSecond == second + 1 ? acquired : 0L;
+            second = currentSecond;
+            tokens = 0L;
+            acquired = 0L;
+            exhausted = false;
+        }
+
+        private boolean take(int permits) {
+            if (tokens < permits) {
+                return false;
+            }
+            tokens -= permits;
+            acquired += permits;
+            return true;
+        }
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.weibo.rill.flow.common.exception.TaskException;
+import com.weibo.rill.flow.common.model.BizError;
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.storage.save.impl.DagStorageSerializer;
+import com.weibo.rill.flow.olympicene.traversal.serialize.DAGTraversalSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 长期存储归档的本地缓冲区
+ * <p>
+ * 每个待归档的execution对应root下一个gzip压缩的json文件, 文件名以写入时间开头, 按文件名顺序归档。
+ * 先写临时文件并force到磁盘再原子rename, 进程或机器重启后未确认的记录仍可继续归档; 无法解析的文件重命名为.corrupt后跳过
+ * <p>
+ * 上下文按运行时存储的格式(DagStorageSerializer.serializeHash)保存, 读取时还原为原始的值类型
+ */
+@Slf4j
+public class LongTermArchiveBuffer {
+    private static final String SUFFIX = ".gz";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final String EXECUTION_ID = "execution_id";
+    private static final String DAG_INFO = "dag_info";
+    private static final String CONTEXT = "context";
+
+    private final Path root;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public LongTermArchiveBuffer(Path root) {
+        this.root = root;
+    }
+
+    public void append(String executionId, DAGInfo dagInfo, Map<String, Object> context) {
+        ObjectNode record = DAGTraversalSerializer.MAPPER.createObjectNode();
+        record.put(EXECUTION_ID, executionId);
+        record.set(DAG_INFO, DAGTraversalSerializer.MAPPER.valueToTree(dagInfo));
+        record.set(CONTEXT, DAGTraversalSerializer.MAPPER.valueToTree(DagStorageSerializer.serializeHash(context)));
+
+        String fileName = String.format("%013d_%06d_%s", System.currentTimeMillis(), sequence.incrementAndGet() % 1000000,
+                DigestUtils.md5Hex(executionId));
+        Path path = root.resolve(fileName + SUFFIX);
+        Path tmp = root.resolve(fileName + ".tmp");
+        try {
+            Files.createDirectories(root);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                GZIPOutputStream outputStream = new GZIPOutputStream(Channels.newOutputStream(channel));
+                DAGTraversalSerializer.MAPPER.writeValue(outputStream, record);
+                outputStream.finish();
+                outputStream.flush();
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("append fails, executionId:{}", executionId, e);
+            throw new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), "append archive fails, executionId:" + executionId, e);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * 按写入顺序读取最多limit条未确认的记录, 读取不会移除记录
+     */
+    public List<Entry> peek(int limit) {
+        if (!Files.isDirectory(root)) {
+            return Lists.newArrayList();
+        }
+
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(root)) {
+            paths = files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().limit(limit).toList();
+        } catch (IOException e) {
+            log.warn("peek fails, root:{}, errorMsg:{}", root, e.getMessage());
+            return Lists.newArrayList();
+        }
+
+        List<Entry> entries = Lists.newArrayList();
+        for (Path path : paths) {
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(path))) {
+                JsonNode record = DagStorageSerializer.MAPPER.readTree(inputStream);
+                DAGInfo dagInfo = DagStorageSerializer.MAPPER.convertValue(record.get(DAG_INFO), DAGInfo.class);
+                Map<String, String> serializedContext = DagStorageSerializer.MAPPER.convertValue(record.get(CONTEXT), new TypeReference<>() {
+                });
+                Map<String, Object> context = deserializeContext(serializedContext);
+                entries.add(new Entry(path, record.get(EXECUTION_ID).asText(), dagInfo, context));
+            } catch (Exception e) {
+                log.warn("peek fails to read {}, mark corrupt", path, e);
+                markCorrupt(path);
+            }
+        }
+        return entries;
+    }
+
+    private Map<String, Object> deserializeContext(Map<String, String> serializedContext) {
+        List<byte[]> content = Lists.newArrayList();
+        if (serializedContext != null) {
+            serializedContext.forEach((field, value) -> {
+                content.add(DagStorageSerializer.getBytes(field));
+                content.add(DagStorageSerializer.getBytes(value));
+            });
+        }
+        return DagStorageSerializer.deserializeHash(content);
+    }
+
+    public void ack(Entry entry) {
+        deleteQuietly(entry.getPath());
+    }
+
+    private void markCorrupt(Path path) {
+        try {
+            Files.move(path, path.resolveSibling(path.getFileName() + CORRUPT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("markCorrupt fails, path:{}, errorMsg:{}", path, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("delete fails, path:{}, errorMsg:{}", path, e.getMessage());
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final Path path;
+        private final String executionId;
+        private final DAGInfo dagInfo;
+        private final Map<String, Object> context;
+    }
+}
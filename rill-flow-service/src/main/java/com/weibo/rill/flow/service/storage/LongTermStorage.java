@@ -17,6 +17,7 @@
 package com.weibo.rill.flow.service.storage;
 
 import com.google.common.collect.Maps;
+import com.weibo.rill.flow.olympicene.storage.codec.StorageCodec;
 import com.weibo.rill.flow.service.dconfs.BizDConfs;
 import com.weibo.rill.flow.service.util.ExecutionIdUtil;
 import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
@@ -28,17 +29,41 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
+/**
+ * 已完成execution的长期存储
+ * <p>
+ * 配置归档缓冲区后, 完成回调只将execution写入本地缓冲区, 由定时任务批量写入长期存储,
+ * 写入成功后才按已完成状态的保留时间过期运行时数据
+ */
 @Slf4j
 public class LongTermStorage {
     private final BizDConfs bizDConfs;
     private final DAGPikaDAO dagPikaDAO;
+    private final LongTermArchiveBuffer archiveBuffer;
+    private final RuntimeStorage runtimeStorage;
 
     public LongTermStorage(BizDConfs bizDConfs, Map<String, RedisClient> clientIdToRedisClient) {
+        this(bizDConfs, clientIdToRedisClient, null, null, null);
+    }
+
+    /**
+     * @param codec         写入长期存储时使用的编解码, 为null时使用json
+     * @param archiveBuffer 为null时在完成回调中同步写入长期存储
+     */
+    public LongTermStorage(BizDConfs bizDConfs, Map<String, RedisClient> clientIdToRedisClient, StorageCodec codec,
+                           LongTermArchiveBuffer archiveBuffer, RuntimeStorage runtimeStorage) {
         this.bizDConfs = bizDConfs;
         this.dagPikaDAO = new DAGPikaDAO(false, clientIdToRedisClient, bizDConfs);
+        if (codec != null) {
+            this.dagPikaDAO.setCodec(codec);
+        }
+        this.archiveBuffer = archiveBuffer;
+        this.runtimeStorage = runtimeStorage;
     }
 
     public void storeDAGInfoAndContext(DAGCallbackInfo callbackInfo) {
@@ -53,6 +78,9 @@ public class LongTermStorage {
             if (!needStore) {
                 return;
             }
+            if (archiveBuffer != null && appendArchive(executionId, callbackInfo)) {
+                return;
+            }
             dagPikaDAO.saveDAGInfo(executionId, callbackInfo.getDagInfo());
             dagPikaDAO.saveContext(executionId, callbackInfo.getContext());
         } catch (Exception e) {
@@ -60,6 +88,56 @@ public class LongTermStorage {
         }
     }
 
+    /**
+     * 将缓冲区中的execution批量写入长期存储, 写入成功的记录从缓冲区移除, 失败的记录下次重试
+     *
+     * @return 写入成功的execution数量
+     */
+    public int flushArchives(int limit) {
+        if (archiveBuffer == null) {
+            return 0;
+        }
+
+        List<LongTermArchiveBuffer.Entry> entries = archiveBuffer.peek(limit);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        Map<String, DAGInfo> executionIdToDAGInfo = Maps.newLinkedHashMap();
+        Map<String, Map<String, Object>> executionIdToContext = Maps.newHashMap();
+        entries.forEach(entry -> {
+            executionIdToDAGInfo.put(entry.getExecutionId(), entry.getDagInfo());
+            executionIdToContext.put(entry.getExecutionId(), entry.getContext());
+        });
+        Set<String> savedExecutionIds = dagPikaDAO.saveDAGInfoAndContexts(executionIdToDAGInfo, executionIdToContext);
+
+        entries.stream().filter(entry -> savedExecutionIds.contains(entry.getExecutionId())).forEach(entry -> {
+            archiveBuffer.ack(entry);
+            try {
+                runtimeStorage.expireArchived(entry.getExecutionId());
+            } catch (Exception e) {
+                log.warn("flushArchives fails to expire runtime data, executionId:{}", entry.getExecutionId(), e);
+            }
+        });
+        log.info("flushArchives entries:{} saved:{}", entries.size(), savedExecutionIds.size());
+        return savedExecutionIds.size();
+    }
+
+    private boolean appendArchive(String executionId, DAGCallbackInfo callbackInfo) {
+        try {
+            archiveBuffer.append(executionId, callbackInfo.getDagInfo(), callbackInfo.getContext());
+        } catch (Exception e) {
+            log.warn("appendArchive fails, store directly, executionId:{}", executionId, e);
+            return false;
+        }
+
+        try {
+            runtimeStorage.retainUntilArchived(executionId);
+        } catch (Exception e) {
+            log.warn("appendArchive fails to retain runtime data, executionId:{}", executionId, e);
+        }
+        return true;
+    }
+
     public DAGInfo getDAGInfo(String executionId) {
         boolean storageExist = storageExist(executionId);
         log.info("getDAGInfo executionId:{} storageExist:{}", executionId, storageExist);
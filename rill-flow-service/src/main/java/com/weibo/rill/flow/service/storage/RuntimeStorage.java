@@ -22,43 +22,76 @@ import com.weibo.rill.flow.olympicene.core.constant.ReservedConstant;
 import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.core.model.dag.LockedDAGInfo;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGContextStorage;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGInfoStorage;
+import com.weibo.rill.flow.olympicene.core.runtime.DAGTraversalStorage;
 import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
+import com.weibo.rill.flow.olympicene.storage.blob.BlobStore;
 import com.weibo.rill.flow.olympicene.storage.constant.StorageErrorCode;
 import com.weibo.rill.flow.olympicene.storage.exception.StorageException;
 import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
+import com.weibo.rill.flow.olympicene.storage.redis.apicommons.GroupedRedisClient;
+import com.weibo.rill.flow.olympicene.storage.redis.lock.impl.RedisDistributedLocker;
+import com.weibo.rill.flow.olympicene.storage.save.impl.DAGEventStreamStorage;
 import com.weibo.rill.flow.olympicene.storage.save.impl.DAGInfoDeserializeService;
 import com.weibo.rill.flow.olympicene.storage.save.impl.DAGRedisStorage;
+import com.weibo.rill.flow.olympicene.storage.save.impl.RedisStorageProcedure;
 import com.weibo.rill.flow.service.dconfs.BizDConfs;
 import com.weibo.rill.flow.service.storage.dao.ContextRedisDAO;
 import com.weibo.rill.flow.service.storage.dao.DAGInfoRedisDAO;
+import com.weibo.rill.flow.service.storage.dao.RuntimeTierDAO;
 import com.weibo.rill.flow.service.util.ExecutionIdUtil;
+import com.weibo.rill.flow.service.util.IpUtils;
+import com.weibo.rill.flow.service.util.ProfileActions;
+import com.weibo.rill.flow.service.util.PrometheusActions;
+import com.weibo.rill.flow.service.util.ValueExtractor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 
 @Slf4j
-public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
+public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage, DAGTraversalStorage {
+    private final RedisClient redisClient;
     private final DAGRedisStorage runtimeRedisStorage;
+    private final DAGEventStreamStorage runtimeEventStreamStorage;
+    private final ContextRedisDAO contextRedisDAO;
     private final RuntimeSwapStorage runtimeSwapStorage;
+    private final RuntimeTieringPolicy tieringPolicy;
+    private final RedisStorageProcedure tierStorageProcedure;
     private final BizDConfs bizDConfs;
 
     public RuntimeStorage(RedisClient redisClient, Map<String, RedisClient> clientIdToRedisClient, BizDConfs bizDConfs,
                           DAGInfoDeserializeService dagInfoDeserializeService, SwitcherManager switcherManagerImpl) {
+        this(redisClient, clientIdToRedisClient, bizDConfs, dagInfoDeserializeService, switcherManagerImpl, null);
+    }
+
+    /**
+     * @param contextBlobStore 不为null时, 按业务配置的阈值将context大字段外置到该存储
+     */
+    public RuntimeStorage(RedisClient redisClient, Map<String, RedisClient> clientIdToRedisClient, BizDConfs bizDConfs,
+                          DAGInfoDeserializeService dagInfoDeserializeService, SwitcherManager switcherManagerImpl,
+                          BlobStore contextBlobStore) {
+        this.redisClient = redisClient;
         this.bizDConfs = bizDConfs;
 
         DAGInfoRedisDAO dagInfoRedisDAO = new DAGInfoRedisDAO(redisClient, bizDConfs, dagInfoDeserializeService);
-        ContextRedisDAO contextRedisDAO = new ContextRedisDAO(redisClient, bizDConfs, switcherManagerImpl);
+        this.contextRedisDAO = new ContextRedisDAO(redisClient, bizDConfs, switcherManagerImpl);
+        this.contextRedisDAO.setBlobStore(contextBlobStore);
         this.runtimeRedisStorage = new DAGRedisStorage(dagInfoRedisDAO, contextRedisDAO);
+        this.runtimeEventStreamStorage = new DAGEventStreamRedisStorage(redisClient, bizDConfs);
 
         this.runtimeSwapStorage = new RuntimeSwapStorage(redisClient, clientIdToRedisClient, bizDConfs);
+        this.tieringPolicy = new RuntimeTieringPolicy(new RuntimeTierDAO(redisClient), bizDConfs);
+        String instanceId = IpUtils.getLocalIpv4Address() + UUID.randomUUID().toString().replace("-", "");
+        this.tierStorageProcedure = new RedisStorageProcedure(instanceId, new RedisDistributedLocker(redisClient));
     }
 
     @Override
@@ -67,11 +100,23 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
             return;
         }
 
-        Runnable redisOperation = () -> runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+        Runnable redisOperation = () -> dagInfoStorage(executionId).saveDAGInfo(executionId, dagInfo);
         Runnable swapOperation = () -> runtimeSwapStorage.saveDAGInfo(executionId, dagInfo);
         setAction(executionId, redisOperation, swapOperation);
     }
 
+    @Override
+    public void saveDAGInfos(Map<String, DAGInfo> executionIdToDAGInfo) {
+        if (MapUtils.isEmpty(executionIdToDAGInfo)) {
+            return;
+        }
+
+        String executionId = executionIdToDAGInfo.keySet().iterator().next();
+        Runnable redisOperation = () -> dagInfoStorage(executionId).saveDAGInfos(executionIdToDAGInfo);
+        Runnable swapOperation = () -> executionIdToDAGInfo.forEach(runtimeSwapStorage::saveDAGInfo);
+        setAction(executionId, redisOperation, swapOperation);
+    }
+
     @Override
     public void saveTaskInfos(String executionId, Set<TaskInfo> taskInfos) {
         if (CollectionUtils.isEmpty(taskInfos)) {
@@ -79,19 +124,19 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
             return;
         }
 
-        Runnable redisOperation = () -> runtimeRedisStorage.saveTaskInfos(executionId, taskInfos);
+        Runnable redisOperation = () -> dagInfoStorage(executionId).saveTaskInfos(executionId, taskInfos);
         Runnable swapOperation = () -> runtimeSwapStorage.saveTaskInfos(executionId, taskInfos);
         setAction(executionId, redisOperation, swapOperation);
     }
 
     @Override
     public DAGInfo getDAGInfo(String executionId) {
-        Supplier<DAGInfo> redisOperation = () -> runtimeRedisStorage.getDAGInfo(executionId);
+        Supplier<DAGInfo> redisOperation = () -> dagInfoStorage(executionId).getDAGInfo(executionId);
         Function<DAGInfo, Boolean> isValueAcquired = Objects::nonNull;
         Supplier<DAGInfo> swapOperation = () -> {
             DAGInfo dagInfo = runtimeSwapStorage.getDAGInfo(executionId);
             if (dagInfo != null) {
-                runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+                dagInfoStorage(executionId).saveDAGInfo(executionId, dagInfo);
             }
             return dagInfo;
         };
@@ -100,12 +145,12 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
 
     @Override
     public DAGInfo getBasicDAGInfo(String executionId) {
-        Supplier<DAGInfo> redisOperation = () -> runtimeRedisStorage.getBasicDAGInfo(executionId);
+        Supplier<DAGInfo> redisOperation = () -> dagInfoStorage(executionId).getBasicDAGInfo(executionId);
         Function<DAGInfo, Boolean> isValueAcquired = Objects::nonNull;
         Supplier<DAGInfo> swapOperation = () -> {
             DAGInfo dagInfo = runtimeSwapStorage.getDAGInfo(executionId);
             if (dagInfo != null) {
-                runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+                dagInfoStorage(executionId).saveDAGInfo(executionId, dagInfo);
                 Optional.ofNullable(dagInfo.getTasks()).map(Map::values)
                         .ifPresent(taskInfos -> taskInfos.forEach(taskInfo -> taskInfo.setChildren(new LinkedHashMap<>())));
             }
@@ -116,13 +161,13 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
 
     @Override
     public TaskInfo getBasicTaskInfo(String executionId, String taskName) {
-        Supplier<TaskInfo> redisOperation = () -> runtimeRedisStorage.getBasicTaskInfo(executionId, taskName);
+        Supplier<TaskInfo> redisOperation = () -> dagInfoStorage(executionId).getBasicTaskInfo(executionId, taskName);
         Function<TaskInfo, Boolean> isValueAcquired = Objects::nonNull;
         Supplier<TaskInfo> swapOperation = () -> {
             TaskInfo taskInfo = null;
             DAGInfo dagInfo = runtimeSwapStorage.getDAGInfo(executionId);
             if (dagInfo != null) {
-                runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+                dagInfoStorage(executionId).saveDAGInfo(executionId, dagInfo);
                 taskInfo = DAGWalkHelper.getInstance().getTaskInfoByName(dagInfo, taskName);
                 taskInfo.setChildren(new LinkedHashMap<>());
             }
@@ -133,13 +178,13 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
 
     @Override
     public TaskInfo getTaskInfo(String executionId, String taskName) {
-        Supplier<TaskInfo> redisOperation = () -> runtimeRedisStorage.getTaskInfo(executionId, taskName);
+        Supplier<TaskInfo> redisOperation = () -> dagInfoStorage(executionId).getTaskInfo(executionId, taskName);
         Function<TaskInfo, Boolean> isValueAcquired = Objects::nonNull;
         Supplier<TaskInfo> swapOperation = () -> {
             TaskInfo taskInfo = null;
             DAGInfo dagInfo = runtimeSwapStorage.getDAGInfo(executionId);
             if (dagInfo != null) {
-                runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+                dagInfoStorage(executionId).saveDAGInfo(executionId, dagInfo);
                 taskInfo = DAGWalkHelper.getInstance().getTaskInfoByName(dagInfo, taskName);
             }
             return taskInfo;
@@ -149,13 +194,13 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
 
     @Override
     public TaskInfo getParentTaskInfoWithSibling(String executionId, String taskName) {
-        Supplier<TaskInfo> redisOperation = () -> runtimeRedisStorage.getParentTaskInfoWithSibling(executionId, taskName);
+        Supplier<TaskInfo> redisOperation = () -> dagInfoStorage(executionId).getParentTaskInfoWithSibling(executionId, taskName);
         Function<TaskInfo, Boolean> isValueAcquired = Objects::nonNull;
         Supplier<TaskInfo> swapOperation = () -> {
             TaskInfo taskInfo = null;
             DAGInfo dagInfo = runtimeSwapStorage.getDAGInfo(executionId);
             if (dagInfo != null) {
-                runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+                dagInfoStorage(executionId).saveDAGInfo(executionId, dagInfo);
                 TaskInfo currentTaskInfo = DAGWalkHelper.getInstance().getTaskInfoByName(dagInfo, taskName);
                 TaskInfo parentTaskInfo = currentTaskInfo.getParent();
                 Map<String, TaskInfo> sibling = parentTaskInfo.getChildren().entrySet().stream()
@@ -171,27 +216,27 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
 
     @Override
     public void clearDAGInfo(String executionId) {
-        Runnable redisOperation = () -> runtimeRedisStorage.clearDAGInfo(executionId);
+        Runnable redisOperation = () -> dagInfoStorage(executionId).clearDAGInfo(executionId);
         Runnable swapOperation = () -> runtimeSwapStorage.clearDAGInfo(executionId);
         setAction(executionId, redisOperation, swapOperation);
     }
 
     @Override
     public void clearDAGInfo(String executionId, int expireTimeInSecond) {
-        Runnable redisOperation = () -> runtimeRedisStorage.clearDAGInfo(executionId, expireTimeInSecond);
+        Runnable redisOperation = () -> dagInfoStorage(executionId).clearDAGInfo(executionId, expireTimeInSecond);
         Runnable swapOperation = () -> runtimeSwapStorage.clearDAGInfo(executionId);
         setAction(executionId, redisOperation, swapOperation);
     }
 
     @Override
     public DAG getDAGDescriptor(String executionId) {
-        Supplier<DAG> redisOperation = () -> runtimeRedisStorage.getDAGDescriptor(executionId);
+        Supplier<DAG> redisOperation = () -> dagInfoStorage(executionId).getDAGDescriptor(executionId);
         Function<DAG, Boolean> isValueAcquired = Objects::nonNull;
         Supplier<DAG> swapOperation = () -> {
             DAG dag = null;
             DAGInfo dagInfo = runtimeSwapStorage.getDAGInfo(executionId);
             if (dagInfo != null) {
-                runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+                dagInfoStorage(executionId).saveDAGInfo(executionId, dagInfo);
                 dag = dagInfo.getDag();
             }
             return dag;
@@ -205,7 +250,7 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
             return;
         }
 
-        Runnable redisOperation = () -> runtimeRedisStorage.updateDAGDescriptor(executionId, dag);
+        Runnable redisOperation = () -> dagInfoStorage(executionId).updateDAGDescriptor(executionId, dag);
         Runnable swapOperation = () -> runtimeSwapStorage.updateDAGDescriptor(executionId, dag);
         setAction(executionId, redisOperation, swapOperation);
     }
@@ -216,20 +261,32 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
             return;
         }
 
-        Runnable redisOperation = () -> runtimeRedisStorage.updateContext(executionId, context);
+        Runnable redisOperation = () -> contextStorage(executionId).updateContext(executionId, context);
         Runnable swapOperation = () -> runtimeSwapStorage.updateContext(executionId, context);
         setAction(executionId, redisOperation, swapOperation);
     }
 
+    @Override
+    public void updateContexts(Map<String, Map<String, Object>> executionIdToContext) {
+        if (MapUtils.isEmpty(executionIdToContext)) {
+            return;
+        }
+
+        String executionId = executionIdToContext.keySet().iterator().next();
+        Runnable redisOperation = () -> contextStorage(executionId).updateContexts(executionIdToContext);
+        Runnable swapOperation = () -> executionIdToContext.forEach(runtimeSwapStorage::updateContext);
+        setAction(executionId, redisOperation, swapOperation);
+    }
+
     @Override
     public Map<String, Object> getContext(String executionId) {
-        Supplier<Map<String, Object>> redisOperation = () -> runtimeRedisStorage.getContext(executionId);
+        Supplier<Map<String, Object>> redisOperation = () -> contextStorage(executionId).getContext(executionId);
         Function<Map<String, Object>, Boolean> isValueAcquired = MapUtils::isNotEmpty;
         Supplier<Map<String, Object>> swapOperation = () -> {
             Map<String, Object> ret = Maps.newHashMap();
             Map<String, Object> totalContext = runtimeSwapStorage.getTotalContext(executionId);
             if (MapUtils.isNotEmpty(totalContext)) {
-                runtimeRedisStorage.updateContext(executionId, totalContext);
+                contextStorage(executionId).updateContext(executionId, totalContext);
                 ret = totalContext.entrySet().stream()
                         .filter(entry -> !entry.getKey().startsWith(ReservedConstant.SUB_CONTEXT_PREFIX))
                         .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
@@ -245,13 +302,13 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
             return Maps.newHashMap();
         }
 
-        Supplier<Map<String, Object>> redisOperation = () -> runtimeRedisStorage.getContext(executionId, fields);
+        Supplier<Map<String, Object>> redisOperation = () -> contextStorage(executionId).getContext(executionId, fields);
         Function<Map<String, Object>, Boolean> isValueAcquired = MapUtils::isNotEmpty;
         Supplier<Map<String, Object>> swapOperation = () -> {
             Map<String, Object> ret = Maps.newHashMap();
             Map<String, Object> totalContext = runtimeSwapStorage.getTotalContext(executionId);
             if (MapUtils.isNotEmpty(totalContext)) {
-                runtimeRedisStorage.updateContext(executionId, totalContext);
+                contextStorage(executionId).updateContext(executionId, totalContext);
                 fields.forEach(field -> Optional.ofNullable(totalContext.get(field))
                         .ifPresent(value -> ret.put(field, value)));
             }
@@ -260,22 +317,136 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
         return getAction(executionId, redisOperation, isValueAcquired, swapOperation);
     }
 
+    /**
+     * 释放已过期execution引用的context大字段
+     */
+    public int releaseExpiredContextBlobs(int limit) {
+        return contextRedisDAO.releaseExpiredBlobs(limit);
+    }
+
+    /**
+     * 归档到长期存储前延长已完成execution的保留时间, 避免归档确认前运行时数据过期
+     */
+    public void retainUntilArchived(String executionId) {
+        int expireTime = ValueExtractor.getConfiguredValue(executionId, bizDConfs.getRedisBusinessIdToUnfinishedReserveSecond(), 259200);
+        dagInfoStorage(executionId).clearDAGInfo(executionId, expireTime);
+        if (!eventStreamEnabled(executionId)) {
+            contextRedisDAO.deleteContext(executionId, expireTime);
+        }
+    }
+
+    /**
+     * 归档确认后按已完成状态的保留时间过期运行时数据
+     */
+    public void expireArchived(String executionId) {
+        dagInfoStorage(executionId).clearDAGInfo(executionId);
+        contextStorage(executionId).clearContext(executionId);
+    }
+
+    /**
+     * 将本机记录的execution访问时间写入redis
+     */
+    public int flushRuntimeAccess() {
+        return tieringPolicy.flushAccess();
+    }
+
+    /**
+     * 将空闲超过业务配置时间的execution从redis换出到swap存储, 下次读写时再换入
+     */
+    public int swapOutIdleExecutions(int limit) {
+        int count = 0;
+        for (String executionId : tieringPolicy.pollIdle(limit)) {
+            try {
+                if (swapOut(executionId)) {
+                    count++;
+                }
+            } catch (Exception e) {
+                log.warn("swapOutIdleExecutions fails, executionId:{}", executionId, e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 合并的加锁读取只访问redis, 事件流存储及配置swap的业务需经过各自的读写路径;
+     * 锁按lockName路由, 与execution数据位于同一redis时才可在一个脚本中完成
+     */
+    @Override
+    public boolean lockedTraversalSupported(String lockName, String executionId) {
+        if (eventStreamEnabled(executionId) || swapExist(executionId)) {
+            return false;
+        }
+
+        try {
+            return !(redisClient instanceof GroupedRedisClient groupedRedisClient)
+                    || groupedRedisClient.choose(lockName) == groupedRedisClient.choose(executionId);
+        } catch (Exception e) {
+            log.warn("lockedTraversalSupported fails, executionId:{}, errorMsg:{}", executionId, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public LockedDAGInfo tryLockAndLoad(String lockName, String lockAcquirerId, int lockExpireTimeInSecond,
+                                        String executionId, Collection<String> contextFields) {
+        return runtimeRedisStorage.tryLockAndLoad(lockName, lockAcquirerId, lockExpireTimeInSecond, executionId, contextFields);
+    }
+
+    @Override
+    public void saveTaskInfosAndUnlock(LockedDAGInfo lockedDAGInfo, Set<TaskInfo> taskInfos) {
+        runtimeRedisStorage.saveTaskInfosAndUnlock(lockedDAGInfo, taskInfos);
+    }
+
+    /**
+     * 分组计数脚本直接写dag_info/sub_task hash, 仅只存储在redis(无事件流、未配置swap)的业务可使用
+     */
+    public boolean subGroupTrackingSupported(String executionId) {
+        return !eventStreamEnabled(executionId) && !swapExist(executionId);
+    }
+
     @Override
     public void clearContext(String executionId) {
-        Runnable redisOperation = () -> runtimeRedisStorage.clearContext(executionId);
+        Runnable redisOperation = () -> contextStorage(executionId).clearContext(executionId);
         Runnable swapOperation = () -> runtimeSwapStorage.clearContext(executionId);
         setAction(executionId, redisOperation, swapOperation);
     }
 
+    private DAGInfoStorage dagInfoStorage(String executionId) {
+        return eventStreamEnabled(executionId) ? runtimeEventStreamStorage : runtimeRedisStorage;
+    }
+
+    private DAGContextStorage contextStorage(String executionId) {
+        return eventStreamEnabled(executionId) ? runtimeEventStreamStorage : runtimeRedisStorage;
+    }
+
+    /**
+     * 按业务切换为事件流存储, 仅对新提交的执行开启, 已在运行的执行切换后无法读取原有数据
+     */
+    private boolean eventStreamEnabled(String executionId) {
+        try {
+            Set<String> businessIds = bizDConfs.getRedisEventStreamStorageBusinessIds();
+            return businessIds != null && businessIds.contains(ExecutionIdUtil.getBusinessId(executionId));
+        } catch (Exception e) {
+            log.warn("eventStreamEnabled fails, executionId:{}, errorMsg:{}", executionId, e.getMessage());
+            return false;
+        }
+    }
+
     private <T> T getAction(String executionId, Supplier<T> redisOperation, Function<T, Boolean> isValueAcquired, Supplier<T> swapOperation) {
         if (!swapExist(executionId)) {
             return redisOperation.get();
         }
 
+        boolean tieringEnabled = tieringPolicy.tieringEnabled(executionId);
+        if (tieringEnabled) {
+            tieringPolicy.touch(executionId);
+        }
+
         T redisValue;
         try {
             redisValue = redisOperation.get();
             if (isValueAcquired.apply(redisValue)) {
+                recordTierAccess(executionId, tieringEnabled, true);
                 return redisValue;
             }
         } catch (Exception e) {
@@ -291,6 +462,14 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
             throw e;
         }
 
+        recordTierAccess(executionId, tieringEnabled, false);
+        if (tieringEnabled && promote(executionId)) {
+            T promotedValue = redisOperation.get();
+            if (isValueAcquired.apply(promotedValue)) {
+                return promotedValue;
+            }
+        }
+
         T swapValue = getSwapValue(executionId, swapOperation);
         return isValueAcquired.apply(swapValue) ? swapValue : redisValue;
     }
@@ -306,6 +485,14 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
     }
 
     private void setAction(String executionId, Runnable redisOperation, Runnable swapOperation) {
+        if (tieringPolicy.tieringEnabled(executionId)) {
+            // 已换出的execution需先完整换入, 避免redis中只写入部分数据
+            tieringPolicy.touch(executionId);
+            if (tieringPolicy.checkSwappedOutBeforeWrite(executionId)) {
+                promote(executionId);
+            }
+        }
+
         redisOperation.run();
 
         if (swapExist(executionId)) {
@@ -317,6 +504,90 @@ public class RuntimeStorage implements DAGInfoStorage, DAGContextStorage {
         }
     }
 
+    /**
+     * swap写入失败只记录日志, swap中的数据可能落后于redis, 换出时需在锁内将redis当前数据重新写入swap后再删除redis数据
+     * 写入前已在redis中记录访问时间, 换出标记仅在redis中的访问时间仍满足空闲条件时写入, 标记写入后的写入会先等待换出完成再换入,
+     * 因此标记写入后复制的redis数据即为最新数据, 复制失败时清除标记并保留redis数据
+     */
+    private boolean swapOut(String executionId) {
+        AtomicBoolean swappedOut = new AtomicBoolean(false);
+        tierStorageProcedure.lockAndRun(buildTierLockName(executionId), () -> {
+            if (tieringPolicy.getLocalAccessTime(executionId) != null) {
+                return;
+            }
+            DAGInfo basicDAGInfo = runtimeRedisStorage.getBasicDAGInfo(executionId);
+            if (basicDAGInfo == null || basicDAGInfo.getDagStatus() == null || basicDAGInfo.getDagStatus().isCompleted()) {
+                return;
+            }
+
+            if (!tieringPolicy.markSwappedOutIfIdle(executionId)) {
+                log.info("swapOut skipped, executionId:{} accessed recently", executionId);
+                return;
+            }
+            try {
+                copyToSwap(executionId);
+            } catch (Exception e) {
+                tieringPolicy.clearSwappedOut(executionId);
+                throw e;
+            }
+            runtimeRedisStorage.clearDAGInfo(executionId, 0);
+            contextRedisDAO.deleteContext(executionId, 0);
+            swappedOut.set(true);
+            log.info("swapOut executionId:{}", executionId);
+        });
+        return swappedOut.get();
+    }
+
+    private void copyToSwap(String executionId) {
+        DAGInfo dagInfo = runtimeRedisStorage.getDAGInfo(executionId);
+        if (dagInfo == null) {
+            throw new StorageException(StorageErrorCode.RESOURCE_NOT_FOUND.getCode(), "swapOut dag info not found, executionId:" + executionId);
+        }
+        runtimeSwapStorage.saveDAGInfo(executionId, dagInfo);
+        runtimeSwapStorage.updateContext(executionId, contextRedisDAO.getContext(executionId, true));
+    }
+
+    /**
+     * @return execution是否曾被换出, 为true时redis中已有完整数据
+     */
+    private boolean promote(String executionId) {
+        if (!tieringPolicy.isSwappedOut(executionId)) {
+            return false;
+        }
+
+        long startTime = System.currentTimeMillis();
+        tierStorageProcedure.lockAndRun(buildTierLockName(executionId), () -> {
+            if (!tieringPolicy.isSwappedOut(executionId)) {
+                return;
+            }
+            DAGInfo dagInfo = runtimeSwapStorage.getDAGInfo(executionId);
+            if (dagInfo != null) {
+                runtimeRedisStorage.saveDAGInfo(executionId, dagInfo);
+            }
+            Map<String, Object> totalContext = runtimeSwapStorage.getTotalContext(executionId);
+            if (MapUtils.isNotEmpty(totalContext)) {
+                runtimeRedisStorage.updateContext(executionId, totalContext);
+            }
+            tieringPolicy.clearSwappedOut(executionId);
+            log.info("promote executionId:{}", executionId);
+        });
+        long costTime = System.currentTimeMillis() - startTime;
+        ProfileActions.recordRuntimeTierPromotion(executionId, costTime);
+        PrometheusActions.recordRuntimeTierPromotion(executionId, costTime);
+        return true;
+    }
+
+    private void recordTierAccess(String executionId, boolean tieringEnabled, boolean hit) {
+        if (tieringEnabled) {
+            ProfileActions.recordRuntimeTierAccess(executionId, hit);
+            PrometheusActions.recordRuntimeTierAccess(executionId, hit);
+        }
+    }
+
+    private String buildTierLockName(String executionId) {
+        return "lock_runtime_tier_" + executionId;
+    }
+
     private boolean swapExist(String executionId) {
         try {
             String businessId = ExecutionIdUtil.getBusinessId(executionId);
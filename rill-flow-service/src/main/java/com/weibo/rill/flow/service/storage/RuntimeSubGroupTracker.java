@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.storage;
+
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus;
+import com.weibo.rill.flow.olympicene.core.model.task.SubGroupProgress;
+import com.weibo.rill.flow.olympicene.core.runtime.SubGroupTracker;
+
+import java.util.Map;
+
+/**
+ * 分组计数脚本直接读写redis中的dag_info/sub_task hash, 绕过了RuntimeStorage的事件流及swap读写路径,
+ * 因此只对只存储在redis的业务启用计数; 其余业务不初始化计数, completeGroup返回null, 父任务按原有加锁流程计算状态
+ */
+public class RuntimeSubGroupTracker implements SubGroupTracker {
+    private final SubGroupTracker redisSubGroupTracker;
+    private final RuntimeStorage runtimeStorage;
+
+    public RuntimeSubGroupTracker(SubGroupTracker redisSubGroupTracker, RuntimeStorage runtimeStorage) {
+        this.redisSubGroupTracker = redisSubGroupTracker;
+        this.runtimeStorage = runtimeStorage;
+    }
+
+    @Override
+    public void init(String executionId, String taskInfoName, Map<String, TaskStatus> subGroupIndexToStatus) {
+        if (runtimeStorage.subGroupTrackingSupported(executionId)) {
+            redisSubGroupTracker.init(executionId, taskInfoName, subGroupIndexToStatus);
+        }
+    }
+
+    @Override
+    public SubGroupProgress completeGroup(String executionId, String taskInfoName, String groupIndex, TaskStatus groupStatus) {
+        if (!runtimeStorage.subGroupTrackingSupported(executionId)) {
+            return null;
+        }
+        return redisSubGroupTracker.completeGroup(executionId, taskInfoName, groupIndex, groupStatus);
+    }
+
+    @Override
+    public void clear(String executionId, String taskInfoName) {
+        if (runtimeStorage.subGroupTrackingSupported(executionId)) {
+            redisSubGroupTracker.clear(executionId, taskInfoName);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.weibo.rill.flow.service.dconfs.BizDConfs;
+import com.weibo.rill.flow.service.storage.dao.RuntimeTierDAO;
+import com.weibo.rill.flow.service.util.ExecutionIdUtil;
+import com.weibo.rill.flow.service.util.ValueExtractor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运行时存储冷热分层策略
+ * <p>
+ * 访问时间先记录在本机内存, 由定时任务批量写入redis; 空闲超过业务配置时间的execution由定时任务换出到swap存储
+ * <p>
+ * 写入前在redis中同步记录访问时间并检查换出标记, 换出时原子判断redis中的访问时间仍满足空闲条件才写入标记,
+ * 保证换出开始后不会有写入落到redis; 本机在半个空闲时间内已记录过的execution写入时不再访问redis
+ * <p>
+ * 仅对同时配置了swap存储及空闲时间的业务生效
+ */
+@Slf4j
+public class RuntimeTieringPolicy {
+    private final RuntimeTierDAO runtimeTierDAO;
+    private final BizDConfs bizDConfs;
+    private final Map<String, Long> executionIdToAccessTime = new ConcurrentHashMap<>();
+    private final Cache<String, Long> executionIdToWriteAccessTime = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    public RuntimeTieringPolicy(RuntimeTierDAO runtimeTierDAO, BizDConfs bizDConfs) {
+        this.runtimeTierDAO = runtimeTierDAO;
+        this.bizDConfs = bizDConfs;
+    }
+
+    public boolean tieringEnabled(String executionId) {
+        try {
+            String businessId = ExecutionIdUtil.getBusinessId(executionId);
+            return tieringEnabledByBusinessId(businessId);
+        } catch (Exception e) {
+            log.warn("tieringEnabled fails, executionId:{}, errorMsg:{}", executionId, e.getMessage());
+            return false;
+        }
+    }
+
+    public void touch(String executionId) {
+        if (tieringEnabled(executionId)) {
+            executionIdToAccessTime.put(executionId, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 本机最近一次访问时间, 尚未写入redis时可用于判断execution是否仍活跃
+     */
+    public Long getLocalAccessTime(String executionId) {
+        return executionIdToAccessTime.get(executionId);
+    }
+
+    /**
+     * 将本机记录的访问时间按serviceId批量写入redis
+     *
+     * @return 写入的execution数量
+     */
+    public int flushAccess() {
+        Map<String, Map<String, Long>> serviceIdToAccessTime = Maps.newHashMap();
+        executionIdToAccessTime.forEach((executionId, accessTime) -> {
+            if (executionIdToAccessTime.remove(executionId, accessTime)) {
+                serviceIdToAccessTime.computeIfAbsent(ExecutionIdUtil.getServiceId(executionId), key -> Maps.newHashMap())
+                        .put(executionId, accessTime);
+            }
+        });
+
+        int count = 0;
+        for (Map.Entry<String, Map<String, Long>> entry : serviceIdToAccessTime.entrySet()) {
+            try {
+                runtimeTierDAO.touch(entry.getKey(), entry.getValue());
+                count += entry.getValue().size();
+            } catch (Exception e) {
+                log.warn("flushAccess fails, serviceId:{}", entry.getKey(), e);
+                entry.getValue().forEach((executionId, accessTime) -> executionIdToAccessTime.merge(executionId, accessTime, Math::max));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 取出空闲时间超过业务配置的execution, 取出后从访问记录中移除, 再次访问时重新记录
+     */
+    public List<String> pollIdle(int limit) {
+        List<String> idleExecutionIds = Lists.newArrayList();
+        Set<String> serviceIds = runtimeTierDAO.getServiceIds();
+        long now = System.currentTimeMillis();
+        for (String serviceId : serviceIds) {
+            if (idleExecutionIds.size() >= limit) {
+                break;
+            }
+            try {
+                String businessId = ExecutionIdUtil.getBusinessIdFromServiceId(serviceId);
+                if (!tieringEnabledByBusinessId(businessId)) {
+                    continue;
+                }
+                long idleMillis = getIdleSecondByBusinessId(businessId) * 1000L;
+                idleExecutionIds.addAll(runtimeTierDAO.popIdle(serviceId, now - idleMillis, limit - idleExecutionIds.size()));
+            } catch (Exception e) {
+                log.warn("pollIdle fails, serviceId:{}", serviceId, e);
+            }
+        }
+        return idleExecutionIds;
+    }
+
+    /**
+     * 写入前调用, 已换出时需先换入
+     * 距本机上次记录不足半个空闲时间时redis中的访问时间仍不满足空闲条件, 不会被换出, 无需再访问redis
+     *
+     * @return 是否已换出
+     */
+    public boolean checkSwappedOutBeforeWrite(String executionId) {
+        long now = System.currentTimeMillis();
+        Long writeAccessTime = executionIdToWriteAccessTime.getIfPresent(executionId);
+        long idleMillis = getIdleSecondByBusinessId(ExecutionIdUtil.getBusinessId(executionId)) * 1000L;
+        if (writeAccessTime != null && now - writeAccessTime < idleMillis / 2) {
+            return false;
+        }
+
+        boolean swappedOut = runtimeTierDAO.touchAndCheckSwappedOut(executionId, now);
+        if (swappedOut) {
+            executionIdToWriteAccessTime.invalidate(executionId);
+        } else {
+            executionIdToWriteAccessTime.put(executionId, now);
+        }
+        return swappedOut;
+    }
+
+    /**
+     * redis中记录的最近访问时间仍满足空闲条件时写入换出标记
+     *
+     * @return 是否可以换出
+     */
+    public boolean markSwappedOutIfIdle(String executionId) {
+        long idleMillis = getIdleSecondByBusinessId(ExecutionIdUtil.getBusinessId(executionId)) * 1000L;
+        int expireTime = ValueExtractor.getConfiguredValue(executionId, bizDConfs.getSwapBusinessIdToUnfinishedReserveSecond(), 259200);
+        executionIdToWriteAccessTime.invalidate(executionId);
+        return runtimeTierDAO.markSwappedOutIfIdle(executionId, System.currentTimeMillis() - idleMillis, expireTime);
+    }
+
+    public boolean isSwappedOut(String executionId) {
+        return runtimeTierDAO.isSwappedOut(executionId);
+    }
+
+    public void clearSwappedOut(String executionId) {
+        runtimeTierDAO.clearSwappedOut(executionId);
+    }
+
+    private boolean tieringEnabledByBusinessId(String businessId) {
+        Set<String> eventStreamBusinessIds = bizDConfs.getRedisEventStreamStorageBusinessIds();
+        return bizDConfs.getSwapBusinessIdToClientId().containsKey(businessId)
+                && getIdleSecondByBusinessId(businessId) > 0
+                && (eventStreamBusinessIds == null || !eventStreamBusinessIds.contains(businessId));
+    }
+
+    private int getIdleSecondByBusinessId(String businessId) {
+        return ValueExtractor.getConfiguredValueByBusinessId(businessId, bizDConfs.getSwapBusinessIdToIdleSecond(), 0);
+    }
+}
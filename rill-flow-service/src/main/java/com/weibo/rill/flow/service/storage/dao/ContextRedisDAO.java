@@ -53,4 +53,9 @@ public class ContextRedisDAO extends ContextDAO {
     protected int contextMaxLength(String executionId) {
         return ValueExtractor.getConfiguredValue(executionId, bizDConfs.getRedisBusinessIdToContextMaxLength(), 36 * 1024);
     }
+
+    @Override
+    protected int blobOffloadThreshold(String executionId) {
+        return ValueExtractor.getConfiguredValue(executionId, bizDConfs.getRedisBusinessIdToContextBlobThreshold(), -1);
+    }
 }
@@ -40,6 +40,8 @@ public class DAGAliasDAO {
     @Autowired
     @Qualifier("descriptorRedisClient")
     private RedisClient redisClient;
+    @Autowired
+    private DAGDescriptorMetaVersionDAO dagDescriptorMetaVersionDAO;
 
     public boolean createAlias(String businessId, String featureName, String alias) {
         if (DAGStorageKeysUtil.nameInvalid(businessId, featureName, alias)) {
@@ -49,6 +51,7 @@ public class DAGAliasDAO {
         }
 
         redisClient.sadd(businessId, DAGStorageKeysUtil.buildAliasRedisKey(businessId, featureName), Lists.newArrayList(alias));
+        dagDescriptorMetaVersionDAO.incrVersion(businessId);
         return true;
     }
 
@@ -59,6 +62,7 @@ public class DAGAliasDAO {
         }
 
         redisClient.srem(businessId, DAGStorageKeysUtil.buildAliasRedisKey(businessId, featureName), Lists.newArrayList(alias));
+        dagDescriptorMetaVersionDAO.incrVersion(businessId);
         return true;
     }
 
@@ -93,6 +93,8 @@ public class DAGDescriptorDAO {
     @Qualifier("descriptorRedisClient")
     private RedisClient redisClient;
     @Autowired
+    private DAGDescriptorMetaVersionDAO dagDescriptorMetaVersionDAO;
+    @Autowired
     private SwitcherManager switcherManagerImpl;
 
     private final Cache<String, DescriptorPO> descriptorRedisKeyToYamlCache = CacheBuilder.newBuilder()
@@ -147,6 +149,7 @@ public class DAGDescriptorDAO {
         argv.add(md5);
         argv.add(descriptor);
         redisClient.eval(VERSION_ADD, businessId, keys, argv);
+        dagDescriptorMetaVersionDAO.incrVersion(businessId);
 
         return DAGStorageKeysUtil.buildDescriptorId(businessId, featureName, MD5_PREFIX + md5);
     }
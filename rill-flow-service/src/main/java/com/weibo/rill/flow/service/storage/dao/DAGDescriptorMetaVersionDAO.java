@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.weibo.rill.flow.service.storage.dao;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
+import com.weibo.rill.flow.service.util.DAGStorageKeysUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 业务维度的描述符元数据版本号, 灰度规则、别名及别名下版本变更时递增
+ * 各节点通过轮询版本号使本地的灰度规则与别名缓存失效
+ * <pre>
+ *    redisKey: descriptor_meta_version_ + businessId 如: descriptor_meta_version_testBusinessId
+ *    type: string
+ *    value: 版本号
+ * </pre>
+ */
+@Component
+@Slf4j
+public class DAGDescriptorMetaVersionDAO {
+    private static final String VERSION_INCR = "return redis.call(\"incr\", KEYS[1]);";
+    private static final String VERSION_MGET = "return redis.call(\"mget\", unpack(KEYS));";
+    private static final int VERSION_MGET_BATCH_SIZE = 100;
+
+    @Autowired
+    @Qualifier("descriptorRedisClient")
+    private RedisClient redisClient;
+
+    public void incrVersion(String businessId) {
+        try {
+            redisClient.eval(VERSION_INCR, businessId,
+                    Lists.newArrayList(DAGStorageKeysUtil.buildDescriptorMetaVersionRedisKey(businessId)), Lists.newArrayList());
+        } catch (Exception e) {
+            log.warn("incrVersion fails, businessId:{}", businessId, e);
+        }
+    }
+
+    public long getVersion(String businessId) {
+        String version = redisClient.get(businessId, DAGStorageKeysUtil.buildDescriptorMetaVersionRedisKey(businessId));
+        return NumberUtils.toLong(version, 0L);
+    }
+
+    /**
+     * 批量获取多个业务的版本号, 每批一次MGET
+     * 描述符存储为单实例redis, 各业务的版本号key位于同一实例
+     */
+    public Map<String, Long> getVersions(Collection<String> businessIds) {
+        Map<String, Long> businessIdToVersion = Maps.newHashMap();
+        for (List<String> batch : Iterables.partition(businessIds, VERSION_MGET_BATCH_SIZE)) {
+            List<String> keys = batch.stream().map(DAGStorageKeysUtil::buildDescriptorMetaVersionRedisKey).collect(Collectors.toList());
+            List<?> versions = (List<?>) redisClient.eval(VERSION_MGET, keys, Lists.newArrayList());
+            for (int i = 0; i < batch.size(); i++) {
+                Object version = versions == null || i >= versions.size() ? null : versions.get(i);
+                businessIdToVersion.put(batch.get(i), toVersion(version));
+            }
+        }
+        return businessIdToVersion;
+    }
+
+    private static long toVersion(Object version) {
+        if (version instanceof byte[]) {
+            return NumberUtils.toLong(new String((byte[]) version, StandardCharsets.UTF_8), 0L);
+        }
+        return version == null ? 0L : NumberUtils.toLong(version.toString(), 0L);
+    }
+}
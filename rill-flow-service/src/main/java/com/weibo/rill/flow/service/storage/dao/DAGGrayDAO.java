@@ -36,6 +36,8 @@ public class DAGGrayDAO {
     @Autowired
     @Qualifier("descriptorRedisClient")
     private RedisClient redisClient;
+    @Autowired
+    private DAGDescriptorMetaVersionDAO dagDescriptorMetaVersionDAO;
 
     public boolean createGray(String businessId, String featureName, String alias, String grayRule) {
         if (StringUtils.isEmpty(grayRule) || DAGStorageKeysUtil.nameInvalid(businessId, featureName, alias)) {
@@ -44,6 +46,7 @@ public class DAGGrayDAO {
             throw new TaskException(BizError.ERROR_DATA_FORMAT);
         }
         redisClient.hmset(businessId, DAGStorageKeysUtil.buildGrayRedisKey(businessId, featureName), ImmutableMap.of(alias, grayRule));
+        dagDescriptorMetaVersionDAO.incrVersion(businessId);
         return true;
     }
 
@@ -54,6 +57,7 @@ public class DAGGrayDAO {
         }
 
         redisClient.hdel(businessId, DAGStorageKeysUtil.buildGrayRedisKey(businessId, featureName), Lists.newArrayList(alias));
+        dagDescriptorMetaVersionDAO.incrVersion(businessId);
         return true;
     }
 
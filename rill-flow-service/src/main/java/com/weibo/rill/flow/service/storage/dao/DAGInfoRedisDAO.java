@@ -20,8 +20,11 @@ import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
 import com.weibo.rill.flow.olympicene.storage.save.impl.DAGInfoDAO;
 import com.weibo.rill.flow.olympicene.storage.save.impl.DAGInfoDeserializeService;
 import com.weibo.rill.flow.service.dconfs.BizDConfs;
+import com.weibo.rill.flow.service.util.ExecutionIdUtil;
 import com.weibo.rill.flow.service.util.ValueExtractor;
 
+import java.util.Set;
+
 
 public class DAGInfoRedisDAO extends DAGInfoDAO {
     private final BizDConfs bizDConfs;
@@ -41,4 +44,10 @@ public class DAGInfoRedisDAO extends DAGInfoDAO {
     protected int getUnfinishedStatusReserveTimeInSecond(String executionId) {
         return ValueExtractor.getConfiguredValue(executionId, bizDConfs.getRedisBusinessIdToUnfinishedReserveSecond(), 259200);
     }
+
+    @Override
+    protected boolean isSubTaskPartitionedByRoute(String executionId) {
+        Set<String> businessIds = bizDConfs.getRedisSubTaskRoutePartitionBusinessIds();
+        return businessIds != null && businessIds.contains(ExecutionIdUtil.getBusinessId(executionId));
+    }
 }
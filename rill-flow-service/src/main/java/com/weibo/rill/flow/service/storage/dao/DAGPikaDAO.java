@@ -20,6 +20,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.weibo.rill.flow.common.exception.TaskException;
 import com.weibo.rill.flow.common.model.BizError;
 import com.weibo.rill.flow.interfaces.model.task.TaskInfo;
@@ -27,6 +28,8 @@ import com.weibo.rill.flow.olympicene.core.constant.ReservedConstant;
 import com.weibo.rill.flow.olympicene.core.helper.DAGWalkHelper;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo;
+import com.weibo.rill.flow.olympicene.storage.codec.DefaultStorageCodec;
+import com.weibo.rill.flow.olympicene.storage.codec.StorageCodec;
 import com.weibo.rill.flow.olympicene.storage.constant.DAGRedisPrefix;
 import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
 import com.weibo.rill.flow.olympicene.storage.save.impl.DagStorageSerializer;
@@ -34,12 +37,15 @@ import com.weibo.rill.flow.olympicene.traversal.serialize.DAGTraversalSerializer
 import com.weibo.rill.flow.service.dconfs.BizDConfs;
 import com.weibo.rill.flow.service.util.ExecutionIdUtil;
 import com.weibo.rill.flow.service.util.ValueExtractor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -54,6 +60,11 @@ public class DAGPikaDAO {
     private final boolean swapStorage;
     private final BizDConfs bizDConfs;
     private final Map<String, RedisClient> clientIdToRedisClient;
+    /**
+     * 写入时使用的编解码, 读取时按数据自身格式解码, 修改配置后已写入的数据仍可读取
+     */
+    @Setter
+    private volatile StorageCodec codec = new DefaultStorageCodec();
 
     public DAGPikaDAO(boolean swapStorage, Map<String, RedisClient> clientIdToRedisClient, BizDConfs bizDConfs) {
         this.keyPrefix = swapStorage ? "swap_" : "long_";
@@ -115,17 +126,46 @@ public class DAGPikaDAO {
             return;
         }
 
+        writeDAGInfo(executionId, dagInfo, null);
+    }
+
+    /**
+     * 批量写入DAGInfo及context, 同一批次中相同的描述符只写入一次
+     *
+     * @return 写入成功的executionId, 单个execution写入失败不影响其他execution
+     */
+    public Set<String> saveDAGInfoAndContexts(Map<String, DAGInfo> executionIdToDAGInfo,
+                                              Map<String, Map<String, Object>> executionIdToContext) {
+        Set<String> savedExecutionIds = Sets.newHashSet();
+        Set<String> writtenDescriptorKeys = Sets.newHashSet();
+        executionIdToDAGInfo.forEach((executionId, dagInfo) -> {
+            try {
+                if (dagInfo != null) {
+                    writeDAGInfo(executionId, dagInfo, writtenDescriptorKeys);
+                }
+                saveContext(executionId, executionIdToContext.get(executionId));
+                savedExecutionIds.add(executionId);
+            } catch (Exception e) {
+                log.warn("saveDAGInfoAndContexts fails, executionId:{}", executionId, e);
+            }
+        });
+        return savedExecutionIds;
+    }
+
+    private void writeDAGInfo(String executionId, DAGInfo dagInfo, Set<String> writtenDescriptorKeys) {
         ObjectNode dagInfoJson = DAGTraversalSerializer.MAPPER.valueToTree(dagInfo);
-        String descriptor = dagInfoJson.get(DAG).toString();
+        JsonNode descriptorJson = dagInfoJson.get(DAG);
         String dagInfoKey = buildDagInfoKey(executionId);
-        String descriptorKey = buildDescriptorKey(descriptor);
+        String descriptorKey = buildDescriptorKey(descriptorJson.toString());
         dagInfoJson.put(DAG, descriptorKey);
 
         RedisClient client = getClient(executionId);
         int expireTime = getUnfinishedReserveTimeInSecond(executionId);
-        client.set(dagInfoKey, dagInfoJson.toString());
-        client.expire(dagInfoKey, expireTime);
-        client.set(descriptorKey, descriptor);
+        client.setex(dagInfoKey, expireTime, encode(dagInfoJson));
+        String clientId = getClientId(ExecutionIdUtil.getBusinessId(executionId));
+        if (writtenDescriptorKeys == null || writtenDescriptorKeys.add(clientId + descriptorKey)) {
+            client.set(descriptorKey, encode(descriptorJson));
+        }
     }
 
     public void clearDAGInfo(String executionId) {
@@ -147,9 +187,9 @@ public class DAGPikaDAO {
                 return null;
             }
 
-            ObjectNode dagInfoJson = (ObjectNode) DagStorageSerializer.MAPPER.readTree(dagInfoRaw);
+            ObjectNode dagInfoJson = (ObjectNode) decode(dagInfoRaw);
             String descriptorKey = dagInfoJson.get(DAG).asText();
-            dagInfoJson.set(DAG, DagStorageSerializer.MAPPER.readTree(client.get(descriptorKey)));
+            dagInfoJson.set(DAG, decode(client.get(descriptorKey)));
 
             return DagStorageSerializer.MAPPER.convertValue(dagInfoJson, DAGInfo.class);
         } catch (Exception e) {
@@ -217,8 +257,7 @@ public class DAGPikaDAO {
         String contextKey = buildContextKey(executionId);
         RedisClient client = getClient(executionId);
         int expireTime = getUnfinishedReserveTimeInSecond(executionId);
-        client.set(contextKey, DagStorageSerializer.serializeToString(context));
-        client.expire(contextKey, expireTime);
+        client.setex(contextKey, expireTime, encode(context));
     }
 
     public void clearContext(String executionId) {
@@ -239,7 +278,7 @@ public class DAGPikaDAO {
                 return Maps.newHashMap();
             }
 
-            JsonNode jsonNode = DagStorageSerializer.MAPPER.readTree(contextRaw);
+            JsonNode jsonNode = decode(contextRaw);
             return DagStorageSerializer.MAPPER.convertValue(jsonNode, new TypeReference<>() {
             });
         } catch (Exception e) {
@@ -279,6 +318,18 @@ public class DAGPikaDAO {
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
+    private String encode(Object value) {
+        try {
+            return codec.encode(value);
+        } catch (IOException e) {
+            throw new TaskException(BizError.ERROR_PROCESS_FAIL.getCode(), "encode fails", e);
+        }
+    }
+
+    private JsonNode decode(String raw) throws IOException {
+        return codec.decode(raw.getBytes(StandardCharsets.UTF_8), JsonNode.class);
+    }
+
     private RedisClient getClient(String executionId) {
         String businessId = ExecutionIdUtil.getBusinessId(executionId);
         String clientId = getClientId(businessId);
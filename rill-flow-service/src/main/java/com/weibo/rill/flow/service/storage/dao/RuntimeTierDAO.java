@@ -0,0 +1,175 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.storage.dao;
+
+import com.google.common.collect.Lists;
+import com.weibo.rill.flow.common.constant.ReservedConstant;
+import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
+import com.weibo.rill.flow.service.util.ExecutionIdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 运行时存储冷热分层使用的redis数据
+ * <pre>
+ * 1. 最近访问时间
+ *    redisKey: runtime_access_ + serviceId 如: runtime_access_testBusinessId:testFeatureName
+ *    type: zset
+ *    member: executionId score: 最近访问时间(毫秒)
+ * 2. 记录过访问时间的serviceId
+ *    redisKey: runtime_access_services
+ *    type: set
+ * 3. 已换出到swap存储的标记
+ *    redisKey: runtime_swapped_out_ + executionId
+ *    type: string
+ * 同一serviceId的访问时间与其下execution的数据路由到同一redis, 写入前的访问记录与换出标记可在一个脚本中原子完成
+ * </pre>
+ */
+@Slf4j
+public class RuntimeTierDAO {
+    private static final String ACCESS_KEY_PREFIX = "runtime_access_";
+    private static final String ACCESS_SERVICES_KEY = "runtime_access_services";
+    private static final String SWAPPED_OUT_KEY_PREFIX = "runtime_swapped_out_";
+
+    private static final String ACCESS_TOUCH = """
+            for i = 1, #ARGV, 2 do
+                local score = redis.call("zscore", KEYS[1], ARGV[i]);
+                if (not score or tonumber(score) < tonumber(ARGV[i + 1])) then
+                    redis.call("zadd", KEYS[1], ARGV[i + 1], ARGV[i]);
+                end
+            end
+            return "OK";""";
+    private static final String ACCESS_POP_IDLE = """
+            local executionIds = redis.call("zrangebyscore", KEYS[1], "-inf", ARGV[1], "limit", 0, ARGV[2]);
+            for i = 1, #executionIds, 1 do
+                redis.call("zrem", KEYS[1], executionIds[i]);
+            end
+            return executionIds;""";
+    private static final String ACCESS_TOUCH_FOR_WRITE = """
+            local score = redis.call("zscore", KEYS[1], ARGV[1]);
+            if (not score or tonumber(score) < tonumber(ARGV[2])) then
+                redis.call("zadd", KEYS[1], ARGV[2], ARGV[1]);
+            end
+            return redis.call("exists", KEYS[2]);""";
+    private static final String SWAPPED_OUT_MARK_IF_IDLE = """
+            local score = redis.call("zscore", KEYS[1], ARGV[1]);
+            if (score and tonumber(score) > tonumber(ARGV[2])) then
+                return 0;
+            end
+            redis.call("set", KEYS[2], "1", "EX", ARGV[3]);
+            return 1;""";
+    private static final String SWAPPED_OUT_EXISTS = "return redis.call(\"exists\", KEYS[1]);";
+    private static final String SWAPPED_OUT_CLEAR = "return redis.call(\"del\", KEYS[1]);";
+
+    private final RedisClient redisClient;
+
+    public RuntimeTierDAO(RedisClient redisClient) {
+        this.redisClient = redisClient;
+    }
+
+    public void touch(String serviceId, Map<String, Long> executionIdToAccessTime) {
+        if (MapUtils.isEmpty(executionIdToAccessTime)) {
+            return;
+        }
+
+        List<String> argv = Lists.newArrayList();
+        executionIdToAccessTime.forEach((executionId, accessTime) -> {
+            argv.add(executionId);
+            argv.add(String.valueOf(accessTime));
+        });
+        redisClient.eval(ACCESS_TOUCH, buildServiceShardingKey(serviceId), Lists.newArrayList(buildAccessKey(serviceId)), argv);
+        redisClient.sadd(ACCESS_SERVICES_KEY, ACCESS_SERVICES_KEY, Lists.newArrayList(serviceId));
+    }
+
+    public Set<String> getServiceIds() {
+        return Optional.ofNullable(redisClient.smembers(ACCESS_SERVICES_KEY, ACCESS_SERVICES_KEY)).orElse(Collections.emptySet());
+    }
+
+    /**
+     * 取出并移除最近访问时间早于指定时间的execution
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> popIdle(String serviceId, long accessTimeBefore, int limit) {
+        List<Object> ret = (List<Object>) redisClient.eval(ACCESS_POP_IDLE, buildServiceShardingKey(serviceId),
+                Lists.newArrayList(buildAccessKey(serviceId)),
+                Lists.newArrayList(String.valueOf(accessTimeBefore), String.valueOf(limit)));
+        if (CollectionUtils.isEmpty(ret)) {
+            return Collections.emptyList();
+        }
+        return ret.stream().map(RuntimeTierDAO::getString).toList();
+    }
+
+    /**
+     * 写入前调用: 在同一脚本中记录最近访问时间并检查换出标记
+     * 与{@link #markSwappedOutIfIdle}互斥, 记录之后开始的换出会因访问时间不满足空闲条件而放弃
+     *
+     * @return 是否已换出
+     */
+    public boolean touchAndCheckSwappedOut(String executionId, long accessTime) {
+        String serviceId = ExecutionIdUtil.getServiceId(executionId);
+        Object ret = redisClient.eval(ACCESS_TOUCH_FOR_WRITE, executionId,
+                Lists.newArrayList(buildAccessKey(serviceId), buildSwappedOutKey(executionId)),
+                Lists.newArrayList(executionId, String.valueOf(accessTime)));
+        return "1".equals(getString(ret));
+    }
+
+    /**
+     * 最近访问时间(已被popIdle取出时视为空闲)不晚于指定时间时写入换出标记
+     *
+     * @return 是否写入了换出标记
+     */
+    public boolean markSwappedOutIfIdle(String executionId, long accessTimeBefore, int expireTimeInSecond) {
+        String serviceId = ExecutionIdUtil.getServiceId(executionId);
+        Object ret = redisClient.eval(SWAPPED_OUT_MARK_IF_IDLE, executionId,
+                Lists.newArrayList(buildAccessKey(serviceId), buildSwappedOutKey(executionId)),
+                Lists.newArrayList(executionId, String.valueOf(accessTimeBefore), String.valueOf(expireTimeInSecond)));
+        return "1".equals(getString(ret));
+    }
+
+    public boolean isSwappedOut(String executionId) {
+        Object ret = redisClient.eval(SWAPPED_OUT_EXISTS, executionId, Lists.newArrayList(buildSwappedOutKey(executionId)), Lists.newArrayList());
+        return "1".equals(getString(ret));
+    }
+
+    public void clearSwappedOut(String executionId) {
+        redisClient.eval(SWAPPED_OUT_CLEAR, executionId, Lists.newArrayList(buildSwappedOutKey(executionId)), Lists.newArrayList());
+    }
+
+    private static String getString(Object value) {
+        if (value instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private String buildServiceShardingKey(String serviceId) {
+        // 与该serviceId下的executionId路由到同一redis
+        return serviceId + ReservedConstant.EXECUTION_ID_CONNECTOR;
+    }
+
+    private String buildAccessKey(String serviceId) {
+        return ACCESS_KEY_PREFIX + serviceId;
+    }
+
+    private String buildSwappedOutKey(String executionId) {
+        return SWAPPED_OUT_KEY_PREFIX + executionId;
+    }
+}
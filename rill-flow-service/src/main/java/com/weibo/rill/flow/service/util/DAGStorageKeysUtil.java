@@ -39,6 +39,7 @@ public class DAGStorageKeysUtil {
     private static final String AB_CONFIG_KEY_RULE = "abConfigKey_%s";
     private static final String FUNCTION_AB_KEY_RULE = "functionAB_%s_%s";
     private static final String DESCRIPTOR_KEY_RULE = "descriptor_%s_%s_%s";
+    private static final String DESCRIPTOR_META_VERSION_KEY_RULE = "descriptor_meta_version_%s";
 
     private DAGStorageKeysUtil() {
     }
@@ -55,6 +56,10 @@ public class DAGStorageKeysUtil {
         return String.format(DESCRIPTOR_KEY_RULE, businessId, featureName, md5);
     }
 
+    public static String buildDescriptorMetaVersionRedisKey(String businessId) {
+        return String.format(DESCRIPTOR_META_VERSION_KEY_RULE, businessId);
+    }
+
     public static String buildGrayRedisKey(String namespace, String serviceName) {
         return String.format(GRAY_KEY_RULE, namespace, serviceName);
     }
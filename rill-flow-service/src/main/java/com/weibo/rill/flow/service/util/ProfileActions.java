@@ -40,6 +40,8 @@ public class ProfileActions {
     private static final String TASK_CODE_FORMAT = "code_%s_%s_%s";
     private static final String TINY_DAG_FORMAT = "tiny_dag_%s";
     private static final String HTTP_EXECUTION_FORMAT = "%s_%s";
+    private static final String RUNTIME_TIER_ACCESS_FORMAT = "runtime_tier_%s_%s";
+    private static final String RUNTIME_TIER_PROMOTE_FORMAT = "runtime_tier_promote_%s";
     public static final String REACHED = "REACHED";
     public static final String NOT_REACHED = "NOTREACHED";
 
@@ -123,6 +125,26 @@ public class ProfileActions {
         }
     }
 
+    public static void recordRuntimeTierAccess(String executionId, boolean hit) {
+        try {
+            String serviceId = ExecutionIdUtil.getServiceId(executionId);
+            String name = String.format(RUNTIME_TIER_ACCESS_FORMAT, hit ? "hit" : "miss", serviceId);
+            ProfileUtil.count(DAG, name, System.currentTimeMillis(), 1);
+        } catch (Exception e) {
+            log.warn("recordRuntimeTierAccess fails, executionId:{}, errorMsg:{}", executionId, e.getMessage());
+        }
+    }
+
+    public static void recordRuntimeTierPromotion(String executionId, long costTimeMillis) {
+        try {
+            String serviceId = ExecutionIdUtil.getServiceId(executionId);
+            String name = String.format(RUNTIME_TIER_PROMOTE_FORMAT, serviceId);
+            ProfileUtil.accessStatistic(DAG, name, System.currentTimeMillis(), costTimeMillis);
+        } catch (Exception e) {
+            log.warn("recordRuntimeTierPromotion fails, executionId:{}, errorMsg:{}", executionId, e.getMessage());
+        }
+    }
+
     private ProfileActions() {
 
     }
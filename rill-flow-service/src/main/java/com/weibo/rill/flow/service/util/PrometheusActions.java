@@ -20,6 +20,8 @@ import com.weibo.rill.flow.common.constant.ReservedConstant;
 import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * @author xinyu55
  */
@@ -35,6 +37,8 @@ public class PrometheusActions {
 
     private static final String DAG_COMPLETE = "dag_complete_";
 
+    private static final String EXECUTOR = "executor_";
+
     private static final String SUCCESS = "SUCCESS";
 
     private static final String FAIL = "FAIL";
@@ -49,6 +53,10 @@ public class PrometheusActions {
     private static final String TASK_CODE_FORMAT = "code_%s_%s_%s";
     private static final String TINY_DAG_FORMAT = "tiny_dag_%s";
     private static final String HTTP_EXECUTION_FORMAT = "%s_%s";
+    private static final String RUNTIME_TIER_ACCESS_FORMAT = "runtime_tier_%s_%s";
+    private static final String RUNTIME_TIER_PROMOTE_FORMAT = "runtime_tier_promote_%s";
+    private static final String TAG_POOL = "pool";
+    private static final String TAG_TENANT = "tenant";
 
     public static void recordDagTotalExecutionTime(long executionTime, String serviceId) {
         String name = String.format(DAG_TIME_FORMAT, serviceId);
@@ -128,6 +136,57 @@ public class PrometheusActions {
         }
     }
 
+    /**
+     * 每个任务结束时调用一次, 同时记录排队耗时与执行耗时
+     */
+    public static void recordExecutorTask(String poolName, String tenant, long waitTimeMillis, long runTimeMillis) {
+        try {
+            PrometheusUtil.statisticsTotalTime(METER_PREFIX + EXECUTOR + "queue_wait", waitTimeMillis, TAG_POOL, poolName, TAG_TENANT, tenant);
+            PrometheusUtil.statisticsTotalTime(METER_PREFIX + EXECUTOR + "run", runTimeMillis, TAG_POOL, poolName, TAG_TENANT, tenant);
+        } catch (Exception e) {
+            log.warn("PrometheusActions recordExecutorTask fails, poolName:{}, tenant:{}, errorMsg:{}", poolName, tenant, e.getMessage());
+        }
+    }
+
+    public static void recordExecutorRejected(String poolName, String tenant) {
+        try {
+            PrometheusUtil.count(METER_PREFIX + EXECUTOR + "rejected", TAG_POOL, poolName, TAG_TENANT, tenant);
+        } catch (Exception e) {
+            log.warn("PrometheusActions recordExecutorRejected fails, poolName:{}, tenant:{}, errorMsg:{}", poolName, tenant, e.getMessage());
+        }
+    }
+
+    public static void recordRuntimeTierAccess(String executionId, boolean hit) {
+        try {
+            String serviceId = ExecutionIdUtil.getServiceId(executionId);
+            String name = String.format(RUNTIME_TIER_ACCESS_FORMAT, hit ? "hit" : "miss", serviceId);
+            PrometheusUtil.count(METER_PREFIX + DAG + name);
+        } catch (Exception e) {
+            log.warn("PrometheusActions recordRuntimeTierAccess fails, executionId:{}, errorMsg:{}", executionId, e.getMessage());
+        }
+    }
+
+    public static void recordRuntimeTierPromotion(String executionId, long costTimeMillis) {
+        try {
+            String serviceId = ExecutionIdUtil.getServiceId(executionId);
+            String name = String.format(RUNTIME_TIER_PROMOTE_FORMAT, serviceId);
+            PrometheusUtil.statisticsTotalTime(METER_PREFIX + DAG + name, costTimeMillis);
+        } catch (Exception e) {
+            log.warn("PrometheusActions recordRuntimeTierPromotion fails, executionId:{}, errorMsg:{}", executionId, e.getMessage());
+        }
+    }
+
+    public static boolean registerExecutorGauges(String poolName, AtomicInteger activeCount, AtomicInteger queuedCount) {
+        try {
+            PrometheusUtil.gauge(METER_PREFIX + EXECUTOR + "active", activeCount, AtomicInteger::get, TAG_POOL, poolName);
+            PrometheusUtil.gauge(METER_PREFIX + EXECUTOR + "queued", queuedCount, AtomicInteger::get, TAG_POOL, poolName);
+            return true;
+        } catch (Exception e) {
+            log.warn("PrometheusActions registerExecutorGauges fails, poolName:{}, errorMsg:{}", poolName, e.getMessage());
+            return false;
+        }
+    }
+
     private PrometheusActions() {
 
     }
@@ -18,6 +18,7 @@ package com.weibo.rill.flow.service.util;
 
 import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -28,6 +29,7 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.stereotype.Component;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
 /**
  * @author xinyu55
@@ -37,6 +39,7 @@ public class PrometheusUtil implements ApplicationContextAware {
     private static final Logger log = LoggerFactory.getLogger(PrometheusUtil.class);
     private static MeterRegistry registry;
     private static ApplicationContext applicationContext;
+    private static volatile SwitcherManager switcherManager;
 
 
     private PrometheusUtil(MeterRegistry meterRegistry) {
@@ -58,12 +61,23 @@ public class PrometheusUtil implements ApplicationContextAware {
     }
 
     private static boolean enableCloseSwitch() {
-        SwitcherManager switcherManager = applicationContext.getBean(SwitcherManager.class);
-        boolean enableOpenPrometheus = switcherManager.getSwitcherState("ENABLE_OPEN_PROMETHEUS");
-        log.info("PrometheusUtil Switch ENABLE_OPEN_PROMETHEUS result: {}", enableOpenPrometheus);
+        boolean enableOpenPrometheus = getSwitcherManager().getSwitcherState("ENABLE_OPEN_PROMETHEUS");
+        log.debug("PrometheusUtil Switch ENABLE_OPEN_PROMETHEUS result: {}", enableOpenPrometheus);
         return !enableOpenPrometheus;
     }
 
+    /**
+     * 每次打点都会调用, 只从容器中查找一次
+     */
+    private static SwitcherManager getSwitcherManager() {
+        SwitcherManager ret = switcherManager;
+        if (ret == null) {
+            ret = applicationContext.getBean(SwitcherManager.class);
+            switcherManager = ret;
+        }
+        return ret;
+    }
+
 
     /**
      * 次数统计，每次自增count 机器重启后会重置
@@ -96,8 +110,22 @@ public class PrometheusUtil implements ApplicationContextAware {
         timer.record(costTimeMillis, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * 注册瞬时值统计，采集时通过valueFunction读取stateObject的当前值，同名同标签的指标只会注册一次
+     * 注册只发生一次，不受ENABLE_OPEN_PROMETHEUS开关影响，否则开关打开前创建的对象将永远不会被采集
+     *
+     * @param name          指标名称
+     * @param stateObject   被观测的对象，registry只持有其弱引用，调用方需要自行保持引用
+     * @param valueFunction 从stateObject中读取当前值的方法
+     * @param tags          标签，以key/value的形式
+     */
+    public static <T> void gauge(String name, T stateObject, ToDoubleFunction<T> valueFunction, String... tags) {
+        registry.gauge(name, Tags.of(tags), stateObject, valueFunction);
+    }
+
     @Override
     public void setApplicationContext(@NotNull ApplicationContext applicationContext) throws BeansException {
         PrometheusUtil.applicationContext = applicationContext;
+        PrometheusUtil.switcherManager = null;
     }
 }
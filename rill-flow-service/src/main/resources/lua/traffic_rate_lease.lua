@@ -0,0 +1,16 @@
+--traffic_rate_lease.lua
+local rate_limit_key = KEYS[1]
+local max_permits = tonumber(ARGV[1])
+local lease_count = tonumber(ARGV[2])
+
+local current = tonumber(redis.call('get', rate_limit_key) or 0)
+local granted = math.min(lease_count, max_permits - current)
+if granted <= 0 then
+    return 0
+end
+
+local result = redis.call('incrby', rate_limit_key, granted)
+if result == granted then
+    redis.call('expire', rate_limit_key, 1)
+end
+return granted
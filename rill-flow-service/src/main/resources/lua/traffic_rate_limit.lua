@@ -1,7 +1,7 @@
 --traffic_rate_limit.lua
 local rate_limit_key = KEYS[1]
 local max_permits = ARGV[1]
-local incr_by_count = 1
+local incr_by_count = tonumber(ARGV[2] or 1)
 
 local result = redis.call('incrby', rate_limit_key, incr_by_count)
 if result == incr_by_count then
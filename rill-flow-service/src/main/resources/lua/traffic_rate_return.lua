@@ -0,0 +1,12 @@
+--traffic_rate_return.lua
+local rate_limit_key = KEYS[1]
+local return_count = tonumber(ARGV[1])
+
+local current = tonumber(redis.call('get', rate_limit_key) or 0)
+local returned = math.min(return_count, current)
+if returned <= 0 then
+    return 0
+end
+
+redis.call('decrby', rate_limit_key, returned)
+return returned
@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.component
+
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ExecutionIsolatableExecutorServiceTest extends Specification {
+    ExecutionIsolatableExecutorService executor = new ExecutionIsolatableExecutorService("test-isolatable-%d", 4, 100000)
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "tasks of the same execution run in submit order and never concurrently"() {
+        given:
+        Map<String, List<Integer>> executed = new ConcurrentHashMap<>()
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>()
+        AtomicInteger overlap = new AtomicInteger()
+        CountDownLatch latch = new CountDownLatch(10 * 200)
+
+        when:
+        (0..<200).each { seq ->
+            (0..<10).each { execution ->
+                String executionId = "execution_" + execution
+                executor.execute(new ExecutionRunnable(executionId, {
+                    if (running.computeIfAbsent(executionId, { new AtomicInteger() }).incrementAndGet() > 1) {
+                        overlap.incrementAndGet()
+                    }
+                    executed.computeIfAbsent(executionId, { new CopyOnWriteArrayList<>() }).add(seq)
+                    running.get(executionId).decrementAndGet()
+                    latch.countDown()
+                }))
+            }
+        }
+
+        then:
+        latch.await(10, TimeUnit.SECONDS)
+        overlap.get() == 0
+        executed.size() == 10
+        executed.values().every { it == (0..<200).toList() }
+    }
+
+    def "idle workers steal mailboxes from a busy worker"() {
+        given:
+        CountDownLatch blocker = new CountDownLatch(1)
+        CountDownLatch latch = new CountDownLatch(20)
+
+        when:
+        executor.execute(new ExecutionRunnable("blocked", { blocker.await(10, TimeUnit.SECONDS) }))
+        (0..<20).each {
+            executor.execute(new ExecutionRunnable("execution_" + it, { latch.countDown() }))
+        }
+
+        then:
+        latch.await(10, TimeUnit.SECONDS)
+
+        cleanup:
+        blocker.countDown()
+    }
+
+    def "submit rejected when pending tasks exceed limit"() {
+        given:
+        ExecutionIsolatableExecutorService limited = new ExecutionIsolatableExecutorService("test-limited-%d", 1, 1)
+        CountDownLatch blocker = new CountDownLatch(1)
+        CountDownLatch started = new CountDownLatch(1)
+
+        when:
+        limited.execute(new ExecutionRunnable("execution", { started.countDown(); blocker.await(10, TimeUnit.SECONDS) }))
+        started.await(10, TimeUnit.SECONDS)
+        limited.execute(new ExecutionRunnable("execution", {}))
+        limited.execute(new ExecutionRunnable("execution", {}))
+
+        then:
+        thrown(RejectedExecutionException)
+
+        cleanup:
+        blocker.countDown()
+        limited.shutdownNow()
+    }
+
+    def "shutdown rejects new tasks and terminates workers"() {
+        when:
+        executor.shutdown()
+
+        then:
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+        executor.isTerminated()
+
+        when:
+        executor.execute(new ExecutionRunnable("execution", {}))
+
+        then:
+        thrown(RejectedExecutionException)
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.component
+
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager
+import com.weibo.rill.flow.service.dconfs.BizDConfs
+import com.weibo.rill.flow.service.decorator.InstrumentedExecutorServiceDecorator
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutorService
+
+class RuntimeExecutorServiceProxyTest extends Specification {
+    BizDConfs bizDConfs = Mock(BizDConfs)
+    SwitcherManager switcherManager = Mock(SwitcherManager)
+    ExecutorService bizExecutor = Mock(ExecutorService)
+    ExecutorService defaultExecutor = Mock(ExecutorService)
+
+    def setup() {
+        switcherManager.getSwitcherState("ENABLE_THREAD_ISOLATION") >> true
+        bizDConfs.getRedisServiceIdToClientId() >> [:]
+        bizDConfs.getRedisBusinessIdToClientId() >> ['testBusiness': 'client1']
+    }
+
+    def "business executor is instrumented with pool name and client id"() {
+        given:
+        RuntimeExecutorServiceProxy proxy = new RuntimeExecutorServiceProxy(bizDConfs, ['client1': bizExecutor], defaultExecutor, "runner")
+        proxy.switcherManagerImpl = switcherManager
+        Runnable submitted = null
+
+        when:
+        proxy.execute(new ExecutionRunnable("testBusiness:testFeatureName_c_uuid1", {}))
+        proxy.execute(new ExecutionRunnable("testBusiness:testFeatureName_c_uuid2", {}))
+
+        then:
+        2 * bizExecutor.execute(_) >> { Runnable command -> submitted = command }
+        0 * defaultExecutor.execute(_)
+        submitted instanceof ExecutionRunnable
+        proxy.instrumentedExecutors.size() == 1
+        ((InstrumentedExecutorServiceDecorator) proxy.instrumentedExecutors.get(bizExecutor)).getPoolName() == "runner_client1"
+    }
+
+    def "business executor is used directly without pool name"() {
+        given:
+        RuntimeExecutorServiceProxy proxy = new RuntimeExecutorServiceProxy(bizDConfs, ['client1': bizExecutor], defaultExecutor)
+        proxy.switcherManagerImpl = switcherManager
+        Runnable task = new ExecutionRunnable("testBusiness:testFeatureName_c_uuid1", {})
+
+        when:
+        proxy.execute(task)
+
+        then:
+        1 * bizExecutor.execute(task)
+        proxy.instrumentedExecutors.isEmpty()
+    }
+}
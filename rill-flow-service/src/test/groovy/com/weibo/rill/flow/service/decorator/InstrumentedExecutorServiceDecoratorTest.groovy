@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.decorator
+
+import com.weibo.rill.flow.olympicene.core.concurrent.ExecutionRunnable
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.RejectedExecutionException
+
+class InstrumentedExecutorServiceDecoratorTest extends Specification {
+    ExecutorService underlying = Mock(ExecutorService)
+    InstrumentedExecutorServiceDecorator decorator = new InstrumentedExecutorServiceDecorator("runner", underlying)
+
+    def "execution id is kept on instrumented task"() {
+        given:
+        Runnable submitted = null
+        boolean activeWhenRunning = false
+        underlying.execute(_) >> { Runnable command -> submitted = command }
+
+        when:
+        decorator.execute(new ExecutionRunnable("testBusiness:testFeatureName_c_8921a32f-3c9d-4b36-9f0f-b8c1d6a1e5f3", {
+            activeWhenRunning = decorator.getActiveCount() == 1
+        }))
+
+        then:
+        submitted instanceof ExecutionRunnable
+        ((ExecutionRunnable) submitted).getExecutionId() == "testBusiness:testFeatureName_c_8921a32f-3c9d-4b36-9f0f-b8c1d6a1e5f3"
+        decorator.getQueuedCount() == 1
+
+        when:
+        submitted.run()
+
+        then:
+        activeWhenRunning
+        decorator.getActiveCount() == 0
+        decorator.getQueuedCount() == 0
+    }
+
+    def "rejected task is rethrown and not counted as queued"() {
+        given:
+        underlying.execute(_) >> { throw new RejectedExecutionException("full") }
+
+        when:
+        decorator.execute({} as Runnable)
+
+        then:
+        thrown(RejectedExecutionException)
+        decorator.getQueuedCount() == 0
+    }
+
+    def "active count is released when task throws"() {
+        given:
+        underlying.execute(_) >> { Runnable command -> command.run() }
+
+        when:
+        decorator.execute({ throw new IllegalStateException("failed") } as Runnable)
+
+        then:
+        thrown(IllegalStateException)
+        decorator.getActiveCount() == 0
+        decorator.getQueuedCount() == 0
+    }
+}
@@ -102,6 +102,32 @@ class OlympiceneFacadeTest extends Specification {
         thrown TaskException
     }
 
+    def "test submitBatch resolves descriptor and checks once per batch"() {
+        given:
+        List<Map<String, Object>> contexts = [["a": 1], ["a": 2], ["a": 3]]
+        List<DAG> dags = (1..3).collect { new DAG(workspace: "testBusiness", dagName: "testFeatureName") }
+
+        when:
+        Map<String, Object> ret = facade.submitBatch(1L, "testBusiness:testFeatureName", contexts, null, null)
+
+        then:
+        1 * descriptorManager.getDAGs(1L, contexts[0], "testBusiness:testFeatureName", 3) >> dags
+        1 * dagSubmitChecker.check(_, null, 3)
+        1 * olympicene.submit(_ as List, dags, contexts, _, null)
+        List<String> executionIds = ret.get("execution_ids") as List<String>
+        executionIds.size() == 3
+        executionIds.every { it.startsWith("testBusiness:testFeatureName") }
+        contexts.collect { it.get("flow_execution_id") } == executionIds
+    }
+
+    def "test submitBatch exception by empty batch"() {
+        when:
+        facade.submitBatch(1L, "testBusiness:testFeatureName", [], null, null)
+
+        then:
+        thrown TaskException
+    }
+
     def "test finish"() {
         given:
         olympicene.finish(*_) >> null
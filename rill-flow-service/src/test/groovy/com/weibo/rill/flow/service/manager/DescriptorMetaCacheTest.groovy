@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.weibo.rill.flow.service.manager
+
+import com.weibo.rill.flow.service.storage.dao.DAGDescriptorMetaVersionDAO
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class DescriptorMetaCacheTest extends Specification {
+    DAGDescriptorMetaVersionDAO versionDAO = Mock(DAGDescriptorMetaVersionDAO)
+    DescriptorMetaCache cache = new DescriptorMetaCache(dagDescriptorMetaVersionDAO: versionDAO)
+
+    def "cached value is reused until business version changes"() {
+        given:
+        long version = 1L
+        versionDAO.getVersion("testBusiness") >> { version }
+        versionDAO.getVersions(_) >> { ["testBusiness": version] }
+        AtomicInteger loadCount = new AtomicInteger()
+        def loader = { loadCount.incrementAndGet(); "descriptor_testBusiness_testFeature_md5" + loadCount.get() }
+
+        when:
+        def first = cache.getDescriptorRedisKey("testBusiness", "testFeature", "release", loader)
+        def second = cache.getDescriptorRedisKey("testBusiness", "testFeature", "release", loader)
+
+        then:
+        first == second
+        loadCount.get() == 1
+
+        when:
+        version = 2L
+        cache.refreshVersions()
+        def third = cache.getDescriptorRedisKey("testBusiness", "testFeature", "release", loader)
+
+        then:
+        third == "descriptor_testBusiness_testFeature_md52"
+        loadCount.get() == 2
+    }
+
+    def "versions of all cached businesses are refreshed in one batch"() {
+        given:
+        versionDAO.getVersion(_) >> 1L
+        cache.getGray("businessA", "testFeature", { ["release": "uid > 0"] })
+        cache.getGray("businessB", "testFeature", { ["release": "uid > 0"] })
+
+        when:
+        cache.refreshVersions()
+
+        then:
+        1 * versionDAO.getVersions({ it as Set == ["businessA", "businessB"] as Set }) >> ["businessA": 2L, "businessB": 1L]
+        0 * versionDAO.getVersion(_)
+    }
+
+    def "gray rules are not cached when version is unavailable"() {
+        given:
+        versionDAO.getVersion(_) >> { throw new RuntimeException("redis down") }
+        AtomicInteger loadCount = new AtomicInteger()
+
+        when:
+        2.times { cache.getGray("testBusiness", "testFeature", { loadCount.incrementAndGet(); ["release": "uid > 0"] }) }
+
+        then:
+        loadCount.get() == 2
+    }
+}
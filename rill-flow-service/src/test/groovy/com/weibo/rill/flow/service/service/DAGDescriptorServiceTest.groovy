@@ -17,11 +17,19 @@
 package com.weibo.rill.flow.service.service
 
 import com.weibo.rill.flow.common.exception.TaskException
+import com.weibo.rill.flow.interfaces.model.resource.Resource
+import com.weibo.rill.flow.interfaces.model.task.FunctionTask
 import com.weibo.rill.flow.olympicene.core.model.dag.DAG
 import com.weibo.rill.flow.olympicene.core.model.dag.DescriptorPO
 import com.weibo.rill.flow.olympicene.core.model.dag.DescriptorVO
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager
+import com.weibo.rill.flow.olympicene.ddl.parser.DAGStringParser
+import com.weibo.rill.flow.olympicene.ddl.serialize.YAMLSerializer
+import com.weibo.rill.flow.olympicene.ddl.validation.dag.impl.FlowDAGValidator
 import com.weibo.rill.flow.service.converter.DAGDescriptorConverter
+import com.weibo.rill.flow.service.converter.DAGDescriptorConverterImpl
 import com.weibo.rill.flow.service.manager.AviatorCache
+import com.weibo.rill.flow.service.manager.DescriptorMetaCache
 import com.weibo.rill.flow.service.storage.dao.*
 import spock.lang.Specification
 
@@ -34,6 +42,7 @@ class DAGDescriptorServiceTest extends Specification {
     DAGGrayDAO dagGrayDAO
     DAGBusinessDAO dagBusinessDAO
     AviatorCache aviatorCache
+    SwitcherManager switcherManager
 
     static final String VALID_BUSINESS_ID = "testbusiness123"
     static final String VALID_FEATURE_NAME = "testfeature456"
@@ -41,6 +50,15 @@ class DAGDescriptorServiceTest extends Specification {
     static final String VALID_DESCRIPTOR_ID = "${VALID_BUSINESS_ID}:${VALID_FEATURE_NAME}:${VALID_ALIAS}"
     static final String VALID_MD5_DESCRIPTOR_ID = "${VALID_BUSINESS_ID}:${VALID_FEATURE_NAME}:md5_abc123"
     static final String VALID_REDIS_KEY = "${VALID_BUSINESS_ID}:${VALID_FEATURE_NAME}:abc123"
+    // 只声明resourceProtocol 由FunctionTaskValidator补全resourceName
+    static final String FUNCTION_DESCRIPTOR = "workspace: ${VALID_BUSINESS_ID}\n" +
+            "dagName: ${VALID_FEATURE_NAME}\n" +
+            "type: flow\n" +
+            "tasks:\n" +
+            "  - name: functionA\n" +
+            "    category: function\n" +
+            "    resourceProtocol: http\n" +
+            "    pattern: task_sync\n"
 
     def setup() {
         dagAliasDAO = Mock(DAGAliasDAO)
@@ -50,6 +68,7 @@ class DAGDescriptorServiceTest extends Specification {
         dagGrayDAO = Mock(DAGGrayDAO)
         dagBusinessDAO = Mock(DAGBusinessDAO)
         aviatorCache = Mock(AviatorCache)
+        switcherManager = Mock(SwitcherManager)
 
         service = new DAGDescriptorService(
             dagAliasDAO: dagAliasDAO,
@@ -58,7 +77,8 @@ class DAGDescriptorServiceTest extends Specification {
             dagDescriptorConverter: dagDescriptorConverter,
             dagGrayDAO: dagGrayDAO,
             dagBusinessDAO: dagBusinessDAO,
-            aviatorCache: aviatorCache
+            aviatorCache: aviatorCache,
+            switcherManagerImpl: switcherManager
         )
     }
 
@@ -80,6 +100,27 @@ class DAGDescriptorServiceTest extends Specification {
         result == dag
     }
 
+    def "test getDAG consults descriptor meta cache when useCache is false"() {
+        given:
+        def descriptorMetaCache = Mock(DescriptorMetaCache)
+        service.descriptorMetaCache = descriptorMetaCache
+        switcherManager.getSwitcherState("ENABLE_DESCRIPTOR_META_CACHE") >> true
+        def descriptorPO = new DescriptorPO()
+        def dag = new DAG()
+
+        when:
+        def result = service.getDAG(123L, [:], "${VALID_BUSINESS_ID}:${VALID_FEATURE_NAME}")
+
+        then:
+        1 * descriptorMetaCache.getGray(VALID_BUSINESS_ID, VALID_FEATURE_NAME, _) >> [:]
+        1 * descriptorMetaCache.getDescriptorRedisKey(VALID_BUSINESS_ID, VALID_FEATURE_NAME, "release", _) >> VALID_REDIS_KEY
+        0 * dagGrayDAO.getGray(_, _)
+        0 * dagAliasDAO.getDescriptorRedisKeyByAlias(_, _, _)
+        1 * dagDescriptorDAO.getDescriptorPO(_, VALID_REDIS_KEY, VALID_BUSINESS_ID) >> descriptorPO
+        1 * dagDescriptorConverter.convertDescriptorPOToDAG(descriptorPO) >> dag
+        result == dag
+    }
+
     def "test getDAG success with gray rules"() {
         given:
         def uid = 123L
@@ -125,6 +166,62 @@ class DAGDescriptorServiceTest extends Specification {
         result == dag
     }
 
+    def "test getDAG reuses parsed DAG of the same md5"() {
+        given:
+        def md5DescriptorId = "${VALID_BUSINESS_ID}:${VALID_FEATURE_NAME}:md5_abc123"
+        def descriptorPO = new DescriptorPO(FUNCTION_DESCRIPTOR)
+        service.dagDescriptorConverter = new DAGDescriptorConverterImpl(dagParser: new DAGStringParser(new YAMLSerializer(), [new FlowDAGValidator()]))
+        switcherManager.getSwitcherState("ENABLE_PARSED_DAG_CACHE") >> true
+
+        when:
+        def first = service.getDAG(123L, [:], md5DescriptorId)
+        def second = service.getDAG(123L, [:], md5DescriptorId)
+        def third = service.getDAG(123L, [:], md5DescriptorId)
+
+        then:
+        1 * dagDescriptorDAO.getDescriptorPO(md5DescriptorId, _, VALID_BUSINESS_ID) >> descriptorPO
+        first.workspace == VALID_BUSINESS_ID
+        second.workspace == VALID_BUSINESS_ID
+        second.dagName == VALID_FEATURE_NAME
+        !second.is(third)
+        !second.tasks[0].is(third.tasks[0])
+    }
+
+    def "test getDAG validates once and keeps validated fields on cache hit"() {
+        given:
+        def md5DescriptorId = "${VALID_BUSINESS_ID}:${VALID_FEATURE_NAME}:md5_abc123"
+        def validator = Spy(FlowDAGValidator)
+        service.dagDescriptorConverter = new DAGDescriptorConverterImpl(dagParser: new DAGStringParser(new YAMLSerializer(), [validator]))
+        switcherManager.getSwitcherState("ENABLE_PARSED_DAG_CACHE") >> true
+        dagDescriptorDAO.getDescriptorPO(md5DescriptorId, _, VALID_BUSINESS_ID) >> new DescriptorPO(FUNCTION_DESCRIPTOR)
+
+        when:
+        def dags = (1..3).collect { service.getDAG(123L, [:], md5DescriptorId) }
+
+        then:
+        1 * validator.validate(_)
+        dags.every { ((FunctionTask) it.tasks[0]).resourceName == "http" + Resource.CONNECTOR }
+    }
+
+    def "test getDAGs binds every DAG from the validated DAG"() {
+        given:
+        def md5DescriptorId = "${VALID_BUSINESS_ID}:${VALID_FEATURE_NAME}:md5_abc123"
+        service.dagDescriptorConverter = new DAGDescriptorConverterImpl(dagParser: new DAGStringParser(new YAMLSerializer(), [new FlowDAGValidator()]))
+        switcherManager.getSwitcherState("ENABLE_PARSED_DAG_CACHE") >> parsedCacheEnabled
+
+        when:
+        def missed = service.getDAGs(123L, [:], md5DescriptorId, 3)
+        def hit = service.getDAGs(123L, [:], md5DescriptorId, 3)
+
+        then:
+        (parsedCacheEnabled ? 1 : 2) * dagDescriptorDAO.getDescriptorPO(md5DescriptorId, _, VALID_BUSINESS_ID) >> new DescriptorPO(FUNCTION_DESCRIPTOR)
+        (missed + hit).every { ((FunctionTask) it.tasks[0]).resourceName == "http" + Resource.CONNECTOR }
+        (missed + hit).collect { System.identityHashCode(it) }.toSet().size() == 6
+
+        where:
+        parsedCacheEnabled << [true, false]
+    }
+
     def "test getDAG with invalid descriptor id"() {
         when:
         service.getDAG(123L, [:], descriptorId)
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.statistic
+
+import com.weibo.rill.flow.common.exception.TaskException
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager
+import spock.lang.Specification
+
+class ResourceCircuitBreakerTest extends Specification {
+    SwitcherManager switcherManager = Mock(SwitcherManager)
+    ResourceCircuitBreaker breaker = new ResourceCircuitBreaker(switcherManagerImpl: switcherManager, windowSize: 4,
+            minimumCalls: 4, failureRateThreshold: 50, openDurationMillis: 100, maxConcurrentCalls: 2)
+
+    def setup() {
+        switcherManager.getSwitcherState("ENABLE_FUNCTION_DISPATCH_CIRCUIT_BREAKER") >> true
+    }
+
+    def "resource is not guarded when switcher is off or resource name is blank"() {
+        given:
+        SwitcherManager closedSwitcher = Mock(SwitcherManager)
+        closedSwitcher.getSwitcherState(_) >> false
+        ResourceCircuitBreaker disabled = new ResourceCircuitBreaker(switcherManagerImpl: closedSwitcher)
+
+        expect:
+        disabled.acquirePermission("http://test.com/api") == null
+        breaker.acquirePermission(null) == null
+        breaker.getResourceStates().isEmpty()
+    }
+
+    def "circuit opens when failure rate reaches threshold and recovers after probe success"() {
+        given:
+        String resourceName = "http://test.com/api"
+
+        when:
+        [true, false, true, false].each {
+            breaker.acquirePermission(resourceName).release(it)
+        }
+
+        then:
+        breaker.getState(resourceName) == ResourceCircuitBreaker.State.OPEN
+
+        when:
+        breaker.acquirePermission(resourceName)
+
+        then:
+        thrown(TaskException)
+
+        when:
+        Thread.sleep(150)
+        ResourceCircuitBreaker.Permit probe = breaker.acquirePermission(resourceName)
+        breaker.acquirePermission(resourceName)
+
+        then:
+        probe != null
+        breaker.getState(resourceName) == ResourceCircuitBreaker.State.HALF_OPEN
+        thrown(TaskException)
+
+        when:
+        probe.release(true)
+
+        then:
+        breaker.getState(resourceName) == ResourceCircuitBreaker.State.CLOSED
+        breaker.getResourceStates().get(resourceName).get("concurrent_calls") == 0
+    }
+
+    def "concurrent calls beyond bulkhead are rejected"() {
+        given:
+        String resourceName = "http://test.com/slow"
+
+        when:
+        ResourceCircuitBreaker.Permit first = breaker.acquirePermission(resourceName)
+        breaker.acquirePermission(resourceName)
+        breaker.acquirePermission(resourceName)
+
+        then:
+        thrown(TaskException)
+        breaker.getResourceStates().get(resourceName).get("concurrent_calls") == 2
+
+        when:
+        first.release(true)
+        first.release(true)
+
+        then:
+        breaker.getResourceStates().get(resourceName).get("concurrent_calls") == 1
+        breaker.acquirePermission(resourceName) != null
+    }
+
+    def "permit acquired before reset is released to the breaker that granted it"() {
+        given:
+        String resourceName = "http://test.com/slow"
+        ResourceCircuitBreaker.Permit inFlight = breaker.acquirePermission(resourceName)
+        breaker.reset(true, null)
+        breaker.acquirePermission(resourceName)
+
+        when:
+        inFlight.release(true)
+
+        then:
+        breaker.getResourceStates().get(resourceName).get("concurrent_calls") == 1
+    }
+
+    def "reset removes resource state"() {
+        given:
+        breaker.acquirePermission("a")
+        breaker.acquirePermission("b")
+
+        when:
+        breaker.reset(false, ["a"])
+
+        then:
+        breaker.getResourceStates().keySet() == ["b"] as Set
+
+        when:
+        breaker.reset(true, null)
+
+        then:
+        breaker.getResourceStates().isEmpty()
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.statistic
+
+import com.alibaba.fastjson.JSONObject
+import com.weibo.rill.flow.service.dconfs.BizDConfs
+import spock.lang.Specification
+
+class RuntimeHealthSamplerTest extends Specification {
+    DAGResourceStatistic dagResourceStatistic = Mock(DAGResourceStatistic)
+    SystemMonitorStatistic systemMonitorStatistic = Mock(SystemMonitorStatistic)
+    BizDConfs bizDConfs = Mock(BizDConfs)
+    RuntimeHealthSampler sampler = new RuntimeHealthSampler(dagResourceStatistic: dagResourceStatistic,
+            systemMonitorStatistic: systemMonitorStatistic, bizDConfs: bizDConfs)
+
+    def setup() {
+        bizDConfs.getRedisServiceIdToClientId() >> ["testBusiness:testFeatureName1": "client1"]
+        bizDConfs.getRedisBusinessIdToClientId() >> [:]
+    }
+
+    def "registered service ids are sampled in background and read from snapshot"() {
+        expect:
+        sampler.getRedisUsagePercent("testBusiness:testFeatureName1") == null
+        sampler.getBusinessHeap("testBusiness:testFeatureName1") == null
+
+        when:
+        sampler.sample()
+
+        then:
+        1 * dagResourceStatistic.sampleRuntimeRedisUsagePercent({ it.startsWith("testBusiness:testFeatureName1") }) >> 60
+        1 * systemMonitorStatistic.businessHeapMonitor(["testBusiness:testFeatureName1"], null, null) >>
+                new JSONObject(["testBusiness:testFeatureName1": new JSONObject(["running_count": 3])])
+        sampler.getRedisUsagePercent("testBusiness:testFeatureName1") == 60
+        sampler.getBusinessHeap("testBusiness:testFeatureName1").getIntValue("running_count") == 3
+    }
+
+    def "redis usage is sampled once per client id"() {
+        given:
+        sampler.getRedisUsagePercent("testBusiness:testFeatureName2")
+        sampler.getRedisUsagePercent("testBusiness:testFeatureName3")
+
+        when:
+        sampler.sample()
+
+        then:
+        1 * dagResourceStatistic.sampleRuntimeRedisUsagePercent(_) >> 20
+        sampler.getRedisUsagePercent("testBusiness:testFeatureName2") == 20
+        sampler.getRedisUsagePercent("testBusiness:testFeatureName3") == 20
+    }
+
+    def "stale and idle samples are not returned"() {
+        given:
+        RuntimeHealthSampler staleSampler = new RuntimeHealthSampler(dagResourceStatistic: dagResourceStatistic,
+                systemMonitorStatistic: systemMonitorStatistic, bizDConfs: bizDConfs, maxStalenessMillis: -1, idleExpireMillis: -1)
+        staleSampler.getRedisUsagePercent("testBusiness:testFeatureName1")
+
+        when:
+        staleSampler.sample()
+
+        then:
+        0 * dagResourceStatistic.sampleRuntimeRedisUsagePercent(_)
+        staleSampler.getRedisUsagePercent("testBusiness:testFeatureName1") == null
+    }
+}
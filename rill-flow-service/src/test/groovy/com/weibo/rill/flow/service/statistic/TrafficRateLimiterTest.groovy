@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.statistic
+
+import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager
+import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient
+import com.weibo.rill.flow.service.storage.RuntimeRedisClients
+import spock.lang.Specification
+
+class TrafficRateLimiterTest extends Specification {
+    SwitcherManager switcherManager = Mock(SwitcherManager)
+    RuntimeRedisClients runtimeRedisClients = Mock(RuntimeRedisClients)
+    RedisClient redisClient = Mock(RedisClient)
+    TrafficRateLimiter limiter = new TrafficRateLimiter(switcherManagerImpl: switcherManager, runtimeRedisClients: runtimeRedisClients, leasePercent: 10)
+    String executionId = "testBusiness:testFeatureName_c_8921a32f"
+
+    def setup() {
+        runtimeRedisClients.choose(_) >> redisClient
+    }
+
+    def "local bucket leases permits from redis in slices growing with demand"() {
+        given:
+        switcherManager.getSwitcherState("ENABLE_LOCAL_TRAFFIC_RATE_LIMITER") >> true
+        List<String> leaseCounts = []
+
+        when:
+        List<Boolean> results = (1..20).collect { limiter.tryAcquire(executionId, "testBusiness", 100) }
+
+        then:
+        (1.._) * redisClient.eval(_, { it[0].startsWith("rate_testBusiness_") }, _) >> { script, keys, args ->
+            leaseCounts << args[1]
+            return Long.valueOf(args[1])
+        }
+        results.every { it }
+        leaseCounts.take(5) == ["1", "1", "2", "4", "8"]
+        leaseCounts.every { Long.valueOf(it) <= 10L }
+    }
+
+    def "local bucket stops leasing when cluster permits are exhausted"() {
+        given:
+        switcherManager.getSwitcherState("ENABLE_LOCAL_TRAFFIC_RATE_LIMITER") >> true
+
+        when:
+        boolean first = limiter.tryAcquire(executionId, "testBusiness", 100)
+        boolean second = limiter.tryAcquire(executionId, "testBusiness", 100)
+        boolean third = limiter.tryAcquire(executionId, "testBusiness", 100)
+
+        then:
+        2 * redisClient.eval(*_) >>> [1L, 0L]
+        first
+        !second
+        !third
+    }
+
+    def "batch permits lease at least the requested count"() {
+        given:
+        switcherManager.getSwitcherState("ENABLE_LOCAL_TRAFFIC_RATE_LIMITER") >> true
+
+        when:
+        boolean ret = limiter.tryAcquire(executionId, "testBusiness", 100, 30)
+
+        then:
+        1 * redisClient.eval(_, _, ["100", "30"]) >> 30L
+        ret
+    }
+
+    def "batch permits return a short grant"() {
+        given:
+        switcherManager.getSwitcherState("ENABLE_LOCAL_TRAFFIC_RATE_LIMITER") >> true
+
+        when:
+        boolean ret = limiter.tryAcquire(executionId, "testBusiness", 100, 30)
+
+        then:
+        1 * redisClient.eval(_, _, ["100", "30"]) >> 20L
+        1 * redisClient.eval(_, _, ["20"]) >> 20L
+        !ret
+    }
+
+    def "idle local tokens are returned by reconcile"() {
+        given:
+        switcherManager.getSwitcherState("ENABLE_LOCAL_TRAFFIC_RATE_LIMITER") >> true
+        limiter.reconcileIntervalMillis = 0L
+        redisClient.eval(_, _, { it.size() == 2 }) >> { script, keys, args -> Long.valueOf(args[1]) }
+        (1..3).each { limiter.tryAcquire(executionId, "testBusiness", 100) }
+
+        when:
+        long returned = limiter.reconcile(System.currentTimeMillis())
+
+        then:
+        1 * redisClient.eval(_, { it[0].startsWith("rate_testBusiness_") }, ["1"]) >> 1L
+        returned == 1L
+        limiter.reconcile(System.currentTimeMillis()) == 0L
+    }
+
+    def "acquire is not limited when redis fails"() {
+        given:
+        switcherManager.getSwitcherState("ENABLE_LOCAL_TRAFFIC_RATE_LIMITER") >> localLimiter
+        redisClient.eval(*_) >> { throw new RuntimeException("redis error") }
+
+        expect:
+        limiter.tryAcquire(executionId, "testBusiness", 100)
+
+        where:
+        localLimiter << [true, false]
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.storage
+
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGInfo
+import com.weibo.rill.flow.olympicene.core.model.dag.DAGStatus
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class LongTermArchiveBufferTest extends Specification {
+    Path root = Files.createTempDirectory("archive_test")
+    LongTermArchiveBuffer buffer = new LongTermArchiveBuffer(root)
+
+    def cleanup() {
+        root.toFile().deleteDir()
+    }
+
+    def "appended records are peeked in order until acknowledged"() {
+        given:
+        buffer.append("business:feature_c_uuid1", new DAGInfo(executionId: "business:feature_c_uuid1", dagStatus: DAGStatus.SUCCEED), ["a": 1])
+        buffer.append("business:feature_c_uuid2", new DAGInfo(executionId: "business:feature_c_uuid2", dagStatus: DAGStatus.FAILED), ["b": "2"])
+
+        when:
+        List<LongTermArchiveBuffer.Entry> entries = buffer.peek(10)
+
+        then:
+        entries*.executionId == ["business:feature_c_uuid1", "business:feature_c_uuid2"]
+        entries[0].dagInfo.dagStatus == DAGStatus.SUCCEED
+        entries[1].context == ["b": "2"]
+        buffer.peek(1).size() == 1
+
+        when:
+        buffer.ack(entries[0])
+
+        then:
+        buffer.peek(10)*.executionId == ["business:feature_c_uuid2"]
+    }
+
+    def "context value types survive the round trip"() {
+        given:
+        Map<String, Object> context = ["long": 5000000000L, "double": 1.5d, "list": [1, "a"], "map": ["k": "v"]]
+        buffer.append("business:feature_c_uuid1", new DAGInfo(executionId: "business:feature_c_uuid1", dagStatus: DAGStatus.SUCCEED), context)
+
+        when:
+        Map<String, Object> peeked = buffer.peek(1)[0].context
+
+        then:
+        peeked == context
+        peeked["long"] instanceof Long
+        peeked["double"] instanceof Double
+        !Files.list(root).anyMatch { it.fileName.toString().endsWith(".tmp") }
+    }
+
+    def "unreadable record is marked corrupt and skipped"() {
+        given:
+        buffer.append("business:feature_c_uuid1", new DAGInfo(executionId: "business:feature_c_uuid1", dagStatus: DAGStatus.SUCCEED), ["a": 1])
+        Files.write(root.resolve("0000000000000_000000_broken.gz"), "broken".getBytes())
+
+        when:
+        List<LongTermArchiveBuffer.Entry> entries = buffer.peek(10)
+
+        then:
+        entries*.executionId == ["business:feature_c_uuid1"]
+        Files.exists(root.resolve("0000000000000_000000_broken.gz.corrupt"))
+    }
+
+    def "peek on missing directory returns empty"() {
+        expect:
+        new LongTermArchiveBuffer(root.resolve("missing")).peek(10).isEmpty()
+    }
+}
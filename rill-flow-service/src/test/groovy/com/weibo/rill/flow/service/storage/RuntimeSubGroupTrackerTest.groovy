@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.storage
+
+import com.weibo.rill.flow.interfaces.model.task.TaskStatus
+import com.weibo.rill.flow.olympicene.core.model.task.SubGroupProgress
+import com.weibo.rill.flow.olympicene.core.runtime.SubGroupTracker
+import spock.lang.Specification
+
+class RuntimeSubGroupTrackerTest extends Specification {
+    SubGroupTracker redisSubGroupTracker = Mock(SubGroupTracker)
+    RuntimeStorage runtimeStorage = Mock(RuntimeStorage)
+    RuntimeSubGroupTracker tracker = new RuntimeSubGroupTracker(redisSubGroupTracker, runtimeStorage)
+
+    def "tracker is used only for redis only businesses"() {
+        given:
+        def progress = SubGroupProgress.builder().completedCount(1).build()
+        runtimeStorage.subGroupTrackingSupported(executionId) >> supported
+
+        when:
+        tracker.init(executionId, 'foreachA', ['0': TaskStatus.RUNNING])
+        def result = tracker.completeGroup(executionId, 'foreachA', '0', TaskStatus.SUCCEED)
+        tracker.clear(executionId, 'foreachA')
+
+        then:
+        (supported ? 1 : 0) * redisSubGroupTracker.init(executionId, 'foreachA', _)
+        (supported ? 1 : 0) * redisSubGroupTracker.completeGroup(executionId, 'foreachA', '0', TaskStatus.SUCCEED) >> progress
+        (supported ? 1 : 0) * redisSubGroupTracker.clear(executionId, 'foreachA')
+        result == (supported ? progress : null)
+
+        where:
+        executionId                | supported
+        'redisOnly:feature_c_uuid' | true
+        'swap:feature_c_uuid'      | false
+    }
+}
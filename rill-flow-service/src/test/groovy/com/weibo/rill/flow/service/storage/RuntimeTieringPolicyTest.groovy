@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2021-2023 Weibo, Inc.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.weibo.rill.flow.service.storage
+
+import com.weibo.rill.flow.service.dconfs.BizDConfs
+import com.weibo.rill.flow.service.storage.dao.RuntimeTierDAO
+import spock.lang.Specification
+
+class RuntimeTieringPolicyTest extends Specification {
+    RuntimeTierDAO runtimeTierDAO = Mock(RuntimeTierDAO)
+    BizDConfs bizDConfs = Mock(BizDConfs)
+    RuntimeTieringPolicy policy = new RuntimeTieringPolicy(runtimeTierDAO, bizDConfs)
+
+    def setup() {
+        bizDConfs.getSwapBusinessIdToClientId() >> ['tiered': 'swapClient', 'swapOnly': 'swapClient', 'stream': 'swapClient']
+        bizDConfs.getSwapBusinessIdToIdleSecond() >> ['tiered': 60, 'stream': 60, 'noSwap': 60]
+        bizDConfs.getRedisEventStreamStorageBusinessIds() >> (['stream'] as Set)
+        bizDConfs.getSwapBusinessIdToUnfinishedReserveSecond() >> ['tiered': 3600]
+    }
+
+    def "tiering requires swap storage and idle time and is disabled for event stream storage"() {
+        expect:
+        policy.tieringEnabled(executionId) == expected
+
+        where:
+        executionId                  | expected
+        'tiered:feature_c_uuid1'     | true
+        'swapOnly:feature_c_uuid1'   | false
+        'stream:feature_c_uuid1'     | false
+        'noSwap:feature_c_uuid1'     | false
+    }
+
+    def "flushAccess writes local access time grouped by serviceId"() {
+        given:
+        policy.touch('tiered:a_c_uuid1')
+        policy.touch('tiered:a_c_uuid2')
+        policy.touch('tiered:b_c_uuid3')
+        policy.touch('swapOnly:a_c_uuid4')
+
+        when:
+        int count = policy.flushAccess()
+
+        then:
+        count == 3
+        1 * runtimeTierDAO.touch('tiered:a', { it.keySet() == ['tiered:a_c_uuid1', 'tiered:a_c_uuid2'] as Set })
+        1 * runtimeTierDAO.touch('tiered:b', { it.keySet() == ['tiered:b_c_uuid3'] as Set })
+        policy.getLocalAccessTime('tiered:a_c_uuid1') == null
+        policy.flushAccess() == 0
+    }
+
+    def "access time is kept when flush fails"() {
+        given:
+        policy.touch('tiered:a_c_uuid1')
+        runtimeTierDAO.touch(*_) >> { throw new RuntimeException('redis down') }
+
+        when:
+        int count = policy.flushAccess()
+
+        then:
+        count == 0
+        policy.getLocalAccessTime('tiered:a_c_uuid1') != null
+    }
+
+    def "pollIdle only pops services with tiering enabled"() {
+        given:
+        runtimeTierDAO.getServiceIds() >> (['tiered:a', 'swapOnly:a'] as Set)
+
+        when:
+        long before = System.currentTimeMillis()
+        List<String> idle = policy.pollIdle(10)
+
+        then:
+        1 * runtimeTierDAO.popIdle('tiered:a', { it <= before - 60000L + 1000L }, 10) >> ['tiered:a_c_uuid1']
+        0 * runtimeTierDAO.popIdle('swapOnly:a', _, _)
+        idle == ['tiered:a_c_uuid1']
+    }
+
+    def "swapped out marker is written only when still idle and expires with swap storage"() {
+        when:
+        long before = System.currentTimeMillis()
+        boolean marked = policy.markSwappedOutIfIdle('tiered:a_c_uuid1')
+
+        then:
+        1 * runtimeTierDAO.markSwappedOutIfIdle('tiered:a_c_uuid1', { it <= before - 60000L + 1000L }, 3600) >> false
+        !marked
+    }
+
+    def "write access is recorded in redis at most once per half idle time"() {
+        when:
+        boolean first = policy.checkSwappedOutBeforeWrite('tiered:a_c_uuid1')
+        boolean second = policy.checkSwappedOutBeforeWrite('tiered:a_c_uuid1')
+
+        then:
+        1 * runtimeTierDAO.touchAndCheckSwappedOut('tiered:a_c_uuid1', _) >> false
+        !first
+        !second
+    }
+
+    def "swapped out execution is checked again on next write"() {
+        when:
+        boolean first = policy.checkSwappedOutBeforeWrite('tiered:a_c_uuid1')
+        boolean second = policy.checkSwappedOutBeforeWrite('tiered:a_c_uuid1')
+
+        then:
+        2 * runtimeTierDAO.touchAndCheckSwappedOut('tiered:a_c_uuid1', _) >>> [true, false]
+        first
+        !second
+    }
+}
@@ -34,6 +34,7 @@ class DAGAliasDAOTest extends Specification {
         redisClient = Mock(RedisClient)
         dagAliasDAO = new DAGAliasDAO()
         dagAliasDAO.redisClient = redisClient
+        dagAliasDAO.dagDescriptorMetaVersionDAO = Mock(DAGDescriptorMetaVersionDAO)
     }
 
     def "test createAlias success"() {
@@ -38,6 +38,7 @@ class DAGDescriptorDAOTest extends Specification {
         switcherManager = Mock(SwitcherManager)
         dagDescriptorDAO = new DAGDescriptorDAO()
         dagDescriptorDAO.redisClient = redisClient
+        dagDescriptorDAO.dagDescriptorMetaVersionDAO = Mock(DAGDescriptorMetaVersionDAO)
         dagDescriptorDAO.switcherManagerImpl = switcherManager
         dagDescriptorDAO.versionMaxCount = 300
     }
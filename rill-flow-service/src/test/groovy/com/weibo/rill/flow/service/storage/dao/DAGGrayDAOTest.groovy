@@ -33,6 +33,7 @@ class DAGGrayDAOTest extends Specification {
         redisClient = Mock(RedisClient)
         dagGrayDAO = new DAGGrayDAO()
         dagGrayDAO.redisClient = redisClient
+        dagGrayDAO.dagDescriptorMetaVersionDAO = Mock(DAGDescriptorMetaVersionDAO)
     }
 
     def "test createGray success"() {
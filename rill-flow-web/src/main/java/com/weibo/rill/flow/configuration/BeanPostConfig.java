@@ -123,6 +123,11 @@ public class BeanPostConfig {
                         ContextHelper.getInstance().setIndependentContext(independentSwitcher);
                         log.info("independent context switcher value change to {}", ContextHelper.getInstance().isIndependentContext());
                     }
+                    boolean projectionSwitcher = switcherManagerImpl.getSwitcherState("ENABLE_FLOW_CONTEXT_FIELD_PROJECTION");
+                    if (projectionSwitcher != ContextHelper.getInstance().isContextFieldProjection()) {
+                        ContextHelper.getInstance().setContextFieldProjection(projectionSwitcher);
+                        log.info("context field projection switcher value change to {}", ContextHelper.getInstance().isContextFieldProjection());
+                    }
 
                     long executionCost = System.currentTimeMillis() - startTime;
                     String executionId = getParam(params, EXECUTION_ID, String.class);
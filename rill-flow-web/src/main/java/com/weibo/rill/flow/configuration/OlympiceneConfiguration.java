@@ -22,20 +22,31 @@ import com.weibo.rill.flow.interfaces.model.task.FunctionTask;
 import com.weibo.rill.flow.olympicene.core.event.Callback;
 import com.weibo.rill.flow.olympicene.core.model.task.*;
 import com.weibo.rill.flow.olympicene.core.runtime.DAGStorageProcedure;
+import com.weibo.rill.flow.olympicene.core.runtime.SubGroupTracker;
 import com.weibo.rill.flow.olympicene.core.switcher.SwitcherManager;
 import com.weibo.rill.flow.olympicene.ddl.serialize.ObjectMapperFactory;
+import com.weibo.rill.flow.olympicene.storage.blob.BlobStore;
+import com.weibo.rill.flow.olympicene.storage.blob.LocalFileBlobStore;
+import com.weibo.rill.flow.olympicene.storage.codec.DefaultStorageCodec;
+import com.weibo.rill.flow.olympicene.storage.codec.StorageCodec;
+import com.weibo.rill.flow.olympicene.storage.codec.StorageCompression;
+import com.weibo.rill.flow.olympicene.storage.codec.StorageFormat;
 import com.weibo.rill.flow.olympicene.storage.redis.api.RedisClient;
 import com.weibo.rill.flow.olympicene.storage.redis.lock.impl.RedisDistributedLocker;
 import com.weibo.rill.flow.olympicene.storage.save.impl.DAGInfoDeserializeService;
+import com.weibo.rill.flow.olympicene.storage.save.impl.DagStorageSerializer;
 import com.weibo.rill.flow.olympicene.storage.save.impl.RedisStorageProcedure;
+import com.weibo.rill.flow.olympicene.storage.save.impl.RedisSubGroupTracker;
 import com.weibo.rill.flow.olympicene.traversal.callback.DAGCallbackInfo;
 import com.weibo.rill.flow.olympicene.traversal.dispatcher.DAGDispatcher;
 import com.weibo.rill.flow.olympicene.traversal.helper.SameThreadExecutorService;
 import com.weibo.rill.flow.olympicene.traversal.helper.TracerHelper;
 import com.weibo.rill.flow.olympicene.traversal.mappings.JSONPathInputOutputMapping;
+import com.weibo.rill.flow.service.component.ExecutionIsolatableExecutorService;
 import com.weibo.rill.flow.service.component.OlympiceneCallback;
 import com.weibo.rill.flow.service.component.RuntimeExecutorServiceProxy;
 import com.weibo.rill.flow.service.dconfs.BizDConfs;
+import com.weibo.rill.flow.service.decorator.InstrumentedExecutorServiceDecorator;
 import com.weibo.rill.flow.service.decorator.ShareMdcFeatureDecoratorAssembler;
 import com.weibo.rill.flow.service.decorator.TaskDecoratingExecutorServiceDecorator;
 import com.weibo.rill.flow.service.dispatcher.FunctionTaskDispatcher;
@@ -44,18 +55,23 @@ import com.weibo.rill.flow.service.manager.DAGClientPool;
 import com.weibo.rill.flow.service.mapping.JsonValueMapping;
 import com.weibo.rill.flow.service.statistic.BusinessTimeChecker;
 import com.weibo.rill.flow.service.statistic.TenantTaskStatistic;
+import com.weibo.rill.flow.service.storage.LongTermArchiveBuffer;
 import com.weibo.rill.flow.service.storage.LongTermStorage;
 import com.weibo.rill.flow.service.storage.RuntimeRedisClients;
 import com.weibo.rill.flow.service.storage.RuntimeStorage;
+import com.weibo.rill.flow.service.storage.RuntimeSubGroupTracker;
 import com.weibo.rill.flow.service.util.IpUtils;
 import io.opentelemetry.api.trace.Tracer;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.*;
@@ -67,8 +83,17 @@ public class OlympiceneConfiguration {
     @Bean
     public LongTermStorage longTermStorage(
             @Autowired BizDConfs bizDConfs,
-            @Autowired DAGClientPool dagClientPool) {
-        return new LongTermStorage(bizDConfs, dagClientPool.getLongTermStorageClientIdToRedisClient());
+            @Autowired DAGClientPool dagClientPool,
+            @Autowired RuntimeStorage runtimeStorage,
+            @Value("${weibo.flow.long.term.storage.codec.format:json}") String format,
+            @Value("${weibo.flow.long.term.storage.codec.compression:none}") String compression,
+            @Value("${weibo.flow.long.term.storage.codec.threshold.bytes:1024}") int thresholdBytes,
+            @Value("${weibo.flow.long.term.storage.archive.buffer.dir:}") String archiveBufferDir) {
+        StorageCodec codec = new DefaultStorageCodec(StorageFormat.valueOf(format.toUpperCase()),
+                StorageCompression.valueOf(compression.toUpperCase()), thresholdBytes);
+        LongTermArchiveBuffer archiveBuffer = StringUtils.isBlank(archiveBufferDir) ? null : new LongTermArchiveBuffer(Paths.get(archiveBufferDir));
+        return new LongTermStorage(bizDConfs, dagClientPool.getLongTermStorageClientIdToRedisClient(), codec,
+                archiveBuffer, runtimeStorage);
     }
 
     @Bean
@@ -100,22 +125,45 @@ public class OlympiceneConfiguration {
         return new RuntimeRedisClients(bizDConfs, dagClientPool.getRuntimeStorageClientIdToRedisClient(), defaultRedisClient);
     }
 
+    @Bean
+    public StorageCodec storageCodec(
+            @Value("${weibo.flow.runtime.redis.storage.codec.format:json}") String format,
+            @Value("${weibo.flow.runtime.redis.storage.codec.compression:none}") String compression,
+            @Value("${weibo.flow.runtime.redis.storage.codec.threshold.bytes:1024}") int thresholdBytes) {
+        return new DefaultStorageCodec(StorageFormat.valueOf(format.toUpperCase()),
+                StorageCompression.valueOf(compression.toUpperCase()), thresholdBytes);
+    }
+
     @Bean(name = {"dagInfoStorage", "dagContextStorage"})
     public RuntimeStorage runtimeStorage(
             @Autowired BizDConfs bizDConfs,
             @Autowired DAGClientPool dagClientPool,
             @Autowired @Qualifier("runtimeRedisClients") RedisClient redisClient,
             @Autowired DAGInfoDeserializeService dagInfoDeserializeService,
-            @Autowired SwitcherManager switcherManagerImpl) {
+            @Autowired SwitcherManager switcherManagerImpl,
+            @Autowired StorageCodec storageCodec,
+            @Value("${weibo.flow.runtime.redis.storage.context.blob.dir:}") String contextBlobDir) {
+        DagStorageSerializer.setCodec(storageCodec);
+        BlobStore contextBlobStore = StringUtils.isBlank(contextBlobDir) ? null : new LocalFileBlobStore(Paths.get(contextBlobDir));
         return new RuntimeStorage(redisClient, dagClientPool.getRuntimeStorageClientIdToRedisClient(), bizDConfs,
-                dagInfoDeserializeService, switcherManagerImpl);
+                dagInfoDeserializeService, switcherManagerImpl, contextBlobStore);
     }
 
     @Bean
     public DAGStorageProcedure dagStorageProcedure(
-            @Autowired @Qualifier("runtimeRedisClients") RedisClient redisClient) {
+            @Autowired @Qualifier("runtimeRedisClients") RedisClient redisClient,
+            @Autowired RuntimeStorage runtimeStorage) {
         String instanceId = IpUtils.getLocalIpv4Address() + UUID.randomUUID().toString().replace("-", "");
-        return new RedisStorageProcedure(instanceId, new RedisDistributedLocker(redisClient));
+        RedisStorageProcedure redisStorageProcedure = new RedisStorageProcedure(instanceId, new RedisDistributedLocker(redisClient));
+        redisStorageProcedure.setTraversalStorage(runtimeStorage);
+        return redisStorageProcedure;
+    }
+
+    @Bean
+    public SubGroupTracker subGroupTracker(
+            @Autowired @Qualifier("runtimeRedisClients") RedisClient redisClient,
+            @Autowired RuntimeStorage runtimeStorage) {
+        return new RuntimeSubGroupTracker(new RedisSubGroupTracker(redisClient), runtimeStorage);
     }
 
     @Bean
@@ -138,24 +186,32 @@ public class OlympiceneConfiguration {
         return new RuntimeExecutorServiceProxy(
                 bizDConfs,
                 dagClientPool.getRuntimeExecutorClientMapping(),
-                SameThreadExecutorService.INSTANCE
+                new InstrumentedExecutorServiceDecorator("notify", SameThreadExecutorService.INSTANCE),
+                "notify"
         );
     }
 
     @Bean(destroyMethod = "shutdown")
     public ExecutorService traversalExecutor(@Autowired BizDConfs bizDConfs,
-                                             @Autowired DAGClientPool dagClientPool) {
-
-        ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("olympicene-traversal-%d").build();
-        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(20, 100, 100000,
-                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1000), namedThreadFactory, new ThreadPoolExecutor.AbortPolicy());
-        TaskDecoratingExecutorServiceDecorator decorator = new TaskDecoratingExecutorServiceDecorator(threadPoolExecutor);
+                                             @Autowired DAGClientPool dagClientPool,
+                                             @Value("${weibo.flow.runtime.traversal.execution.serial.enabled:false}") boolean executionSerialEnabled) {
+        ExecutorService underlyingExecutor;
+        if (executionSerialEnabled) {
+            underlyingExecutor = new ExecutionIsolatableExecutorService("olympicene-traversal-%d",
+                    Runtime.getRuntime().availableProcessors() * 2, 1000);
+        } else {
+            ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("olympicene-traversal-%d").build();
+            underlyingExecutor = new ThreadPoolExecutor(20, 100, 100000,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1000), namedThreadFactory, new ThreadPoolExecutor.AbortPolicy());
+        }
+        TaskDecoratingExecutorServiceDecorator decorator = new TaskDecoratingExecutorServiceDecorator(underlyingExecutor);
         decorator.setTaskDecoratorAssemblerList(List.of(new ShareMdcFeatureDecoratorAssembler()));
 
         return new RuntimeExecutorServiceProxy(
                 bizDConfs,
                 dagClientPool.getRuntimeExecutorClientMapping(),
-                decorator
+                new InstrumentedExecutorServiceDecorator("traversal", decorator),
+                "traversal"
         );
     }
 
@@ -171,7 +227,8 @@ public class OlympiceneConfiguration {
         return new RuntimeExecutorServiceProxy(
                 bizDConfs,
                 dagClientPool.getRuntimeExecutorClientMapping(),
-                decorator
+                new InstrumentedExecutorServiceDecorator("runner", decorator),
+                "runner"
         );
     }
 
@@ -182,7 +239,7 @@ public class OlympiceneConfiguration {
                 TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(6000), namedThreadFactory, new ThreadPoolExecutor.AbortPolicy());
         TaskDecoratingExecutorServiceDecorator decorator = new TaskDecoratingExecutorServiceDecorator(threadPoolExecutor);
         decorator.setTaskDecoratorAssemblerList(List.of(new ShareMdcFeatureDecoratorAssembler()));
-        return decorator;
+        return new InstrumentedExecutorServiceDecorator("callback", decorator);
     }
 
     @PostConstruct
@@ -110,6 +110,36 @@ public class FlowController {
         return profileRecordService.runNotifyAndRecordProfile("submit.json", descriptorId, submitActions);
     }
 
+    /**
+     * 批量任务提交接口, 同一工作流的多个执行一次提交
+     *
+     * @param flowUser      用户身份认证后的用户信息对象
+     * @param descriptorId  DAG 图 ID
+     * @param callback      非必须，执行完成后的回调地址
+     * @param resourceCheck 用于检测资源是否可用的检测规则
+     * @param data          每个执行的 context 信息
+     * @return execution_ids 与 data 顺序一致
+     */
+    @ApiOperation(value = "批量执行工作流")
+    @RequestMapping(value = "submit_batch.json", method = RequestMethod.POST)
+    public Map<String, Object> submitBatch(User flowUser,
+                                           @ApiParam(value = "工作流ID") @RequestParam(value = "descriptor_id") String descriptorId,
+                                           @ApiParam(value = "执行完成后的回调地址") @RequestParam(value = "callback", required = false) String callback,
+                                           @ApiParam(value = "用于检测资源是否可用的检测规则") @RequestParam(value = "resource_check", required = false) String resourceCheck,
+                                           @ApiParam(value = "每个工作流执行的context信息") @RequestBody List<JSONObject> data) {
+        Supplier<Map<String, Object>> submitActions = () -> {
+            ResourceCheckConfig resourceCheckConfig = submitChecker.getCheckConfig(resourceCheck);
+            String businessId = DescriptorIdUtil.changeDescriptorIdToBusinessId(descriptorId);
+            List<Map<String, Object>> contexts = data.stream()
+                    .map(it -> dagContextInitializer.newSubmitContextBuilder(businessId).withData(it).withIdentity(descriptorId).build())
+                    .toList();
+
+            return olympiceneFacade.submitBatch(flowUser, descriptorId, contexts, callback, resourceCheckConfig);
+        };
+
+        return profileRecordService.runNotifyAndRecordProfile("submit_batch.json", descriptorId, submitActions);
+    }
+
     @ApiOperation(value = "任务完成回调")
     @RequestMapping(value = "finish.json", method = RequestMethod.POST)
     public Map<String, Object> finish(User flowUser,